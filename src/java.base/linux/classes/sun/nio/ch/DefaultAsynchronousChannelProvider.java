@@ -42,6 +42,8 @@ public class DefaultAsynchronousChannelProvider {
      * Returns the default AsynchronousChannelProvider.
      */
     public static AsynchronousChannelProvider create() {
+        if (IOUringAsynchronousChannelProvider.isEnabled())
+            return new IOUringAsynchronousChannelProvider();
         return new LinuxAsynchronousChannelProvider();
     }
 }
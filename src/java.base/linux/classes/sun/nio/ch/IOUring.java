@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.nio.ch;
+
+import java.io.IOException;
+import jdk.internal.misc.Unsafe;
+
+/**
+ * Provides access to the Linux io_uring facility.
+ */
+
+class IOUring {
+    private IOUring() { }
+
+    private static final Unsafe unsafe = Unsafe.getUnsafe();
+
+    /**
+     * struct io_uring_cqe {
+     *     __u64 user_data;
+     *     __s32 res;
+     *     __u32 flags;
+     * };
+     */
+    private static final int SIZEOF_CQE         = completionSize();
+    private static final int OFFSETOF_USER_DATA = 0;
+    private static final int OFFSETOF_RES       = resultOffset();
+
+    // opcodes
+    static final int IORING_OP_READ_FIXED   = 4;
+    static final int IORING_OP_WRITE_FIXED  = 5;
+    static final int IORING_OP_READ         = 22;
+    static final int IORING_OP_WRITE        = 23;
+
+    // submission flags
+    static final int IOSQE_FIXED_FILE       = (1 << 0);
+
+    // kernel supports io_uring and the opcodes used by the JDK
+    private static final boolean SUPPORTED;
+
+    /**
+     * Returns true if the kernel supports io_uring with the operations that
+     * are required by the asynchronous file channel implementation.
+     */
+    static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Allocates an array to reap up to {@code count} completions.
+     */
+    static long allocateCompletionArray(int count) {
+        return unsafe.allocateMemory(count * SIZEOF_CQE);
+    }
+
+    /**
+     * Free a completion array
+     */
+    static void freeCompletionArray(long address) {
+        unsafe.freeMemory(address);
+    }
+
+    /**
+     * Returns cqe[i];
+     */
+    static long getCompletion(long address, int i) {
+        return address + (SIZEOF_CQE*i);
+    }
+
+    /**
+     * Returns cqe->user_data
+     */
+    static long getUserData(long cqeAddress) {
+        return unsafe.getLong(cqeAddress + OFFSETOF_USER_DATA);
+    }
+
+    /**
+     * Returns cqe->res
+     */
+    static int getResult(long cqeAddress) {
+        return unsafe.getInt(cqeAddress + OFFSETOF_RES);
+    }
+
+    /**
+     * Returns an IOException for a failed operation, {@code res} is the
+     * negated errno value from the completion.
+     */
+    static IOException newIOException(int res) {
+        return new IOException(strerror(-res));
+    }
+
+    // -- Native methods --
+
+    private static native int completionSize();
+
+    private static native int resultOffset();
+
+    private static native boolean isSupported0(int[] ops);
+
+    /**
+     * Creates a ring with room for {@code entries} submissions, returning
+     * the address of the native ring structure.
+     */
+    static native long setup(int entries) throws IOException;
+
+    static native void close(long ring);
+
+    /**
+     * Queues a submission queue entry. Returns 0 if queued, or
+     * IOStatus.UNAVAILABLE if the submission queue is full.
+     */
+    static native int prepare(long ring, int op, int fd, int flags,
+                              long address, int len, long offset,
+                              int bufIndex, long userData);
+
+    /**
+     * Submits {@code toSubmit} queued entries and waits for at least
+     * {@code minComplete} completions.
+     */
+    static native int enter(long ring, int toSubmit, int minComplete)
+        throws IOException;
+
+    /**
+     * Copies up to {@code max} completions into the given array, returning
+     * the number of completions copied.
+     */
+    static native int reap(long ring, long address, int max);
+
+    static native int registerFiles(long ring, int count);
+
+    static native int updateFile(long ring, int index, int fd);
+
+    static native int registerBuffers(long ring, long address, int size, int count);
+
+    private static native String strerror(int errnum);
+
+    static {
+        IOUtil.load();
+        SUPPORTED = isSupported0(new int[] {
+            IORING_OP_READ, IORING_OP_WRITE,
+            IORING_OP_READ_FIXED, IORING_OP_WRITE_FIXED });
+    }
+}
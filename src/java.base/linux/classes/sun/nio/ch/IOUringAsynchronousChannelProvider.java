@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.nio.ch;
+
+import java.nio.channels.*;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+import sun.security.action.GetPropertyAction;
+
+/**
+ * AsynchronousChannelProvider that uses io_uring for asynchronous file I/O.
+ * Asynchronous socket channels continue to use epoll. The provider is
+ * selected by setting the system property
+ * {@code java.nio.channels.spi.AsynchronousChannelProvider} to the name of
+ * this class, or by setting {@code sun.nio.ch.useIOUring} to {@code true}.
+ * If the kernel does not support io_uring then asynchronous file channels
+ * use the portable implementation.
+ */
+
+public class IOUringAsynchronousChannelProvider
+    extends LinuxAsynchronousChannelProvider
+{
+    private static volatile IOUringPort defaultPort;
+
+    // true if creating the default port failed
+    private static volatile boolean unavailable;
+
+    private static IOUringPort defaultPort() throws IOException {
+        if (defaultPort == null) {
+            synchronized (IOUringAsynchronousChannelProvider.class) {
+                if (defaultPort == null) {
+                    defaultPort = new IOUringPort().start();
+                }
+            }
+        }
+        return defaultPort;
+    }
+
+    /**
+     * Returns true if the io_uring provider should be the default provider.
+     */
+    static boolean isEnabled() {
+        String value = GetPropertyAction
+                .privilegedGetProperty("sun.nio.ch.useIOUring");
+        return (value != null && (value.isEmpty() || Boolean.parseBoolean(value)))
+                && IOUring.isSupported();
+    }
+
+    public IOUringAsynchronousChannelProvider() {
+    }
+
+    /**
+     * Returns an AsynchronousFileChannel to access an open file.
+     */
+    public AsynchronousFileChannel openAsynchronousFileChannel(FileDescriptor fdo,
+                                                               boolean reading,
+                                                               boolean writing,
+                                                               ThreadPool pool)
+    {
+        if (!unavailable && IOUring.isSupported()) {
+            try {
+                IOUringPort port = defaultPort();
+                if (port.isUsable()) {
+                    return IOUringAsynchronousFileChannelImpl
+                        .open(fdo, reading, writing, pool, port);
+                }
+                // completion thread failed
+                unavailable = true;
+            } catch (IOException x) {
+                // ring could not be created (resource limits for example)
+                unavailable = true;
+            }
+        }
+        return SimpleAsynchronousFileChannelImpl.open(fdo, reading, writing, pool);
+    }
+}
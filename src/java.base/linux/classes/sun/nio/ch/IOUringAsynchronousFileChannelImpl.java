@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.nio.ch;
+
+import java.nio.channels.*;
+import java.util.concurrent.*;
+import java.nio.ByteBuffer;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+import static sun.nio.ch.IOUring.IORING_OP_READ;
+import static sun.nio.ch.IOUring.IORING_OP_READ_FIXED;
+import static sun.nio.ch.IOUring.IORING_OP_WRITE;
+import static sun.nio.ch.IOUring.IORING_OP_WRITE_FIXED;
+
+/**
+ * AsynchronousFileChannel implementation based on the Linux io_uring
+ * facility. Read and write operations are submitted to the ring and complete
+ * without occupying a thread while the I/O is in progress. File locking,
+ * size, truncate and force are inherited from the portable implementation.
+ */
+
+public class IOUringAsynchronousFileChannelImpl
+    extends SimpleAsynchronousFileChannelImpl
+{
+    private final IOUringPort port;
+
+    // file descriptor and its index in the fixed file table (-1 if none)
+    private final int fdVal;
+    private final int fileIndex;
+
+    // number of operations submitted to the ring that have not completed
+    private final Object pendingLock = new Object();
+    private int pending;
+
+    IOUringAsynchronousFileChannelImpl(FileDescriptor fdObj,
+                                       boolean reading,
+                                       boolean writing,
+                                       ExecutorService executor,
+                                       IOUringPort port)
+    {
+        super(fdObj, reading, writing, executor);
+        this.port = port;
+        this.fdVal = IOUtil.fdVal(fdObj);
+        this.fileIndex = port.registerFile(fdVal);
+    }
+
+    public static AsynchronousFileChannel open(FileDescriptor fdo,
+                                               boolean reading,
+                                               boolean writing,
+                                               ThreadPool pool,
+                                               IOUringPort port)
+    {
+        // Executor is either default or based on pool parameters
+        ExecutorService executor = (pool == null) ?
+            DefaultExecutorHolder.defaultExecutor : pool.executor();
+        return new IOUringAsynchronousFileChannelImpl(fdo, reading, writing,
+                                                      executor, port);
+    }
+
+    @Override
+    void awaitPendingOperations() {
+        boolean interrupted = false;
+        synchronized (pendingLock) {
+            while (pending > 0) {
+                try {
+                    pendingLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (fileIndex >= 0)
+            port.unregisterFile(fileIndex);
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void operationCompleted() {
+        synchronized (pendingLock) {
+            if (--pending == 0)
+                pendingLock.notifyAll();
+        }
+    }
+
+    /**
+     * A read or write operation submitted to the ring.
+     */
+    private class Transfer<A> extends IOUringPort.Operation {
+        private final boolean read;
+        private final ByteBuffer buf;
+        private final int pos;
+        private final int len;
+        private final A attachment;
+        private final CompletionHandler<Integer,? super A> handler;
+        private final PendingFuture<Integer,A> result;
+
+        // direct buffer used when the I/O is on a heap buffer, and its index
+        // in the fixed buffer table (-1 if not a fixed buffer)
+        private ByteBuffer staging;
+        private int bufIndex = -1;
+
+        Transfer(boolean read,
+                 ByteBuffer buf,
+                 A attachment,
+                 CompletionHandler<Integer,? super A> handler,
+                 PendingFuture<Integer,A> result)
+        {
+            this.read = read;
+            this.buf = buf;
+            int lim = buf.limit();
+            this.pos = buf.position();
+            this.len = (pos <= lim ? lim - pos : 0);
+            this.attachment = attachment;
+            this.handler = handler;
+            this.result = result;
+        }
+
+        /**
+         * Submits the operation to the ring.
+         */
+        void submit(long position) throws IOException {
+            int op;
+            long address;
+            if (buf instanceof DirectBuffer) {
+                op = (read) ? IORING_OP_READ : IORING_OP_WRITE;
+                address = ((DirectBuffer)buf).address() + pos;
+            } else {
+                if (len <= IOUringPort.FIXED_BUFFER_SIZE)
+                    bufIndex = port.acquireFixedBuffer();
+                if (bufIndex >= 0) {
+                    op = (read) ? IORING_OP_READ_FIXED : IORING_OP_WRITE_FIXED;
+                    staging = port.fixedBuffer(bufIndex);
+                } else {
+                    op = (read) ? IORING_OP_READ : IORING_OP_WRITE;
+                    staging = Util.getTemporaryDirectBuffer(len);
+                }
+                if (!read) {
+                    ByteBuffer src = buf.duplicate();
+                    staging.put(src);
+                    staging.flip();
+                }
+                address = ((DirectBuffer)staging).address();
+            }
+            int fd = (fileIndex >= 0) ? fileIndex : fdVal;
+            port.submit(op, fd, fileIndex >= 0, address, len, position,
+                        Math.max(bufIndex, 0), this);
+        }
+
+        private void releaseStaging() {
+            if (staging != null) {
+                if (bufIndex >= 0) {
+                    port.releaseFixedBuffer(bufIndex);
+                } else {
+                    Util.releaseTemporaryDirectBuffer(staging);
+                }
+                staging = null;
+            }
+        }
+
+        @Override
+        void completed(int res) {
+            Integer n = null;
+            Throwable exc = null;
+            try {
+                if (res < 0) {
+                    exc = (isOpen()) ? IOUring.newIOException(res)
+                                     : new AsynchronousCloseException();
+                } else if (read && res == 0) {
+                    n = IOStatus.EOF;
+                } else {
+                    if (read && staging != null) {
+                        staging.position(0).limit(res);
+                        buf.position(pos);
+                        buf.put(staging);
+                    } else {
+                        buf.position(pos + res);
+                    }
+                    n = res;
+                }
+            } finally {
+                releaseStaging();
+                operationCompleted();
+            }
+
+            if (handler == null) {
+                result.setResult(n, exc);
+            } else {
+                try {
+                    Invoker.invokeIndirectly(handler, attachment, n, exc, executor);
+                } catch (ShutdownChannelGroupException ignore) {
+                    // executor has shutdown
+                }
+            }
+        }
+
+        @Override
+        void aborted(IOException exc) {
+            // the staging buffer is not released as the kernel may still
+            // read or write it
+            staging = null;
+            operationCompleted();
+            try {
+                failed(exc);
+            } catch (ShutdownChannelGroupException ignore) {
+                // executor has shutdown
+            }
+        }
+
+        void failed(Throwable exc) {
+            if (handler == null) {
+                result.setFailure(exc);
+            } else {
+                Invoker.invokeIndirectly(handler, attachment, null, exc, executor);
+            }
+        }
+    }
+
+    private <A> Future<Integer> implTransfer(Transfer<A> transfer, long position) {
+        try {
+            begin();
+            try {
+                synchronized (pendingLock) {
+                    pending++;
+                }
+                boolean submitted = false;
+                try {
+                    transfer.submit(position);
+                    submitted = true;
+                } finally {
+                    if (!submitted) {
+                        transfer.releaseStaging();
+                        operationCompleted();
+                    }
+                }
+            } finally {
+                end();
+            }
+        } catch (IOException x) {
+            transfer.failed(x);
+        }
+        return transfer.result;
+    }
+
+    @Override
+    <A> Future<Integer> implRead(final ByteBuffer dst,
+                                 final long position,
+                                 final A attachment,
+                                 final CompletionHandler<Integer,? super A> handler)
+    {
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position");
+        if (!reading)
+            throw new NonReadableChannelException();
+        if (dst.isReadOnly())
+            throw new IllegalArgumentException("Read-only buffer");
+
+        // complete immediately if channel closed or no space remaining
+        if (!isOpen() || (dst.remaining() == 0)) {
+            Throwable exc = (isOpen()) ? null : new ClosedChannelException();
+            if (handler == null)
+                return CompletedFuture.withResult(0, exc);
+            Invoker.invokeIndirectly(handler, attachment, 0, exc, executor);
+            return null;
+        }
+
+        PendingFuture<Integer,A> result = (handler == null) ?
+            new PendingFuture<Integer,A>(this) : null;
+        return implTransfer(new Transfer<A>(true, dst, attachment, handler, result),
+                            position);
+    }
+
+    @Override
+    <A> Future<Integer> implWrite(final ByteBuffer src,
+                                  final long position,
+                                  final A attachment,
+                                  final CompletionHandler<Integer,? super A> handler)
+    {
+        if (position < 0)
+            throw new IllegalArgumentException("Negative position");
+        if (!writing)
+            throw new NonWritableChannelException();
+
+        // complete immediately if channel is closed or no bytes remaining
+        if (!isOpen() || (src.remaining() == 0)) {
+            Throwable exc = (isOpen()) ? null : new ClosedChannelException();
+            if (handler == null)
+                return CompletedFuture.withResult(0, exc);
+            Invoker.invokeIndirectly(handler, attachment, 0, exc, executor);
+            return null;
+        }
+
+        PendingFuture<Integer,A> result = (handler == null) ?
+            new PendingFuture<Integer,A>(this) : null;
+        return implTransfer(new Transfer<A>(false, src, attachment, handler, result),
+                            position);
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.nio.ch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.AccessController;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import jdk.internal.misc.InnocuousThread;
+import sun.security.action.GetIntegerAction;
+
+import static sun.nio.ch.IOUring.IOSQE_FIXED_FILE;
+
+/**
+ * Completion port based on the Linux io_uring facility.
+ *
+ * Operations are queued to the submission queue by the initiating thread and
+ * submitted to the kernel in batches: if another thread is already submitting
+ * then the entry is submitted on its behalf. A single completion thread reaps
+ * completions and dispatches them to the {@code Operation} that initiated the
+ * I/O. Operations must not invoke user code on the completion thread. If the
+ * ring fails, when submitting or reaping, then the operations in progress are
+ * aborted and the port cannot be used for new operations.
+ *
+ * The port registers a sparse table of fixed files (Linux 5.5) and a set of
+ * fixed buffers that are used to stage I/O on heap buffers. Both are optional
+ * and the port works without them when the registration fails, for example
+ * because of RLIMIT_MEMLOCK.
+ */
+
+final class IOUringPort {
+    // number of submission queue entries
+    private static final int ENTRIES = AccessController
+        .doPrivileged(new GetIntegerAction("sun.nio.ch.ioUring.entries", 256));
+
+    // size of the fixed file table
+    private static final int FIXED_FILES = AccessController
+        .doPrivileged(new GetIntegerAction("sun.nio.ch.ioUring.fixedFiles", 1024));
+
+    // number and size of the fixed buffers used to stage I/O on heap buffers
+    private static final int FIXED_BUFFERS = AccessController
+        .doPrivileged(new GetIntegerAction("sun.nio.ch.ioUring.fixedBuffers", 16));
+    static final int FIXED_BUFFER_SIZE = 64 * 1024;
+
+    // maximum number of completions to reap at a time
+    private static final int MAX_COMPLETIONS = 256;
+
+    /**
+     * An I/O operation that has been queued to the ring.
+     */
+    abstract static class Operation {
+        /**
+         * Invoked by the completion thread with the result of the operation,
+         * a negated errno value if the operation failed.
+         */
+        abstract void completed(int res);
+
+        /**
+         * Invoked when the port fails and the operation will not complete.
+         * The kernel may still access the memory used by the operation.
+         */
+        abstract void aborted(IOException exc);
+    }
+
+    // address of the native ring
+    private final long ring;
+
+    // address of the array that completions are reaped into
+    private final long completions;
+
+    // operations queued or in progress, keyed by user_data
+    private final ConcurrentHashMap<Long, Operation> operations =
+        new ConcurrentHashMap<>();
+    private final AtomicLong nextUserData = new AtomicLong();
+
+    // set, with queueLock held, when the ring fails; the port cannot be used after
+    private volatile IOException failure;
+
+    // number of entries queued but not submitted, guarded by queueLock
+    private final ReentrantLock queueLock = new ReentrantLock();
+    private int unsubmitted;
+
+    // true if a thread is submitting entries to the kernel
+    private final AtomicBoolean submitting = new AtomicBoolean();
+
+    // fixed file table, slots in use are set; guarded by itself
+    private final BitSet fileSlots = new BitSet();
+    private final int fileSlotCount;
+
+    // fixed buffers, null if not registered
+    private final ByteBuffer[] fixedBuffers;
+    private final ConcurrentLinkedQueue<Integer> freeBuffers =
+        new ConcurrentLinkedQueue<>();
+
+    IOUringPort() throws IOException {
+        this.ring = IOUring.setup(ENTRIES);
+        this.completions = IOUring.allocateCompletionArray(MAX_COMPLETIONS);
+
+        // register the fixed file table and fixed buffers, if possible
+        int err = (FIXED_FILES > 0) ? IOUring.registerFiles(ring, FIXED_FILES) : -1;
+        this.fileSlotCount = (err == 0) ? FIXED_FILES : 0;
+
+        ByteBuffer[] buffers = null;
+        if (FIXED_BUFFERS > 0) {
+            ByteBuffer region = ByteBuffer.allocateDirect(FIXED_BUFFERS * FIXED_BUFFER_SIZE);
+            long address = ((DirectBuffer)region).address();
+            if (IOUring.registerBuffers(ring, address, FIXED_BUFFER_SIZE, FIXED_BUFFERS) == 0) {
+                buffers = new ByteBuffer[FIXED_BUFFERS];
+                for (int i = 0; i < FIXED_BUFFERS; i++) {
+                    region.limit((i + 1) * FIXED_BUFFER_SIZE).position(i * FIXED_BUFFER_SIZE);
+                    buffers[i] = region.slice();
+                    freeBuffers.add(i);
+                }
+            }
+        }
+        this.fixedBuffers = buffers;
+    }
+
+    IOUringPort start() {
+        Thread thread = InnocuousThread.newSystemThread("io_uring-completion",
+                                                        new CompletionTask());
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Returns false if the port has failed and cannot be used.
+     */
+    boolean isUsable() {
+        return failure == null;
+    }
+
+    /**
+     * Registers a file descriptor in the fixed file table, returning its
+     * index or -1 if the table is full or not supported.
+     */
+    int registerFile(int fd) {
+        int index;
+        synchronized (fileSlots) {
+            index = fileSlots.nextClearBit(0);
+            if (index >= fileSlotCount)
+                return -1;
+            fileSlots.set(index);
+        }
+        if (IOUring.updateFile(ring, index, fd) != 0) {
+            synchronized (fileSlots) {
+                fileSlots.clear(index);
+            }
+            return -1;
+        }
+        return index;
+    }
+
+    /**
+     * Removes a file from the fixed file table. The caller must ensure that
+     * there are no operations in progress that use the index.
+     */
+    void unregisterFile(int index) {
+        IOUring.updateFile(ring, index, -1);
+        synchronized (fileSlots) {
+            fileSlots.clear(index);
+        }
+    }
+
+    /**
+     * Returns the index of a free fixed buffer or -1 if none is available.
+     */
+    int acquireFixedBuffer() {
+        Integer index = freeBuffers.poll();
+        return (index != null) ? index : -1;
+    }
+
+    /**
+     * Returns the fixed buffer at the given index, cleared.
+     */
+    ByteBuffer fixedBuffer(int index) {
+        ByteBuffer bb = fixedBuffers[index];
+        bb.clear();
+        return bb;
+    }
+
+    void releaseFixedBuffer(int index) {
+        freeBuffers.add(index);
+    }
+
+    /**
+     * Queues an operation and ensures that it is submitted to the kernel.
+     *
+     * @param   fd  the file descriptor or the index in the fixed file table
+     *              when {@code fixedFile} is true
+     *
+     * @throws  IOException if the port has failed, in which case the operation
+     *          has not been queued. Once the operation has been queued, a
+     *          failure of the port aborts it instead.
+     */
+    void submit(int op, int fd, boolean fixedFile, long address, int len,
+                long position, int bufIndex, Operation operation)
+        throws IOException
+    {
+        long userData = nextUserData.incrementAndGet();
+        operations.put(userData, operation);
+        int flags = (fixedFile) ? IOSQE_FIXED_FILE : 0;
+        queueLock.lock();
+        try {
+            for (;;) {
+                // the failure is set with the lock held, so once the entry is
+                // prepared the operation is aborted if the port fails
+                IOException exc = failure;
+                if (exc != null) {
+                    operations.remove(userData);
+                    throw new IOException("io_uring port has failed", exc);
+                }
+                if (IOUring.prepare(ring, op, fd, flags, address, len, position,
+                                    bufIndex, userData) != IOStatus.UNAVAILABLE)
+                    break;
+                // submission queue full
+                queueLock.unlock();
+                try {
+                    flushOrFail();
+                    Thread.yield();
+                } finally {
+                    queueLock.lock();
+                }
+            }
+            unsubmitted++;
+        } finally {
+            queueLock.unlock();
+        }
+        flushOrFail();
+    }
+
+    /**
+     * Submits queued entries to the kernel, failing the port if that fails.
+     */
+    private void flushOrFail() {
+        try {
+            flush();
+        } catch (IOException x) {
+            fail(x);
+        }
+    }
+
+    /**
+     * Fails the port and aborts the operations in progress.
+     */
+    private void fail(IOException x) {
+        queueLock.lock();
+        try {
+            if (failure == null)
+                failure = x;
+        } finally {
+            queueLock.unlock();
+        }
+        for (Long userData : operations.keySet()) {
+            Operation operation = operations.remove(userData);
+            if (operation != null)
+                operation.aborted(x);
+        }
+    }
+
+    /**
+     * Submits queued entries to the kernel. If another thread is submitting
+     * then it will submit the entries queued by this thread.
+     *
+     * @throws  IOException if the entries cannot be submitted
+     */
+    private void flush() throws IOException {
+        for (;;) {
+            if (!submitting.compareAndSet(false, true))
+                return;
+            try {
+                int n;
+                queueLock.lock();
+                try {
+                    n = unsubmitted;
+                } finally {
+                    queueLock.unlock();
+                }
+                if (n > 0) {
+                    int submitted;
+                    do {
+                        submitted = IOUring.enter(ring, n, 0);
+                    } while (submitted == IOStatus.INTERRUPTED);
+                    if (submitted == IOStatus.UNAVAILABLE) {
+                        // completion queue is full; the completion thread
+                        // will submit the entries once it has reaped
+                        return;
+                    }
+                    queueLock.lock();
+                    try {
+                        unsubmitted -= submitted;
+                    } finally {
+                        queueLock.unlock();
+                    }
+                }
+            } finally {
+                submitting.set(false);
+            }
+
+            // re-check for entries queued while this thread was submitting
+            queueLock.lock();
+            try {
+                if (unsubmitted == 0)
+                    return;
+            } finally {
+                queueLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Task to reap completions and dispatch them to the operations.
+     */
+    private class CompletionTask implements Runnable {
+        public void run() {
+            for (;;) {
+                try {
+                    int n = IOUring.enter(ring, 0, 1);
+                    if (n == IOStatus.INTERRUPTED)
+                        continue;
+                    while ((n = IOUring.reap(ring, completions, MAX_COMPLETIONS)) > 0) {
+                        for (int i = 0; i < n; i++) {
+                            long cqe = IOUring.getCompletion(completions, i);
+                            Operation operation =
+                                operations.remove(IOUring.getUserData(cqe));
+                            if (operation != null)
+                                operation.completed(IOUring.getResult(cqe));
+                        }
+                    }
+                    // submit entries that could not be submitted while the
+                    // completion queue was full
+                    flush();
+                } catch (IOException x) {
+                    // the ring cannot be used; abort the operations in
+                    // progress and fail new operations
+                    fail(x);
+                    return;
+                }
+            }
+        }
+    }
+}
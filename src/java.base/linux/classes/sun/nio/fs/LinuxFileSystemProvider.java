@@ -25,12 +25,17 @@
 
 package sun.nio.fs;
 
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.spi.AsynchronousChannelProvider;
 import java.nio.file.*;
 import java.nio.file.attribute.*;
 import java.nio.file.spi.FileTypeDetector;
+import java.io.FileDescriptor;
 import java.io.IOException;
 
 import jdk.internal.util.StaticProperty;
+import sun.nio.ch.IOUringAsynchronousChannelProvider;
+import sun.nio.ch.ThreadPool;
 
 /**
  * Linux implementation of FileSystemProvider
@@ -100,6 +105,21 @@ class LinuxFileSystemProvider extends UnixFileSystemProvider {
         }
     }
 
+    @Override
+    AsynchronousFileChannel newAsynchronousFileChannel(FileDescriptor fdObj,
+                                                       boolean reading,
+                                                       boolean writing,
+                                                       ThreadPool pool)
+    {
+        // use io_uring when selected as the asynchronous channel provider
+        AsynchronousChannelProvider provider = AsynchronousChannelProvider.provider();
+        if (provider instanceof IOUringAsynchronousChannelProvider) {
+            return ((IOUringAsynchronousChannelProvider)provider)
+                .openAsynchronousFileChannel(fdObj, reading, writing, pool);
+        }
+        return super.newAsynchronousFileChannel(fdObj, reading, writing, pool);
+    }
+
     @Override
     FileTypeDetector getFileTypeDetector() {
         String userHome = StaticProperty.userHome();
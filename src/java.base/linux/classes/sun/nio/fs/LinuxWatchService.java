@@ -29,8 +29,13 @@ import java.nio.file.*;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 import java.io.IOException;
 import jdk.internal.misc.Unsafe;
+import sun.security.action.GetIntegerAction;
 
 import static sun.nio.fs.UnixNativeDispatcher.*;
 import static sun.nio.fs.UnixConstants.*;
@@ -42,6 +47,14 @@ import static sun.nio.fs.UnixConstants.*;
  * mechanism. Requests to add or remove a watch, or close the watch service,
  * cause the thread to wakeup and process the request. Events are processed
  * by the thread which causes it to signal/queue the corresponding watch keys.
+ *
+ * A directory registered with the FILE_TREE modifier is watched with one
+ * inotify watch per directory in the file tree. The directories are walked,
+ * and the watches added, in parallel. Directories that are created in, or
+ * moved into, the file tree are added as the events are processed. The
+ * events for a file tree are coalesced over a short window before they are
+ * queued to the key, and an OVERFLOW event with the affected sub-directory
+ * as context is queued when too many events occur in a sub-directory.
  */
 
 class LinuxWatchService
@@ -105,6 +118,13 @@ class LinuxWatchService
         // watch descriptor
         private volatile int wd;
 
+        // The following fields are only accessed by the poller thread
+
+        // FILE_TREE: the events requested and the watch descriptors of the
+        // sub-directories in the file tree; null if not a file tree
+        private Set<? extends WatchEvent.Kind<?>> events;
+        private Set<Integer> subtree;
+
         LinuxWatchKey(UnixPath dir, LinuxWatchService watcher, int ifd, int wd) {
             super(dir, watcher);
             this.ifd = ifd;
@@ -115,6 +135,10 @@ class LinuxWatchService
             return wd;
         }
 
+        boolean isFileTree() {
+            return subtree != null;
+        }
+
         void invalidate(boolean remove) {
             if (remove) {
                 try {
@@ -170,9 +194,27 @@ class LinuxWatchService
         private static final int IN_Q_OVERFLOW      = 0x00004000;
         private static final int IN_IGNORED         = 0x00008000;
 
+        private static final int IN_ONLYDIR         = 0x01000000;
+        private static final int IN_DONT_FOLLOW     = 0x02000000;
+        private static final int IN_MASK_ADD        = 0x20000000;
+        private static final int IN_ISDIR           = 0x40000000;
+
+        // events required to track the directories in a file tree
+        private static final int IN_TREE =
+            IN_CREATE | IN_MOVED_TO | IN_DELETE | IN_MOVED_FROM;
+
         // sizeof buffer for when polling inotify
         private static final int BUFFER_SIZE = 8192;
 
+        // time window, in milliseconds, over which the events for a file tree
+        // are coalesced; 0 to queue events immediately
+        private static final int COALESCE_WINDOW = AccessController
+            .doPrivileged(new GetIntegerAction("sun.nio.fs.watchCoalesceWindow", 50));
+
+        // maximum number of coalesced events for a file tree
+        private static final int MAX_PENDING_EVENTS =
+            AbstractWatchKey.MAX_EVENT_LIST_SIZE;
+
         private final UnixFileSystem fs;
         private final LinuxWatchService watcher;
 
@@ -182,15 +224,26 @@ class LinuxWatchService
         private final int socketpair[];
         // maps watch descriptor to Key
         private final Map<Integer,LinuxWatchKey> wdToKey;
+        // maps the watch descriptor of a sub-directory in a file tree to the
+        // path of the sub-directory relative to the top of the file tree
+        private final Map<Integer,UnixPath> wdToPath;
         // address of read buffer
         private final long address;
 
+        // the coalesced events for file trees, in the order of their deadline
+        private final Map<LinuxWatchKey,PendingEvents> pending;
+
+        // pool used to walk file trees, created lazily
+        private ForkJoinPool pool;
+
         Poller(UnixFileSystem fs, LinuxWatchService watcher, int ifd, int[] sp) {
             this.fs = fs;
             this.watcher = watcher;
             this.ifd = ifd;
             this.socketpair = sp;
             this.wdToKey = new HashMap<>();
+            this.wdToPath = new HashMap<>();
+            this.pending = new LinkedHashMap<>();
             this.address = unsafe.allocateMemory(BUFFER_SIZE);
         }
 
@@ -227,11 +280,16 @@ class LinuxWatchService
                 }
             }
 
-            // no modifiers supported at this time
+            // FILE_TREE is the only modifier that is not ignored
+            boolean fileTree = false;
             if (modifiers.length > 0) {
                 for (WatchEvent.Modifier modifier: modifiers) {
                     if (modifier == null)
                         return new NullPointerException();
+                    if (ExtendedOptions.FILE_TREE.matches(modifier)) {
+                        fileTree = true;
+                        continue;
+                    }
                     if (!ExtendedOptions.SENSITIVITY_HIGH.matches(modifier) &&
                             !ExtendedOptions.SENSITIVITY_MEDIUM.matches(modifier) &&
                             !ExtendedOptions.SENSITIVITY_LOW.matches(modifier)) {
@@ -239,6 +297,8 @@ class LinuxWatchService
                     }
                 }
             }
+            if (fileTree)
+                mask |= IN_TREE;
 
             // check file is directory
             UnixFileAttributes attrs = null;
@@ -254,13 +314,7 @@ class LinuxWatchService
             // register with inotify (replaces existing mask if already registered)
             int wd = -1;
             try {
-                NativeBuffer buffer =
-                    NativeBuffers.asNativeBuffer(dir.getByteArrayForSysCalls());
-                try {
-                    wd = inotifyAddWatch(ifd, buffer.address(), mask);
-                } finally {
-                    buffer.release();
-                }
+                wd = addWatch(dir, mask);
             } catch (UnixException x) {
                 if (x.errno() == ENOSPC) {
                     return new IOException("User limit of inotify watches reached");
@@ -270,18 +324,230 @@ class LinuxWatchService
 
             // ensure watch descriptor is in map
             LinuxWatchKey key = wdToKey.get(wd);
+            boolean created = false;
             if (key == null) {
                 key = new LinuxWatchKey(dir, watcher, ifd, wd);
                 wdToKey.put(wd, key);
+                created = true;
+            } else if (key.descriptor() != wd) {
+                // directory is in the file tree of another key
+                wdToKey.remove(wd);
+                wdToPath.remove(wd);
+                key.subtree.remove(wd);
+                key = new LinuxWatchKey(dir, watcher, ifd, wd);
+                wdToKey.put(wd, key);
+                created = true;
+            }
+
+            if (fileTree) {
+                // register the sub-directories
+                if (key.subtree == null)
+                    key.subtree = new HashSet<>();
+                key.events = events;
+                UnixException x = registerTree(key, dir, emptyPath(), mask, null);
+                if (x != null) {
+                    if (created) {
+                        implCancelKey(key);
+                    }
+                    if (x.errno() == ENOSPC) {
+                        return new IOException("User limit of inotify watches reached");
+                    }
+                    return x.asIOException(dir);
+                }
+            } else if (key.isFileTree()) {
+                // no longer a file tree
+                removeSubtree(key, null);
+                key.subtree = null;
+                key.events = null;
+                pending.remove(key);
             }
             return key;
         }
 
+        private UnixPath emptyPath() {
+            return new UnixPath(fs, "");
+        }
+
+        private int addWatch(UnixPath dir, int mask) throws UnixException {
+            NativeBuffer buffer =
+                NativeBuffers.asNativeBuffer(dir.getByteArrayForSysCalls());
+            try {
+                return inotifyAddWatch(ifd, buffer.address(), mask);
+            } finally {
+                buffer.release();
+            }
+        }
+
+        /**
+         * A watch added to a sub-directory of a file tree.
+         */
+        private static class Watch {
+            final int wd;
+            final UnixPath path;
+            Watch(int wd, UnixPath path) {
+                this.wd = wd;
+                this.path = path;
+            }
+        }
+
+        /**
+         * Adds watches to the sub-directories of a directory in a file tree.
+         * The sub-directories are walked in parallel. Sub-directories that
+         * cannot be read are ignored.
+         *
+         * @param   entries  if not null, a thread-safe collection that
+         *                   receives the relative paths of the entries in
+         *                   the directory and its sub-directories
+         *
+         * @return  the exception if the user limit of watches is reached,
+         *          or null
+         */
+        private UnixException registerTree(LinuxWatchKey key,
+                                           UnixPath dir,
+                                           UnixPath relative,
+                                           int mask,
+                                           Collection<UnixPath> entries)
+        {
+            if (pool == null) {
+                pool = AccessController.doPrivileged(
+                    (PrivilegedAction<ForkJoinPool>) () ->
+                        new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+            }
+            Collection<Watch> watches = new ConcurrentLinkedQueue<>();
+            AtomicReference<UnixException> error = new AtomicReference<>();
+            int subdirMask = mask | IN_ONLYDIR | IN_DONT_FOLLOW | IN_MASK_ADD;
+            pool.invoke(new TreeWalker(dir, relative, subdirMask,
+                                       watches, entries, error));
+
+            for (Watch watch : watches) {
+                LinuxWatchKey other = wdToKey.get(watch.wd);
+                if (other == null) {
+                    wdToKey.put(watch.wd, key);
+                    wdToPath.put(watch.wd, watch.path);
+                    key.subtree.add(watch.wd);
+                } else if (other == key && key.subtree.contains(watch.wd)) {
+                    // already watched, directory may have been renamed
+                    wdToPath.put(watch.wd, watch.path);
+                }
+                // else directory is registered with another key
+            }
+            return error.get();
+        }
+
+        /**
+         * Walks a directory, adding a watch to each sub-directory.
+         */
+        private class TreeWalker extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final UnixPath dir;
+            private final UnixPath relative;
+            private final int mask;
+            private final Collection<Watch> watches;
+            private final Collection<UnixPath> entries;
+            private final AtomicReference<UnixException> error;
+
+            TreeWalker(UnixPath dir,
+                       UnixPath relative,
+                       int mask,
+                       Collection<Watch> watches,
+                       Collection<UnixPath> entries,
+                       AtomicReference<UnixException> error)
+            {
+                this.dir = dir;
+                this.relative = relative;
+                this.mask = mask;
+                this.watches = watches;
+                this.entries = entries;
+                this.error = error;
+            }
+
+            private boolean isSelfOrParent(byte[] name) {
+                return name[0] == '.' &&
+                    (name.length == 1 || (name.length == 2 && name[1] == '.'));
+            }
+
+            @Override
+            protected void compute() {
+                List<TreeWalker> subdirs = new ArrayList<>();
+                long dp;
+                try {
+                    dp = opendir(dir);
+                } catch (UnixException x) {
+                    // not readable or removed
+                    return;
+                }
+                try {
+                    byte[] name;
+                    while (error.get() == null && (name = readdir(dp)) != null) {
+                        if (isSelfOrParent(name))
+                            continue;
+                        UnixPath child = dir.resolve(name);
+                        UnixPath childRelative = relative.resolve(name);
+                        if (entries != null)
+                            entries.add(childRelative);
+                        UnixFileAttributes attrs;
+                        try {
+                            attrs = UnixFileAttributes.get(child, false);
+                        } catch (UnixException x) {
+                            continue;
+                        }
+                        if (!attrs.isDirectory())
+                            continue;
+                        int wd;
+                        try {
+                            wd = addWatch(child, mask);
+                        } catch (UnixException x) {
+                            if (x.errno() == ENOSPC)
+                                error.compareAndSet(null, x);
+                            continue;
+                        }
+                        watches.add(new Watch(wd, childRelative));
+                        subdirs.add(new TreeWalker(child, childRelative, mask,
+                                                   watches, entries, error));
+                    }
+                } catch (UnixException x) {
+                    // ignore
+                } finally {
+                    try {
+                        closedir(dp);
+                    } catch (UnixException ignore) { }
+                }
+                invokeAll(subdirs);
+            }
+        }
+
+        /**
+         * Removes the watches of the sub-directories of a file tree. If
+         * {@code relative} is not null then only the watches of that
+         * sub-directory and the directories below it are removed.
+         */
+        private void removeSubtree(LinuxWatchKey key, UnixPath relative) {
+            Iterator<Integer> iterator = key.subtree.iterator();
+            while (iterator.hasNext()) {
+                int wd = iterator.next();
+                if (relative == null || wdToPath.get(wd).startsWith(relative)) {
+                    try {
+                        inotifyRmWatch(ifd, wd);
+                    } catch (UnixException x) {
+                        // ignore
+                    }
+                    wdToKey.remove(wd);
+                    wdToPath.remove(wd);
+                    iterator.remove();
+                }
+            }
+        }
+
         // cancel single key
         @Override
         void implCancelKey(WatchKey obj) {
             LinuxWatchKey key = (LinuxWatchKey)obj;
             if (key.isValid()) {
+                if (key.isFileTree()) {
+                    removeSubtree(key, null);
+                    pending.remove(key);
+                }
                 wdToKey.remove(key.descriptor());
                 key.invalidate(true);
             }
@@ -292,9 +558,16 @@ class LinuxWatchService
         void implCloseAll() {
             // invalidate all keys
             for (Map.Entry<Integer,LinuxWatchKey> entry: wdToKey.entrySet()) {
-                entry.getValue().invalidate(true);
+                LinuxWatchKey key = entry.getValue();
+                if (key.descriptor() == entry.getKey())
+                    key.invalidate(true);
             }
             wdToKey.clear();
+            wdToPath.clear();
+            pending.clear();
+
+            if (pool != null)
+                pool.shutdown();
 
             // free resources
             unsafe.freeMemory(address);
@@ -312,8 +585,15 @@ class LinuxWatchService
                 for (;;) {
                     int nReady, bytesRead;
 
-                    // wait for close or inotify event
-                    nReady = poll(ifd, socketpair[0]);
+                    // wait for close or inotify event, or the deadline of
+                    // coalesced events
+                    int timeout = -1;
+                    if (!pending.isEmpty()) {
+                        PendingEvents first = pending.values().iterator().next();
+                        long remaining = first.deadline - System.nanoTime();
+                        timeout = (int) Math.max(0L, (remaining + 999_999) / 1_000_000);
+                    }
+                    nReady = poll(ifd, socketpair[0], timeout);
 
                     // read from inotify
                     try {
@@ -359,6 +639,10 @@ class LinuxWatchService
                         offset += (SIZEOF_INOTIFY_EVENT + len);
                     }
 
+                    // queue coalesced events that are due
+                    if (!pending.isEmpty())
+                        flushPendingEvents(false);
+
                     // process any pending requests
                     if ((nReady > 1) || (nReady == 1 && bytesRead == 0)) {
                         try {
@@ -403,9 +687,19 @@ class LinuxWatchService
         private void processEvent(int wd, int mask, final UnixPath name) {
             // overflow - signal all keys
             if ((mask & IN_Q_OVERFLOW) > 0) {
-                for (Map.Entry<Integer,LinuxWatchKey> entry: wdToKey.entrySet()) {
-                    entry.getValue()
-                        .signalEvent(StandardWatchEventKinds.OVERFLOW, null);
+                Set<LinuxWatchKey> keys = new HashSet<>(wdToKey.values());
+                for (LinuxWatchKey key: keys) {
+                    key.signalEvent(StandardWatchEventKinds.OVERFLOW, null);
+                }
+                // events for directories created in the file trees may have
+                // been lost so walk the file trees again
+                pending.clear();
+                for (LinuxWatchKey key: keys) {
+                    if (key.isFileTree()) {
+                        int treeMask = eventsToMask(key.events) | IN_TREE;
+                        registerTree(key, (UnixPath)key.watchable(),
+                                     emptyPath(), treeMask, null);
+                    }
                 }
                 return;
             }
@@ -415,8 +709,21 @@ class LinuxWatchService
             if (key == null)
                 return; // should not happen
 
+            // sub-directory of a file tree
+            UnixPath relative = (wd != key.descriptor()) ? wdToPath.get(wd) : null;
+
             // file deleted
             if ((mask & IN_IGNORED) > 0) {
+                if (relative != null) {
+                    wdToKey.remove(wd);
+                    wdToPath.remove(wd);
+                    key.subtree.remove(wd);
+                    return;
+                }
+                if (key.isFileTree()) {
+                    removeSubtree(key, null);
+                    flushPendingEvents(key);
+                }
                 wdToKey.remove(wd);
                 key.invalidate(false);
                 key.signal();
@@ -429,8 +736,210 @@ class LinuxWatchService
 
             // map to event and queue to key
             WatchEvent.Kind<?> kind = maskToEventKind(mask);
-            if (kind != null) {
-                key.signalEvent(kind, name);
+            if (!key.isFileTree()) {
+                if (kind != null) {
+                    key.signalEvent(kind, name);
+                }
+                return;
+            }
+
+            UnixPath context = (relative != null) ? relative.resolve(name) : name;
+
+            // track directories that are created, or moved, in the file tree
+            if ((mask & IN_ISDIR) != 0) {
+                if ((mask & (IN_CREATE | IN_MOVED_TO)) != 0) {
+                    UnixPath dir = ((UnixPath)key.watchable()).resolve(context);
+                    int treeMask = eventsToMask(key.events) | IN_TREE;
+                    try {
+                        int subdirWd = addWatch(dir, treeMask | IN_ONLYDIR
+                                                | IN_DONT_FOLLOW | IN_MASK_ADD);
+                        if (!wdToKey.containsKey(subdirWd)) {
+                            wdToKey.put(subdirWd, key);
+                            key.subtree.add(subdirWd);
+                        }
+                        if (key.subtree.contains(subdirWd))
+                            wdToPath.put(subdirWd, context);
+                    } catch (UnixException x) {
+                        // directory removed or user limit reached
+                    }
+                    // entries may have been created before the watch was added
+                    Collection<UnixPath> entries = new ConcurrentLinkedQueue<>();
+                    registerTree(key, dir, context, treeMask, entries);
+                    queueEvent(key, kind, context);
+                    if (key.events.contains(StandardWatchEventKinds.ENTRY_CREATE)) {
+                        for (UnixPath entry : entries) {
+                            queueEvent(key, StandardWatchEventKinds.ENTRY_CREATE, entry);
+                        }
+                    }
+                    return;
+                }
+                if ((mask & IN_MOVED_FROM) != 0) {
+                    removeSubtree(key, context);
+                }
+            }
+
+            queueEvent(key, kind, context);
+        }
+
+        private static int eventsToMask(Set<? extends WatchEvent.Kind<?>> events) {
+            int mask = 0;
+            if (events.contains(StandardWatchEventKinds.ENTRY_CREATE))
+                mask |= IN_CREATE | IN_MOVED_TO;
+            if (events.contains(StandardWatchEventKinds.ENTRY_DELETE))
+                mask |= IN_DELETE | IN_MOVED_FROM;
+            if (events.contains(StandardWatchEventKinds.ENTRY_MODIFY))
+                mask |= IN_MODIFY | IN_ATTRIB;
+            return mask;
+        }
+
+        /**
+         * Queues an event for a file tree, coalescing it with the events
+         * that are pending for the same file.
+         */
+        private void queueEvent(LinuxWatchKey key,
+                                WatchEvent.Kind<?> kind,
+                                UnixPath context)
+        {
+            if (kind == null || !key.events.contains(kind))
+                return;
+            if (COALESCE_WINDOW <= 0) {
+                key.signalEvent(kind, context);
+                return;
+            }
+            PendingEvents events = pending.get(key);
+            if (events == null) {
+                long deadline = System.nanoTime() + COALESCE_WINDOW * 1_000_000L;
+                events = new PendingEvents(deadline);
+                pending.put(key, events);
+            }
+            events.add(key, kind, context);
+        }
+
+        /**
+         * Queues the coalesced events to their keys. If {@code all} is false
+         * then only the events whose deadline has passed are queued.
+         */
+        private void flushPendingEvents(boolean all) {
+            long now = System.nanoTime();
+            Iterator<Map.Entry<LinuxWatchKey,PendingEvents>> iterator =
+                pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<LinuxWatchKey,PendingEvents> entry = iterator.next();
+                PendingEvents events = entry.getValue();
+                if (!all && events.deadline - now > 0)
+                    break;
+                iterator.remove();
+                events.signal(entry.getKey());
+            }
+        }
+
+        private void flushPendingEvents(LinuxWatchKey key) {
+            PendingEvents events = pending.remove(key);
+            if (events != null)
+                events.signal(key);
+        }
+
+        /**
+         * The events for a file tree that are pending until the deadline.
+         * Events for the same file are coalesced, and the events for a
+         * directory are replaced by an OVERFLOW event when there are too
+         * many pending events.
+         */
+        private static class PendingEvents {
+            final long deadline;
+            private final LinkedHashMap<UnixPath,WatchEvent.Kind<?>> events =
+                new LinkedHashMap<>();
+            // directories with an OVERFLOW event pending
+            private final List<UnixPath> overflowed = new ArrayList<>();
+            private boolean overflowAll;
+
+            PendingEvents(long deadline) {
+                this.deadline = deadline;
+            }
+
+            void add(LinuxWatchKey key, WatchEvent.Kind<?> kind, UnixPath context) {
+                if (overflowAll)
+                    return;
+                for (UnixPath dir : overflowed) {
+                    if (context.startsWith(dir))
+                        return;
+                }
+
+                WatchEvent.Kind<?> prev = events.get(context);
+                if (prev == null) {
+                    if (events.size() >= MAX_PENDING_EVENTS) {
+                        overflow(busiestDirectory());
+                        if (overflowAll)
+                            return;
+                        for (UnixPath dir : overflowed) {
+                            if (context.startsWith(dir))
+                                return;
+                        }
+                    }
+                    events.put(context, kind);
+                } else if (prev == StandardWatchEventKinds.ENTRY_CREATE) {
+                    // created then deleted: nothing to report
+                    if (kind == StandardWatchEventKinds.ENTRY_DELETE)
+                        events.remove(context);
+                } else if (prev == StandardWatchEventKinds.ENTRY_DELETE) {
+                    // deleted then created: replaced
+                    if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                        if (key.events.contains(StandardWatchEventKinds.ENTRY_MODIFY)) {
+                            events.put(context, StandardWatchEventKinds.ENTRY_MODIFY);
+                        } else {
+                            // queue the delete now so that it is not lost
+                            events.remove(context);
+                            key.signalEvent(prev, context);
+                            events.put(context, kind);
+                        }
+                    }
+                } else {
+                    // modified then deleted or created
+                    if (kind != prev)
+                        events.put(context, kind);
+                }
+            }
+
+            // returns the directory with the most pending events, null if
+            // that is the top directory of the file tree
+            private UnixPath busiestDirectory() {
+                Map<UnixPath,Integer> counts = new HashMap<>();
+                UnixPath busiest = null;
+                int max = 0;
+                for (UnixPath path : events.keySet()) {
+                    UnixPath dir = path.getParent();
+                    int count = counts.merge(dir, 1, Integer::sum);
+                    if (count > max) {
+                        max = count;
+                        busiest = dir;
+                    }
+                }
+                return busiest;
+            }
+
+            private void overflow(UnixPath dir) {
+                if (dir == null) {
+                    overflowAll = true;
+                    events.clear();
+                    overflowed.clear();
+                    return;
+                }
+                events.keySet().removeIf(path -> path.startsWith(dir));
+                overflowed.removeIf(path -> path.startsWith(dir));
+                overflowed.add(dir);
+            }
+
+            void signal(LinuxWatchKey key) {
+                if (overflowAll) {
+                    key.signalEvent(StandardWatchEventKinds.OVERFLOW, null);
+                    return;
+                }
+                for (UnixPath dir : overflowed) {
+                    key.signalEvent(StandardWatchEventKinds.OVERFLOW, dir);
+                }
+                for (Map.Entry<UnixPath,WatchEvent.Kind<?>> entry : events.entrySet()) {
+                    key.signalEvent(entry.getValue(), entry.getKey());
+                }
             }
         }
     }
@@ -456,7 +965,7 @@ class LinuxWatchService
 
     private static native void socketpair(int[] sv) throws UnixException;
 
-    private static native int poll(int fd1, int fd2) throws UnixException;
+    private static native int poll(int fd1, int fd2, int timeout) throws UnixException;
 
     static {
         AccessController.doPrivileged(new PrivilegedAction<>() {
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+#include <errno.h>
+#include <stddef.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+#include <unistd.h>
+#include <sys/mman.h>
+#include <sys/syscall.h>
+#include <sys/types.h>
+#include <sys/uio.h>
+
+#include "jni.h"
+#include "jni_util.h"
+#include "jvm.h"
+#include "jlong.h"
+#include "nio.h"
+#include "nio_util.h"
+
+#include "sun_nio_ch_IOUring.h"
+
+/*
+ * The io_uring interface is used directly through the system calls so that
+ * the JDK does not depend on liburing. When the build system headers are
+ * too old to define the interface then all functions fail with ENOSYS and
+ * the Java code falls back to the portable implementation.
+ */
+#if defined(__has_include)
+#if __has_include(<linux/io_uring.h>)
+#include <linux/io_uring.h>
+#define HAVE_IO_URING 1
+#endif
+#endif
+
+#ifdef HAVE_IO_URING
+
+/* io_uring system calls have the same number on all architectures */
+#ifndef __NR_io_uring_setup
+#define __NR_io_uring_setup     425
+#endif
+#ifndef __NR_io_uring_enter
+#define __NR_io_uring_enter     426
+#endif
+#ifndef __NR_io_uring_register
+#define __NR_io_uring_register  427
+#endif
+
+/* maximum number of opcodes probed */
+#define PROBE_OPS 64
+
+typedef struct {
+    int ring_fd;
+    unsigned sq_entries;
+    void *sq_ptr;
+    size_t sq_size;
+    void *cq_ptr;
+    size_t cq_size;
+    struct io_uring_sqe *sqes;
+    size_t sqes_size;
+    unsigned *sq_head;
+    unsigned *sq_tail;
+    unsigned *sq_mask;
+    unsigned *sq_array;
+    unsigned sq_local_tail;
+    unsigned *cq_head;
+    unsigned *cq_tail;
+    unsigned *cq_mask;
+    struct io_uring_cqe *cqes;
+} uring_t;
+
+static int uring_setup(unsigned entries, struct io_uring_params *p) {
+    return (int) syscall(__NR_io_uring_setup, entries, p);
+}
+
+static int uring_enter(int fd, unsigned to_submit, unsigned min_complete,
+                       unsigned flags) {
+    return (int) syscall(__NR_io_uring_enter, fd, to_submit, min_complete,
+                         flags, NULL, 0);
+}
+
+static int uring_register(int fd, unsigned opcode, const void *arg,
+                          unsigned nr_args) {
+    return (int) syscall(__NR_io_uring_register, fd, opcode, arg, nr_args);
+}
+
+static void uring_unmap(uring_t *r) {
+    if (r->sqes != NULL && r->sqes != MAP_FAILED)
+        munmap(r->sqes, r->sqes_size);
+    if (r->cq_ptr != NULL && r->cq_ptr != MAP_FAILED && r->cq_ptr != r->sq_ptr)
+        munmap(r->cq_ptr, r->cq_size);
+    if (r->sq_ptr != NULL && r->sq_ptr != MAP_FAILED)
+        munmap(r->sq_ptr, r->sq_size);
+}
+
+/*
+ * Returns 1 if the kernel supports the given opcode, 0 if not and -1 if the
+ * probe itself is not supported.
+ */
+static int uring_probe_op(int ring_fd, int op) {
+    size_t len = sizeof(struct io_uring_probe) +
+                 PROBE_OPS * sizeof(struct io_uring_probe_op);
+    struct io_uring_probe *probe = (struct io_uring_probe *) calloc(1, len);
+    int res;
+    if (probe == NULL)
+        return -1;
+    if (uring_register(ring_fd, IORING_REGISTER_PROBE, probe, PROBE_OPS) < 0) {
+        res = -1;
+    } else if (op > probe->last_op) {
+        res = 0;
+    } else {
+        res = (probe->ops[op].flags & IO_URING_OP_SUPPORTED) ? 1 : 0;
+    }
+    free(probe);
+    return res;
+}
+
+#endif /* HAVE_IO_URING */
+
+JNIEXPORT jboolean JNICALL
+Java_sun_nio_ch_IOUring_isSupported0(JNIEnv *env, jclass clazz, jintArray ops)
+{
+#ifdef HAVE_IO_URING
+    struct io_uring_params p;
+    jint *elems;
+    jsize i, n;
+    jboolean supported = JNI_TRUE;
+    int fd;
+
+    memset(&p, 0, sizeof(p));
+    fd = uring_setup(2, &p);
+    if (fd < 0)
+        return JNI_FALSE;   /* ENOSYS, EPERM (seccomp or sysctl), ... */
+
+    n = (*env)->GetArrayLength(env, ops);
+    elems = (*env)->GetIntArrayElements(env, ops, NULL);
+    if (elems == NULL) {
+        close(fd);
+        return JNI_FALSE;
+    }
+    for (i = 0; i < n && supported; i++) {
+        if (uring_probe_op(fd, elems[i]) != 1)
+            supported = JNI_FALSE;
+    }
+    (*env)->ReleaseIntArrayElements(env, ops, elems, JNI_ABORT);
+    close(fd);
+    return supported;
+#else
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT jlong JNICALL
+Java_sun_nio_ch_IOUring_setup(JNIEnv *env, jclass clazz, jint entries)
+{
+#ifdef HAVE_IO_URING
+    struct io_uring_params p;
+    uring_t *r;
+    int fd;
+
+    r = (uring_t *) calloc(1, sizeof(uring_t));
+    if (r == NULL) {
+        JNU_ThrowOutOfMemoryError(env, "io_uring");
+        return 0;
+    }
+
+    memset(&p, 0, sizeof(p));
+    fd = uring_setup((unsigned) entries, &p);
+    if (fd < 0) {
+        free(r);
+        JNU_ThrowIOExceptionWithLastError(env, "io_uring_setup failed");
+        return 0;
+    }
+    r->ring_fd = fd;
+    r->sq_entries = p.sq_entries;
+
+    r->sq_size = p.sq_off.array + p.sq_entries * sizeof(unsigned);
+    r->cq_size = p.cq_off.cqes + p.cq_entries * sizeof(struct io_uring_cqe);
+    if (p.features & IORING_FEAT_SINGLE_MMAP) {
+        if (r->cq_size > r->sq_size)
+            r->sq_size = r->cq_size;
+        r->cq_size = r->sq_size;
+    }
+
+    r->sq_ptr = mmap(NULL, r->sq_size, PROT_READ | PROT_WRITE,
+                     MAP_SHARED | MAP_POPULATE, fd, IORING_OFF_SQ_RING);
+    if (r->sq_ptr == MAP_FAILED)
+        goto fail;
+    if (p.features & IORING_FEAT_SINGLE_MMAP) {
+        r->cq_ptr = r->sq_ptr;
+    } else {
+        r->cq_ptr = mmap(NULL, r->cq_size, PROT_READ | PROT_WRITE,
+                         MAP_SHARED | MAP_POPULATE, fd, IORING_OFF_CQ_RING);
+        if (r->cq_ptr == MAP_FAILED)
+            goto fail;
+    }
+    r->sqes_size = p.sq_entries * sizeof(struct io_uring_sqe);
+    r->sqes = (struct io_uring_sqe *) mmap(NULL, r->sqes_size,
+                                           PROT_READ | PROT_WRITE,
+                                           MAP_SHARED | MAP_POPULATE,
+                                           fd, IORING_OFF_SQES);
+    if (r->sqes == MAP_FAILED)
+        goto fail;
+
+    r->sq_head  = (unsigned *) ((char *) r->sq_ptr + p.sq_off.head);
+    r->sq_tail  = (unsigned *) ((char *) r->sq_ptr + p.sq_off.tail);
+    r->sq_mask  = (unsigned *) ((char *) r->sq_ptr + p.sq_off.ring_mask);
+    r->sq_array = (unsigned *) ((char *) r->sq_ptr + p.sq_off.array);
+    r->sq_local_tail = *r->sq_tail;
+    r->cq_head  = (unsigned *) ((char *) r->cq_ptr + p.cq_off.head);
+    r->cq_tail  = (unsigned *) ((char *) r->cq_ptr + p.cq_off.tail);
+    r->cq_mask  = (unsigned *) ((char *) r->cq_ptr + p.cq_off.ring_mask);
+    r->cqes     = (struct io_uring_cqe *) ((char *) r->cq_ptr + p.cq_off.cqes);
+    return ptr_to_jlong(r);
+
+fail:
+    JNU_ThrowIOExceptionWithLastError(env, "mmap failed");
+    uring_unmap(r);
+    close(fd);
+    free(r);
+    return 0;
+#else
+    JNU_ThrowIOException(env, "io_uring not supported");
+    return 0;
+#endif
+}
+
+JNIEXPORT void JNICALL
+Java_sun_nio_ch_IOUring_close(JNIEnv *env, jclass clazz, jlong ring)
+{
+#ifdef HAVE_IO_URING
+    uring_t *r = (uring_t *) jlong_to_ptr(ring);
+    uring_unmap(r);
+    close(r->ring_fd);
+    free(r);
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_IOUring_prepare(JNIEnv *env, jclass clazz, jlong ring,
+                                jint op, jint fd, jint flags, jlong address,
+                                jint len, jlong offset, jint bufIndex,
+                                jlong userData)
+{
+#ifdef HAVE_IO_URING
+    uring_t *r = (uring_t *) jlong_to_ptr(ring);
+    unsigned head = __atomic_load_n(r->sq_head, __ATOMIC_ACQUIRE);
+    unsigned tail = r->sq_local_tail;
+    unsigned index;
+    struct io_uring_sqe *sqe;
+
+    if (tail - head >= r->sq_entries)
+        return IOS_UNAVAILABLE;     /* submission queue full */
+
+    index = tail & *r->sq_mask;
+    sqe = &r->sqes[index];
+    memset(sqe, 0, sizeof(*sqe));
+    sqe->opcode = (__u8) op;
+    sqe->flags = (__u8) flags;
+    sqe->fd = fd;
+    sqe->addr = (__u64) address;
+    sqe->len = (__u32) len;
+    sqe->off = (__u64) offset;
+    sqe->buf_index = (__u16) bufIndex;
+    sqe->user_data = (__u64) userData;
+    r->sq_array[index] = index;
+    r->sq_local_tail = tail + 1;
+
+    /* publish the entry to the kernel */
+    __atomic_store_n(r->sq_tail, r->sq_local_tail, __ATOMIC_RELEASE);
+    return 0;
+#else
+    return IOS_UNAVAILABLE;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_IOUring_enter(JNIEnv *env, jclass clazz, jlong ring,
+                              jint toSubmit, jint minComplete)
+{
+#ifdef HAVE_IO_URING
+    uring_t *r = (uring_t *) jlong_to_ptr(ring);
+    unsigned flags = (minComplete > 0) ? IORING_ENTER_GETEVENTS : 0;
+    int res = uring_enter(r->ring_fd, (unsigned) toSubmit,
+                          (unsigned) minComplete, flags);
+    if (res < 0) {
+        if (errno == EINTR) {
+            return IOS_INTERRUPTED;
+        } else if (errno == EAGAIN || errno == EBUSY) {
+            /* completion queue overflow; caller must reap and retry */
+            return IOS_UNAVAILABLE;
+        } else {
+            JNU_ThrowIOExceptionWithLastError(env, "io_uring_enter failed");
+            return IOS_THROWN;
+        }
+    }
+    return res;
+#else
+    JNU_ThrowIOException(env, "io_uring not supported");
+    return IOS_THROWN;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_IOUring_reap(JNIEnv *env, jclass clazz, jlong ring,
+                             jlong address, jint max)
+{
+#ifdef HAVE_IO_URING
+    uring_t *r = (uring_t *) jlong_to_ptr(ring);
+    struct io_uring_cqe *dst = (struct io_uring_cqe *) jlong_to_ptr(address);
+    unsigned head = *r->cq_head;
+    unsigned tail = __atomic_load_n(r->cq_tail, __ATOMIC_ACQUIRE);
+    int n = 0;
+
+    while (head != tail && n < max) {
+        dst[n++] = r->cqes[head & *r->cq_mask];
+        head++;
+    }
+    __atomic_store_n(r->cq_head, head, __ATOMIC_RELEASE);
+    return n;
+#else
+    return 0;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_IOUring_registerFiles(JNIEnv *env, jclass clazz, jlong ring,
+                                      jint count)
+{
+#ifdef HAVE_IO_URING
+    uring_t *r = (uring_t *) jlong_to_ptr(ring);
+    int *fds = (int *) malloc(count * sizeof(int));
+    int i, res;
+    if (fds == NULL)
+        return ENOMEM;
+    for (i = 0; i < count; i++)
+        fds[i] = -1;    /* sparse table, requires Linux 5.5 */
+    res = uring_register(r->ring_fd, IORING_REGISTER_FILES, fds, count);
+    free(fds);
+    return (res < 0) ? errno : 0;
+#else
+    return ENOSYS;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_IOUring_updateFile(JNIEnv *env, jclass clazz, jlong ring,
+                                   jint index, jint fd)
+{
+#ifdef HAVE_IO_URING
+    uring_t *r = (uring_t *) jlong_to_ptr(ring);
+    struct io_uring_files_update up;
+    __s32 fdv = (__s32) fd;
+    int res;
+
+    memset(&up, 0, sizeof(up));
+    up.offset = (__u32) index;
+    up.fds = (__u64) (uintptr_t) &fdv;
+    res = uring_register(r->ring_fd, IORING_REGISTER_FILES_UPDATE, &up, 1);
+    return (res < 0) ? errno : 0;
+#else
+    return ENOSYS;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_IOUring_registerBuffers(JNIEnv *env, jclass clazz, jlong ring,
+                                        jlong address, jint size, jint count)
+{
+#ifdef HAVE_IO_URING
+    uring_t *r = (uring_t *) jlong_to_ptr(ring);
+    struct iovec *iov = (struct iovec *) malloc(count * sizeof(struct iovec));
+    char *base = (char *) jlong_to_ptr(address);
+    int i, res;
+    if (iov == NULL)
+        return ENOMEM;
+    for (i = 0; i < count; i++) {
+        iov[i].iov_base = base + ((size_t) i * size);
+        iov[i].iov_len = (size_t) size;
+    }
+    res = uring_register(r->ring_fd, IORING_REGISTER_BUFFERS, iov, count);
+    free(iov);
+    return (res < 0) ? errno : 0;
+#else
+    return ENOSYS;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_IOUring_completionSize(JNIEnv *env, jclass clazz)
+{
+#ifdef HAVE_IO_URING
+    return sizeof(struct io_uring_cqe);
+#else
+    return 16;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_IOUring_resultOffset(JNIEnv *env, jclass clazz)
+{
+#ifdef HAVE_IO_URING
+    return offsetof(struct io_uring_cqe, res);
+#else
+    return 8;
+#endif
+}
+
+JNIEXPORT jstring JNICALL
+Java_sun_nio_ch_IOUring_strerror(JNIEnv *env, jclass clazz, jint errnum)
+{
+    return JNU_NewStringPlatform(env, strerror(errnum));
+}
@@ -131,7 +131,7 @@ Java_sun_nio_fs_LinuxWatchService_socketpair
 
 JNIEXPORT jint JNICALL
 Java_sun_nio_fs_LinuxWatchService_poll
-    (JNIEnv* env, jclass clazz, jint fd1, jint fd2)
+    (JNIEnv* env, jclass clazz, jint fd1, jint fd2, jint timeout)
 {
     struct pollfd ufds[2];
     int n;
@@ -141,7 +141,7 @@ Java_sun_nio_fs_LinuxWatchService_poll
     ufds[1].fd = fd2;
     ufds[1].events = POLLIN;
 
-    n = poll(&ufds[0], 2, -1);
+    n = poll(&ufds[0], 2, timeout);
     if (n == -1) {
         if (errno == EINTR) {
             n = 0;
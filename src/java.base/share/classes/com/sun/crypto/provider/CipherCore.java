@@ -915,7 +915,10 @@ final class CipherCore {
         int estOutSize = getOutputSizeByOperation(inputLen, true);
         int outputCapacity = checkOutputCapacity(output, outputOffset,
                 estOutSize);
-        int offset = decrypting ? 0 : outputOffset; // 0 for decrypting
+        // GCM has no padding to strip, and checks the output buffer before
+        // changing any state, so it can decrypt into 'output' directly.
+        boolean useTempOut = decrypting && (cipherMode != GCM_MODE);
+        int offset = useTempOut ? 0 : outputOffset;
         byte[] finalBuf = prepareInputBuffer(input, inputOffset,
                 inputLen, output, outputOffset);
         byte[] outWithPadding = null; // for decrypting only
@@ -923,7 +926,7 @@ final class CipherCore {
         int finalOffset = (finalBuf == input) ? inputOffset : 0;
         int finalBufLen = (finalBuf == input) ? inputLen : finalBuf.length;
 
-        if (decrypting) {
+        if (useTempOut) {
             // if the size of specified output buffer is less than
             // the length of the cipher text, then the current
             // content of cipher has to be preserved in order for
@@ -936,12 +939,12 @@ final class CipherCore {
             // data bytes are passed to user's output buffer.
             outWithPadding = new byte[estOutSize];
         }
-        byte[] outBuffer = decrypting ? outWithPadding : output;
+        byte[] outBuffer = useTempOut ? outWithPadding : output;
 
         int outLen = fillOutputBuffer(finalBuf, finalOffset, outBuffer,
                 offset, finalBufLen, input);
 
-        if (decrypting) {
+        if (useTempOut) {
 
             if (outputCapacity < outLen) {
                 // restore so users can retry with a larger buffer
@@ -42,7 +42,10 @@ import sun.security.util.ArrayUtil;
  *
  * <p>NOTE: Unlike other modes, when used for decryption, this class
  * will buffer all processed outputs internally and won't return them
- * until the tag has been successfully verified.
+ * until the tag has been successfully verified. The buffered ciphertext
+ * is authenticated as it arrives, and the final call decrypts directly
+ * into the caller's output buffer, which is cleared again if the tag
+ * does not match.
  *
  * @since 1.8
  */
@@ -61,8 +64,9 @@ final class GaloisCounterMode extends FeedbackCipher {
     // can only be returned by the doFinal(...) call.
     private static final int MAX_BUF_SIZE = Integer.MAX_VALUE;
 
-    // data size when buffer is divided up to aid in intrinsics
-    private static final int TRIGGERLEN = 65536;  // 64k
+    // GCTR and GHASH are run over the data in chunks of this size, so
+    // that each chunk is still in the cache when the second pass reads it
+    private static final int CHUNK_LEN = 4096;
 
     // buffer for AAD data; if null, meaning update has been called
     private ByteArrayOutputStream aadBuffer = new ByteArrayOutputStream();
@@ -380,52 +384,47 @@ final class GaloisCounterMode extends FeedbackCipher {
         }
     }
 
+    // Runs GCTR and GHASH over whole blocks in a single pass, one chunk
+    // at a time, so that both the CTR and the GHASH intrinsics see the
+    // chunk while it is still in the cache. When decrypting, each chunk
+    // is hashed before it is decrypted, which keeps this safe when the
+    // output trails the input in the same array.
+    private void cryptBlocks(byte[] in, int inOfs, int len,
+                             byte[] out, int outOfs, boolean isEncrypt) {
+        while (len > 0) {
+            int n = Math.min(len, CHUNK_LEN);
+            if (!isEncrypt) {
+                ghashAllToS.update(in, inOfs, n);
+            }
+            gctrPAndC.update(in, inOfs, n, out, outOfs);
+            if (isEncrypt) {
+                ghashAllToS.update(out, outOfs, n);
+            }
+            inOfs += n;
+            outOfs += n;
+            len -= n;
+        }
+    }
+
     // Utility to process the last block; used by encryptFinal and decryptFinal
     void doLastBlock(byte[] in, int inOfs, int len, byte[] out, int outOfs,
                      boolean isEncrypt) throws IllegalBlockSizeException {
-        byte[] ct;
-        int ctOfs;
-        int ilen = len;  // internal length
+        int lastLen = len % AES_BLOCK_SIZE;
+        int blkLen = len - lastLen;
 
-        if (isEncrypt) {
-            ct = out;
-            ctOfs = outOfs;
-        } else {
-            ct = in;
-            ctOfs = inOfs;
-        }
-
-        // Divide up larger data sizes to trigger CTR & GHASH intrinsic quicker
-        if (len > TRIGGERLEN) {
-            int i = 0;
-            int tlen;  // incremental lengths
-            final int plen = AES_BLOCK_SIZE * 6;
-            // arbitrary formula to aid intrinsic without reaching buffer end
-            final int count = len / 1024;
-
-            while (count > i) {
-                tlen = gctrPAndC.update(in, inOfs, plen, out, outOfs);
-                ghashAllToS.update(ct, ctOfs, tlen);
-                inOfs += tlen;
-                outOfs += tlen;
-                ctOfs += tlen;
-                i++;
-            }
-            ilen -= count * plen;
-            processed += count * plen;
-        }
+        cryptBlocks(in, inOfs, blkLen, out, outOfs, isEncrypt);
+        inOfs += blkLen;
+        outOfs += blkLen;
 
-        gctrPAndC.doFinal(in, inOfs, ilen, out, outOfs);
-        processed += ilen;
-
-        int lastLen = ilen % AES_BLOCK_SIZE;
-        if (lastLen != 0) {
-            ghashAllToS.update(ct, ctOfs, ilen - lastLen);
-            ghashAllToS.update(
-                    expandToOneBlock(ct, (ctOfs + ilen - lastLen), lastLen));
-        } else {
-            ghashAllToS.update(ct, ctOfs, ilen);
+        if (lastLen != 0 && !isEncrypt) {
+            ghashAllToS.update(expandToOneBlock(in, inOfs, lastLen));
         }
+        // always called, as it also resets the counter
+        gctrPAndC.doFinal(in, inOfs, lastLen, out, outOfs);
+        if (lastLen != 0 && isEncrypt) {
+            ghashAllToS.update(expandToOneBlock(out, outOfs, lastLen));
+        }
+        processed += len;
     }
 
 
@@ -456,9 +455,8 @@ final class GaloisCounterMode extends FeedbackCipher {
             ArrayUtil.nullAndBoundsCheck(in, inOfs, len);
             ArrayUtil.nullAndBoundsCheck(out, outOfs, len);
 
-            gctrPAndC.update(in, inOfs, len, out, outOfs);
+            cryptBlocks(in, inOfs, len, out, outOfs, true);
             processed += len;
-            ghashAllToS.update(out, outOfs, len);
         }
 
         return len;
@@ -535,8 +533,11 @@ final class GaloisCounterMode extends FeedbackCipher {
         if (len > 0) {
             // store internally until decryptFinal is called because
             // spec mentioned that only return recovered data after tag
-            // is successfully verified
+            // is successfully verified; the data can be authenticated
+            // right away though, leaving only GCTR for decryptFinal
             ArrayUtil.nullAndBoundsCheck(in, inOfs, len);
+            ghashAllToS.update(in, inOfs, len);
+            processed += len;
             ibuffer.write(in, inOfs, len);
         }
         return 0;
@@ -586,23 +587,21 @@ final class GaloisCounterMode extends FeedbackCipher {
         System.arraycopy(in, inOfs + len - tagLenBytes, tag, 0, tagLenBytes);
         len -= tagLenBytes;
 
-        // If decryption is in-place or there is buffered "ibuffer" data, copy
-        // the "in" byte array into the ibuffer before proceeding.
-        if (in == out || ibuffer.size() > 0) {
-            if (len > 0) {
-                ibuffer.write(in, inOfs, len);
+        int buffered = ibuffer.size();
+        if (buffered > 0) {
+            // Writing out the buffered data first could overwrite the
+            // remaining input if decryption is in-place.
+            if (in == out && len > 0) {
+                in = Arrays.copyOfRange(in, inOfs, inOfs + len);
+                inOfs = 0;
             }
 
-            // refresh 'in' to all buffered-up bytes
-            in = ibuffer.toByteArray();
-            inOfs = 0;
-            len = in.length;
+            // the buffered data has been authenticated by decrypt()
+            gctrPAndC.update(ibuffer.toByteArray(), 0, buffered, out, outOfs);
             ibuffer.reset();
         }
 
-        if (len > 0) {
-            doLastBlock(in, inOfs, len, out, outOfs, false);
-        }
+        doLastBlock(in, inOfs, len, out, outOfs + buffered, false);
 
         byte[] lengthBlock =
             getLengthBlock(sizeOfAAD, processed);
@@ -620,10 +619,12 @@ final class GaloisCounterMode extends FeedbackCipher {
         }
 
         if (mismatch != 0) {
+            // don't leave unauthenticated plaintext in the output buffer
+            Arrays.fill(out, outOfs, outOfs + buffered + len, (byte)0);
             throw new AEADBadTagException("Tag mismatch!");
         }
 
-        return len;
+        return buffered + len;
     }
 
     // return tag length in bytes
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Objects;
 import java.util.Scanner;
 import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.io.File;
 import java.io.ObjectStreamException;
 import java.io.ObjectStreamField;
@@ -43,11 +44,17 @@ import java.lang.annotation.Native;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
+import jdk.internal.misc.InnocuousThread;
 import jdk.internal.misc.JavaNetInetAddressAccess;
 import jdk.internal.misc.SharedSecrets;
 import sun.security.action.*;
+import sun.net.InetAddressCacheStatistics;
 import sun.net.InetAddressCachePolicy;
 import sun.net.util.IPAddressUtil;
 import sun.nio.cs.UTF_8;
@@ -785,17 +792,62 @@ class InetAddress implements java.io.Serializable {
         final long expiryTime; // time of expiry (in terms of System.nanoTime())
         final long id = seq.incrementAndGet(); // each instance is unique
 
+        // true if the addresses may be used after the refresh time while
+        // they are looked up again by the CacheRefresher
+        final boolean refreshable;
+        volatile long refreshTime; // in terms of System.nanoTime()
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
         CachedAddresses(String host, InetAddress[] inetAddresses, long expiryTime) {
             this.host = host;
             this.inetAddresses = inetAddresses;
             this.expiryTime = expiryTime;
+            this.refreshable = false;
+        }
+
+        CachedAddresses(String host, InetAddress[] inetAddresses,
+                        long refreshTime, long expiryTime) {
+            this.host = host;
+            this.inetAddresses = inetAddresses;
+            this.expiryTime = expiryTime;
+            this.refreshable = true;
+            this.refreshTime = refreshTime;
+        }
+
+        /**
+         * Creates the cached addresses for the result of a name service
+         * lookup according to the given cache policy, which must not be
+         * NEVER. Successful lookups are kept for the stale period after
+         * the cache policy expires, if one is configured.
+         */
+        static CachedAddresses create(String host, InetAddress[] inetAddresses,
+                                      int cachePolicy) {
+            assert cachePolicy != InetAddressCachePolicy.NEVER;
+            if (cachePolicy == InetAddressCachePolicy.FOREVER) {
+                return new CachedAddresses(host, inetAddresses, 0L);
+            }
+            // cachePolicy is in [s] - we need [ns]
+            long expiryTime = System.nanoTime() + 1000_000_000L * cachePolicy;
+            int stalePolicy = InetAddressCachePolicy.getStale();
+            if (inetAddresses != null && stalePolicy > 0) {
+                return new CachedAddresses(host, inetAddresses, expiryTime,
+                        expiryTime + 1000_000_000L * stalePolicy);
+            } else {
+                return new CachedAddresses(host, inetAddresses, expiryTime);
+            }
         }
 
         @Override
         public InetAddress[] get() throws UnknownHostException {
             if (inetAddresses == null) {
+                InetAddressCacheStatistics.negativeHit();
                 throw new UnknownHostException(host);
             }
+            if (refreshable && (System.nanoTime() - refreshTime) >= 0L) {
+                // stale, use the addresses while they are looked up again
+                InetAddressCacheStatistics.staleHit();
+                CacheRefresher.refresh(this);
+            }
             return inetAddresses;
         }
 
@@ -857,18 +909,16 @@ class InetAddress implements java.io.Serializable {
                     if (cachePolicy == InetAddressCachePolicy.NEVER) {
                         cache.remove(host, this);
                     } else {
-                        CachedAddresses cachedAddresses = new CachedAddresses(
-                            host,
-                            inetAddresses,
-                            cachePolicy == InetAddressCachePolicy.FOREVER
-                            ? 0L
-                            // cachePolicy is in [s] - we need [ns]
-                            : System.nanoTime() + 1000_000_000L * cachePolicy
-                        );
-                        if (cache.replace(host, this, cachedAddresses) &&
-                            cachePolicy != InetAddressCachePolicy.FOREVER) {
-                            // schedule expiry
-                            expirySet.add(cachedAddresses);
+                        CachedAddresses cachedAddresses =
+                            CachedAddresses.create(host, inetAddresses, cachePolicy);
+                        if (cache.replace(host, this, cachedAddresses)) {
+                            if (cachePolicy != InetAddressCachePolicy.FOREVER) {
+                                // schedule expiry
+                                expirySet.add(cachedAddresses);
+                            }
+                            if (inetAddresses == null) {
+                                InetAddressCacheStatistics.negativeEntryCached();
+                            }
                         }
                     }
                     if (inetAddresses == null) {
@@ -884,6 +934,88 @@ class InetAddress implements java.io.Serializable {
         }
     }
 
+    /**
+     * Looks up stale cached addresses again in the background, on at most
+     * {@link InetAddressCachePolicy#getRefreshThreads()} threads, so that
+     * lookups of a host are not blocked by the name service when its cached
+     * addresses expire. It is only used when stale addresses are enabled.
+     */
+    private static final class CacheRefresher {
+        private static final ThreadPoolExecutor executor;
+        static {
+            int threads = InetAddressCachePolicy.getRefreshThreads();
+            executor = new ThreadPoolExecutor(threads, threads,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    r -> AccessController.doPrivileged(
+                        new PrivilegedAction<Thread>() {
+                            public Thread run() {
+                                Thread t = InnocuousThread.newSystemThread(
+                                        "InetAddress-Cache-Refresher", r);
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        }));
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        private static final AtomicBoolean prewarmed = new AtomicBoolean();
+
+        /**
+         * Looks up the configured host names in the background, once.
+         */
+        static void prewarm() {
+            if (prewarmed.compareAndSet(false, true)) {
+                for (String host : InetAddressCachePolicy.getPrewarmHosts()) {
+                    executor.execute(() -> {
+                        try {
+                            getAllByName0(host, null, false, true);
+                        } catch (UnknownHostException ignore) { }
+                    });
+                }
+            }
+        }
+
+        /**
+         * Schedules a lookup of the given stale addresses, unless one is
+         * already scheduled. The cache entry is replaced if the lookup
+         * succeeds. If it fails then the stale addresses continue to be used
+         * until they expire, and the lookup is retried after the negative
+         * cache policy, or one second if that is shorter.
+         */
+        static void refresh(CachedAddresses stale) {
+            if (stale.refreshing.compareAndSet(false, true)) {
+                executor.execute(() -> {
+                    String host = stale.host;
+                    boolean succeeded;
+                    try {
+                        InetAddress[] inetAddresses =
+                            getAddressesFromNameService(host, null);
+                        int cachePolicy = InetAddressCachePolicy.get();
+                        if (cachePolicy == InetAddressCachePolicy.NEVER) {
+                            if (cache.remove(host, stale))
+                                expirySet.remove(stale);
+                        } else {
+                            CachedAddresses cachedAddresses =
+                                CachedAddresses.create(host, inetAddresses, cachePolicy);
+                            if (cache.replace(host, stale, cachedAddresses)) {
+                                expirySet.remove(stale);
+                                if (cachePolicy != InetAddressCachePolicy.FOREVER)
+                                    expirySet.add(cachedAddresses);
+                            }
+                        }
+                        succeeded = true;
+                    } catch (UnknownHostException uhe) {
+                        int retry = Math.max(InetAddressCachePolicy.getNegative(), 1);
+                        stale.refreshTime = System.nanoTime() + 1000_000_000L * retry;
+                        stale.refreshing.set(false);
+                        succeeded = false;
+                    }
+                    InetAddressCacheStatistics.refreshed(succeeded);
+                });
+            }
+        }
+    }
+
     /**
      * NameService provides host and address lookup service
      *
@@ -1468,6 +1600,11 @@ class InetAddress implements java.io.Serializable {
             }
         }
 
+        // look up the configured host names when stale addresses are used
+        if (InetAddressCachePolicy.getStale() > 0) {
+            CacheRefresher.prewarm();
+        }
+
         // remove expired addresses from cache - expirySet keeps them ordered
         // by expiry time so we only need to iterate the prefix of the NavigableSet...
         long now = System.nanoTime();
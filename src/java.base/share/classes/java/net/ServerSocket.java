@@ -27,6 +27,7 @@ package java.net;
 
 import jdk.internal.misc.JavaNetSocketAccess;
 import jdk.internal.misc.SharedSecrets;
+import sun.nio.ch.NioSocketImpl;
 import sun.security.util.SecurityConstants;
 
 import java.io.FileDescriptor;
@@ -305,7 +306,11 @@ class ServerSocket implements java.io.Closeable {
         } else {
             // No need to do a checkOldImpl() here, we know it's an up to date
             // SocketImpl!
-            impl = new SocksSocketImpl();
+            if (SocketImpl.USE_NIO_SOCKET_IMPL) {
+                impl = new NioSocketImpl(true);
+            } else {
+                impl = new SocksSocketImpl();
+            }
         }
         if (impl != null)
             impl.setServerSocket(this);
@@ -551,11 +556,20 @@ class ServerSocket implements java.io.Closeable {
      * @spec JSR-51
      */
     protected final void implAccept(Socket s) throws IOException {
+        if (getImpl() instanceof NioSocketImpl) {
+            nioImplAccept(s);
+            return;
+        }
         SocketImpl si = null;
         try {
-            if (s.impl == null)
-              s.setImpl();
-            else {
+            if (s.impl == null) {
+                s.setImpl();
+                if (s.impl instanceof NioSocketImpl) {
+                    // a legacy SocketImpl cannot accept into a NioSocketImpl
+                    s.impl = new SocksSocketImpl();
+                    s.impl.setSocket(s);
+                }
+            } else {
                 s.impl.reset();
             }
             si = s.impl;
@@ -585,6 +599,44 @@ class ServerSocket implements java.io.Closeable {
         s.postAccept();
     }
 
+    /**
+     * Accepts a connection with the NIO based SocketImpl. The accepted
+     * connection is always a new NioSocketImpl that replaces any SocketImpl
+     * already attached to the given Socket.
+     */
+    private void nioImplAccept(Socket s) throws IOException {
+        if (s.impl != null
+                && !(s.impl instanceof AbstractPlainSocketImpl)
+                && !(s.impl instanceof NioSocketImpl)) {
+            throw new IOException("An instance of " + getImpl().getClass()
+                    + " cannot accept a connection with an instance of "
+                    + s.impl.getClass());
+        }
+
+        SocketImpl nsi = new NioSocketImpl(false);
+        getImpl().accept(nsi);
+
+        try {
+            SecurityManager security = System.getSecurityManager();
+            if (security != null) {
+                security.checkAccept(nsi.getInetAddress().getHostAddress(),
+                                     nsi.getPort());
+            }
+        } catch (SecurityException e) {
+            nsi.close();
+            throw e;
+        }
+
+        // replace the SocketImpl created by the Socket constructor
+        SocketImpl oldImpl = s.impl;
+        if (oldImpl != null) {
+            oldImpl.close();
+        }
+        nsi.setSocket(s);
+        s.impl = nsi;
+        s.postAccept();
+    }
+
     /**
      * Closes this socket.
      *
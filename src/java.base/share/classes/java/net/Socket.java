@@ -25,6 +25,7 @@
 
 package java.net;
 
+import sun.nio.ch.NioSocketImpl;
 import sun.security.util.SecurityConstants;
 
 import java.io.InputStream;
@@ -145,7 +146,11 @@ class Socket implements java.io.Closeable {
         } else {
             if (p == Proxy.NO_PROXY) {
                 if (factory == null) {
-                    impl = new PlainSocketImpl();
+                    if (SocketImpl.USE_NIO_SOCKET_IMPL) {
+                        impl = new NioSocketImpl(false);
+                    } else {
+                        impl = new PlainSocketImpl();
+                    }
                     impl.setSocket(this);
                 } else
                     setImpl();
@@ -520,7 +525,11 @@ class Socket implements java.io.Closeable {
         } else {
             // No need to do a checkOldImpl() here, we know it's an up to date
             // SocketImpl!
-            impl = new SocksSocketImpl();
+            if (SocketImpl.USE_NIO_SOCKET_IMPL) {
+                impl = new NioSocketImpl(false);
+            } else {
+                impl = new SocksSocketImpl();
+            }
         }
         if (impl != null)
             impl.setSocket(this);
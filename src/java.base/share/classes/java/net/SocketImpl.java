@@ -31,6 +31,8 @@ import java.io.OutputStream;
 import java.io.FileDescriptor;
 import java.util.Set;
 
+import sun.security.action.GetPropertyAction;
+
 /**
  * The abstract class {@code SocketImpl} is a common superclass
  * of all classes that actually implement sockets. It is used to
@@ -43,6 +45,17 @@ import java.util.Set;
  * @since   1.0
  */
 public abstract class SocketImpl implements SocketOptions {
+    /**
+     * Whether to use the NIO based SocketImpl for Socket and ServerSocket
+     * rather than PlainSocketImpl, enabled with the jdk.net.useNioSocketImpl
+     * system property.
+     */
+    static final boolean USE_NIO_SOCKET_IMPL;
+    static {
+        String s = GetPropertyAction.privilegedGetProperty("jdk.net.useNioSocketImpl");
+        USE_NIO_SOCKET_IMPL = (s != null) && !s.equalsIgnoreCase("false");
+    }
+
     /**
      * The actual Socket object.
      */
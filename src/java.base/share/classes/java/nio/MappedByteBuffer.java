@@ -26,8 +26,14 @@
 package java.nio;
 
 import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Native;
 import java.lang.ref.Reference;
+import java.util.Objects;
 import jdk.internal.misc.Unsafe;
+import sun.nio.ch.DirectBuffer;
+import sun.nio.ch.FileChannelImpl;
 
 
 /**
@@ -39,7 +45,10 @@ import jdk.internal.misc.Unsafe;
  * memory-mapped file regions.
  *
  * <p> A mapped byte buffer and the file mapping that it represents remain
- * valid until the buffer itself is garbage-collected.
+ * valid until the buffer itself is garbage-collected. The file backing of
+ * the mapping can be released sooner with the {@link #releaseFileBacking
+ * releaseFileBacking} method, the address range of the mapping remains
+ * reserved until the buffer is garbage-collected.
  *
  * <p> The content of a mapped byte buffer can change at any time, for example
  * if the content of the corresponding region of the mapped file is changed by
@@ -77,18 +86,37 @@ public abstract class MappedByteBuffer
     // operations if valid; null if the buffer is not mapped.
     private final FileDescriptor fd;
 
+    // For the buffer created by FileChannel.map, the object that unmaps the
+    // mapping; null for views of the buffer and for buffers that are not
+    // mapped.
+    private final Runnable unmapper;
+
+    // Values of the advice passed to advise0
+    @Native private static final int ADVICE_NORMAL     = 0;
+    @Native private static final int ADVICE_RANDOM     = 1;
+    @Native private static final int ADVICE_SEQUENTIAL = 2;
+    @Native private static final int ADVICE_WILL_NEED  = 3;
+    @Native private static final int ADVICE_DONT_NEED  = 4;
+    @Native private static final int ADVICE_HUGE_PAGES = 5;
+
     // This should only be invoked by the DirectByteBuffer constructors
     //
     MappedByteBuffer(int mark, int pos, int lim, int cap, // package-private
-                     FileDescriptor fd)
+                     FileDescriptor fd, Runnable unmapper)
     {
         super(mark, pos, lim, cap);
         this.fd = fd;
+        this.unmapper = unmapper;
+    }
+
+    MappedByteBuffer(int mark, int pos, int lim, int cap, // package-private
+                     FileDescriptor fd)
+    {
+        this(mark, pos, lim, cap, fd, null);
     }
 
     MappedByteBuffer(int mark, int pos, int lim, int cap) { // package-private
-        super(mark, pos, lim, cap);
-        this.fd = null;
+        this(mark, pos, lim, cap, null, null);
     }
 
     // Returns the distance (in bytes) of the buffer from the page aligned address
@@ -212,9 +240,151 @@ public abstract class MappedByteBuffer
         return this;
     }
 
+    /**
+     * A hint about how the content of a mapped byte buffer will be accessed.
+     *
+     * @see MappedByteBuffer#advise
+     * @since 11
+     */
+    public enum Advice {
+        /**
+         * No particular access pattern. This is the default.
+         */
+        NORMAL,
+
+        /**
+         * The content will be accessed in random order. Reading ahead of the
+         * accessed pages is less useful than usual.
+         */
+        RANDOM,
+
+        /**
+         * The content will be accessed in sequential order. Pages may be read
+         * ahead aggressively and freed soon after they are accessed.
+         */
+        SEQUENTIAL,
+
+        /**
+         * The content will be accessed in the near future. Pages may be read
+         * ahead, without waiting for them to be read.
+         */
+        WILL_NEED,
+
+        /**
+         * The content will not be accessed in the near future. Pages may be
+         * freed. If the buffer was mapped in {@link
+         * java.nio.channels.FileChannel.MapMode#PRIVATE private} mode then
+         * the changes made to the content may be discarded, and the content
+         * read again from the file when next accessed.
+         */
+        DONT_NEED,
+
+        /**
+         * The content should be backed by huge pages where possible.
+         */
+        HUGE_PAGES
+    }
+
+    /**
+     * Advises the operating system about how this buffer's content will be
+     * accessed, so that it may choose an appropriate read-ahead and caching
+     * strategy.
+     *
+     * <p> The advice applies to the region of the mapping that corresponds to
+     * this buffer's content, that is, from index zero up to the buffer's
+     * capacity. It is a hint, it may be ignored by the operating system, and
+     * has no effect if the advice is not supported. </p>
+     *
+     * @param  advice
+     *         The advice
+     *
+     * @return  This buffer
+     *
+     * @since 11
+     */
+    public final MappedByteBuffer advise(Advice advice) {
+        Objects.requireNonNull(advice);
+        if (fd == null) {
+            return this;
+        }
+        if ((address == 0) || (capacity() == 0))
+            return this;
+        int value;
+        switch (advice) {
+            case NORMAL     : value = ADVICE_NORMAL;     break;
+            case RANDOM     : value = ADVICE_RANDOM;     break;
+            case SEQUENTIAL : value = ADVICE_SEQUENTIAL; break;
+            case WILL_NEED  : value = ADVICE_WILL_NEED;  break;
+            case DONT_NEED  : value = ADVICE_DONT_NEED;  break;
+            case HUGE_PAGES : value = ADVICE_HUGE_PAGES; break;
+            default:
+                throw new InternalError();
+        }
+        long offset = mappingOffset();
+        try {
+            advise0(mappingAddress(offset), mappingLength(offset), value);
+        } finally {
+            Reference.reachabilityFence(this);
+        }
+        return this;
+    }
+
+    /**
+     * Releases the file backing of this buffer's mapping without waiting for
+     * the buffer to be garbage-collected. The address range of the mapping is
+     * not released by this method.
+     *
+     * <p> If this buffer is a view of a mapped byte buffer, created by the
+     * {@link #duplicate duplicate} or {@link #slice slice} methods for
+     * example, then the file backing of the buffer that was returned by
+     * {@link java.nio.channels.FileChannel#map FileChannel.map} is released.
+     * It is released for the buffer and for all its views. </p>
+     *
+     * <p> Once the file backing is released the content of the buffer is no
+     * longer a region of the file, changes made to the file are not visible
+     * and changes made to the buffer are not written to the file. The file,
+     * and the pages of the file that were resident, are no longer
+     * referenced by the mapping. It is recommended that the buffer and its
+     * views are not accessed once the file backing is released. If they are
+     * accessed then reading yields unspecified values, but it does not crash
+     * the virtual machine or access memory that is not part of the buffer.
+     * </p>
+     *
+     * <p> Invoking this method on a buffer whose file backing has been
+     * released, or on a direct buffer that is not mapped, has no effect.
+     * </p>
+     *
+     * @implNote The address range of the mapping is replaced with anonymous
+     * memory that does not reserve swap space, so that the buffer can still
+     * be accessed safely. The address range remains reserved until the
+     * buffer and its views are garbage-collected, so this method does not
+     * reduce the virtual address space used by the process.
+     *
+     * @throws  UnsupportedOperationException
+     *          If releasing a mapping is not supported on this platform
+     * @throws  UncheckedIOException
+     *          If an I/O error occurs
+     *
+     * @since 11
+     */
+    public final void releaseFileBacking() {
+        Object att = ((DirectBuffer)this).attachment();
+        MappedByteBuffer root = (att instanceof MappedByteBuffer)
+                                ? (MappedByteBuffer)att : this;
+        if (root.unmapper == null) {
+            return;
+        }
+        try {
+            FileChannelImpl.release(root.unmapper);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private native boolean isLoaded0(long address, long length, int pageCount);
     private native void load0(long address, long length);
     private native void force0(FileDescriptor fd, long address, long length);
+    private native void advise0(long address, long length, int advice);
 
     // -- Covariant return type overrides
 
@@ -487,6 +487,168 @@ public abstract class DatagramChannel
     public abstract int send(ByteBuffer src, SocketAddress target)
         throws IOException;
 
+    /**
+     * Receives a sequence of datagrams via this channel.
+     *
+     * <p> If at least one datagram is immediately available, or if this
+     * channel is in blocking mode and one eventually becomes available, then
+     * the datagrams that are available are received, up to the number of
+     * buffers in the given array. The datagram received into the buffer at
+     * index <i>i</i> of {@code dsts} has its source address stored at index
+     * <i>i</i> of {@code sources}. This method does not block waiting for
+     * more than one datagram. If this channel is in non-blocking mode and a
+     * datagram is not immediately available then this method immediately
+     * returns {@code 0}.
+     *
+     * <p> Each datagram is transferred into its byte buffer starting at the
+     * buffer's current position, as if by the {@link #receive(ByteBuffer)
+     * receive} method. If there are fewer bytes remaining in a buffer than
+     * are required to hold the datagram then the remainder of the datagram is
+     * silently discarded. The security checks performed, and the handling of
+     * concurrent read operations, are also as specified by the {@link
+     * #receive(ByteBuffer) receive} method.
+     *
+     * <p> An implementation may receive fewer datagrams than there are
+     * buffers, even if more datagrams are available. The default
+     * implementation receives at most one datagram by invoking the {@link
+     * #receive(ByteBuffer) receive} method. Implementations that can receive
+     * several datagrams with a single system call override this method.
+     *
+     * @param  dsts
+     *         The buffers into which the datagrams are to be transferred
+     *
+     * @param  sources
+     *         The array into which the datagrams' source addresses are
+     *         stored; it must be at least as long as {@code dsts}
+     *
+     * @return  The number of datagrams received, possibly zero if this channel
+     *          is in non-blocking mode
+     *
+     * @throws  IllegalArgumentException
+     *          If {@code sources} is shorter than {@code dsts}, or one of
+     *          the buffers is read-only
+     *
+     * @throws  ClosedChannelException
+     *          If this channel is closed
+     *
+     * @throws  AsynchronousCloseException
+     *          If another thread closes this channel
+     *          while the read operation is in progress
+     *
+     * @throws  ClosedByInterruptException
+     *          If another thread interrupts the current thread
+     *          while the read operation is in progress, thereby
+     *          closing the channel and setting the current thread's
+     *          interrupt status
+     *
+     * @throws  SecurityException
+     *          If a security manager has been installed
+     *          and it does not permit datagrams to be accepted
+     *          from a datagram's sender
+     *
+     * @throws  IOException
+     *          If some other I/O error occurs
+     *
+     * @since 11
+     */
+    public int receive(ByteBuffer[] dsts, SocketAddress[] sources)
+        throws IOException
+    {
+        if (sources.length < dsts.length)
+            throw new IllegalArgumentException("sources array is too short");
+        if (dsts.length == 0)
+            return 0;
+        SocketAddress source = receive(dsts[0]);
+        if (source == null)
+            return 0;
+        sources[0] = source;
+        return 1;
+    }
+
+    /**
+     * Sends a sequence of datagrams via this channel.
+     *
+     * <p> The remaining bytes in the buffer at index <i>i</i> of {@code srcs}
+     * are transmitted as a single datagram to the address at index <i>i</i>
+     * of {@code targets}, as if by the {@link #send(ByteBuffer,SocketAddress)
+     * send} method. Datagrams are sent in order. If this channel is in
+     * non-blocking mode and there is insufficient room in the underlying
+     * output buffer then fewer datagrams than requested may be sent. A
+     * datagram is either sent in its entirety, in which case the position of
+     * its buffer is advanced to the limit, or not at all.
+     *
+     * <p> The security checks performed, and the handling of concurrent
+     * write operations, are as specified by the {@link
+     * #send(ByteBuffer,SocketAddress) send} method.
+     *
+     * <p> The default implementation invokes the {@link
+     * #send(ByteBuffer,SocketAddress) send} method for each datagram,
+     * stopping at the first datagram that cannot be sent. Implementations
+     * that can send several datagrams with a single system call override this
+     * method.
+     *
+     * @param  srcs
+     *         The buffers containing the datagrams to be sent
+     *
+     * @param  targets
+     *         The addresses to which the datagrams are to be sent; it must
+     *         be at least as long as {@code srcs}
+     *
+     * @return  The number of datagrams sent, which may be less than the
+     *          number of buffers if this channel is in non-blocking mode
+     *
+     * @throws  IllegalArgumentException
+     *          If {@code targets} is shorter than {@code srcs}
+     *
+     * @throws  AlreadyConnectedException
+     *          If this channel is connected to a different address
+     *          from one of the addresses in {@code targets}
+     *
+     * @throws  ClosedChannelException
+     *          If this channel is closed
+     *
+     * @throws  AsynchronousCloseException
+     *          If another thread closes this channel
+     *          while the write operation is in progress
+     *
+     * @throws  ClosedByInterruptException
+     *          If another thread interrupts the current thread
+     *          while the write operation is in progress, thereby
+     *          closing the channel and setting the current thread's
+     *          interrupt status
+     *
+     * @throws  UnresolvedAddressException
+     *          If one of the target addresses is not fully resolved
+     *
+     * @throws  UnsupportedAddressTypeException
+     *          If the type of one of the target addresses is not supported
+     *
+     * @throws  SecurityException
+     *          If a security manager has been installed
+     *          and it does not permit datagrams to be sent
+     *          to one of the given addresses
+     *
+     * @throws  IOException
+     *          If some other I/O error occurs
+     *
+     * @since 11
+     */
+    public int send(ByteBuffer[] srcs, SocketAddress[] targets)
+        throws IOException
+    {
+        if (targets.length < srcs.length)
+            throw new IllegalArgumentException("targets array is too short");
+        int sent = 0;
+        for (int i = 0; i < srcs.length; i++) {
+            ByteBuffer src = srcs[i];
+            boolean empty = !src.hasRemaining();
+            if (send(src, targets[i]) == 0 && !empty)
+                break;
+            sent++;
+        }
+        return sent;
+    }
+
 
     // -- ByteChannel operations --
 
@@ -26,11 +26,13 @@
 package java.nio.file;
 
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.spi.FileSystemProvider;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Iterator;
+import sun.nio.fs.AbstractFileSystemProvider;
 import sun.nio.fs.BasicFileAttributesHolder;
 
 /**
@@ -229,6 +231,19 @@ class FileTreeWalker implements Closeable {
         return attrs;
     }
 
+    /**
+     * Opens the given directory. If the file system provider supports it then
+     * the entries in the directory are returned with their attributes.
+     */
+    private static DirectoryStream<Path> newDirectoryStream(Path dir)
+        throws IOException
+    {
+        FileSystemProvider provider = dir.getFileSystem().provider();
+        if (provider instanceof AbstractFileSystemProvider)
+            return ((AbstractFileSystemProvider)provider).newDirectoryStreamForWalk(dir);
+        return Files.newDirectoryStream(dir);
+    }
+
     /**
      * Returns true if walking into the given directory would result in a
      * file system loop/cycle.
@@ -297,7 +312,7 @@ class FileTreeWalker implements Closeable {
         // file is a directory, attempt to open it
         DirectoryStream<Path> stream = null;
         try {
-            stream = Files.newDirectoryStream(entry);
+            stream = newDirectoryStream(entry);
         } catch (IOException ioe) {
             return new Event(EventType.ENTRY, entry, ioe);
         } catch (SecurityException se) {
@@ -307,7 +322,9 @@ class FileTreeWalker implements Closeable {
         }
 
         // push a directory node to the stack and return an event
-        stack.push(new DirectoryNode(entry, attrs.fileKey(), stream));
+        // the file key is only needed to detect cycles when following links
+        Object key = (followLinks) ? attrs.fileKey() : null;
+        stack.push(new DirectoryNode(entry, key, stream));
         return new Event(EventType.START_DIRECTORY, entry, attrs);
     }
 
@@ -139,6 +139,7 @@ module java.base {
     exports jdk.internal to
         jdk.jfr;
     exports jdk.internal.event to
+        java.net.http,
         jdk.jfr;
     exports jdk.internal.jimage to
         jdk.jlink;
@@ -231,6 +232,7 @@ module java.base {
     exports jdk.internal.util.xml.impl to
         jdk.jfr;
     exports sun.net to
+        java.management,
         java.net.http,
         jdk.naming.dns;
     exports sun.net.ext to
@@ -246,6 +248,8 @@ module java.base {
         java.desktop,
         java.net.http,
         jdk.jartool;
+    exports sun.net.www.http to
+        java.management;
     exports sun.net.www.protocol.http to
         java.security.jgss;
     exports sun.nio.ch to
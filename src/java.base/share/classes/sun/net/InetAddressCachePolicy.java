@@ -41,6 +41,25 @@ public final class InetAddressCachePolicy {
     private static final String negativeCachePolicyPropFallback =
         "sun.net.inetaddr.negative.ttl";
 
+    // Controls how long successful lookups may be used after they expire,
+    // while they are refreshed in the background
+    private static final String staleCachePolicyProp =
+        "networkaddress.cache.stale.ttl";
+    private static final String staleCachePolicyPropFallback =
+        "sun.net.inetaddr.stale.ttl";
+
+    // Controls the maximum number of concurrent background refreshes
+    private static final String refreshThreadsProp =
+        "networkaddress.cache.refresh.threads";
+    private static final String refreshThreadsPropFallback =
+        "sun.net.inetaddr.refresh.threads";
+
+    // Host names to look up in the background when the cache is first used
+    private static final String prewarmHostsProp =
+        "networkaddress.cache.prewarm.hosts";
+    private static final String prewarmHostsPropFallback =
+        "sun.net.inetaddr.prewarm.hosts";
+
     public static final int FOREVER = -1;
     public static final int NEVER = 0;
 
@@ -68,6 +87,23 @@ public final class InetAddressCachePolicy {
      */
     private static volatile int negativeCachePolicy = NEVER;
 
+    /* The Java-level namelookup cache policy for stale successful lookups:
+     *
+     * any positive value: the number of seconds after expiry that an address
+     * may still be returned while it is looked up again in the background
+     *
+     * default value is 0, expired addresses are looked up synchronously.
+     * Stale addresses are never used for negative lookups or when successful
+     * lookups are cached forever.
+     */
+    private static final int staleCachePolicy;
+
+    /* The maximum number of background refreshes in progress at once */
+    private static final int refreshThreads;
+
+    /* The host names to look up in the background, may be empty */
+    private static final String[] prewarmHosts;
+
     /*
      * Whether or not the cache policy for successful lookups was set
      * using a property (cmd line).
@@ -148,6 +184,54 @@ public final class InetAddressCachePolicy {
             negativeCachePolicy = tmp < 0 ? FOREVER : tmp;
             propertyNegativeSet = true;
         }
+
+        tmp = getIntProperty(staleCachePolicyProp, staleCachePolicyPropFallback);
+        staleCachePolicy = (tmp != null && tmp > 0) ? tmp : NEVER;
+
+        tmp = getIntProperty(refreshThreadsProp, refreshThreadsPropFallback);
+        refreshThreads = (tmp != null && tmp > 0) ? tmp : 1;
+
+        String hosts = java.security.AccessController.doPrivileged(
+          new PrivilegedAction<String>() {
+            public String run() {
+                String tmpString = Security.getProperty(prewarmHostsProp);
+                if (tmpString == null) {
+                    tmpString = System.getProperty(prewarmHostsPropFallback);
+                }
+                return tmpString;
+            }
+          });
+        if (hosts == null || hosts.trim().isEmpty()) {
+            prewarmHosts = new String[0];
+        } else {
+            prewarmHosts = hosts.trim().split("\\s*,\\s*");
+        }
+    }
+
+    private static Integer getIntProperty(String prop, String fallback) {
+        return java.security.AccessController.doPrivileged(
+          new PrivilegedAction<Integer>() {
+            public Integer run() {
+                try {
+                    String tmpString = Security.getProperty(prop);
+                    if (tmpString != null) {
+                        return Integer.valueOf(tmpString.trim());
+                    }
+                } catch (NumberFormatException ignored) {
+                    // Ignore
+                }
+
+                try {
+                    String tmpString = System.getProperty(fallback);
+                    if (tmpString != null) {
+                        return Integer.decode(tmpString);
+                    }
+                } catch (NumberFormatException ignored) {
+                    // Ignore
+                }
+                return null;
+            }
+          });
     }
 
     public static int get() {
@@ -158,6 +242,30 @@ public final class InetAddressCachePolicy {
         return negativeCachePolicy;
     }
 
+    /**
+     * Returns the number of seconds that an expired successful lookup may
+     * be used while it is refreshed, or {@code NEVER} if stale addresses
+     * are not used.
+     */
+    public static int getStale() {
+        return staleCachePolicy;
+    }
+
+    /**
+     * Returns the maximum number of background refreshes in progress at once.
+     */
+    public static int getRefreshThreads() {
+        return refreshThreads;
+    }
+
+    /**
+     * Returns the host names to look up in the background when stale
+     * addresses are used and the cache is first used.
+     */
+    public static String[] getPrewarmHosts() {
+        return prewarmHosts.clone();
+    }
+
     /**
      * Sets the cache policy for successful lookups if the user has not
      * already specified a cache policy for it using a
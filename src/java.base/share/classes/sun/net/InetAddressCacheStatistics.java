@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.net;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics for the InetAddress name lookup cache.
+ */
+public final class InetAddressCacheStatistics {
+
+    private static final LongAdder negativeEntries = new LongAdder();
+    private static final LongAdder negativeHits = new LongAdder();
+    private static final LongAdder staleHits = new LongAdder();
+    private static final LongAdder refreshes = new LongAdder();
+    private static final LongAdder refreshFailures = new LongAdder();
+
+    private InetAddressCacheStatistics() { }
+
+    /**
+     * Records that a failed lookup has been cached.
+     */
+    public static void negativeEntryCached() {
+        negativeEntries.increment();
+    }
+
+    /**
+     * Records that a lookup was answered by a cached failed lookup.
+     */
+    public static void negativeHit() {
+        negativeHits.increment();
+    }
+
+    /**
+     * Records that a lookup was answered with expired addresses.
+     */
+    public static void staleHit() {
+        staleHits.increment();
+    }
+
+    /**
+     * Records the outcome of a background refresh.
+     */
+    public static void refreshed(boolean succeeded) {
+        if (succeeded) {
+            refreshes.increment();
+        } else {
+            refreshFailures.increment();
+        }
+    }
+
+    /**
+     * Returns the number of failed lookups that have been cached.
+     */
+    public static long getNegativeEntryCount() {
+        return negativeEntries.sum();
+    }
+
+    /**
+     * Returns the number of lookups answered by a cached failed lookup.
+     */
+    public static long getNegativeHitCount() {
+        return negativeHits.sum();
+    }
+
+    /**
+     * Returns the number of lookups answered with expired addresses.
+     */
+    public static long getStaleHitCount() {
+        return staleHits.sum();
+    }
+
+    /**
+     * Returns the number of successful background refreshes.
+     */
+    public static long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * Returns the number of failed background refreshes.
+     */
+    public static long getRefreshFailureCount() {
+        return refreshFailures.sum();
+    }
+}
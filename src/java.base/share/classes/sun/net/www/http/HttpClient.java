@@ -94,7 +94,7 @@ public class HttpClient extends NetworkClient {
     protected int port;
 
     /* where we cache currently open, persistent connections */
-    protected static KeepAliveCache kac = new KeepAliveCache();
+    protected static KeepAliveCache kac = KeepAliveCache.getInstance();
 
     private static boolean keepAliveProp = true;
 
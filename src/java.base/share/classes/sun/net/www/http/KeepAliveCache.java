@@ -33,9 +33,11 @@ import java.net.URL;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import jdk.internal.misc.InnocuousThread;
 import sun.security.action.GetIntegerAction;
@@ -45,13 +47,16 @@ import sun.util.logging.PlatformLogger;
 /**
  * A class that implements a cache of idle Http connections for keep-alive
  *
+ * Idle connections are pooled per route (protocol, host, port and socket
+ * factory) in LIFO order, so that the most recently used connection, which
+ * is the least likely to have been closed by the server, is reused first.
+ * The pools are held in a concurrent map and each pool is locked on its own,
+ * so threads using different routes do not contend.
+ *
  * @author Stephen R. Pietrowicz (NCSA)
  * @author Dave Brown
  */
-public class KeepAliveCache
-    extends HashMap<KeepAliveKey, ClientVector>
-    implements Runnable {
-    private static final long serialVersionUID = -2937172892064557949L;
+public class KeepAliveCache implements Runnable {
 
     // Keep alive time set according to priority specified here:
     // 1. If server specifies a time with a Keep-Alive header
@@ -99,9 +104,41 @@ public class KeepAliveCache
         return result;
     }
 
+    /* maximum # idle keep-alive connections across all destinations. This is
+     * unlimited by default and can be set with the system property
+     * "http.maxTotalConnections".
+     */
+    static final int MAX_TOTAL_CONNECTIONS;
+    static {
+        int n = AccessController.doPrivileged(
+            new GetIntegerAction("http.maxTotalConnections", 0)).intValue();
+        MAX_TOTAL_CONNECTIONS = (n <= 0) ? Integer.MAX_VALUE : n;
+    }
+
     static final int LIFETIME = 5000;
 
-    private Thread keepAliveTimer = null;
+    private static final KeepAliveCache INSTANCE = new KeepAliveCache();
+
+    /**
+     * Returns the cache shared by all HttpClients.
+     */
+    public static KeepAliveCache getInstance() {
+        return INSTANCE;
+    }
+
+    private final Map<KeepAliveKey, ClientVector> map = new ConcurrentHashMap<>();
+
+    // number of idle connections in all the ClientVectors
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    // statistics
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    // the timer thread, null when not running
+    private final Object timerLock = new Object();
+    private volatile Thread keepAliveTimer;
 
     /**
      * Constructor
@@ -113,38 +150,13 @@ public class KeepAliveCache
      * @param url  The URL contains info about the host and port
      * @param http The HttpClient to be cached
      */
-    public synchronized void put(final URL url, Object obj, HttpClient http) {
-        boolean startThread = (keepAliveTimer == null);
-        if (!startThread) {
-            if (!keepAliveTimer.isAlive()) {
-                startThread = true;
-            }
-        }
-        if (startThread) {
-            clear();
-            /* Unfortunately, we can't always believe the keep-alive timeout we got
-             * back from the server.  If I'm connected through a Netscape proxy
-             * to a server that sent me a keep-alive
-             * time of 15 sec, the proxy unilaterally terminates my connection
-             * The robustness to get around this is in HttpClient.parseHTTP()
-             */
-            final KeepAliveCache cache = this;
-            AccessController.doPrivileged(new PrivilegedAction<>() {
-                public Void run() {
-                    keepAliveTimer = InnocuousThread.newSystemThread("Keep-Alive-Timer", cache);
-                    keepAliveTimer.setDaemon(true);
-                    keepAliveTimer.setPriority(Thread.MAX_PRIORITY - 2);
-                    keepAliveTimer.start();
-                    return null;
-                }
-            });
-        }
-
+    public void put(final URL url, Object obj, HttpClient http) {
         KeepAliveKey key = new KeepAliveKey(url, obj);
-        ClientVector v = super.get(key);
-
-        if (v == null) {
-            int keepAliveTimeout = http.getKeepAliveTimeout();
+        boolean cached;
+        for (;;) {
+            ClientVector v = map.get(key);
+            if (v == null) {
+                int keepAliveTimeout = http.getKeepAliveTimeout();
                 if (keepAliveTimeout == 0) {
                     keepAliveTimeout = getUserKeepAlive(http.getUsingProxy());
                     if (keepAliveTimeout == -1) {
@@ -163,13 +175,26 @@ public class KeepAliveCache
                 assert keepAliveTimeout >= 0;
                 if (keepAliveTimeout == 0) {
                     http.closeServer();
-                } else {
-                    v = new ClientVector(keepAliveTimeout * 1000);
-                    v.put(http);
-                    super.put(key, v);
+                    return;
                 }
+                ClientVector newVector = new ClientVector(keepAliveTimeout * 1000);
+                v = map.putIfAbsent(key, newVector);
+                if (v == null)
+                    v = newVector;
+            }
+            synchronized (v) {
+                // retry if the timer removed the vector after we looked it up
+                if (v.removed)
+                    continue;
+                cached = v.put(http, this);
+            }
+            break;
+        }
+        if (cached) {
+            startTimerIfNeeded();
         } else {
-            v.put(http);
+            evictionCount.increment();
+            http.closeServer(); // otherwise the connection remains in limbo
         }
     }
 
@@ -179,34 +204,170 @@ public class KeepAliveCache
     }
 
     /* remove an obsolete HttpClient from its VectorCache */
-    public synchronized void remove(HttpClient h, Object obj) {
+    public void remove(HttpClient h, Object obj) {
         KeepAliveKey key = new KeepAliveKey(h.url, obj);
-        ClientVector v = super.get(key);
+        ClientVector v = map.get(key);
         if (v != null) {
-            v.remove(h);
-            if (v.isEmpty()) {
-                removeVector(key);
+            synchronized (v) {
+                if (v.remove(h)) {
+                    idleCount.decrementAndGet();
+                }
+                if (v.isEmpty()) {
+                    removeVector(key, v);
+                }
             }
         }
     }
 
-    /* called by a clientVector thread when all its connections have timed out
-     * and that vector of connections should be removed.
+    /* called with the lock on a ClientVector held when all its connections
+     * have timed out or been removed, and that vector of connections should
+     * be removed.
      */
-    synchronized void removeVector(KeepAliveKey k) {
-        super.remove(k);
+    private void removeVector(KeepAliveKey k, ClientVector v) {
+        assert Thread.holdsLock(v);
+        if (map.remove(k, v)) {
+            v.removed = true;
+        }
     }
 
     /**
      * Check to see if this URL has a cached HttpClient
      */
-    public synchronized HttpClient get(URL url, Object obj) {
+    public HttpClient get(URL url, Object obj) {
         KeepAliveKey key = new KeepAliveKey(url, obj);
-        ClientVector v = super.get(key);
-        if (v == null) { // nothing in cache yet
-            return null;
+        ClientVector v = map.get(key);
+        HttpClient hc = null;
+        if (v != null) { // nothing in cache yet otherwise
+            hc = v.get(this);
+        }
+        if (hc != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
         }
-        return v.get();
+        return hc;
+    }
+
+    /**
+     * Reserves a slot for an idle connection if the total limit allows it.
+     */
+    boolean reserveIdle() {
+        int n;
+        do {
+            n = idleCount.get();
+            if (n >= MAX_TOTAL_CONNECTIONS)
+                return false;
+        } while (!idleCount.compareAndSet(n, n + 1));
+        return true;
+    }
+
+    /**
+     * Called when an idle connection is taken or closed because it expired.
+     */
+    void releaseIdle(boolean expired) {
+        idleCount.decrementAndGet();
+        if (expired)
+            evictionCount.increment();
+    }
+
+    /**
+     * Returns the number of requests satisfied by a cached connection.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns the number of requests that found no cached connection.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns the number of connections closed by the cache, because they
+     * timed out or because the cache was full.
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Returns the number of idle connections in the cache.
+     */
+    public int getIdleConnectionCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Returns the number of routes with idle connections in the cache.
+     */
+    public int getRouteCount() {
+        return map.size();
+    }
+
+    /**
+     * Returns the maximum number of idle connections kept per route.
+     */
+    public int getMaxConnectionsPerRoute() {
+        return getMaxConnections();
+    }
+
+    /**
+     * Returns the maximum number of idle connections kept in total.
+     */
+    public int getMaxTotalConnections() {
+        return MAX_TOTAL_CONNECTIONS;
+    }
+
+    /**
+     * Starts the timer thread if it is not running.
+     */
+    private void startTimerIfNeeded() {
+        if (keepAliveTimer != null)
+            return;
+        synchronized (timerLock) {
+            if (keepAliveTimer == null) {
+                /* Unfortunately, we can't always believe the keep-alive timeout we got
+                 * back from the server.  If I'm connected through a Netscape proxy
+                 * to a server that sent me a keep-alive
+                 * time of 15 sec, the proxy unilaterally terminates my connection
+                 * The robustness to get around this is in HttpClient.parseHTTP()
+                 */
+                final KeepAliveCache cache = this;
+                AccessController.doPrivileged(new PrivilegedAction<>() {
+                    public Void run() {
+                        Thread t = InnocuousThread.newSystemThread("Keep-Alive-Timer", cache);
+                        t.setDaemon(true);
+                        t.setPriority(Thread.MAX_PRIORITY - 2);
+                        keepAliveTimer = t;
+                        t.start();
+                        return null;
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Called by the timer thread when the cache is empty. Returns true if the
+     * thread should terminate, false if connections were cached while it
+     * was stopping.
+     */
+    private boolean stopTimer() {
+        synchronized (timerLock) {
+            keepAliveTimer = null;
+        }
+        // a put that raced with the above may not have started a new timer
+        if (map.isEmpty())
+            return true;
+        synchronized (timerLock) {
+            if (keepAliveTimer == null) {
+                keepAliveTimer = Thread.currentThread();
+                return false;
+            }
+        }
+        return true;
     }
 
     /* Sleeps for an alloted timeout, then checks for timed out connections.
@@ -216,58 +377,44 @@ public class KeepAliveCache
     @Override
     public void run() {
         do {
-            try {
-                Thread.sleep(LIFETIME);
-            } catch (InterruptedException e) {}
+            do {
+                try {
+                    Thread.sleep(LIFETIME);
+                } catch (InterruptedException e) {}
 
-            // Remove all outdated HttpClients.
-            synchronized (this) {
+                // Remove all outdated HttpClients, oldest first
                 long currentTime = System.currentTimeMillis();
-                List<KeepAliveKey> keysToRemove = new ArrayList<>();
-
-                for (KeepAliveKey key : keySet()) {
-                    ClientVector v = get(key);
+                Iterator<Map.Entry<KeepAliveKey, ClientVector>> it
+                    = map.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<KeepAliveKey, ClientVector> entry = it.next();
+                    ClientVector v = entry.getValue();
                     synchronized (v) {
-                        KeepAliveEntry e = v.peek();
+                        KeepAliveEntry e = v.peekLast();
                         while (e != null) {
                             if ((currentTime - e.idleStartTime) > v.nap) {
-                                v.poll();
+                                v.pollLast();
+                                releaseIdle(true);
                                 e.hc.closeServer();
                             } else {
                                 break;
                             }
-                            e = v.peek();
+                            e = v.peekLast();
                         }
 
                         if (v.isEmpty()) {
-                            keysToRemove.add(key);
+                            removeVector(entry.getKey(), v);
                         }
                     }
                 }
-
-                for (KeepAliveKey key : keysToRemove) {
-                    removeVector(key);
-                }
-            }
-        } while (!isEmpty());
-    }
-
-    /*
-     * Do not serialize this class!
-     */
-    private void writeObject(ObjectOutputStream stream) throws IOException {
-        throw new NotSerializableException();
-    }
-
-    private void readObject(ObjectInputStream stream)
-        throws IOException, ClassNotFoundException
-    {
-        throw new NotSerializableException();
+            } while (!map.isEmpty());
+        } while (!stopTimer());
     }
 }
 
-/* FILO order for recycling HttpClients, should run in a thread
- * to time them out.  If > maxConns are in use, block.
+/* LIFO order for recycling HttpClients. The most recently cached client is
+ * at the head and the longest idle at the tail. All access is synchronized
+ * on the ClientVector.
  */
 class ClientVector extends ArrayDeque<KeepAliveEntry> {
     private static final long serialVersionUID = -8680532108106489459L;
@@ -275,11 +422,14 @@ class ClientVector extends ArrayDeque<KeepAliveEntry> {
     // sleep time in milliseconds, before cache clear
     int nap;
 
+    // set when removed from the cache, a put must then use a new ClientVector
+    boolean removed;
+
     ClientVector(int nap) {
         this.nap = nap;
     }
 
-    synchronized HttpClient get() {
+    synchronized HttpClient get(KeepAliveCache cache) {
         if (isEmpty()) {
             return null;
         }
@@ -290,8 +440,10 @@ class ClientVector extends ArrayDeque<KeepAliveEntry> {
         do {
             KeepAliveEntry e = pop();
             if ((currentTime - e.idleStartTime) > nap) {
+                cache.releaseIdle(true);
                 e.hc.closeServer();
             } else {
+                cache.releaseIdle(false);
                 hc = e.hc;
                 if (KeepAliveCache.logger.isLoggable(PlatformLogger.Level.FINEST)) {
                     String msg = "cached HttpClient was idle for "
@@ -303,12 +455,15 @@ class ClientVector extends ArrayDeque<KeepAliveEntry> {
         return hc;
     }
 
-    /* return a still valid, unused HttpClient */
-    synchronized void put(HttpClient h) {
-        if (size() >= KeepAliveCache.getMaxConnections()) {
-            h.closeServer(); // otherwise the connection remains in limbo
+    /* cache a still valid, unused HttpClient, returns false if the per-route
+     * or total limit has been reached
+     */
+    synchronized boolean put(HttpClient h, KeepAliveCache cache) {
+        if (size() >= KeepAliveCache.getMaxConnections() || !cache.reserveIdle()) {
+            return false;
         } else {
             push(new KeepAliveEntry(h, System.currentTimeMillis()));
+            return true;
         }
     }
 
@@ -69,7 +69,7 @@ class DatagramChannelImpl
     implements SelChImpl
 {
     // Used to make native read and write calls
-    private static NativeDispatcher nd = new DatagramDispatcher();
+    private static DatagramDispatcher nd = new DatagramDispatcher();
 
     // The protocol family of the socket
     private final ProtocolFamily family;
@@ -596,6 +596,195 @@ class DatagramChannelImpl
         return written;
     }
 
+    @Override
+    public int receive(ByteBuffer[] dsts, SocketAddress[] sources)
+        throws IOException
+    {
+        if (sources.length < dsts.length)
+            throw new IllegalArgumentException("sources array is too short");
+        for (ByteBuffer dst : dsts) {
+            if (dst.isReadOnly())
+                throw new IllegalArgumentException("Read-only buffer");
+        }
+
+        // datagrams must be checked one at a time when running with a
+        // security manager and not connected
+        if (!nd.batchSupported()
+                || (System.getSecurityManager() != null && !isConnected()))
+            return super.receive(dsts, sources);
+
+        int count = Math.min(dsts.length, DatagramDispatcher.MAX_BATCH);
+        if (count == 0)
+            return 0;
+
+        readLock.lock();
+        try {
+            boolean blocking = isBlocking();
+            int n = 0;
+            long[] addresses = new long[count];
+            int[] lengths = new int[count];
+            ByteBuffer[] shadows = new ByteBuffer[count];
+            try {
+                SocketAddress remote = beginRead(blocking, false);
+                boolean connected = (remote != null);
+
+                // substitute native buffers for heap and empty buffers
+                for (int i = 0; i < count; i++) {
+                    ByteBuffer dst = dsts[i];
+                    int rem = dst.remaining();
+                    if (dst instanceof DirectBuffer && rem > 0) {
+                        addresses[i] = ((DirectBuffer)dst).address() + dst.position();
+                        lengths[i] = rem;
+                    } else {
+                        int newSize = Math.max(rem, 1);
+                        ByteBuffer bb = Util.getTemporaryDirectBuffer(newSize);
+                        shadows[i] = bb;
+                        addresses[i] = ((DirectBuffer)bb).address();
+                        lengths[i] = newSize;
+                    }
+                }
+
+                do {
+                    n = nd.receiveBatch(fd, addresses, lengths, sources, count,
+                                        connected);
+                } while ((n == IOStatus.INTERRUPTED) && isOpen());
+                if (n == IOStatus.UNAVAILABLE)
+                    return 0;
+
+                // lengths[i] is the number of bytes received into buffer i
+                for (int i = 0; i < n; i++) {
+                    ByteBuffer dst = dsts[i];
+                    ByteBuffer bb = shadows[i];
+                    int len = Math.min(lengths[i], dst.remaining());
+                    if (bb == null) {
+                        dst.position(dst.position() + len);
+                    } else if (len > 0) {
+                        bb.limit(len);
+                        dst.put(bb);
+                    }
+                }
+                return n;
+            } finally {
+                for (ByteBuffer bb : shadows) {
+                    if (bb != null)
+                        Util.releaseTemporaryDirectBuffer(bb);
+                }
+                endRead(blocking, n > 0);
+                assert IOStatus.check(n);
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int send(ByteBuffer[] srcs, SocketAddress[] targets)
+        throws IOException
+    {
+        if (targets.length < srcs.length)
+            throw new IllegalArgumentException("targets array is too short");
+        if (!nd.batchSupported())
+            return super.send(srcs, targets);
+
+        int count = Math.min(srcs.length, DatagramDispatcher.MAX_BATCH);
+        if (count == 0)
+            return 0;
+        InetSocketAddress[] isas = new InetSocketAddress[count];
+        for (int i = 0; i < count; i++) {
+            Objects.requireNonNull(srcs[i]);
+            isas[i] = Net.checkAddress(targets[i], family);
+        }
+
+        writeLock.lock();
+        try {
+            boolean blocking = isBlocking();
+            int n = 0;
+            long[] addresses = new long[count];
+            int[] lengths = new int[count];
+            InetAddress[] ias = null;
+            int[] ports = null;
+            ByteBuffer[] shadows = new ByteBuffer[count];
+            try {
+                SocketAddress remote = beginWrite(blocking, false);
+                if (remote != null) {
+                    // connected, datagrams are sent to the peer
+                    for (int i = 0; i < count; i++) {
+                        if (!targets[i].equals(remote))
+                            throw new AlreadyConnectedException();
+                    }
+                } else {
+                    // not connected
+                    ias = new InetAddress[count];
+                    ports = new int[count];
+                    SecurityManager sm = System.getSecurityManager();
+                    for (int i = 0; i < count; i++) {
+                        InetSocketAddress isa = isas[i];
+                        InetAddress ia = isa.getAddress();
+                        if (sm != null) {
+                            if (ia.isMulticastAddress()) {
+                                sm.checkMulticast(ia);
+                            } else {
+                                sm.checkConnect(ia.getHostAddress(), isa.getPort());
+                            }
+                        }
+                        if (ia.isLinkLocalAddress())
+                            isa = IPAddressUtil.toScopedAddress(isa);
+                        ias[i] = isa.getAddress();
+                        ports[i] = isa.getPort();
+                    }
+                }
+
+                // substitute native buffers for heap buffers. As with send,
+                // no more than MAX_PACKET_LEN bytes are sent from a buffer
+                for (int i = 0; i < count; i++) {
+                    ByteBuffer src = srcs[i];
+                    int pos = src.position();
+                    int len = Math.min(src.remaining(), DatagramDispatcher.MAX_PACKET_LEN);
+                    if (src instanceof DirectBuffer) {
+                        addresses[i] = ((DirectBuffer)src).address() + pos;
+                    } else {
+                        ByteBuffer bb = Util.getTemporaryDirectBuffer(len);
+                        bb.put(src.duplicate().limit(pos + len));
+                        shadows[i] = bb;
+                        addresses[i] = ((DirectBuffer)bb).address();
+                    }
+                    lengths[i] = len;
+                }
+
+                boolean preferIPv6 = (family != StandardProtocolFamily.INET);
+                try {
+                    do {
+                        n = nd.sendBatch(fd, preferIPv6, addresses, lengths,
+                                         ias, ports, count);
+                    } while ((n == IOStatus.INTERRUPTED) && isOpen());
+                } catch (PortUnreachableException pue) {
+                    if (remote != null)
+                        throw pue;
+                    // the first datagram is considered sent
+                    n = 1;
+                }
+                if (n == IOStatus.UNAVAILABLE)
+                    return 0;
+
+                // lengths[i] is the number of bytes sent from buffer i
+                for (int i = 0; i < n; i++) {
+                    ByteBuffer src = srcs[i];
+                    src.position(src.position() + lengths[i]);
+                }
+                return n;
+            } finally {
+                for (ByteBuffer bb : shadows) {
+                    if (bb != null)
+                        Util.releaseTemporaryDirectBuffer(bb);
+                }
+                endWrite(blocking, n > 0);
+                assert IOStatus.check(n);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
     @Override
     public int read(ByteBuffer buf) throws IOException {
         Objects.requireNonNull(buf);
@@ -482,6 +482,59 @@ public class FileChannelImpl
     //
     private static volatile boolean fileSupported = true;
 
+    // Assume that the underlying kernel can copy between files without
+    // transferring the data to user space; set this to false if we find out
+    // later that it doesn't
+    //
+    private static volatile boolean fileCopySupported = true;
+
+    /**
+     * Copies bytes between two files in the kernel, without transferring the
+     * data to user space. On file systems that support it the copy may be
+     * done by the server or by sharing the data blocks of the source file.
+     * A negative position means that the file position is used and updated.
+     *
+     * @return  the number of bytes copied, or IOStatus.UNSUPPORTED_CASE or
+     *          IOStatus.UNSUPPORTED if the files cannot be copied this way.
+     *          Files on some file systems, such as procfs, report a size of
+     *          zero and copy nothing, so callers treat a zero result before
+     *          any bytes are copied as unsupported.
+     */
+    private long transferBetweenFiles(FileChannelImpl src, long srcPosition,
+                                      long count,
+                                      FileChannelImpl dst, long dstPosition)
+        throws IOException
+    {
+        if (!fileCopySupported)
+            return IOStatus.UNSUPPORTED;
+        if (IOUtil.fdVal(src.fd) == IOUtil.fdVal(dst.fd))
+            return IOStatus.UNSUPPORTED_CASE;
+
+        long n = -1;
+        int ti = -1;
+        try {
+            beginBlocking();
+            ti = threads.add();
+            if (!isOpen())
+                return -1;
+            do {
+                n = transferBetweenFiles0(src.fd, srcPosition, count,
+                                          dst.fd, dstPosition);
+            } while ((n == IOStatus.INTERRUPTED) && isOpen());
+            if (n == IOStatus.UNSUPPORTED) {
+                // Don't bother trying again
+                fileCopySupported = false;
+                return IOStatus.UNSUPPORTED;
+            }
+            if (n == IOStatus.UNSUPPORTED_CASE)
+                return IOStatus.UNSUPPORTED_CASE;
+            return IOStatus.normalize(n);
+        } finally {
+            threads.remove(ti);
+            end (n > -1);
+        }
+    }
+
     private long transferToDirectlyInternal(long position, int icount,
                                             WritableByteChannel target,
                                             FileDescriptor targetFD)
@@ -674,6 +727,13 @@ public class FileChannelImpl
 
         long n;
 
+        // Attempt a copy between files, if the kernel supports it. The
+        // position of the target file is updated by the kernel.
+        if ((target instanceof FileChannelImpl) &&
+            (n = transferBetweenFiles(this, position, icount,
+                                      (FileChannelImpl)target, -1L)) > 0)
+            return n;
+
         // Attempt a direct transfer, if the kernel supports it
         if ((n = transferToDirectly(position, icount, target)) >= 0)
             return n;
@@ -698,7 +758,21 @@ public class FileChannelImpl
 
             long remaining = max;
             long p = pos;
+
+            // Attempt a copy between files, if the kernel supports it
+            boolean copied = false;
             while (remaining > 0L) {
+                long n = transferBetweenFiles(src, p, remaining, this, position);
+                if (n <= 0L)
+                    break;
+                copied = true;
+                p += n;
+                position += n;
+                remaining -= n;
+            }
+
+            // Use a mapped buffer if the copy is not supported
+            while (!copied && remaining > 0L) {
                 long size = Math.min(remaining, MAPPED_TRANSFER_SIZE);
                 // ## Bug: Closing this channel will not terminate the write
                 MappedByteBuffer bb = src.map(MapMode.READ_ONLY, p, size);
@@ -876,6 +950,10 @@ public class FileChannelImpl
         private final int cap;
         private final FileDescriptor fd;
 
+        // true if the mapping was released before the buffer was unreachable;
+        // guarded by this
+        private boolean released;
+
         private Unmapper(long address, long size, int cap,
                          FileDescriptor fd)
         {
@@ -893,11 +971,36 @@ public class FileChannelImpl
         }
 
         public void run() {
-            if (address == 0)
-                return;
-            unmap0(address, size);
-            address = 0;
+            boolean wasReleased;
+            synchronized (this) {
+                if (address == 0)
+                    return;
+                unmap0(address, size);
+                address = 0;
+                wasReleased = released;
+            }
+            if (!wasReleased)
+                releaseResources();
+        }
+
+        /**
+         * Releases the file mapping while the buffer may still be reachable.
+         * The mapping is replaced with anonymous memory so that the address
+         * range cannot be reused, by another mapping for example, until the
+         * buffer is unreachable and the range is unmapped by run.
+         */
+        void release() throws IOException {
+            synchronized (this) {
+                if (address == 0 || released)
+                    return;
+                if (remap0(address, size) == IOStatus.UNSUPPORTED)
+                    throw new UnsupportedOperationException();
+                released = true;
+            }
+            releaseResources();
+        }
 
+        private void releaseResources() {
             // if this mapping has a valid file descriptor then we close it
             if (fd.valid()) {
                 try {
@@ -915,6 +1018,14 @@ public class FileChannelImpl
         }
     }
 
+    /**
+     * Invoked by MappedByteBuffer.releaseFileBacking to release the file
+     * backing of the mapping of a mapped byte buffer.
+     */
+    public static void release(Runnable unmapper) throws IOException {
+        ((Unmapper)unmapper).release();
+    }
+
     private static void unmap(MappedByteBuffer bb) {
         Cleaner cl = ((DirectBuffer)bb).cleaner();
         if (cl != null)
@@ -1201,10 +1312,25 @@ public class FileChannelImpl
     // Removes an existing mapping
     private static native int unmap0(long address, long length);
 
+    // Replaces a mapping with anonymous memory, returns IOStatus.UNSUPPORTED
+    // if not supported
+    private static native int remap0(long address, long length)
+        throws IOException;
+
     // Transfers from src to dst, or returns -2 if kernel can't do that
     private native long transferTo0(FileDescriptor src, long position,
                                     long count, FileDescriptor dst);
 
+    // Copies between two files without transferring the data to user space,
+    // or returns -2 if the kernel can't do that for these files and -4 if
+    // the kernel can't do that at all. A negative position means that the
+    // file position is used and updated.
+    private static native long transferBetweenFiles0(FileDescriptor src,
+                                                     long srcPosition,
+                                                     long count,
+                                                     FileDescriptor dst,
+                                                     long dstPosition);
+
     // Caches fieldIDs
     private static native long initIDs();
 
@@ -66,6 +66,12 @@ public final class IOStatus {
         return (n >= UNAVAILABLE);
     }
 
+    // Return true if the operation can be retried, i.e. n is UNAVAILABLE
+    // or INTERRUPTED
+    public static boolean okayToRetry(long n) {
+        return (n == UNAVAILABLE) || (n == INTERRUPTED);
+    }
+
     public static long normalize(long n) {
         if (n == UNAVAILABLE)
             return 0;
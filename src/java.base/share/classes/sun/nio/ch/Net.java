@@ -531,6 +531,11 @@ public class Net {
     static native int poll(FileDescriptor fd, int events, long timeout)
         throws IOException;
 
+    /**
+     * Returns the number of bytes in the socket input buffer.
+     */
+    static native int available(FileDescriptor fd) throws IOException;
+
     // -- Multicast support --
 
 
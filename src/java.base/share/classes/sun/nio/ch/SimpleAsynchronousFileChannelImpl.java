@@ -42,7 +42,7 @@ public class SimpleAsynchronousFileChannelImpl
     extends AsynchronousFileChannelImpl
 {
     // lazy initialization of default thread pool for file I/O
-    private static class DefaultExecutorHolder {
+    static class DefaultExecutorHolder {
         static final ExecutorService defaultExecutor =
             ThreadPool.createDefault().executor();
     }
@@ -98,10 +98,20 @@ public class SimpleAsynchronousFileChannelImpl
             closeLock.writeLock().unlock();
         }
 
+        // wait for I/O operations that complete without a pooled thread
+        awaitPendingOperations();
+
         // close file
         nd.close(fdObj);
     }
 
+    /**
+     * Invoked by close, after the channel is closed, to wait for I/O
+     * operations that were initiated but do not execute on a thread in the
+     * thread pool. The default implementation does nothing.
+     */
+    void awaitPendingOperations() { }
+
     @Override
     public long size() throws IOException {
         int ti = threads.add();
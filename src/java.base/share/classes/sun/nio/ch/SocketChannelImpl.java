@@ -46,27 +46,34 @@ import java.nio.channels.NotYetConnectedException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.SelectorProvider;
+import java.security.AccessController;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 import sun.net.NetHooks;
 import sun.net.ext.ExtendedSocketOptions;
 import sun.net.util.SocketExceptions;
+import sun.security.action.GetIntegerAction;
 import static sun.net.ext.ExtendedSocketOptions.SOCK_STREAM;
 
 /**
  * An implementation of SocketChannels
  */
 
-class SocketChannelImpl
+public class SocketChannelImpl
     extends SocketChannel
     implements SelChImpl
 {
     // Used to make native read and write calls
-    private static NativeDispatcher nd;
+    private static SocketDispatcher nd;
+
+    // Requested capacity of the pipe used to splice bytes between sockets
+    private static final int SPLICE_PIPE_SIZE = AccessController
+        .doPrivileged(new GetIntegerAction("sun.nio.ch.splicePipeSize", 256 * 1024));
 
     // Our file descriptor object
     private final FileDescriptor fd;
@@ -113,6 +120,27 @@ class SocketChannelImpl
 
     // -- End of fields protected by stateLock
 
+    // -- The following fields are protected by readLock
+
+    // pipe used by transferTo to splice bytes from this socket, null if not
+    // created. Bytes spliced from the socket that have not been written to
+    // the target remain in the pipe and are read before the socket.
+    private FileDescriptor spliceReadFD;
+    private int spliceWriteFD;
+    private int spliceCapacity;
+    private int spliceRemaining;
+
+    // -- The following fields are protected by writeLock
+
+    // MSG_ZEROCOPY: 0 if not used, 1 if enabled, -1 if not supported
+    private int zeroCopyState;
+    private long zeroCopySent;
+    private long zeroCopyCompleted;
+    private final int[] zeroCopyRange = new int[2];
+
+    // sends that have completed out of order, start to end (exclusive)
+    private TreeMap<Long, Long> zeroCopyCompletions;
+
 
     // Constructor for normal connecting sockets
     //
@@ -348,6 +376,14 @@ class SocketChannelImpl
                 if (isInputClosed)
                     return IOStatus.EOF;
 
+                // read bytes left in the pipe by transferTo
+                if (spliceRemaining > 0) {
+                    n = IOUtil.read(spliceReadFD, buf, -1, nd);
+                    if (n > 0)
+                        spliceRemaining -= n;
+                    return IOStatus.normalize(n);
+                }
+
                 if (blocking) {
                     do {
                         n = IOUtil.read(fd, buf, -1, nd);
@@ -384,6 +420,14 @@ class SocketChannelImpl
                 if (isInputClosed)
                     return IOStatus.EOF;
 
+                // read bytes left in the pipe by transferTo
+                if (spliceRemaining > 0) {
+                    n = IOUtil.read(spliceReadFD, dsts, offset, length, nd);
+                    if (n > 0)
+                        spliceRemaining -= (int) n;
+                    return IOStatus.normalize(n);
+                }
+
                 if (blocking) {
                     do {
                         n = IOUtil.read(fd, dsts, offset, length, nd);
@@ -503,6 +547,249 @@ class SocketChannelImpl
         }
     }
 
+    /**
+     * Transfers up to {@code count} bytes from this channel's socket to the
+     * target channel's socket. The bytes are spliced through a pipe so that
+     * they are not copied to user space.
+     *
+     * At most one pipe-full of bytes is transferred by each invocation. If
+     * the target cannot accept all bytes spliced from this socket, because
+     * the target is in non-blocking mode, then the remaining bytes stay in
+     * the pipe. They are written to the target by the next invocation of this
+     * method, or returned by the next read from this channel. A selector does
+     * not report this channel as ready for reading because of bytes remaining
+     * in the pipe.
+     *
+     * @return  the number of bytes written to the target, possibly zero, or
+     *          -1 if this channel has reached end-of-stream
+     *
+     * @throws  UnsupportedOperationException if splice is not supported
+     */
+    public long transferTo(SocketChannelImpl target, long count)
+        throws IOException
+    {
+        Objects.requireNonNull(target);
+        if (count < 0)
+            throw new IllegalArgumentException("Negative count");
+        if (target == this)
+            throw new IllegalArgumentException("Source and target are the same channel");
+        if (!nd.spliceSupported())
+            throw new UnsupportedOperationException();
+
+        readLock.lock();
+        try {
+            ensureOpenAndConnected();
+            target.ensureOpenAndConnected();
+            if (count == 0)
+                return 0;
+
+            if (spliceReadFD == null) {
+                int[] capacity = new int[1];
+                long fds = nd.makeSplicePipe(SPLICE_PIPE_SIZE, capacity);
+                spliceReadFD = IOUtil.newFD((int) (fds >>> 32));
+                spliceWriteFD = (int) fds;
+                spliceCapacity = capacity[0];
+            }
+
+            // splice from the socket if the pipe is empty
+            if (spliceRemaining == 0) {
+                int n = spliceFromSocket((int) Math.min(count, spliceCapacity));
+                if (n <= 0)
+                    return n;
+                spliceRemaining = n;
+            }
+
+            // splice from the pipe to the target
+            target.writeLock.lock();
+            try {
+                int len = (int) Math.min(count, spliceRemaining);
+                int n = target.spliceToSocket(IOUtil.fdVal(spliceReadFD), len);
+                if (n > 0)
+                    spliceRemaining -= n;
+                return n;
+            } finally {
+                target.writeLock.unlock();
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Transfers up to {@code count} bytes from the source channel's socket to
+     * this channel's socket.
+     *
+     * @see #transferTo
+     */
+    public long transferFrom(SocketChannelImpl source, long count)
+        throws IOException
+    {
+        Objects.requireNonNull(source);
+        return source.transferTo(this, count);
+    }
+
+    /**
+     * Splices up to {@code len} bytes from this socket to the pipe.
+     */
+    private int spliceFromSocket(int len) throws IOException {
+        assert readLock.isHeldByCurrentThread();
+        boolean blocking = isBlocking();
+        int n = 0;
+        try {
+            beginRead(blocking);
+
+            // check if input is shutdown
+            if (isInputClosed)
+                return IOStatus.EOF;
+
+            if (blocking) {
+                do {
+                    n = nd.splice(fdVal, spliceWriteFD, len);
+                } while (n == IOStatus.INTERRUPTED && isOpen());
+            } else {
+                n = nd.splice(fdVal, spliceWriteFD, len);
+            }
+        } finally {
+            endRead(blocking, n > 0);
+            if (n <= 0 && isInputClosed)
+                return IOStatus.EOF;
+        }
+        return IOStatus.normalize(n);
+    }
+
+    /**
+     * Splices up to {@code len} bytes from the given pipe to this socket.
+     */
+    private int spliceToSocket(int pipeFD, int len) throws IOException {
+        assert writeLock.isHeldByCurrentThread();
+        boolean blocking = isBlocking();
+        int n = 0;
+        try {
+            beginWrite(blocking);
+            if (blocking) {
+                do {
+                    n = nd.splice(pipeFD, fdVal, len);
+                } while (n == IOStatus.INTERRUPTED && isOpen());
+            } else {
+                n = nd.splice(pipeFD, fdVal, len);
+            }
+        } finally {
+            endWrite(blocking, n > 0);
+            if (n <= 0 && isOutputClosed)
+                throw new AsynchronousCloseException();
+        }
+        return IOStatus.normalize(n);
+    }
+
+    /**
+     * Writes bytes from a direct buffer with MSG_ZEROCOPY so that the kernel
+     * sends them from the buffer without copying. The bytes in the buffer
+     * must not be modified until {@link #zeroCopyCompleted} reports that the
+     * send has completed. Each invocation that writes at least one byte is a
+     * send, sends are numbered from 0.
+     *
+     * If MSG_ZEROCOPY is not supported then the bytes are written normally
+     * and the send completes immediately.
+     *
+     * @return  the number of bytes written, possibly zero
+     */
+    public int writeZeroCopy(ByteBuffer buf) throws IOException {
+        Objects.requireNonNull(buf);
+        if (!(buf instanceof DirectBuffer))
+            throw new IllegalArgumentException("Not a direct buffer");
+
+        writeLock.lock();
+        try {
+            ensureOpenAndConnected();
+            if (zeroCopyState == 0)
+                zeroCopyState = nd.enableZeroCopy(fd) ? 1 : -1;
+            if (zeroCopyState < 0) {
+                int n = write(buf);
+                if (n > 0)
+                    zeroCopyCompleted = ++zeroCopySent;
+                return n;
+            }
+
+            int pos = buf.position();
+            int lim = buf.limit();
+            int rem = (pos <= lim ? lim - pos : 0);
+            if (rem == 0)
+                return 0;
+            long address = ((DirectBuffer) buf).address() + pos;
+
+            boolean blocking = isBlocking();
+            int n = 0;
+            try {
+                beginWrite(blocking);
+                if (blocking) {
+                    do {
+                        n = nd.sendZeroCopy(fd, address, rem);
+                    } while (n == IOStatus.INTERRUPTED && isOpen());
+                } else {
+                    n = nd.sendZeroCopy(fd, address, rem);
+                }
+                if (n > 0) {
+                    buf.position(pos + n);
+                    zeroCopySent++;
+                }
+            } finally {
+                endWrite(blocking, n > 0);
+                if (n <= 0 && isOutputClosed)
+                    throw new AsynchronousCloseException();
+            }
+            return IOStatus.normalize(n);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the notifications of completed MSG_ZEROCOPY sends and returns
+     * the number of sends, counting from the first, that have completed.
+     * The buffers of these sends may be reused.
+     *
+     * The socket is reported by a selector as ready while notifications
+     * are queued, so this method should be invoked when the channel is
+     * selected.
+     */
+    public long zeroCopyCompleted() throws IOException {
+        writeLock.lock();
+        try {
+            ensureOpen();
+            if (zeroCopyState > 0) {
+                int n;
+                while ((n = nd.reapZeroCopy(fd, zeroCopyRange)) != IOStatus.UNAVAILABLE) {
+                    if (n > 0) {
+                        // sequence numbers are 32-bit and wrap
+                        long base = zeroCopyCompleted;
+                        long start = base + ((zeroCopyRange[0] - (int) base) & 0xFFFFFFFFL);
+                        long end = base + ((zeroCopyRange[1] - (int) base) & 0xFFFFFFFFL) + 1;
+                        zeroCopyRangeCompleted(start, end);
+                    }
+                }
+            }
+            return zeroCopyCompleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void zeroCopyRangeCompleted(long start, long end) {
+        if (start == zeroCopyCompleted) {
+            zeroCopyCompleted = end;
+            if (zeroCopyCompletions != null) {
+                Long next;
+                while ((next = zeroCopyCompletions.remove(zeroCopyCompleted)) != null) {
+                    zeroCopyCompleted = next;
+                }
+            }
+        } else {
+            if (zeroCopyCompletions == null)
+                zeroCopyCompletions = new TreeMap<>();
+            zeroCopyCompletions.put(start, end);
+        }
+    }
+
     /**
      * Writes a byte of out of band data.
      */
@@ -902,7 +1189,15 @@ class SocketChannelImpl
         synchronized (stateLock) {
             if (state == ST_KILLPENDING) {
                 state = ST_KILLED;
-                nd.close(fd);
+                try {
+                    nd.close(fd);
+                } finally {
+                    if (spliceReadFD != null) {
+                        long fds = ((long) IOUtil.fdVal(spliceReadFD) << 32)
+                                   | (spliceWriteFD & 0xFFFFFFFFL);
+                        nd.closeSplicePipe(fds);
+                    }
+                }
             }
         }
     }
@@ -959,6 +1254,10 @@ class SocketChannelImpl
 
         readLock.lock();
         try {
+            // bytes left in the pipe by transferTo can be read
+            if (spliceRemaining > 0)
+                return true;
+
             boolean polled = false;
             try {
                 beginRead(blocking);
@@ -1115,10 +1414,10 @@ class SocketChannelImpl
 
     // -- Native methods --
 
-    private static native int checkConnect(FileDescriptor fd, boolean block)
+    static native int checkConnect(FileDescriptor fd, boolean block)
         throws IOException;
 
-    private static native int sendOutOfBandData(FileDescriptor fd, byte data)
+    static native int sendOutOfBandData(FileDescriptor fd, byte data)
         throws IOException;
 
     static {
@@ -33,39 +33,98 @@ import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import jdk.internal.misc.InnocuousThread;
+import jdk.internal.misc.JavaNioAccess;
 import jdk.internal.misc.TerminatingThreadLocal;
 import jdk.internal.misc.Unsafe;
+import jdk.internal.misc.VM;
+import jdk.internal.perf.PerfCounter;
+import jdk.internal.ref.Cleaner;
 import sun.security.action.GetPropertyAction;
 
 public class Util {
 
-    // -- Caches --
+    // -- Temporary direct buffer pool --
 
-    // The number of temp buffers in our pool
-    private static final int TEMP_BUF_POOL_SIZE = IOUtil.IOV_MAX;
+    // Temporary direct buffers are pooled in size classes that are powers of
+    // two, from MIN_CLASS_SIZE up to the largest power of two that does not
+    // exceed the max cached buffer size. Each thread has a magazine of a few
+    // buffers per size class so that most requests are satisfied without
+    // synchronization. When a magazine is full, or empty, buffers are moved
+    // to, or taken from, a shared depot. The memory allocated for pooled
+    // buffers is limited. Buffers that have been idle in the depot for an
+    // idle period are freed by a background thread.
 
     // The max size allowed for a cached temp buffer, in bytes
     private static final long MAX_CACHED_BUFFER_SIZE = getMaxCachedBufferSize();
 
-    // Per-thread cache of temporary direct buffers
-    private static ThreadLocal<BufferCache> bufferCache = new TerminatingThreadLocal<>() {
+    // The max memory for pooled temp buffers, in bytes
+    private static final long MAX_CACHED_BUFFER_MEMORY = getMaxCachedBufferMemory();
+
+    // The time after which idle buffers are freed, in milliseconds
+    private static final long IDLE_TIMEOUT = getLongProperty(
+            "jdk.nio.cachedBufferIdleTimeout", 30_000L);
+
+    // The size classes
+    private static final int MIN_CLASS_SHIFT = 12;
+    private static final int MIN_CLASS_SIZE = 1 << MIN_CLASS_SHIFT;
+    private static final int MAX_CLASS_SHIFT = 24;
+    private static final int NUM_CLASSES;
+    private static final int MAX_CLASS_SIZE;
+    static {
+        long max = Math.min(MAX_CACHED_BUFFER_SIZE, 1L << MAX_CLASS_SHIFT);
+        if (max < MIN_CLASS_SIZE || MAX_CACHED_BUFFER_MEMORY < MIN_CLASS_SIZE) {
+            NUM_CLASSES = 0;
+            MAX_CLASS_SIZE = -1;    // pooling disabled
+        } else {
+            int shift = 63 - Long.numberOfLeadingZeros(max);
+            NUM_CLASSES = shift - MIN_CLASS_SHIFT + 1;
+            MAX_CLASS_SIZE = 1 << shift;
+        }
+    }
+
+    // The max number of buffers per size class, and the max memory, in a
+    // thread's magazine
+    private static final int MAGAZINE_ROUNDS = 8;
+    private static final long MAGAZINE_MEMORY = 1024 * 1024;
+
+    // The memory allocated for pooled buffers, whether in use or idle, and
+    // the number of buffers
+    private static final AtomicLong footprint = new AtomicLong();
+    private static final AtomicLong pooledCount = new AtomicLong();
+
+    // Per-thread magazine of temporary direct buffers
+    private static ThreadLocal<Magazine> magazines = new TerminatingThreadLocal<>() {
         @Override
-        protected BufferCache initialValue() {
-            return new BufferCache();
+        protected Magazine initialValue() {
+            return new Magazine();
         }
         @Override
-        protected void threadTerminated(BufferCache cache) { // will never be null
-            while (!cache.isEmpty()) {
-                ByteBuffer bb = cache.removeFirst();
-                free(bb);
-            }
+        protected void threadTerminated(Magazine magazine) { // will never be null
+            magazine.flush();
         }
     };
 
+    // Shared depot of temporary direct buffers, one per size class
+    private static final Depot[] depots = new Depot[NUM_CLASSES];
+    static {
+        for (int i = 0; i < NUM_CLASSES; i++) {
+            depots[i] = new Depot();
+        }
+    }
+
+    // true when the thread that frees idle buffers has been started
+    private static final AtomicBoolean evictorStarted = new AtomicBoolean();
+
     /**
      * Returns the max size allowed for a cached temp buffers, in
      * bytes. It defaults to Long.MAX_VALUE. It can be set with the
@@ -74,8 +133,21 @@ public class Util {
      * for potential future-proofing.
      */
     private static long getMaxCachedBufferSize() {
-        String s = GetPropertyAction
-                .privilegedGetProperty("jdk.nio.maxCachedBufferSize");
+        return getLongProperty("jdk.nio.maxCachedBufferSize", Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the max memory allowed for cached temp buffers, in bytes. It
+     * defaults to a quarter of the max direct memory, up to 256MB. It can be
+     * set with the jdk.nio.maxCachedBufferMemory property.
+     */
+    private static long getMaxCachedBufferMemory() {
+        long def = Math.min(VM.maxDirectMemory() / 4, 256L * 1024 * 1024);
+        return getLongProperty("jdk.nio.maxCachedBufferMemory", def);
+    }
+
+    private static long getLongProperty(String name, long def) {
+        String s = GetPropertyAction.privilegedGetProperty(name);
         if (s != null) {
             try {
                 long m = Long.parseLong(s);
@@ -88,159 +160,272 @@ public class Util {
                 // if the string is not well formed, ignore the system property
             }
         }
-        return Long.MAX_VALUE;
+        return def;
     }
 
     /**
-     * Returns true if a buffer of this size is too large to be
-     * added to the buffer cache, false otherwise.
+     * Returns the size class for a buffer of the given size, or -1 if
+     * buffers of this size are not pooled.
      */
-    private static boolean isBufferTooLarge(int size) {
-        return size > MAX_CACHED_BUFFER_SIZE;
+    private static int sizeClass(int size) {
+        if (size > MAX_CLASS_SIZE)
+            return -1;
+        if (size <= MIN_CLASS_SIZE)
+            return 0;
+        return (32 - Integer.numberOfLeadingZeros(size - 1)) - MIN_CLASS_SHIFT;
     }
 
     /**
-     * Returns true if the buffer is too large to be added to the
-     * buffer cache, false otherwise.
+     * Returns the size class of a buffer allocated by the pool, or -1 if
+     * the buffer was not allocated by the pool. Buffers that are not pooled
+     * are slices, without a cleaner, when their capacity is a class size.
      */
-    private static boolean isBufferTooLarge(ByteBuffer buf) {
-        return isBufferTooLarge(buf.capacity());
+    private static int pooledClass(ByteBuffer buf) {
+        int cap = buf.capacity();
+        if (cap < MIN_CLASS_SIZE || cap > MAX_CLASS_SIZE || (cap & (cap - 1)) != 0)
+            return -1;
+        if (((DirectBuffer)buf).cleaner() == null)
+            return -1;
+        return Integer.numberOfTrailingZeros(cap) - MIN_CLASS_SHIFT;
     }
 
     /**
-     * A simple cache of direct buffers.
+     * A thread's magazine of buffers. It is only accessed by its thread.
      */
-    private static class BufferCache {
-        // the array of buffers
-        private ByteBuffer[] buffers;
-
-        // the number of buffers in the cache
-        private int count;
+    private static class Magazine {
+        private final ByteBuffer[][] rounds = new ByteBuffer[NUM_CLASSES][];
+        private final int[] counts = new int[NUM_CLASSES];
+        private long memory;
 
-        // the index of the first valid buffer (undefined if count == 0)
-        private int start;
+        // hits and misses not yet added to the perf counters
+        private int hits;
+        private int misses;
 
-        private int next(int i) {
-            return (i + 1) % TEMP_BUF_POOL_SIZE;
+        /**
+         * Removes and returns a buffer of the given size class, or null if
+         * the magazine and the depot are empty.
+         */
+        ByteBuffer get(int c) {
+            ByteBuffer buf;
+            int n = counts[c];
+            if (n > 0) {
+                n--;
+                buf = rounds[c][n];
+                rounds[c][n] = null;
+                counts[c] = n;
+                memory -= buf.capacity();
+            } else {
+                buf = depots[c].poll();
+            }
+            if (buf != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+            if (hits + misses >= 256)
+                publishCounters();
+            return buf;
         }
 
-        BufferCache() {
-            buffers = new ByteBuffer[TEMP_BUF_POOL_SIZE];
+        /**
+         * Adds a buffer of the given size class to the magazine, or to the
+         * depot if the magazine is full.
+         */
+        void put(int c, ByteBuffer buf) {
+            int cap = buf.capacity();
+            int n = counts[c];
+            if (n < MAGAZINE_ROUNDS && memory + cap <= MAGAZINE_MEMORY) {
+                ByteBuffer[] bufs = rounds[c];
+                if (bufs == null)
+                    rounds[c] = bufs = new ByteBuffer[MAGAZINE_ROUNDS];
+                bufs[n] = buf;
+                counts[c] = n + 1;
+                memory += cap;
+            } else {
+                depots[c].push(buf);
+            }
         }
 
         /**
-         * Removes and returns a buffer from the cache of at least the given
-         * size (or null if no suitable buffer is found).
+         * Moves all buffers to the depot.
          */
-        ByteBuffer get(int size) {
-            // Don't call this if the buffer would be too large.
-            assert !isBufferTooLarge(size);
-
-            if (count == 0)
-                return null;  // cache is empty
-
-            ByteBuffer[] buffers = this.buffers;
-
-            // search for suitable buffer (often the first buffer will do)
-            ByteBuffer buf = buffers[start];
-            if (buf.capacity() < size) {
-                buf = null;
-                int i = start;
-                while ((i = next(i)) != start) {
-                    ByteBuffer bb = buffers[i];
-                    if (bb == null)
-                        break;
-                    if (bb.capacity() >= size) {
-                        buf = bb;
-                        break;
-                    }
+        void flush() {
+            for (int c = 0; c < NUM_CLASSES; c++) {
+                for (int i = 0; i < counts[c]; i++) {
+                    depots[c].push(rounds[c][i]);
+                    rounds[c][i] = null;
                 }
-                if (buf == null)
-                    return null;
-                // move first element to here to avoid re-packing
-                buffers[i] = buffers[start];
+                counts[c] = 0;
             }
+            memory = 0;
+            publishCounters();
+        }
+
+        private void publishCounters() {
+            if (hits > 0)
+                Counters.hits.add(hits);
+            if (misses > 0)
+                Counters.misses.add(misses);
+            hits = misses = 0;
+        }
+    }
 
-            // remove first element
-            buffers[start] = null;
-            start = next(start);
-            count--;
+    /**
+     * A stack of buffers of one size class, shared by all threads.
+     */
+    private static class Depot {
+        private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
 
-            // prepare the buffer and return it
-            buf.rewind();
-            buf.limit(size);
+        // the minimum number of buffers in the depot since the last time
+        // that idle buffers were freed; these buffers have not been used
+        private int minCount;
+
+        synchronized ByteBuffer poll() {
+            ByteBuffer buf = buffers.pollFirst();
+            if (buffers.size() < minCount)
+                minCount = buffers.size();
             return buf;
         }
 
-        boolean offerFirst(ByteBuffer buf) {
-            // Don't call this if the buffer is too large.
-            assert !isBufferTooLarge(buf);
-
-            if (count >= TEMP_BUF_POOL_SIZE) {
-                return false;
-            } else {
-                start = (start + TEMP_BUF_POOL_SIZE - 1) % TEMP_BUF_POOL_SIZE;
-                buffers[start] = buf;
-                count++;
-                return true;
+        void push(ByteBuffer buf) {
+            synchronized (this) {
+                buffers.addFirst(buf);
+            }
+            if (IDLE_TIMEOUT > 0 && !evictorStarted.get()
+                    && evictorStarted.compareAndSet(false, true)) {
+                startEvictor();
             }
         }
 
-        boolean offerLast(ByteBuffer buf) {
-            // Don't call this if the buffer is too large.
-            assert !isBufferTooLarge(buf);
+        /**
+         * Removes and returns the least recently used buffer, or null if
+         * the depot is empty.
+         */
+        synchronized ByteBuffer pollLast() {
+            ByteBuffer buf = buffers.pollLast();
+            if (buffers.size() < minCount)
+                minCount = buffers.size();
+            return buf;
+        }
 
-            if (count >= TEMP_BUF_POOL_SIZE) {
-                return false;
-            } else {
-                int next = (start + count) % TEMP_BUF_POOL_SIZE;
-                buffers[next] = buf;
-                count++;
-                return true;
+        /**
+         * Removes and returns the buffers that have not been used since the
+         * previous invocation.
+         */
+        synchronized List<ByteBuffer> removeIdle() {
+            List<ByteBuffer> idle = new ArrayList<>(minCount);
+            for (int i = 0; i < minCount; i++) {
+                idle.add(buffers.pollLast());
             }
+            minCount = buffers.size();
+            return idle;
         }
+    }
 
-        boolean isEmpty() {
-            return count == 0;
-        }
+    /**
+     * Starts a thread that periodically frees buffers that have been idle in
+     * the depot for the idle timeout.
+     */
+    private static void startEvictor() {
+        Runnable task = () -> {
+            for (;;) {
+                try {
+                    Thread.sleep(IDLE_TIMEOUT);
+                } catch (InterruptedException ignore) { }
+                int evicted = 0;
+                for (Depot depot : depots) {
+                    for (ByteBuffer buf : depot.removeIdle()) {
+                        freePooled(buf);
+                        evicted++;
+                    }
+                }
+                if (evicted > 0)
+                    Counters.evictions.add(evicted);
+            }
+        };
+        AccessController.doPrivileged(new PrivilegedAction<Void>() {
+            public Void run() {
+                Thread t = InnocuousThread.newSystemThread(
+                        "Temporary Buffer Evictor", task);
+                t.setDaemon(true);
+                t.start();
+                return null;
+            }
+        });
+    }
 
-        ByteBuffer removeFirst() {
-            assert count > 0;
-            ByteBuffer buf = buffers[start];
-            buffers[start] = null;
-            start = next(start);
-            count--;
+    /**
+     * Allocates a buffer for the given size class, freeing idle buffers
+     * in the depots if needed to stay within the memory limit. Returns
+     * null if the memory limit would be exceeded.
+     */
+    private static ByteBuffer allocatePooled(int c) {
+        int cap = MIN_CLASS_SIZE << c;
+        for (;;) {
+            long used = footprint.get();
+            if (used + cap <= MAX_CACHED_BUFFER_MEMORY) {
+                if (footprint.compareAndSet(used, used + cap))
+                    break;
+            } else if (!freeIdleBuffer()) {
+                return null;
+            }
+        }
+        try {
+            ByteBuffer buf = ByteBuffer.allocateDirect(cap);
+            pooledCount.incrementAndGet();
             return buf;
+        } catch (OutOfMemoryError e) {
+            footprint.addAndGet(-cap);
+            throw e;
+        }
+    }
+
+    /**
+     * Frees one buffer from the depots, the largest first. Returns false if
+     * the depots are empty.
+     */
+    private static boolean freeIdleBuffer() {
+        for (int c = NUM_CLASSES - 1; c >= 0; c--) {
+            ByteBuffer buf = depots[c].pollLast();
+            if (buf != null) {
+                freePooled(buf);
+                Counters.evictions.increment();
+                return true;
+            }
         }
+        return false;
+    }
+
+    private static void freePooled(ByteBuffer buf) {
+        int cap = buf.capacity();
+        free(buf);
+        footprint.addAndGet(-cap);
+        pooledCount.decrementAndGet();
     }
 
     /**
      * Returns a temporary buffer of at least the given size
      */
     public static ByteBuffer getTemporaryDirectBuffer(int size) {
-        // If a buffer of this size is too large for the cache, there
-        // should not be a buffer in the cache that is at least as
-        // large. So we'll just create a new one. Also, we don't have
-        // to remove the buffer from the cache (as this method does
-        // below) given that we won't put the new buffer in the cache.
-        if (isBufferTooLarge(size)) {
+        // If a buffer of this size is too large for the pool then just
+        // create a new one, it will be freed when released.
+        int c = sizeClass(size);
+        if (c < 0) {
             return ByteBuffer.allocateDirect(size);
         }
 
-        BufferCache cache = bufferCache.get();
-        ByteBuffer buf = cache.get(size);
-        if (buf != null) {
-            return buf;
-        } else {
-            // No suitable buffer in the cache so we need to allocate a new
-            // one. To avoid the cache growing then we remove the first
-            // buffer from the cache and free it.
-            if (!cache.isEmpty()) {
-                buf = cache.removeFirst();
-                free(buf);
+        ByteBuffer buf = magazines.get().get(c);
+        if (buf == null) {
+            buf = allocatePooled(c);
+            if (buf == null) {
+                // pool is at its limit; allocate a buffer that will be
+                // freed when released
+                buf = ByteBuffer.allocateDirect(size).slice();
             }
-            return ByteBuffer.allocateDirect(size);
         }
+        buf.clear();
+        buf.limit(size);
+        return buf;
     }
 
     /**
@@ -249,82 +434,95 @@ public class Util {
      */
     public static ByteBuffer getTemporaryAlignedDirectBuffer(int size,
                                                              int alignment) {
-        if (isBufferTooLarge(size)) {
-            return ByteBuffer.allocateDirect(size + alignment - 1)
-                    .alignedSlice(alignment);
-        }
-
-        BufferCache cache = bufferCache.get();
-        ByteBuffer buf = cache.get(size);
-        if (buf != null) {
+        if (sizeClass(size) >= 0) {
+            ByteBuffer buf = getTemporaryDirectBuffer(size);
             if (buf.alignmentOffset(0, alignment) == 0) {
                 return buf;
             }
-        } else {
-            if (!cache.isEmpty()) {
-                buf = cache.removeFirst();
-                free(buf);
-            }
+            releaseTemporaryDirectBuffer(buf);
         }
         return ByteBuffer.allocateDirect(size + alignment - 1)
                 .alignedSlice(alignment);
     }
 
     /**
-     * Releases a temporary buffer by returning to the cache or freeing it.
+     * Releases a temporary buffer by returning to the pool or freeing it.
      */
     public static void releaseTemporaryDirectBuffer(ByteBuffer buf) {
-        offerFirstTemporaryDirectBuffer(buf);
+        assert buf != null;
+        int c = pooledClass(buf);
+        if (c < 0) {
+            free(buf);
+        } else {
+            magazines.get().put(c, buf);
+        }
     }
 
     /**
-     * Releases a temporary buffer by returning to the cache or freeing it. If
-     * returning to the cache then insert it at the start so that it is
-     * likely to be returned by a subsequent call to getTemporaryDirectBuffer.
+     * Releases a temporary buffer by returning to the pool or freeing it.
+     * The pool is LIFO so the buffer is likely to be returned by a subsequent
+     * call to getTemporaryDirectBuffer.
      */
     static void offerFirstTemporaryDirectBuffer(ByteBuffer buf) {
-        // If the buffer is too large for the cache we don't have to
-        // check the cache. We'll just free it.
-        if (isBufferTooLarge(buf)) {
-            free(buf);
-            return;
-        }
-
-        assert buf != null;
-        BufferCache cache = bufferCache.get();
-        if (!cache.offerFirst(buf)) {
-            // cache is full
-            free(buf);
-        }
+        releaseTemporaryDirectBuffer(buf);
     }
 
     /**
-     * Releases a temporary buffer by returning to the cache or freeing it. If
-     * returning to the cache then insert it at the end. This makes it
-     * suitable for scatter/gather operations where the buffers are returned to
-     * cache in same order that they were obtained.
+     * Releases a temporary buffer by returning to the pool or freeing it.
+     * Used for scatter/gather operations where the buffers are returned to
+     * the pool in same order that they were obtained.
      */
     static void offerLastTemporaryDirectBuffer(ByteBuffer buf) {
-        // If the buffer is too large for the cache we don't have to
-        // check the cache. We'll just free it.
-        if (isBufferTooLarge(buf)) {
-            free(buf);
-            return;
-        }
-
-        assert buf != null;
-        BufferCache cache = bufferCache.get();
-        if (!cache.offerLast(buf)) {
-            // cache is full
-            free(buf);
-        }
+        releaseTemporaryDirectBuffer(buf);
     }
 
     /**
-     * Frees the memory for the given direct buffer
+     * Frees the memory for the given direct buffer. If the buffer is a
+     * slice then the memory of the buffer that it was sliced from is freed.
      */
     private static void free(ByteBuffer buf) {
-        ((DirectBuffer)buf).cleaner().clean();
+        DirectBuffer db = (DirectBuffer)buf;
+        Cleaner cleaner = db.cleaner();
+        if (cleaner == null && db.attachment() instanceof DirectBuffer)
+            cleaner = ((DirectBuffer)db.attachment()).cleaner();
+        if (cleaner != null)
+            cleaner.clean();
+    }
+
+    /**
+     * Performance counters for the pool, visible with jstat and jcmd.
+     */
+    private static class Counters {
+        static final PerfCounter hits =
+            PerfCounter.newPerfCounter("sun.nio.ch.tempBufferHits");
+        static final PerfCounter misses =
+            PerfCounter.newPerfCounter("sun.nio.ch.tempBufferMisses");
+        static final PerfCounter evictions =
+            PerfCounter.newPerfCounter("sun.nio.ch.tempBufferEvictions");
+    }
+
+    /**
+     * Returns the pool of temporary direct buffers for management.
+     */
+    public static JavaNioAccess.BufferPool getTemporaryBufferPool() {
+        return new JavaNioAccess.BufferPool() {
+            @Override
+            public String getName() {
+                return "temporary";
+            }
+            @Override
+            public long getCount() {
+                return pooledCount.get();
+            }
+            @Override
+            public long getTotalCapacity() {
+                return footprint.get();
+            }
+            @Override
+            public long getMemoryUsed() {
+                return footprint.get();
+            }
+        };
     }
 
 
@@ -25,6 +25,7 @@
 
 package sun.nio.fs;
 
+import java.nio.file.DirectoryStream;
 import java.nio.file.Path;
 import java.nio.file.LinkOption;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -140,6 +141,17 @@ public abstract class AbstractFileSystemProvider extends FileSystemProvider {
         }
     }
 
+    /**
+     * Opens a directory for the purpose of walking a file tree. The entries
+     * returned by the stream may implement {@link BasicFileAttributesHolder}
+     * to provide the attributes of the file without following links.
+     */
+    public DirectoryStream<Path> newDirectoryStreamForWalk(Path dir)
+        throws IOException
+    {
+        return newDirectoryStream(dir, entry -> true);
+    }
+
     /**
      * Checks the existence of a file.
      *
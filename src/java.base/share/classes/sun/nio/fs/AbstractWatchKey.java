@@ -107,10 +107,13 @@ abstract class AbstractWatchKey implements WatchKey {
         synchronized (this) {
             int size = events.size();
             if (size > 0) {
-                // if the previous event is an OVERFLOW event or this is a
-                // repeated event then we simply increment the counter
+                // if the previous event is an OVERFLOW event for the directory
+                // or this is a repeated event then we simply increment the
+                // counter. An OVERFLOW event with a context is for a
+                // sub-directory of a file tree.
                 WatchEvent<?> prev = events.get(size-1);
-                if ((prev.kind() == StandardWatchEventKinds.OVERFLOW) ||
+                if ((prev.kind() == StandardWatchEventKinds.OVERFLOW &&
+                     prev.context() == null) ||
                     ((kind == prev.kind() &&
                      Objects.equals(context, prev.context()))))
                 {
@@ -149,7 +152,7 @@ abstract class AbstractWatchKey implements WatchKey {
                 new Event<>((WatchEvent.Kind<Object>)kind, context);
             if (isModify) {
                 lastModifyEvents.put(context, ev);
-            } else if (kind == StandardWatchEventKinds.OVERFLOW) {
+            } else if (kind == StandardWatchEventKinds.OVERFLOW && context == null) {
                 // drop all pending events
                 events.clear();
                 lastModifyEvents.clear();
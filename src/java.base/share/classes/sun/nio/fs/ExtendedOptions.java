@@ -131,6 +131,8 @@ public final class ExtendedOptions {
 
     public static final InternalOption<Void> INTERRUPTIBLE = new InternalOption<>();
 
+    public static final InternalOption<Void> REFLINK = new InternalOption<>();
+
     public static final InternalOption<Void> NOSHARE_READ = new InternalOption<>();
     public static final InternalOption<Void> NOSHARE_WRITE = new InternalOption<>();
     public static final InternalOption<Void> NOSHARE_DELETE = new InternalOption<>();
@@ -166,6 +166,17 @@ abstract class InputRecord implements Record, Closeable {
     abstract Plaintext[] decode(ByteBuffer[] srcs, int srcsOffset,
             int srcsLength) throws IOException, BadPaddingException;
 
+    // read and decrypt the network record, placing application data
+    // straight into the destination buffer where possible.
+    //
+    // If application data is placed in the destination, the destination
+    // position is updated and the plaintext fragment has no remaining
+    // bytes.
+    Plaintext[] decode(ByteBuffer[] srcs, int srcsOffset, int srcsLength,
+            ByteBuffer destination) throws IOException, BadPaddingException {
+        return decode(srcs, srcsOffset, srcsLength);
+    }
+
     // apply to SSLSocket only
     void setDeliverStream(OutputStream outputStream) {
         throw new UnsupportedOperationException();
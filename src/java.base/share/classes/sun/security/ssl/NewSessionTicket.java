@@ -29,7 +29,6 @@ import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.ProviderException;
-import java.security.SecureRandom;
 import java.text.MessageFormat;
 import java.util.Locale;
 import javax.crypto.SecretKey;
@@ -62,12 +61,12 @@ final class NewSessionTicket {
         final SSLExtensions extensions;
 
         NewSessionTicketMessage(HandshakeContext context,
-                int ticketLifetime, SecureRandom generator,
+                int ticketLifetime, int ticketAgeAdd,
                 byte[] ticketNonce, byte[] ticket) {
             super(context);
 
             this.ticketLifetime = ticketLifetime;
-            this.ticketAgeAdd = generator.nextInt();
+            this.ticketAgeAdd = ticketAgeAdd;
             this.ticketNonce = ticketNonce;
             this.ticket = ticket;
             this.extensions = new SSLExtensions(this);
@@ -248,25 +247,37 @@ final class NewSessionTicket {
                 }
                 return null;
             }
+
+            // create the new session
+            SSLSessionImpl sessionCopy =
+                    new SSLSessionImpl(shc.handshakeSession, newId);
+            sessionCopy.setPreSharedKey(psk);
+            int ticketAgeAdd = shc.sslContext.getSecureRandom().nextInt();
+            sessionCopy.setTicketAgeAdd(ticketAgeAdd);
+
+            // With stateless tickets, the session travels in the ticket
+            // and nothing is cached.  Otherwise, or if the session cannot
+            // be sealed, the ticket is the ID of the cached session.
+            byte[] ticket = null;
+            if (SessionTicketKeys.statelessEnabled) {
+                ticket = sessionCache.getTicketKeys().seal(shc, sessionCopy);
+            }
+            if (ticket == null) {
+                // The cached session must be a child of the existing
+                // session so they will be invalidated together, etc.
+                ticket = newId.getId();
+                shc.handshakeSession.addChild(sessionCopy);
+                sessionCopy.setPskIdentity(ticket);
+                sessionCache.put(sessionCopy);
+            }
+
             NewSessionTicketMessage nstm = new NewSessionTicketMessage(shc,
-                sessionTimeoutSeconds, shc.sslContext.getSecureRandom(),
-                nonceArr, newId.getId());
+                sessionTimeoutSeconds, ticketAgeAdd, nonceArr, ticket);
             if (SSLLogger.isOn && SSLLogger.isOn("ssl,handshake")) {
                 SSLLogger.fine(
                         "Produced NewSessionTicket handshake message", nstm);
             }
 
-            // create and cache the new session
-            // The new session must be a child of the existing session so
-            // they will be invalidated together, etc.
-            SSLSessionImpl sessionCopy =
-                    new SSLSessionImpl(shc.handshakeSession, newId);
-            shc.handshakeSession.addChild(sessionCopy);
-            sessionCopy.setPreSharedKey(psk);
-            sessionCopy.setPskIdentity(newId.getId());
-            sessionCopy.setTicketAgeAdd(nstm.ticketAgeAdd);
-            sessionCache.put(sessionCopy);
-
             // Output the handshake message.
             nstm.write(shc.handshakeOutput);
             shc.handshakeOutput.flush();
@@ -349,6 +349,52 @@ abstract class OutputRecord
         }
     }
 
+    // Encrypt a fragment read straight from the source buffer and wrap up
+    // a record.  TLS only.
+    //
+    // The destination position is at the start of the fragment, and the
+    // destination must have room for the whole record.  As with the in
+    // place encryption, the destination position is updated to reflect
+    // the amount of data produced.
+    static long encrypt(
+            SSLWriteCipher encCipher, byte contentType, ByteBuffer source,
+            ByteBuffer destination, int headerOffset, int dstLim,
+            int headerSize, ProtocolVersion protocolVersion) {
+        ByteBuffer trailer = null;
+        ProtocolVersion pv = protocolVersion;
+        if (protocolVersion.useTLS13PlusSpec()) {
+            if (!encCipher.isNullCipher()) {
+                // inner plaintext, using zero length padding.
+                byte[] innerPlaintext =
+                        new byte[1 + T13PaddingHolder.zeros.length];
+                innerPlaintext[0] = contentType;
+                trailer = ByteBuffer.wrap(innerPlaintext);
+                contentType = ContentType.APPLICATION_DATA.id;
+            }
+
+            // use the right TLSCiphertext.legacy_record_version
+            pv = ProtocolVersion.TLS12;
+        }
+
+        byte[] sequenceNumber = encCipher.authenticator.sequenceNumber();
+        encCipher.encrypt(contentType, source, trailer, destination);
+
+        // Finish out the record header.
+        int fragLen = destination.limit() - headerOffset - headerSize;
+        destination.put(headerOffset, contentType);
+        destination.put(headerOffset + 1, pv.major);
+        destination.put(headerOffset + 2, pv.minor);
+
+        // fragment length
+        destination.put(headerOffset + 3, (byte)(fragLen >> 8));
+        destination.put(headerOffset + 4, (byte)fragLen);
+
+        // Update destination position to reflect the amount of data produced.
+        destination.position(destination.limit());
+
+        return Authenticator.toLong(sequenceNumber);
+    }
+
     private static long d13Encrypt(
             SSLWriteCipher encCipher, byte contentType, ByteBuffer destination,
             int headerOffset, int dstLim, int headerSize,
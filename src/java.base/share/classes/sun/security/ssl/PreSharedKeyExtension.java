@@ -371,6 +371,10 @@ final class PreSharedKeyExtension {
                 int idIndex = 0;
                 for (PskIdentity requestedId : pskSpec.identities) {
                     SSLSessionImpl s = sessionCache.pull(requestedId.identity);
+                    if (s == null && SessionTicketKeys.statelessEnabled) {
+                        s = sessionCache.getTicketKeys().open(
+                                shc, requestedId.identity);
+                    }
                     if (s != null && canRejoin(clientHello, shc, s)) {
                         if (SSLLogger.isOn && SSLLogger.isOn("ssl,handshake")) {
                             SSLLogger.fine("Resuming session: ", s);
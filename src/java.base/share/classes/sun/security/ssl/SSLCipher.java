@@ -642,6 +642,23 @@ enum SSLCipher {
         abstract Plaintext decrypt(byte contentType, ByteBuffer bb,
                     byte[] sequence) throws GeneralSecurityException;
 
+        /*
+         * Decrypt the fragment in bb straight into the destination buffer,
+         * starting at its position, rather than in place.
+         *
+         * If the plaintext is written to the destination, the destination
+         * position is moved past the content of the returned fragment,
+         * which is a view of the destination.  Otherwise, for example if
+         * the cipher cannot decrypt out of place or the destination is too
+         * small, the fragment is decrypted in place as decrypt() does, and
+         * the destination is left untouched.
+         */
+        Plaintext decrypt(byte contentType, ByteBuffer bb,
+                byte[] sequence, ByteBuffer destination)
+                throws GeneralSecurityException {
+            return decrypt(contentType, bb, sequence);
+        }
+
         void dispose() {
             // blank
         }
@@ -690,6 +707,65 @@ enum SSLCipher {
 
         abstract int encrypt(byte contentType, ByteBuffer bb);
 
+        /*
+         * Encrypt the plaintext in the source buffer, followed by the
+         * trailer if any, into bb starting at its position.  On return,
+         * the limit of bb is the end of the fragment.
+         *
+         * The default implementation copies the plaintext into bb and
+         * encrypts it in place.  AEAD ciphers encrypt straight from the
+         * source buffer instead.
+         */
+        int encrypt(byte contentType,
+                ByteBuffer source, ByteBuffer trailer, ByteBuffer bb) {
+            int pos = bb.position();
+            bb.put(source);
+            if (trailer != null) {
+                bb.put(trailer);
+            }
+            bb.limit(bb.position());
+            bb.position(pos);
+
+            return encrypt(contentType, bb);
+        }
+
+        // Finish an AEAD encryption from the source and trailer into bb.
+        static int doFinal(Cipher cipher, int outputSize,
+                ByteBuffer source, ByteBuffer trailer, ByteBuffer bb) {
+            if (SSLLogger.isOn && SSLLogger.isOn("plaintext")) {
+                SSLLogger.fine(
+                        "Plaintext before ENCRYPTION", source.duplicate());
+            }
+
+            // DON'T worry about the buffer's capacity, we have reserved
+            // space for the authentication tag.
+            bb.limit(bb.position() + outputSize);
+
+            int len;
+            try {
+                if (trailer == null) {
+                    len = cipher.doFinal(source, bb);
+                } else {
+                    len = cipher.update(source, bb);
+                    len += cipher.doFinal(trailer, bb);
+                }
+            } catch (IllegalBlockSizeException |
+                        BadPaddingException | ShortBufferException ibse) {
+                // unlikely to happen
+                throw new RuntimeException(
+                        "Cipher error in AEAD mode in JCE provider " +
+                        cipher.getProvider().getName(), ibse);
+            }
+
+            if (len != outputSize) {
+                throw new RuntimeException(
+                        "Cipher buffering error in JCE provider " +
+                        cipher.getProvider().getName());
+            }
+
+            return len;
+        }
+
         static final SSLWriteCipher nullTlsWriteCipher() {
             try {
                 return B_NULL.createWriteCipher(
@@ -1619,6 +1695,13 @@ enum SSLCipher {
             @Override
             public Plaintext decrypt(byte contentType, ByteBuffer bb,
                     byte[] sequence) throws GeneralSecurityException {
+                return decrypt(contentType, bb, sequence, null);
+            }
+
+            @Override
+            Plaintext decrypt(byte contentType, ByteBuffer bb,
+                    byte[] sequence, ByteBuffer destination)
+                    throws GeneralSecurityException {
                 if (bb.remaining() < (recordIvSize + tagSize)) {
                     throw new BadPaddingException(
                         "Insufficient buffer remaining for AEAD cipher " +
@@ -1649,10 +1732,19 @@ enum SSLCipher {
 
                 // DON'T decrypt the nonce_explicit for AEAD mode. The buffer
                 // position has moved out of the nonce_explicit range.
-                int len, pos = bb.position();
+                //
+                // Decrypt straight into the destination if there is room
+                // for the whole fragment, otherwise in place.
+                ByteBuffer out = bb;
+                if (destination != null &&
+                        destination.remaining() >= bb.remaining() - tagSize) {
+                    out = destination.duplicate();
+                }
+
+                int len, pos = out.position();
                 ByteBuffer dup = bb.duplicate();
                 try {
-                    len = cipher.doFinal(dup, bb);
+                    len = cipher.doFinal(dup, out);
                 } catch (IllegalBlockSizeException ibse) {
                     // unlikely to happen
                     throw new RuntimeException(
@@ -1664,17 +1756,21 @@ enum SSLCipher {
                         "JCE provider " + cipher.getProvider().getName(), sbe);
                 }
                 // reset the limit to the end of the decrypted data
-                bb.position(pos);
-                bb.limit(pos + len);
+                out.position(pos);
+                out.limit(pos + len);
 
                 if (SSLLogger.isOn && SSLLogger.isOn("plaintext")) {
                     SSLLogger.fine(
-                            "Plaintext after DECRYPTION", bb.duplicate());
+                            "Plaintext after DECRYPTION", out.duplicate());
+                }
+
+                if (out != bb) {
+                    destination.position(out.limit());
                 }
 
                 return new Plaintext(contentType,
                         ProtocolVersion.NONE.major, ProtocolVersion.NONE.minor,
-                        -1, -1L, bb.slice());
+                        -1, -1L, out.slice());
             }
 
             @Override
@@ -1734,30 +1830,7 @@ enum SSLCipher {
             @Override
             public int encrypt(byte contentType,
                     ByteBuffer bb) {
-                // To be unique and aware of overflow-wrap, sequence number
-                // is used as the nonce_explicit of AEAD cipher suites.
-                byte[] nonce = authenticator.sequenceNumber();
-
-                // initialize the AEAD cipher for the unique IV
-                byte[] iv = Arrays.copyOf(fixedIv,
-                                            fixedIv.length + nonce.length);
-                System.arraycopy(nonce, 0, iv, fixedIv.length, nonce.length);
-
-                GCMParameterSpec spec = new GCMParameterSpec(tagSize * 8, iv);
-                try {
-                    cipher.init(Cipher.ENCRYPT_MODE, key, spec, random);
-                } catch (InvalidKeyException |
-                            InvalidAlgorithmParameterException ikae) {
-                    // unlikely to happen
-                    throw new RuntimeException(
-                                "invalid key or spec in GCM mode", ikae);
-                }
-
-                // Update the additional authentication data, using the
-                // implicit sequence number of the authenticator.
-                byte[] aad = authenticator.acquireAuthenticationBytes(
-                                        contentType, bb.remaining(), null);
-                cipher.updateAAD(aad);
+                byte[] nonce = init(contentType, bb.remaining());
 
                 // DON'T WORRY, the nonce spaces are considered already.
                 bb.position(bb.position() - nonce.length);
@@ -1801,6 +1874,52 @@ enum SSLCipher {
                 return len + nonce.length;
             }
 
+            @Override
+            int encrypt(byte contentType,
+                    ByteBuffer source, ByteBuffer trailer, ByteBuffer bb) {
+                int plaintextLen = source.remaining() +
+                        (trailer == null ? 0 : trailer.remaining());
+                byte[] nonce = init(contentType, plaintextLen);
+
+                // DON'T WORRY, the nonce spaces are considered already.
+                bb.position(bb.position() - nonce.length);
+                bb.put(nonce);
+
+                return doFinal(cipher, cipher.getOutputSize(plaintextLen),
+                        source, trailer, bb) + nonce.length;
+            }
+
+            // Initialize the cipher for the next record, and return the
+            // nonce_explicit to send.
+            private byte[] init(byte contentType, int plaintextLen) {
+                // To be unique and aware of overflow-wrap, sequence number
+                // is used as the nonce_explicit of AEAD cipher suites.
+                byte[] nonce = authenticator.sequenceNumber();
+
+                // initialize the AEAD cipher for the unique IV
+                byte[] iv = Arrays.copyOf(fixedIv,
+                                            fixedIv.length + nonce.length);
+                System.arraycopy(nonce, 0, iv, fixedIv.length, nonce.length);
+
+                GCMParameterSpec spec = new GCMParameterSpec(tagSize * 8, iv);
+                try {
+                    cipher.init(Cipher.ENCRYPT_MODE, key, spec, random);
+                } catch (InvalidKeyException |
+                            InvalidAlgorithmParameterException ikae) {
+                    // unlikely to happen
+                    throw new RuntimeException(
+                                "invalid key or spec in GCM mode", ikae);
+                }
+
+                // Update the additional authentication data, using the
+                // implicit sequence number of the authenticator.
+                byte[] aad = authenticator.acquireAuthenticationBytes(
+                                        contentType, plaintextLen, null);
+                cipher.updateAAD(aad);
+
+                return nonce;
+            }
+
             @Override
             void dispose() {
                 if (cipher != null) {
@@ -1876,6 +1995,13 @@ enum SSLCipher {
             @Override
             public Plaintext decrypt(byte contentType, ByteBuffer bb,
                     byte[] sequence) throws GeneralSecurityException {
+                return decrypt(contentType, bb, sequence, null);
+            }
+
+            @Override
+            Plaintext decrypt(byte contentType, ByteBuffer bb,
+                    byte[] sequence, ByteBuffer destination)
+                    throws GeneralSecurityException {
                 // An implementation may receive an unencrypted record of type
                 // change_cipher_spec consisting of the single byte value 0x01
                 // at any time after the first ClientHello message has been
@@ -1923,10 +2049,18 @@ enum SSLCipher {
                                         contentType, bb.remaining(), sn);
                 cipher.updateAAD(aad);
 
-                int len, pos = bb.position();
+                // Decrypt straight into the destination if there is room
+                // for the whole fragment, otherwise in place.
+                ByteBuffer out = bb;
+                if (destination != null &&
+                        destination.remaining() >= bb.remaining() - tagSize) {
+                    out = destination.duplicate();
+                }
+
+                int len, pos = out.position();
                 ByteBuffer dup = bb.duplicate();
                 try {
-                    len = cipher.doFinal(dup, bb);
+                    len = cipher.doFinal(dup, out);
                 } catch (IllegalBlockSizeException ibse) {
                     // unlikely to happen
                     throw new RuntimeException(
@@ -1938,32 +2072,36 @@ enum SSLCipher {
                         "JCE provider " + cipher.getProvider().getName(), sbe);
                 }
                 // reset the limit to the end of the decrypted data
-                bb.position(pos);
-                bb.limit(pos + len);
+                out.position(pos);
+                out.limit(pos + len);
 
                 // remove inner plaintext padding
-                int i = bb.limit() - 1;
-                for (; i > 0 && bb.get(i) == 0; i--) {
+                int i = out.limit() - 1;
+                for (; i > 0 && out.get(i) == 0; i--) {
                     // blank
                 }
                 if (i < (pos + 1)) {
                     throw new BadPaddingException(
                             "Incorrect inner plaintext: no content type");
                 }
-                contentType = bb.get(i);
-                bb.limit(i);
+                contentType = out.get(i);
+                out.limit(i);
 
                 if (SSLLogger.isOn && SSLLogger.isOn("plaintext")) {
                     SSLLogger.fine(
-                            "Plaintext after DECRYPTION", bb.duplicate());
+                            "Plaintext after DECRYPTION", out.duplicate());
                 }
                 if (keyLimitEnabled) {
                     keyLimitCountdown -= len;
                 }
 
+                if (out != bb) {
+                    destination.position(out.limit());
+                }
+
                 return new Plaintext(contentType,
                         ProtocolVersion.NONE.major, ProtocolVersion.NONE.minor,
-                        -1, -1L, bb.slice());
+                        -1, -1L, out.slice());
             }
 
             @Override
@@ -2031,31 +2169,7 @@ enum SSLCipher {
             @Override
             public int encrypt(byte contentType,
                     ByteBuffer bb) {
-                byte[] sn = authenticator.sequenceNumber();
-                byte[] nonce = iv.clone();
-                int offset = nonce.length - sn.length;
-                for (int i = 0; i < sn.length; i++) {
-                    nonce[offset + i] ^= sn[i];
-                }
-
-                // initialize the AEAD cipher for the unique IV
-                GCMParameterSpec spec =
-                        new GCMParameterSpec(tagSize * 8, nonce);
-                try {
-                    cipher.init(Cipher.ENCRYPT_MODE, key, spec, random);
-                } catch (InvalidKeyException |
-                            InvalidAlgorithmParameterException ikae) {
-                    // unlikely to happen
-                    throw new RuntimeException(
-                                "invalid key or spec in GCM mode", ikae);
-                }
-
-                // Update the additional authentication data, using the
-                // implicit sequence number of the authenticator.
-                int outputSize = cipher.getOutputSize(bb.remaining());
-                byte[] aad = authenticator.acquireAuthenticationBytes(
-                                        contentType, outputSize, sn);
-                cipher.updateAAD(aad);
+                int outputSize = init(contentType, bb.remaining());
 
                 int len, pos = bb.position();
                 if (SSLLogger.isOn && SSLLogger.isOn("plaintext")) {
@@ -2096,6 +2210,51 @@ enum SSLCipher {
                 return len;
             }
 
+            @Override
+            int encrypt(byte contentType,
+                    ByteBuffer source, ByteBuffer trailer, ByteBuffer bb) {
+                int plaintextLen = source.remaining() +
+                        (trailer == null ? 0 : trailer.remaining());
+                int outputSize = init(contentType, plaintextLen);
+                int len = doFinal(cipher, outputSize, source, trailer, bb);
+                if (keyLimitEnabled) {
+                    keyLimitCountdown -= len;
+                }
+                return len;
+            }
+
+            // Initialize the cipher for the next record, and return the
+            // size of the fragment to produce.
+            private int init(byte contentType, int plaintextLen) {
+                byte[] sn = authenticator.sequenceNumber();
+                byte[] nonce = iv.clone();
+                int offset = nonce.length - sn.length;
+                for (int i = 0; i < sn.length; i++) {
+                    nonce[offset + i] ^= sn[i];
+                }
+
+                // initialize the AEAD cipher for the unique IV
+                GCMParameterSpec spec =
+                        new GCMParameterSpec(tagSize * 8, nonce);
+                try {
+                    cipher.init(Cipher.ENCRYPT_MODE, key, spec, random);
+                } catch (InvalidKeyException |
+                            InvalidAlgorithmParameterException ikae) {
+                    // unlikely to happen
+                    throw new RuntimeException(
+                                "invalid key or spec in GCM mode", ikae);
+                }
+
+                // Update the additional authentication data, using the
+                // implicit sequence number of the authenticator.
+                int outputSize = cipher.getOutputSize(plaintextLen);
+                byte[] aad = authenticator.acquireAuthenticationBytes(
+                                        contentType, outputSize, sn);
+                cipher.updateAAD(aad);
+
+                return outputSize;
+            }
+
             @Override
             void dispose() {
                 if (cipher != null) {
@@ -2161,6 +2320,13 @@ enum SSLCipher {
             @Override
             public Plaintext decrypt(byte contentType, ByteBuffer bb,
                     byte[] sequence) throws GeneralSecurityException {
+                return decrypt(contentType, bb, sequence, null);
+            }
+
+            @Override
+            Plaintext decrypt(byte contentType, ByteBuffer bb,
+                    byte[] sequence, ByteBuffer destination)
+                    throws GeneralSecurityException {
                 if (bb.remaining() <= tagSize) {
                     throw new BadPaddingException(
                         "Insufficient buffer remaining for AEAD cipher " +
@@ -2197,11 +2363,19 @@ enum SSLCipher {
 
                 // DON'T decrypt the nonce_explicit for AEAD mode. The buffer
                 // position has moved out of the nonce_explicit range.
-                int len = bb.remaining();
-                int pos = bb.position();
+                //
+                // Decrypt straight into the destination if there is room
+                // for the whole fragment, otherwise in place.
+                ByteBuffer out = bb;
+                if (destination != null &&
+                        destination.remaining() >= bb.remaining() - tagSize) {
+                    out = destination.duplicate();
+                }
+
+                int len, pos = out.position();
                 ByteBuffer dup = bb.duplicate();
                 try {
-                    len = cipher.doFinal(dup, bb);
+                    len = cipher.doFinal(dup, out);
                 } catch (IllegalBlockSizeException ibse) {
                     // unlikely to happen
                     throw new RuntimeException(
@@ -2213,17 +2387,21 @@ enum SSLCipher {
                         "JCE provider " + cipher.getProvider().getName(), sbe);
                 }
                 // reset the limit to the end of the decrypted data
-                bb.position(pos);
-                bb.limit(pos + len);
+                out.position(pos);
+                out.limit(pos + len);
 
                 if (SSLLogger.isOn && SSLLogger.isOn("plaintext")) {
                     SSLLogger.fine(
-                            "Plaintext after DECRYPTION", bb.duplicate());
+                            "Plaintext after DECRYPTION", out.duplicate());
+                }
+
+                if (out != bb) {
+                    destination.position(out.limit());
                 }
 
                 return new Plaintext(contentType,
                         ProtocolVersion.NONE.major, ProtocolVersion.NONE.minor,
-                        -1, -1L, bb.slice());
+                        -1, -1L, out.slice());
             }
 
             @Override
@@ -2291,30 +2469,7 @@ enum SSLCipher {
             @Override
             public int encrypt(byte contentType,
                     ByteBuffer bb) {
-                byte[] sn = authenticator.sequenceNumber();
-                byte[] nonce = new byte[iv.length];
-                System.arraycopy(sn, 0, nonce, nonce.length - sn.length,
-                        sn.length);
-                for (int i = 0; i < nonce.length; i++) {
-                    nonce[i] ^= iv[i];
-                }
-
-                // initialize the AEAD cipher for the unique IV
-                AlgorithmParameterSpec spec = new IvParameterSpec(nonce);
-                try {
-                    cipher.init(Cipher.ENCRYPT_MODE, key, spec, random);
-                } catch (InvalidKeyException |
-                            InvalidAlgorithmParameterException ikae) {
-                    // unlikely to happen
-                    throw new RuntimeException(
-                                "invalid key or spec in AEAD mode", ikae);
-                }
-
-                // Update the additional authentication data, using the
-                // implicit sequence number of the authenticator.
-                byte[] aad = authenticator.acquireAuthenticationBytes(
-                                        contentType, bb.remaining(), null);
-                cipher.updateAAD(aad);
+                init(contentType, bb.remaining());
 
                 // DON'T encrypt the nonce for AEAD mode.
                 int len = bb.remaining();
@@ -2355,6 +2510,46 @@ enum SSLCipher {
                 return len;
             }
 
+            @Override
+            int encrypt(byte contentType,
+                    ByteBuffer source, ByteBuffer trailer, ByteBuffer bb) {
+                int plaintextLen = source.remaining() +
+                        (trailer == null ? 0 : trailer.remaining());
+                int outputSize = init(contentType, plaintextLen);
+                return doFinal(cipher, outputSize, source, trailer, bb);
+            }
+
+            // Initialize the cipher for the next record, and return the
+            // size of the fragment to produce.
+            private int init(byte contentType, int plaintextLen) {
+                byte[] sn = authenticator.sequenceNumber();
+                byte[] nonce = new byte[iv.length];
+                System.arraycopy(sn, 0, nonce, nonce.length - sn.length,
+                        sn.length);
+                for (int i = 0; i < nonce.length; i++) {
+                    nonce[i] ^= iv[i];
+                }
+
+                // initialize the AEAD cipher for the unique IV
+                AlgorithmParameterSpec spec = new IvParameterSpec(nonce);
+                try {
+                    cipher.init(Cipher.ENCRYPT_MODE, key, spec, random);
+                } catch (InvalidKeyException |
+                            InvalidAlgorithmParameterException ikae) {
+                    // unlikely to happen
+                    throw new RuntimeException(
+                                "invalid key or spec in AEAD mode", ikae);
+                }
+
+                // Update the additional authentication data, using the
+                // implicit sequence number of the authenticator.
+                byte[] aad = authenticator.acquireAuthenticationBytes(
+                                        contentType, plaintextLen, null);
+                cipher.updateAAD(aad);
+
+                return cipher.getOutputSize(plaintextLen);
+            }
+
             @Override
             void dispose() {
                 if (cipher != null) {
@@ -2420,6 +2615,13 @@ enum SSLCipher {
             @Override
             public Plaintext decrypt(byte contentType, ByteBuffer bb,
                     byte[] sequence) throws GeneralSecurityException {
+                return decrypt(contentType, bb, sequence, null);
+            }
+
+            @Override
+            Plaintext decrypt(byte contentType, ByteBuffer bb,
+                    byte[] sequence, ByteBuffer destination)
+                    throws GeneralSecurityException {
                 // An implementation may receive an unencrypted record of type
                 // change_cipher_spec consisting of the single byte value 0x01
                 // at any time after the first ClientHello message has been
@@ -2467,11 +2669,18 @@ enum SSLCipher {
                                         contentType, bb.remaining(), sn);
                 cipher.updateAAD(aad);
 
-                int len = bb.remaining();
-                int pos = bb.position();
+                // Decrypt straight into the destination if there is room
+                // for the whole fragment, otherwise in place.
+                ByteBuffer out = bb;
+                if (destination != null &&
+                        destination.remaining() >= bb.remaining() - tagSize) {
+                    out = destination.duplicate();
+                }
+
+                int len, pos = out.position();
                 ByteBuffer dup = bb.duplicate();
                 try {
-                    len = cipher.doFinal(dup, bb);
+                    len = cipher.doFinal(dup, out);
                 } catch (IllegalBlockSizeException ibse) {
                     // unlikely to happen
                     throw new RuntimeException(
@@ -2483,29 +2692,33 @@ enum SSLCipher {
                         "JCE provider " + cipher.getProvider().getName(), sbe);
                 }
                 // reset the limit to the end of the decrypted data
-                bb.position(pos);
-                bb.limit(pos + len);
+                out.position(pos);
+                out.limit(pos + len);
 
                 // remove inner plaintext padding
-                int i = bb.limit() - 1;
-                for (; i > 0 && bb.get(i) == 0; i--) {
+                int i = out.limit() - 1;
+                for (; i > 0 && out.get(i) == 0; i--) {
                     // blank
                 }
                 if (i < (pos + 1)) {
                     throw new BadPaddingException(
                             "Incorrect inner plaintext: no content type");
                 }
-                contentType = bb.get(i);
-                bb.limit(i);
+                contentType = out.get(i);
+                out.limit(i);
 
                 if (SSLLogger.isOn && SSLLogger.isOn("plaintext")) {
                     SSLLogger.fine(
-                            "Plaintext after DECRYPTION", bb.duplicate());
+                            "Plaintext after DECRYPTION", out.duplicate());
+                }
+
+                if (out != bb) {
+                    destination.position(out.limit());
                 }
 
                 return new Plaintext(contentType,
                         ProtocolVersion.NONE.major, ProtocolVersion.NONE.minor,
-                        -1, -1L, bb.slice());
+                        -1, -1L, out.slice());
             }
 
             @Override
@@ -2573,31 +2786,7 @@ enum SSLCipher {
             @Override
             public int encrypt(byte contentType,
                     ByteBuffer bb) {
-                byte[] sn = authenticator.sequenceNumber();
-                byte[] nonce = new byte[iv.length];
-                System.arraycopy(sn, 0, nonce, nonce.length - sn.length,
-                        sn.length);
-                for (int i = 0; i < nonce.length; i++) {
-                    nonce[i] ^= iv[i];
-                }
-
-                // initialize the AEAD cipher for the unique IV
-                AlgorithmParameterSpec spec = new IvParameterSpec(nonce);
-                try {
-                    cipher.init(Cipher.ENCRYPT_MODE, key, spec, random);
-                } catch (InvalidKeyException |
-                            InvalidAlgorithmParameterException ikae) {
-                    // unlikely to happen
-                    throw new RuntimeException(
-                                "invalid key or spec in AEAD mode", ikae);
-                }
-
-                // Update the additional authentication data, using the
-                // implicit sequence number of the authenticator.
-                int outputSize = cipher.getOutputSize(bb.remaining());
-                byte[] aad = authenticator.acquireAuthenticationBytes(
-                                        contentType, outputSize, sn);
-                cipher.updateAAD(aad);
+                int outputSize = init(contentType, bb.remaining());
 
                 int len = bb.remaining();
                 int pos = bb.position();
@@ -2639,6 +2828,51 @@ enum SSLCipher {
                 return len;
             }
 
+            @Override
+            int encrypt(byte contentType,
+                    ByteBuffer source, ByteBuffer trailer, ByteBuffer bb) {
+                int plaintextLen = source.remaining() +
+                        (trailer == null ? 0 : trailer.remaining());
+                int outputSize = init(contentType, plaintextLen);
+                int len = doFinal(cipher, outputSize, source, trailer, bb);
+                if (keyLimitEnabled) {
+                    keyLimitCountdown -= len;
+                }
+                return len;
+            }
+
+            // Initialize the cipher for the next record, and return the
+            // size of the fragment to produce.
+            private int init(byte contentType, int plaintextLen) {
+                byte[] sn = authenticator.sequenceNumber();
+                byte[] nonce = new byte[iv.length];
+                System.arraycopy(sn, 0, nonce, nonce.length - sn.length,
+                        sn.length);
+                for (int i = 0; i < nonce.length; i++) {
+                    nonce[i] ^= iv[i];
+                }
+
+                // initialize the AEAD cipher for the unique IV
+                AlgorithmParameterSpec spec = new IvParameterSpec(nonce);
+                try {
+                    cipher.init(Cipher.ENCRYPT_MODE, key, spec, random);
+                } catch (InvalidKeyException |
+                            InvalidAlgorithmParameterException ikae) {
+                    // unlikely to happen
+                    throw new RuntimeException(
+                                "invalid key or spec in AEAD mode", ikae);
+                }
+
+                // Update the additional authentication data, using the
+                // implicit sequence number of the authenticator.
+                int outputSize = cipher.getOutputSize(plaintextLen);
+                byte[] aad = authenticator.acquireAuthenticationBytes(
+                                        contentType, outputSize, sn);
+                cipher.updateAAD(aad);
+
+                return outputSize;
+            }
+
             @Override
             void dispose() {
                 if (cipher != null) {
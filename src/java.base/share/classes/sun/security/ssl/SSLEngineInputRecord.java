@@ -154,19 +154,25 @@ final class SSLEngineInputRecord extends InputRecord implements SSLRecord {
     @Override
     Plaintext[] decode(ByteBuffer[] srcs, int srcsOffset,
             int srcsLength) throws IOException, BadPaddingException {
+        return decode(srcs, srcsOffset, srcsLength, null);
+    }
+
+    @Override
+    Plaintext[] decode(ByteBuffer[] srcs, int srcsOffset, int srcsLength,
+            ByteBuffer destination) throws IOException, BadPaddingException {
         if (srcs == null || srcs.length == 0 || srcsLength == 0) {
             return new Plaintext[0];
         } else if (srcsLength == 1) {
-            return decode(srcs[srcsOffset]);
+            return decode(srcs[srcsOffset], destination);
         } else {
             ByteBuffer packet = extract(srcs,
                     srcsOffset, srcsLength, SSLRecord.headerSize);
 
-            return decode(packet);
+            return decode(packet, destination);
         }
     }
 
-    private Plaintext[] decode(ByteBuffer packet)
+    private Plaintext[] decode(ByteBuffer packet, ByteBuffer destination)
             throws IOException, BadPaddingException {
 
         if (isClosed) {
@@ -194,11 +200,11 @@ final class SSLEngineInputRecord extends InputRecord implements SSLRecord {
             }
         }
 
-        return decodeInputRecord(packet);
+        return decodeInputRecord(packet, destination);
     }
 
-    private Plaintext[] decodeInputRecord(ByteBuffer packet)
-            throws IOException, BadPaddingException {
+    private Plaintext[] decodeInputRecord(ByteBuffer packet,
+            ByteBuffer destination) throws IOException, BadPaddingException {
         //
         // The packet should be a complete record, or more.
         //
@@ -234,12 +240,43 @@ final class SSLEngineInputRecord extends InputRecord implements SSLRecord {
         packet.limit(recLim);
         packet.position(srcPos + SSLRecord.headerSize);
 
+        // Only application data may be decrypted straight into the
+        // destination.  For TLS 1.3, the real content type is not known
+        // until the record is decrypted.
+        if (destination != null &&
+                contentType != ContentType.APPLICATION_DATA.id) {
+            destination = null;
+        }
+
         ByteBuffer fragment;
         try {
+            int dstPos = (destination != null) ? destination.position() : 0;
             Plaintext plaintext =
-                    readCipher.decrypt(contentType, packet, null);
+                    readCipher.decrypt(contentType, packet, null, destination);
             fragment = plaintext.fragment;
             contentType = plaintext.contentType;
+
+            if (destination != null && destination.position() != dstPos) {
+                if (contentType == ContentType.APPLICATION_DATA.id) {
+                    // already delivered
+                    fragment.position(fragment.limit());
+                } else {
+                    // Not application data after all, copy it out and
+                    // clear the plaintext from the caller's buffer.  The
+                    // decrypted bytes, including the TLS 1.3 inner content
+                    // type and padding, are within contentLen of dstPos.
+                    ByteBuffer bb = ByteBuffer.allocate(fragment.remaining());
+                    bb.put(fragment);
+                    fragment = bb.flip();
+
+                    int dstEnd = Math.min(dstPos + contentLen,
+                            destination.limit());
+                    for (int i = dstPos; i < dstEnd; i++) {
+                        destination.put(i, (byte)0);
+                    }
+                    destination.position(dstPos);
+                }
+            }
         } catch (BadPaddingException bpe) {
             throw bpe;
         } catch (GeneralSecurityException gse) {
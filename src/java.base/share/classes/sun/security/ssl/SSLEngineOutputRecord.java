@@ -256,38 +256,68 @@ final class SSLEngineOutputRecord extends OutputRecord implements SSLRecord {
             destination.position(dstContent);
 
             int remains = Math.min(fragLen, destination.remaining());
-            fragLen = 0;
-            int srcsLen = offset + length;
-            for (int i = offset; (i < srcsLen) && (remains > 0); i++) {
-                int amount = Math.min(sources[i].remaining(), remains);
-                int srcLimit = sources[i].limit();
-                sources[i].limit(sources[i].position() + amount);
-                destination.put(sources[i]);
-                sources[i].limit(srcLimit);         // restore the limit
-                remains -= amount;
-                fragLen += amount;
-
-                if (remains > 0) {
-                    offset++;
-                    length--;
-                }
+            remains = Math.min(remains, srcsRemains);
+            while (remains > 0 && !sources[offset].hasRemaining()) {
+                offset++;
+                length--;
             }
 
-            destination.limit(destination.position());
-            destination.position(dstContent);
+            if (remains > 0 && sources[offset].remaining() >= remains) {
+                // The fragment is in a single source buffer, encrypt it
+                // from there straight into the destination.
+                ByteBuffer source = sources[offset];
+                int srcLimit = source.limit();
+                source.limit(source.position() + remains);
+                fragLen = remains;
+
+                if (SSLLogger.isOn && SSLLogger.isOn("record")) {
+                    SSLLogger.fine(
+                            "WRITE: " + protocolVersion.name + " " +
+                            ContentType.APPLICATION_DATA.name +
+                            ", length = " + fragLen);
+                }
 
-            if (SSLLogger.isOn && SSLLogger.isOn("record")) {
-                SSLLogger.fine(
-                        "WRITE: " + protocolVersion.name + " " +
-                        ContentType.APPLICATION_DATA.name +
-                        ", length = " + destination.remaining());
-            }
+                // Encrypt the fragment and wrap up a record.
+                recordSN = encrypt(writeCipher,
+                        ContentType.APPLICATION_DATA.id, source,
+                        destination, dstPos, dstLim, headerSize,
+                        protocolVersion);
+                source.limit(srcLimit);             // restore the limit
+            } else {
+                fragLen = 0;
+                int srcsLen = offset + length;
+                for (int i = offset; (i < srcsLen) && (remains > 0); i++) {
+                    int amount = Math.min(sources[i].remaining(), remains);
+                    int srcLimit = sources[i].limit();
+                    sources[i].limit(sources[i].position() + amount);
+                    destination.put(sources[i]);
+                    sources[i].limit(srcLimit);     // restore the limit
+                    remains -= amount;
+                    fragLen += amount;
+
+                    if (remains > 0) {
+                        offset++;
+                        length--;
+                    }
+                }
 
-            // Encrypt the fragment and wrap up a record.
-            recordSN = encrypt(writeCipher,
-                    ContentType.APPLICATION_DATA.id, destination,
-                    dstPos, dstLim, headerSize,
-                    protocolVersion);
+                destination.limit(destination.position());
+                destination.position(dstContent);
+
+                if (SSLLogger.isOn && SSLLogger.isOn("record")) {
+                    SSLLogger.fine(
+                            "WRITE: " + protocolVersion.name + " " +
+                            ContentType.APPLICATION_DATA.name +
+                            ", length = " + destination.remaining());
+                }
+
+                // Encrypt the fragment and wrap up a record.
+                recordSN = encrypt(writeCipher,
+                        ContentType.APPLICATION_DATA.id, destination,
+                        dstPos, dstLim, headerSize,
+                        protocolVersion);
+            }
+            srcsRemains -= fragLen;
 
             if (SSLLogger.isOn && SSLLogger.isOn("packet")) {
                 ByteBuffer temporary = destination.duplicate();
@@ -304,6 +334,13 @@ final class SSLEngineOutputRecord extends OutputRecord implements SSLRecord {
             if (isFirstAppOutputRecord) {
                 isFirstAppOutputRecord = false;
             }
+
+            // Coalesce more records into this wrap if the destination has
+            // room for them.
+            if (!needMorePayload && canCoalesce(srcsRemains, destination)) {
+                needMorePayload = true;
+                packetLeftSize = Math.min(maxRecordSize, packetSize);
+            }
         }
 
         return new Ciphertext(ContentType.APPLICATION_DATA.id,
@@ -606,6 +643,32 @@ final class SSLEngineOutputRecord extends OutputRecord implements SSLRecord {
      * This avoids issues in the outbound direction.  For a full fix,
      * the peer must have similar protections.
      */
+    /*
+     * Is there room in the destination for one more record of the
+     * remaining application data?
+     *
+     * Applications sizing the destination to the packet buffer size still
+     * get one record per wrap.  No more records are produced once the
+     * write keys are due to be updated, so that the key update is not
+     * delayed, or if the 1/n-1 record splitting applies.
+     */
+    private boolean canCoalesce(int srcsRemains, ByteBuffer destination) {
+        if (srcsRemains == 0 || needToSplitPayload() ||
+                writeCipher.authenticator.seqNumIsHuge() ||
+                (writeCipher.keyLimitEnabled &&
+                        writeCipher.keyLimitCountdown < 0)) {
+            return false;
+        }
+
+        int fragLen = Math.min(srcsRemains, Record.maxDataSize);
+        if (protocolVersion.useTLS13PlusSpec()) {
+            fragLen += 1 + 16;      // inner content type and padding
+        }
+
+        return destination.remaining() >=
+                writeCipher.calculatePacketSize(fragLen, headerSize);
+    }
+
     boolean needToSplitPayload() {
         return (!protocolVersion.useTLS11PlusSpec()) &&
                 writeCipher.isCBCMode() && !isFirstAppOutputRecord &&
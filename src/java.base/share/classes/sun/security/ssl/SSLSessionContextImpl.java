@@ -46,6 +46,9 @@ final class SSLSessionContextImpl implements SSLSessionContext {
     private int cacheLimit;             // the max cache size
     private int timeout;                // timeout in seconds
 
+    // keys for stateless session tickets, created on first use
+    private volatile SessionTicketKeys ticketKeys;
+
     // package private
     SSLSessionContextImpl() {
         cacheLimit = getDefaultCacheLimit();    // default cache size
@@ -153,6 +156,22 @@ final class SSLSessionContextImpl implements SSLSessionContext {
         return null;
     }
 
+    // package-private method, get the stateless session ticket keys
+    SessionTicketKeys getTicketKeys() {
+        SessionTicketKeys keys = ticketKeys;
+        if (keys == null) {
+            synchronized (this) {
+                keys = ticketKeys;
+                if (keys == null) {
+                    keys = new SessionTicketKeys(this);
+                    ticketKeys = keys;
+                }
+            }
+        }
+
+        return keys;
+    }
+
     // package-private method, used ONLY by ClientHandshaker
     SSLSessionImpl get(String hostname, int port) {
         /*
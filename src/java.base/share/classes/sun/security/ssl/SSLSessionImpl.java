@@ -24,11 +24,17 @@
  */
 package sun.security.ssl;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.net.InetAddress;
 import java.security.Principal;
 import java.security.PrivateKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Queue;
@@ -39,13 +45,17 @@ import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
 import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SNIHostName;
 import javax.net.ssl.SNIServerName;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLPermission;
+import javax.net.ssl.SSLProtocolException;
 import javax.net.ssl.SSLSessionBindingEvent;
 import javax.net.ssl.SSLSessionBindingListener;
 import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.StandardConstants;
 
 /**
  * Implements the SSL session interface, and exposes the session context
@@ -243,6 +253,198 @@ final class SSLSessionImpl extends ExtendedSSLSession {
         }
     }
 
+    /*
+     * Reconstruct a TLS 1.3 server session from the state carried in a
+     * stateless session ticket.  See getTicketState() for the layout.
+     *
+     * The session is not placed in the session cache; it only lives as
+     * long as the connection that resumes it.
+     */
+    SSLSessionImpl(HandshakeContext hc, SessionId id,
+            ByteBuffer state) throws IOException {
+        this.protocolVersion = ProtocolVersion.valueOf(Record.getInt16(state));
+        if (protocolVersion == null || !protocolVersion.useTLS13PlusSpec()) {
+            throw new SSLProtocolException(
+                    "Unsupported protocol version in session ticket");
+        }
+        this.cipherSuite = CipherSuite.valueOf(Record.getInt16(state));
+        if (cipherSuite == null) {
+            throw new SSLProtocolException(
+                    "Unsupported cipher suite in session ticket");
+        }
+        this.sessionId = id;
+        this.host = hc.conContext.transport.getPeerHost();
+        this.port = hc.conContext.transport.getPeerPort();
+        this.creationTime = ((long)Record.getInt32(state) << 32) |
+                (Record.getInt32(state) & 0xFFFFFFFFL);
+        this.lastUsedTime = System.currentTimeMillis();
+        this.useExtendedMasterSecret = false;
+        this.preSharedKey = new SecretKeySpec(
+                Record.getBytes16(state), "TlsPreSharedKey");
+        this.ticketAgeAdd = Record.getInt32(state);
+        this.maximumPacketSize = Record.getInt32(state);
+        this.negotiatedMaxFragLen = Record.getInt32(state);
+
+        byte[] encoded = Record.getBytes8(state);
+        this.identificationProtocol = (encoded.length == 0) ?
+                null : new String(encoded, StandardCharsets.UTF_8);
+
+        encoded = Record.getBytes16(state);
+        SNIServerName sni = null;
+        if (encoded.length != 0) {
+            try {
+                sni = new SNIHostName(encoded);
+            } catch (IllegalArgumentException iae) {
+                throw (SSLProtocolException)new SSLProtocolException(
+                        "Illegal server name in session ticket").initCause(iae);
+            }
+        }
+        this.serverNameIndication = sni;
+        this.requestedServerNames = Collections.<SNIServerName>emptyList();
+
+        int count = Record.getInt16(state);
+        List<SignatureScheme> schemes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SignatureScheme ss = SignatureScheme.valueOf(Record.getInt16(state));
+            if (ss != null) {
+                schemes.add(ss);
+            }
+        }
+        this.localSupportedSignAlgs =
+                Collections.unmodifiableCollection(schemes);
+
+        count = Record.getInt16(state);
+        if (count != 0) {
+            this.peerSupportedSignAlgs = new String[count];
+            for (int i = 0; i < count; i++) {
+                peerSupportedSignAlgs[i] = new String(
+                        Record.getBytes8(state), StandardCharsets.UTF_8);
+            }
+        }
+
+        this.peerCerts = getTicketCertificates(state);
+        this.localCerts = getTicketCertificates(state);
+        if (state.hasRemaining()) {
+            throw new SSLProtocolException(
+                    "Invalid session ticket: extra data");
+        }
+
+        this.context = (SSLSessionContextImpl)
+                hc.sslContext.engineGetServerSessionContext();
+        this.boundValues = new ConcurrentHashMap<>();
+
+        if (SSLLogger.isOn && SSLLogger.isOn("session")) {
+             SSLLogger.finest("Session restored from ticket:  " + this);
+        }
+    }
+
+    /*
+     * Encode the state needed to resume this TLS 1.3 session into a
+     * stateless session ticket:
+     *
+     *     uint16 protocol_version;
+     *     uint16 cipher_suite;
+     *     uint64 creation_time;
+     *     opaque pre_shared_key<1..2^16-1>;
+     *     uint32 ticket_age_add;
+     *     uint32 maximum_packet_size;
+     *     uint32 negotiated_max_fragment_length;
+     *     opaque identification_protocol<0..2^8-1>;
+     *     opaque server_name_indication<0..2^16-1>;
+     *     uint16 local_signature_schemes<0..2^16-1>;    // count prefixed
+     *     opaque peer_signature_algorithms<0..2^16-1>;  // count prefixed
+     *     opaque peer_certificates<0..2^16-1>;          // count prefixed
+     *     opaque local_certificates<0..2^16-1>;         // count prefixed
+     *
+     * Returns null if the session cannot be carried in a ticket.
+     */
+    byte[] getTicketState() throws IOException {
+        SecretKey psk = getPreSharedKey();
+        byte[] pskBytes = (psk == null) ? null : psk.getEncoded();
+        if (pskBytes == null || pskBytes.length == 0 ||
+                !protocolVersion.useTLS13PlusSpec()) {
+            return null;
+        }
+
+        HandshakeOutStream hos = new HandshakeOutStream(null);
+        hos.putInt16(protocolVersion.id);
+        hos.putInt16(cipherSuite.id);
+        hos.putInt32((int)(creationTime >>> 32));
+        hos.putInt32((int)creationTime);
+        hos.putBytes16(pskBytes);
+        hos.putInt32(ticketAgeAdd);
+        hos.putInt32(maximumPacketSize);
+        hos.putInt32(negotiatedMaxFragLen);
+        hos.putBytes8(identificationProtocol == null ? null :
+                identificationProtocol.getBytes(StandardCharsets.UTF_8));
+        hos.putBytes16(
+            (serverNameIndication == null || serverNameIndication.getType()
+                    != StandardConstants.SNI_HOST_NAME) ?
+                null : serverNameIndication.getEncoded());
+
+        hos.putInt16(localSupportedSignAlgs.size());
+        for (SignatureScheme ss : localSupportedSignAlgs) {
+            hos.putInt16(ss.id);
+        }
+
+        if (peerSupportedSignAlgs == null) {
+            hos.putInt16(0);
+        } else {
+            hos.putInt16(peerSupportedSignAlgs.length);
+            for (String alg : peerSupportedSignAlgs) {
+                hos.putBytes8(alg.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        try {
+            putTicketCertificates(hos, peerCerts);
+            putTicketCertificates(hos, localCerts);
+        } catch (CertificateEncodingException cee) {
+            if (SSLLogger.isOn && SSLLogger.isOn("session")) {
+                SSLLogger.fine("Cannot encode session certificates", cee);
+            }
+            return null;
+        }
+
+        return hos.toByteArray();
+    }
+
+    private static void putTicketCertificates(HandshakeOutStream hos,
+            X509Certificate[] certs) throws IOException,
+            CertificateEncodingException {
+        if (certs == null) {
+            hos.putInt16(0);
+            return;
+        }
+
+        hos.putInt16(certs.length);
+        for (X509Certificate cert : certs) {
+            hos.putBytes24(cert.getEncoded());
+        }
+    }
+
+    private static X509Certificate[] getTicketCertificates(
+            ByteBuffer state) throws IOException {
+        int count = Record.getInt16(state);
+        if (count == 0) {
+            return null;
+        }
+
+        X509Certificate[] certs = new X509Certificate[count];
+        try {
+            CertificateFactory cf = CertificateFactory.getInstance("X.509");
+            for (int i = 0; i < count; i++) {
+                certs[i] = (X509Certificate)cf.generateCertificate(
+                        new ByteArrayInputStream(Record.getBytes24(state)));
+            }
+        } catch (CertificateException ce) {
+            throw (SSLProtocolException)new SSLProtocolException(
+                    "Invalid certificate in session ticket").initCause(ce);
+        }
+
+        return certs;
+    }
+
     void setMasterSecret(SecretKey secret) {
         masterSecret = secret;
     }
@@ -105,10 +105,17 @@ interface SSLTransport {
         ByteBuffer[] srcs, int srcsOffset, int srcsLength,
         ByteBuffer[] dsts, int dstsOffset, int dstsLength) throws IOException {
 
+        // Application data may be decrypted straight into the first
+        // destination buffer once the connection is negotiated.
+        ByteBuffer destination = null;
+        if (context.isNegotiated && (dsts != null) && (dstsLength > 0)) {
+            destination = dsts[dstsOffset];
+        }
+
         Plaintext[] plaintexts = null;
         try {
-            plaintexts =
-                    context.inputRecord.decode(srcs, srcsOffset, srcsLength);
+            plaintexts = context.inputRecord.decode(
+                    srcs, srcsOffset, srcsLength, destination);
         } catch (UnsupportedOperationException unsoe) {         // SSLv2Hello
             // Hack code to deliver SSLv2 error message for SSL/TLS connections.
             if (!context.sslContext.isDTLS()) {
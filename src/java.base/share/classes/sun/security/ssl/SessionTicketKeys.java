@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.security.ssl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.AccessController;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import sun.security.action.GetIntegerAction;
+import sun.security.action.GetPropertyAction;
+
+/**
+ * The keys protecting stateless TLS 1.3 session tickets (RFC 8446,
+ * section 4.6.1).
+ *
+ * When the "jdk.tls.server.enableSessionTicketExtension" system property
+ * is true, the server does not keep resumable sessions in its session
+ * cache.  Instead the session state is encrypted and authenticated with
+ * AES-GCM and sent to the client as the ticket itself:
+ *
+ *     uint32 key_id;
+ *     opaque iv[12];
+ *     opaque encrypted_state[];    // issue time and session state + tag
+ *
+ * The key_id is used as additional authenticated data.
+ *
+ * By default the keys are generated at random per server session context
+ * and rotated every "jdk.tls.server.statelessKeyTimeout" seconds (one hour
+ * by default).  A retired key keeps decrypting tickets until the tickets
+ * it protected have expired.
+ *
+ * To share keys across a cluster, "jdk.tls.server.sessionTicketKeyFile"
+ * names a file holding one base64 encoded 128 or 256 bit AES key per line
+ * (lines starting with '#' are ignored).  The first key encrypts new
+ * tickets; all of them are accepted for decryption.  The key id is derived
+ * from the key, so all nodes using the same file agree on it.  The file
+ * is checked for modification every minute; to rotate, distribute the new
+ * key as a secondary key first and promote it once every node has it.
+ */
+final class SessionTicketKeys {
+    // Is the stateless session ticket enabled on the server side?
+    static final boolean statelessEnabled = Utilities.getBooleanProperty(
+            "jdk.tls.server.enableSessionTicketExtension", false);
+
+    // The lifetime of a generated ticket encryption key, in milliseconds.
+    private static final long keyRotation;
+
+    // The shared ticket key file, or null if keys are generated locally.
+    private static final String keyFileName =
+            GetPropertyAction.privilegedGetProperty(
+                    "jdk.tls.server.sessionTicketKeyFile");
+
+    private static final long KEY_FILE_CHECK_INTERVAL = 60_000L;
+    private static final long MAX_TICKET_LIFETIME = 604800_000L;  // 7 days
+
+    private static final int KEY_ID_LENGTH = 4;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+
+    static {
+        int timeout = GetIntegerAction.privilegedGetProperty(
+                "jdk.tls.server.statelessKeyTimeout", 3600);
+        if (timeout <= 0) {
+            if (SSLLogger.isOn && SSLLogger.isOn("ssl")) {
+                SSLLogger.warning(
+                    "invalid System Property " +
+                    "jdk.tls.server.statelessKeyTimeout, " +
+                    "use the default value (3600) instead");
+            }
+            timeout = 3600;
+        }
+        keyRotation = timeout * 1000L;
+    }
+
+    private static final class TicketKey {
+        final int id;
+        final SecretKey key;
+        final long encryptUntil;    // stop using for new tickets
+        final long decryptUntil;    // stop accepting tickets
+
+        TicketKey(int id, SecretKey key,
+                long encryptUntil, long decryptUntil) {
+            this.id = id;
+            this.key = key;
+            this.encryptUntil = encryptUntil;
+            this.decryptUntil = decryptUntil;
+        }
+    }
+
+    private final SSLSessionContextImpl context;
+    private final Map<Integer, TicketKey> keys = new ConcurrentHashMap<>();
+    private volatile TicketKey currentKey;
+
+    // key file state, updated with the lock held
+    private long keyFileModified = -1;
+    private volatile long keyFileNextCheck;
+
+    SessionTicketKeys(SSLSessionContextImpl context) {
+        this.context = context;
+    }
+
+    /*
+     * Encrypt the session state into a ticket.  Returns null if the
+     * session cannot be carried in a stateless ticket, in which case the
+     * caller falls back to the session cache.
+     */
+    byte[] seal(HandshakeContext hc, SSLSessionImpl session) {
+        try {
+            byte[] state = session.getTicketState();
+            if (state == null) {
+                return null;
+            }
+
+            TicketKey tk = getEncryptionKey(hc.sslContext.getSecureRandom());
+            if (tk == null) {
+                return null;
+            }
+
+            int ticketLength = KEY_ID_LENGTH + IV_LENGTH +
+                    8 + state.length + TAG_LENGTH;
+            if (ticketLength >= Record.OVERFLOW_OF_INT16) {
+                if (SSLLogger.isOn && SSLLogger.isOn("ssl,handshake")) {
+                    SSLLogger.fine(
+                        "Session state too large for a stateless ticket");
+                }
+                return null;
+            }
+
+            ByteBuffer ticket = ByteBuffer.allocate(ticketLength);
+            ticket.putInt(tk.id);
+            byte[] iv = new byte[IV_LENGTH];
+            hc.sslContext.getSecureRandom().nextBytes(iv);
+            ticket.put(iv);
+
+            ByteBuffer plain = ByteBuffer.allocate(8 + state.length);
+            plain.putLong(System.currentTimeMillis());
+            plain.put(state);
+            plain.flip();
+
+            Cipher cipher = JsseJce.getCipher(JsseJce.CIPHER_AES_GCM);
+            cipher.init(Cipher.ENCRYPT_MODE, tk.key,
+                    new GCMParameterSpec(TAG_LENGTH * 8, iv),
+                    hc.sslContext.getSecureRandom());
+            cipher.updateAAD(ticket.array(), 0, KEY_ID_LENGTH);
+            cipher.doFinal(plain, ticket);
+
+            return ticket.array();
+        } catch (IOException | GeneralSecurityException e) {
+            if (SSLLogger.isOn && SSLLogger.isOn("ssl,handshake")) {
+                SSLLogger.warning("Cannot create stateless ticket", e);
+            }
+            return null;
+        }
+    }
+
+    /*
+     * Decrypt and verify a ticket, and restore the session it carries.
+     * Returns null if the ticket is unknown, forged or expired.
+     */
+    SSLSessionImpl open(HandshakeContext hc, byte[] ticket) {
+        if (ticket.length <= KEY_ID_LENGTH + IV_LENGTH + 8 + TAG_LENGTH) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        refreshKeys(now);
+        int keyId = ByteBuffer.wrap(ticket, 0, KEY_ID_LENGTH).getInt();
+        TicketKey tk = keys.get(keyId);
+        if (tk == null || tk.decryptUntil < now) {
+            if (SSLLogger.isOn && SSLLogger.isOn("ssl,handshake")) {
+                SSLLogger.fine("Unknown or retired session ticket key");
+            }
+            return null;
+        }
+
+        try {
+            Cipher cipher = JsseJce.getCipher(JsseJce.CIPHER_AES_GCM);
+            cipher.init(Cipher.DECRYPT_MODE, tk.key,
+                    new GCMParameterSpec(TAG_LENGTH * 8,
+                            ticket, KEY_ID_LENGTH, IV_LENGTH));
+            cipher.updateAAD(ticket, 0, KEY_ID_LENGTH);
+            ByteBuffer plain = ByteBuffer.wrap(cipher.doFinal(ticket,
+                    KEY_ID_LENGTH + IV_LENGTH,
+                    ticket.length - KEY_ID_LENGTH - IV_LENGTH));
+
+            long issued = plain.getLong();
+            if (issued + getTicketLifetime() < now) {
+                if (SSLLogger.isOn && SSLLogger.isOn("ssl,handshake")) {
+                    SSLLogger.fine("Expired stateless session ticket");
+                }
+                return null;
+            }
+
+            return new SSLSessionImpl(hc,
+                    new SessionId(true, hc.sslContext.getSecureRandom()),
+                    plain);
+        } catch (IOException | GeneralSecurityException e) {
+            if (SSLLogger.isOn && SSLLogger.isOn("ssl,handshake")) {
+                SSLLogger.fine("Invalid stateless session ticket", e);
+            }
+            return null;
+        }
+    }
+
+    // The ticket lifetime follows the session timeout of the context.
+    private long getTicketLifetime() {
+        long timeout = context.getSessionTimeout() * 1000L;
+        return (timeout <= 0 || timeout > MAX_TICKET_LIFETIME) ?
+                MAX_TICKET_LIFETIME : timeout;
+    }
+
+    private TicketKey getEncryptionKey(SecureRandom random)
+            throws GeneralSecurityException {
+        long now = System.currentTimeMillis();
+        refreshKeys(now);
+        TicketKey tk = currentKey;
+        if (tk != null && tk.encryptUntil > now) {
+            return tk;
+        }
+
+        if (keyFileName != null) {
+            return tk;      // null if the key file could not be loaded
+        }
+
+        synchronized (this) {
+            tk = currentKey;
+            if (tk != null && tk.encryptUntil > now) {
+                return tk;
+            }
+
+            // Retire the keys that can no longer decrypt live tickets.
+            keys.values().removeIf(k -> k.decryptUntil < now);
+
+            byte[] encoded = new byte[32];
+            random.nextBytes(encoded);
+            int id;
+            do {
+                id = random.nextInt();
+            } while (keys.containsKey(id));
+            tk = new TicketKey(id, new SecretKeySpec(encoded, "AES"),
+                    now + keyRotation,
+                    now + keyRotation + getTicketLifetime());
+            keys.put(id, tk);
+            currentKey = tk;
+
+            if (SSLLogger.isOn && SSLLogger.isOn("ssl")) {
+                SSLLogger.fine("Generated session ticket key, id: " + id);
+            }
+            return tk;
+        }
+    }
+
+    // (Re)load the shared key file if it is configured and has changed.
+    private void refreshKeys(long now) {
+        if (keyFileName == null || now < keyFileNextCheck) {
+            return;
+        }
+
+        synchronized (this) {
+            if (now < keyFileNextCheck) {
+                return;
+            }
+            keyFileNextCheck = now + KEY_FILE_CHECK_INTERVAL;
+
+            try {
+                Path path = Paths.get(keyFileName);
+                long modified = AccessController.doPrivileged(
+                    (PrivilegedExceptionAction<Long>)() ->
+                        Files.getLastModifiedTime(path).toMillis());
+                if (modified == keyFileModified) {
+                    return;
+                }
+
+                byte[] content = AccessController.doPrivileged(
+                    (PrivilegedExceptionAction<byte[]>)() ->
+                        Files.readAllBytes(path));
+                loadKeys(new String(content, StandardCharsets.ISO_8859_1));
+                keyFileModified = modified;
+            } catch (PrivilegedActionException |
+                    GeneralSecurityException | IllegalArgumentException e) {
+                if (SSLLogger.isOn && SSLLogger.isOn("ssl")) {
+                    SSLLogger.warning(
+                        "Cannot load session ticket keys from " +
+                        keyFileName, e);
+                }
+                if (keyFileModified == -1) {
+                    // never loaded, don't issue tickets we cannot trust
+                    currentKey = null;
+                    keys.clear();
+                }
+            }
+        }
+    }
+
+    // Called with the lock held.
+    private void loadKeys(String content) throws GeneralSecurityException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        Map<Integer, TicketKey> loaded = new ConcurrentHashMap<>();
+        TicketKey first = null;
+        for (String line : content.split("\r?\n")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            byte[] encoded = Base64.getDecoder().decode(line);
+            if (encoded.length != 16 && encoded.length != 32) {
+                throw new IllegalArgumentException(
+                        "Session ticket keys must be 128 or 256 bits");
+            }
+            int id = ByteBuffer.wrap(md.digest(encoded)).getInt();
+            TicketKey tk = new TicketKey(id,
+                    new SecretKeySpec(encoded, "AES"),
+                    Long.MAX_VALUE, Long.MAX_VALUE);
+            loaded.putIfAbsent(id, tk);
+            if (first == null) {
+                first = tk;
+            }
+        }
+
+        if (first == null) {
+            throw new IllegalArgumentException(
+                    "No session ticket key found");
+        }
+
+        keys.keySet().retainAll(loaded.keySet());
+        keys.putAll(loaded);
+        currentKey = first;
+
+        if (SSLLogger.isOn && SSLLogger.isOn("ssl")) {
+            SSLLogger.fine("Loaded " + loaded.size() +
+                    " session ticket keys, current id: " + first.id);
+        }
+    }
+}
@@ -25,8 +25,14 @@
 
 package sun.security.util;
 
-import java.util.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.ref.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Abstract base class and factory for caches. A cache is a key-value mapping.
@@ -39,7 +45,7 @@ import java.lang.ref.*;
  *
  *  . keys and values must be non-null
  *
- *  . maximum size. Replacements are made in LRU order.
+ *  . maximum size. Replacements are made in approximate LRU order.
  *
  *  . optional lifetime, specified in seconds.
  *
@@ -57,15 +63,14 @@ import java.lang.ref.*;
  * eagerly. Performance may be improved if the Java heap size is set to larger
  * value using e.g. java -ms64M -mx128M foo.Test
  *
- * Cache sizing: the memory cache is implemented on top of a LinkedHashMap.
- * In its current implementation, the number of buckets (NOT entries) in
- * (Linked)HashMaps is always a power of two. It is recommended to set the
- * maximum cache size to value that uses those buckets fully. For example,
- * if a cache with somewhere between 500 and 1000 entries is desired, a
- * maximum size of 750 would be a good choice: try 1024 buckets, with a
- * load factor of 0.75f, the number of entries can be calculated as
- * buckets / 4 * 3. As mentioned above, with a SoftReference cache, it is
- * generally reasonable to set the size to a fairly large value.
+ * Cache sizing: the memory cache is implemented on top of a
+ * ConcurrentHashMap, so lookups do not take a lock. The maximum size is
+ * split between up to 16 shards by key hash, and each shard evicts in
+ * CLOCK order, an approximation of LRU. The cache may therefore hold
+ * slightly more entries than the maximum size (at most one less than the
+ * number of shards), and an entry may be evicted before the least recently
+ * used entry of another shard. As mentioned above, with a SoftReference
+ * cache, it is generally reasonable to set the size to a fairly large value.
  *
  * @author Andreas Sterbenz
  */
@@ -249,18 +254,23 @@ class NullCache<K,V> extends Cache<K,V> {
 
 class MemoryCache<K,V> extends Cache<K,V> {
 
-    private static final float LOAD_FACTOR = 0.75f;
-
     // XXXX
     private static final boolean DEBUG = false;
 
-    private final Map<K, CacheEntry<K,V>> cacheMap;
-    private int maxSize;
-    private long lifetime;
-    private long nextExpirationTime = Long.MAX_VALUE;
+    // the maximum number of shards, a power of two
+    private static final int MAX_SHARDS = 16;
+
+    // the minimum number of entries per shard when the size is limited
+    private static final int MIN_SHARD_SIZE = 32;
+
+    private final ConcurrentHashMap<K, CacheEntry<K,V>> cacheMap;
+    private final Shard[] shards;
+    private volatile int maxSize;
+    private volatile long lifetime;
+    private final AtomicLong nextExpirationTime = new AtomicLong(Long.MAX_VALUE);
 
     // ReferenceQueue is of type V instead of Cache<K,V>
-    // to allow SoftCacheEntry to extend SoftReference<V>
+    // to allow SoftValue to extend SoftReference<V>
     private final ReferenceQueue<V> queue;
 
     public MemoryCache(boolean soft, int maxSize) {
@@ -268,14 +278,28 @@ class MemoryCache<K,V> extends Cache<K,V> {
     }
 
     public MemoryCache(boolean soft, int maxSize, int lifetime) {
-        this.maxSize = maxSize;
-        this.lifetime = lifetime * 1000;
+        this.maxSize = maxSize > 0 ? maxSize : 0;
+        this.lifetime = lifetime * 1000L;
         if (soft)
             this.queue = new ReferenceQueue<>();
         else
             this.queue = null;
 
-        cacheMap = new LinkedHashMap<>(1, LOAD_FACTOR, true);
+        cacheMap = new ConcurrentHashMap<>();
+
+        // small caches use fewer shards so that the LRU approximation
+        // is over a reasonable number of entries
+        int nshards = MAX_SHARDS;
+        if (maxSize > 0) {
+            nshards = Math.min(MAX_SHARDS,
+                    Integer.highestOneBit(Math.max(1, maxSize / MIN_SHARD_SIZE)));
+        }
+        @SuppressWarnings("unchecked")
+        Shard[] shards = new MemoryCache.Shard[nshards];
+        for (int i = 0; i < nshards; i++) {
+            shards[i] = new Shard();
+        }
+        this.shards = shards;
     }
 
     /**
@@ -289,56 +313,46 @@ class MemoryCache<K,V> extends Cache<K,V> {
         if (queue == null) {
             return;
         }
-        int startSize = cacheMap.size();
         while (true) {
             @SuppressWarnings("unchecked")
-            CacheEntry<K,V> entry = (CacheEntry<K,V>)queue.poll();
-            if (entry == null) {
+            SoftValue<K,V> ref = (SoftValue<K,V>)queue.poll();
+            if (ref == null) {
                 break;
             }
-            K key = entry.getKey();
-            if (key == null) {
-                // key is null, entry has already been removed
-                continue;
-            }
-            CacheEntry<K,V> currentEntry = cacheMap.remove(key);
-            // check if the entry in the map corresponds to the expired
-            // entry. If not, readd the entry
-            if ((currentEntry != null) && (entry != currentEntry)) {
-                cacheMap.put(key, currentEntry);
-            }
-        }
-        if (DEBUG) {
-            int endSize = cacheMap.size();
-            if (startSize != endSize) {
-                System.out.println("*** Expunged " + (startSize - endSize)
-                        + " entries, " + endSize + " entries left");
+            // remove the entry only if it has not already been replaced
+            CacheEntry<K,V> entry = ref.entry;
+            if (cacheMap.remove(entry.key, entry)) {
+                entry.invalidate();
+                if (DEBUG) {
+                    System.out.println("*** Expunged entry, "
+                            + cacheMap.size() + " entries left");
+                }
             }
         }
     }
 
     /**
-     * Scan all entries and remove all expired ones.
+     * Scan all entries and remove all expired ones, if there may be any.
      */
     private void expungeExpiredEntries() {
         emptyQueue();
         if (lifetime == 0) {
             return;
         }
-        int cnt = 0;
         long time = System.currentTimeMillis();
-        if (nextExpirationTime > time) {
+        if (nextExpirationTime.get() > time) {
             return;
         }
-        nextExpirationTime = Long.MAX_VALUE;
-        for (Iterator<CacheEntry<K,V>> t = cacheMap.values().iterator();
-                t.hasNext(); ) {
-            CacheEntry<K,V> entry = t.next();
+        nextExpirationTime.set(Long.MAX_VALUE);
+        int cnt = 0;
+        for (CacheEntry<K,V> entry : cacheMap.values()) {
             if (entry.isValid(time) == false) {
-                t.remove();
-                cnt++;
-            } else if (nextExpirationTime > entry.getExpirationTime()) {
-                nextExpirationTime = entry.getExpirationTime();
+                if (cacheMap.remove(entry.key, entry)) {
+                    cnt++;
+                }
+                entry.invalidate();
+            } else {
+                nextExpirationTime.accumulateAndGet(entry.expirationTime, Math::min);
             }
         }
         if (DEBUG) {
@@ -349,54 +363,59 @@ class MemoryCache<K,V> extends Cache<K,V> {
         }
     }
 
-    public synchronized int size() {
+    private Shard shardFor(Object key) {
+        int h = key.hashCode();
+        return shards[(h ^ (h >>> 16)) & (shards.length - 1)];
+    }
+
+    // the maximum number of entries per shard, or 0 if unlimited
+    private int maxShardSize() {
+        int size = maxSize;
+        return (size == 0) ? 0 : (size + shards.length - 1) / shards.length;
+    }
+
+    public int size() {
         expungeExpiredEntries();
         return cacheMap.size();
     }
 
-    public synchronized void clear() {
-        if (queue != null) {
-            // if this is a SoftReference cache, first invalidate() all
-            // entries so that GC does not have to enqueue them
-            for (CacheEntry<K,V> entry : cacheMap.values()) {
+    public void clear() {
+        for (CacheEntry<K,V> entry : cacheMap.values()) {
+            if (cacheMap.remove(entry.key, entry)) {
+                // if this is a SoftReference cache, invalidate() all
+                // entries so that GC does not have to enqueue them
                 entry.invalidate();
             }
+        }
+        if (queue != null) {
             while (queue.poll() != null) {
                 // empty
             }
         }
-        cacheMap.clear();
+        for (Shard shard : shards) {
+            shard.clear();
+        }
     }
 
-    public synchronized void put(K key, V value) {
+    public void put(K key, V value) {
         emptyQueue();
+        long lifetime = this.lifetime;
         long expirationTime = (lifetime == 0) ? 0 :
                                         System.currentTimeMillis() + lifetime;
-        if (expirationTime < nextExpirationTime) {
-            nextExpirationTime = expirationTime;
+        if (expirationTime < nextExpirationTime.get()) {
+            nextExpirationTime.accumulateAndGet(expirationTime, Math::min);
         }
-        CacheEntry<K,V> newEntry = newEntry(key, value, expirationTime, queue);
+        Shard shard = shardFor(key);
+        CacheEntry<K,V> newEntry =
+                new CacheEntry<>(key, value, expirationTime, shard, queue);
         CacheEntry<K,V> oldEntry = cacheMap.put(key, newEntry);
         if (oldEntry != null) {
             oldEntry.invalidate();
-            return;
-        }
-        if (maxSize > 0 && cacheMap.size() > maxSize) {
-            expungeExpiredEntries();
-            if (cacheMap.size() > maxSize) { // still too large?
-                Iterator<CacheEntry<K,V>> t = cacheMap.values().iterator();
-                CacheEntry<K,V> lruEntry = t.next();
-                if (DEBUG) {
-                    System.out.println("** Overflow removal "
-                        + lruEntry.getKey() + " | " + lruEntry.getValue());
-                }
-                t.remove();
-                lruEntry.invalidate();
-            }
         }
+        shard.add(newEntry, maxShardSize());
     }
 
-    public synchronized V get(Object key) {
+    public V get(Object key) {
         emptyQueue();
         CacheEntry<K,V> entry = cacheMap.get(key);
         if (entry == null) {
@@ -407,13 +426,15 @@ class MemoryCache<K,V> extends Cache<K,V> {
             if (DEBUG) {
                 System.out.println("Ignoring expired entry");
             }
-            cacheMap.remove(key);
+            cacheMap.remove(key, entry);
             return null;
         }
-        return entry.getValue();
+        V value = entry.getValue();
+        entry.touch();
+        return value;
     }
 
-    public synchronized void remove(Object key) {
+    public void remove(Object key) {
         emptyQueue();
         CacheEntry<K,V> entry = cacheMap.remove(key);
         if (entry != null) {
@@ -421,7 +442,7 @@ class MemoryCache<K,V> extends Cache<K,V> {
         }
     }
 
-    public synchronized V pull(Object key) {
+    public V pull(Object key) {
         emptyQueue();
         CacheEntry<K,V> entry = cacheMap.remove(key);
         if (entry == null) {
@@ -441,29 +462,22 @@ class MemoryCache<K,V> extends Cache<K,V> {
         }
     }
 
-    public synchronized void setCapacity(int size) {
+    public void setCapacity(int size) {
         expungeExpiredEntries();
-        if (size > 0 && cacheMap.size() > size) {
-            Iterator<CacheEntry<K,V>> t = cacheMap.values().iterator();
-            for (int i = cacheMap.size() - size; i > 0; i--) {
-                CacheEntry<K,V> lruEntry = t.next();
-                if (DEBUG) {
-                    System.out.println("** capacity reset removal "
-                        + lruEntry.getKey() + " | " + lruEntry.getValue());
-                }
-                t.remove();
-                lruEntry.invalidate();
+        maxSize = size > 0 ? size : 0;
+        int maxShardSize = maxShardSize();
+        if (maxShardSize > 0) {
+            for (Shard shard : shards) {
+                shard.evict(maxShardSize);
             }
         }
 
-        maxSize = size > 0 ? size : 0;
-
         if (DEBUG) {
             System.out.println("** capacity reset to " + size);
         }
     }
 
-    public synchronized void setTimeout(int timeout) {
+    public void setTimeout(int timeout) {
         emptyQueue();
         lifetime = timeout > 0 ? timeout * 1000L : 0L;
 
@@ -473,7 +487,7 @@ class MemoryCache<K,V> extends Cache<K,V> {
     }
 
     // it is a heavyweight method.
-    public synchronized void accept(CacheVisitor<K,V> visitor) {
+    public void accept(CacheVisitor<K,V> visitor) {
         expungeExpiredEntries();
         Map<K,V> cached = getCachedEntries();
 
@@ -484,111 +498,184 @@ class MemoryCache<K,V> extends Cache<K,V> {
         Map<K,V> kvmap = new HashMap<>(cacheMap.size());
 
         for (CacheEntry<K,V> entry : cacheMap.values()) {
-            kvmap.put(entry.getKey(), entry.getValue());
+            V value = entry.getValue();
+            if (value != null) {
+                kvmap.put(entry.key, value);
+            }
         }
 
         return kvmap;
     }
 
-    protected CacheEntry<K,V> newEntry(K key, V value,
-            long expirationTime, ReferenceQueue<V> queue) {
-        if (queue != null) {
-            return new SoftCacheEntry<>(key, value, expirationTime, queue);
-        } else {
-            return new HardCacheEntry<>(key, value, expirationTime);
+    /**
+     * A shard of the cache that bounds the number of entries with keys that
+     * hash to it. Entries are evicted with the CLOCK algorithm, an
+     * approximation of LRU: get only sets the referenced bit of an entry, so
+     * it never takes a lock, and put evicts the first entry in insertion
+     * order that has not been referenced since the clock hand last passed.
+     */
+    private final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<CacheEntry<K,V>> clock = new ArrayDeque<>();
+        private final AtomicInteger liveCount = new AtomicInteger();
+
+        void add(CacheEntry<K,V> entry, int maxShardSize) {
+            liveCount.incrementAndGet();
+            lock.lock();
+            try {
+                clock.addLast(entry);
+                if (clock.size() > 2 * liveCount.get() + MIN_SHARD_SIZE) {
+                    // drop the entries removed since they were added
+                    clock.removeIf(CacheEntry::isRemoved);
+                }
+                if (maxShardSize > 0) {
+                    evictLocked(maxShardSize);
+                }
+            } finally {
+                lock.unlock();
+            }
         }
-    }
-
-    private static interface CacheEntry<K,V> {
-
-        boolean isValid(long currentTime);
-
-        void invalidate();
-
-        K getKey();
-
-        V getValue();
-
-        long getExpirationTime();
-    }
-
-    private static class HardCacheEntry<K,V> implements CacheEntry<K,V> {
-
-        private K key;
-        private V value;
-        private long expirationTime;
 
-        HardCacheEntry(K key, V value, long expirationTime) {
-            this.key = key;
-            this.value = value;
-            this.expirationTime = expirationTime;
+        void evict(int maxShardSize) {
+            lock.lock();
+            try {
+                evictLocked(maxShardSize);
+            } finally {
+                lock.unlock();
+            }
         }
 
-        public K getKey() {
-            return key;
+        private void evictLocked(int maxShardSize) {
+            // each entry gets at most one second chance per call, so this
+            // terminates after two passes of the clock at most
+            while (liveCount.get() > maxShardSize) {
+                CacheEntry<K,V> entry = clock.pollFirst();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.isRemoved()) {
+                    continue;
+                }
+                if (entry.clearReferenced()) {
+                    clock.addLast(entry);
+                    continue;
+                }
+                if (DEBUG) {
+                    System.out.println("** Overflow removal "
+                        + entry.key + " | " + entry.getValue());
+                }
+                cacheMap.remove(entry.key, entry);
+                entry.invalidate();
+            }
         }
 
-        public V getValue() {
-            return value;
+        void removed() {
+            liveCount.decrementAndGet();
         }
 
-        public long getExpirationTime() {
-            return expirationTime;
+        void clear() {
+            lock.lock();
+            try {
+                clock.removeIf(CacheEntry::isRemoved);
+            } finally {
+                lock.unlock();
+            }
         }
+    }
 
-        public boolean isValid(long currentTime) {
-            boolean valid = (currentTime <= expirationTime);
-            if (valid == false) {
-                invalidate();
+    private static final class CacheEntry<K,V> {
+
+        private static final VarHandle REMOVED;
+        static {
+            try {
+                REMOVED = MethodHandles.lookup()
+                        .findVarHandle(CacheEntry.class, "removed", boolean.class);
+            } catch (ReflectiveOperationException e) {
+                throw new InternalError(e);
             }
-            return valid;
         }
 
-        public void invalidate() {
-            key = null;
-            value = null;
-            expirationTime = -1;
-        }
-    }
+        final K key;
+        final long expirationTime;
+        private final MemoryCache<K,V>.Shard shard;
 
-    private static class SoftCacheEntry<K,V>
-            extends SoftReference<V>
-            implements CacheEntry<K,V> {
+        // the value, or a SoftValue referring to it
+        private volatile Object value;
 
-        private K key;
-        private long expirationTime;
+        // set by get, cleared by the eviction clock
+        private volatile boolean referenced;
 
-        SoftCacheEntry(K key, V value, long expirationTime,
-                ReferenceQueue<V> queue) {
-            super(value, queue);
+        // set when the entry is removed from the cache
+        private volatile boolean removed;
+
+        CacheEntry(K key, V value, long expirationTime,
+                MemoryCache<K,V>.Shard shard, ReferenceQueue<V> queue) {
             this.key = key;
             this.expirationTime = expirationTime;
+            this.shard = shard;
+            this.value = (queue == null) ? value
+                                         : new SoftValue<>(value, queue, this);
+        }
+
+        @SuppressWarnings("unchecked")
+        V getValue() {
+            Object v = value;
+            if (v instanceof SoftValue) {
+                return ((SoftValue<K,V>)v).get();
+            }
+            return (V)v;
         }
 
-        public K getKey() {
-            return key;
+        boolean isValid(long currentTime) {
+            boolean valid = !removed && (currentTime <= expirationTime)
+                    && (getValue() != null);
+            if (valid == false) {
+                invalidate();
+            }
+            return valid;
         }
 
-        public V getValue() {
-            return get();
+        boolean isRemoved() {
+            return removed;
         }
 
-        public long getExpirationTime() {
-            return expirationTime;
+        void touch() {
+            // avoid writing the shared field when it is already set
+            if (!referenced) {
+                referenced = true;
+            }
         }
 
-        public boolean isValid(long currentTime) {
-            boolean valid = (currentTime <= expirationTime) && (get() != null);
-            if (valid == false) {
-                invalidate();
+        boolean clearReferenced() {
+            if (referenced) {
+                referenced = false;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Marks the entry as removed and clears the value. The entry must
+         * have been removed from the map, or be about to be.
+         */
+        void invalidate() {
+            if (REMOVED.compareAndSet(this, false, true)) {
+                Object v = value;
+                if (v instanceof SoftValue) {
+                    ((SoftValue<?,?>)v).clear();
+                }
+                value = null;
+                shard.removed();
             }
-            return valid;
         }
+    }
+
+    private static final class SoftValue<K,V> extends SoftReference<V> {
+        final CacheEntry<K,V> entry;
 
-        public void invalidate() {
-            clear();
-            key = null;
-            expirationTime = -1;
+        SoftValue(V value, ReferenceQueue<V> queue, CacheEntry<K,V> entry) {
+            super(value, queue);
+            this.entry = entry;
         }
     }
 
@@ -294,7 +294,7 @@ class SolarisUserDefinedFileAttributeView
             int dst = openat(nfd, name, (O_CREAT|O_WRONLY|O_TRUNC|O_XATTR),
                 UnixFileModeAttribute.ALL_PERMISSIONS);
             try {
-                UnixCopyFile.transfer(dst, src, 0L);
+                UnixCopyFile.transfer(dst, src, false, 0L);
             } finally {
                 close(dst);
             }
@@ -35,8 +35,47 @@ import java.net.*;
 
 class DatagramDispatcher extends NativeDispatcher
 {
+    // maximum number of datagrams received or sent by one batch operation
+    static final int MAX_BATCH = 64;
+
+    // maximum number of bytes sent from a buffer, MAX_PACKET_LEN in net_util.h
+    static final int MAX_PACKET_LEN = 65536;
+
+    // true if recvmmsg/sendmmsg are available
+    private static final boolean BATCH_SUPPORTED;
+
     static {
         IOUtil.load();
+        initIDs();
+        BATCH_SUPPORTED = batchSupported0();
+    }
+
+    boolean batchSupported() {
+        return BATCH_SUPPORTED;
+    }
+
+    /**
+     * Receives up to {@code count} datagrams into the buffers at the given
+     * addresses. On return, {@code lengths} holds the number of bytes received
+     * into each buffer and {@code sources} the source addresses.
+     */
+    int receiveBatch(FileDescriptor fd, long[] addresses, int[] lengths,
+                     SocketAddress[] sources, int count, boolean connected)
+        throws IOException
+    {
+        return receiveBatch0(fd, addresses, lengths, sources, count, connected);
+    }
+
+    /**
+     * Sends up to {@code count} datagrams from the buffers at the given
+     * addresses. The target addresses are {@code null} if the socket is
+     * connected.
+     */
+    int sendBatch(FileDescriptor fd, boolean preferIPv6, long[] addresses,
+                  int[] lengths, InetAddress[] targets, int[] ports, int count)
+        throws IOException
+    {
+        return sendBatch0(fd, preferIPv6, addresses, lengths, targets, ports, count);
     }
 
     int read(FileDescriptor fd, long address, int len) throws IOException {
@@ -74,4 +113,18 @@ class DatagramDispatcher extends NativeDispatcher
 
     static native long writev0(FileDescriptor fd, long address, int len)
         throws IOException;
+
+    private static native void initIDs();
+
+    private static native boolean batchSupported0();
+
+    static native int receiveBatch0(FileDescriptor fd, long[] addresses,
+                                    int[] lengths, SocketAddress[] sources,
+                                    int count, boolean connected)
+        throws IOException;
+
+    static native int sendBatch0(FileDescriptor fd, boolean preferIPv6,
+                                 long[] addresses, int[] lengths,
+                                 InetAddress[] targets, int[] ports, int count)
+        throws IOException;
 }
@@ -58,4 +58,96 @@ class SocketDispatcher extends NativeDispatcher {
     void preClose(FileDescriptor fd) throws IOException {
         FileDispatcherImpl.preClose0(fd);
     }
+
+    // -- splice --
+
+    /**
+     * Returns true if bytes can be transferred between sockets by splicing
+     * through a pipe.
+     */
+    boolean spliceSupported() {
+        return SPLICE_SUPPORTED;
+    }
+
+    /**
+     * Creates a non-blocking pipe for use with splice, returning the file
+     * descriptors encoded as for {@link IOUtil#makePipe}. The capacity of the
+     * pipe is increased to {@code size} bytes if possible.
+     *
+     * @param  capacity  an array of one element to receive the capacity
+     */
+    long makeSplicePipe(int size, int[] capacity) throws IOException {
+        long fds = IOUtil.makePipe(false);
+        capacity[0] = setPipeSize0((int) fds, size);
+        return fds;
+    }
+
+    void closeSplicePipe(long fds) throws IOException {
+        try {
+            FileDispatcherImpl.closeIntFD((int) (fds >>> 32));
+        } finally {
+            FileDispatcherImpl.closeIntFD((int) fds);
+        }
+    }
+
+    /**
+     * Moves up to {@code len} bytes from {@code fdIn} to {@code fdOut}, one
+     * of which is a pipe.
+     */
+    int splice(int fdIn, int fdOut, int len) throws IOException {
+        return splice0(fdIn, fdOut, len);
+    }
+
+    // -- MSG_ZEROCOPY --
+
+    /**
+     * Enables MSG_ZEROCOPY sends on the given socket, returning false if not
+     * supported.
+     */
+    boolean enableZeroCopy(FileDescriptor fd) {
+        return enableZeroCopy0(fd);
+    }
+
+    /**
+     * Sends bytes with MSG_ZEROCOPY. The memory must not be modified until
+     * the kernel notifies that the send has completed.
+     */
+    int sendZeroCopy(FileDescriptor fd, long address, int len)
+        throws IOException
+    {
+        return sendZeroCopy0(fd, address, len);
+    }
+
+    /**
+     * Reads a notification from the socket's error queue. Returns 1 and sets
+     * range[0] and range[1] to the first and last sequence numbers of the
+     * completed sends if the notification is for MSG_ZEROCOPY sends, 0 if it
+     * is for something else, and IOStatus.UNAVAILABLE if the queue is empty.
+     */
+    int reapZeroCopy(FileDescriptor fd, int[] range) throws IOException {
+        return reapZeroCopy0(fd, range);
+    }
+
+    // -- Native methods --
+
+    private static native boolean spliceSupported0();
+
+    private static native int setPipeSize0(int fd, int size);
+
+    private static native int splice0(int fdIn, int fdOut, int len)
+        throws IOException;
+
+    private static native boolean enableZeroCopy0(FileDescriptor fd);
+
+    private static native int sendZeroCopy0(FileDescriptor fd, long address, int len)
+        throws IOException;
+
+    private static native int reapZeroCopy0(FileDescriptor fd, int[] range)
+        throws IOException;
+
+    private static final boolean SPLICE_SUPPORTED;
+    static {
+        IOUtil.load();
+        SPLICE_SUPPORTED = spliceSupported0();
+    }
 }
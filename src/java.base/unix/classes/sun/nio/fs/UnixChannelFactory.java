@@ -34,7 +34,6 @@ import jdk.internal.misc.SharedSecrets;
 import jdk.internal.misc.JavaIOFileDescriptorAccess;
 import sun.nio.ch.FileChannelImpl;
 import sun.nio.ch.ThreadPool;
-import sun.nio.ch.SimpleAsynchronousFileChannelImpl;
 
 import static sun.nio.fs.UnixNativeDispatcher.*;
 import static sun.nio.fs.UnixConstants.*;
@@ -159,7 +158,8 @@ class UnixChannelFactory {
     /**
      * Constructs an asynchronous file channel by opening the given file.
      */
-    static AsynchronousFileChannel newAsynchronousFileChannel(UnixPath path,
+    static AsynchronousFileChannel newAsynchronousFileChannel(UnixFileSystemProvider provider,
+                                                              UnixPath path,
                                                               Set<? extends OpenOption> options,
                                                               int mode,
                                                               ThreadPool pool)
@@ -176,9 +176,9 @@ class UnixChannelFactory {
         if (flags.append)
             throw new UnsupportedOperationException("APPEND not allowed");
 
-        // for now use simple implementation
+        // the provider selects the implementation for this platform
         FileDescriptor fdObj = open(-1, path, null, flags, mode);
-        return SimpleAsynchronousFileChannelImpl.open(fdObj, flags.read, flags.write, pool);
+        return provider.newAsynchronousFileChannel(fdObj, flags.read, flags.write, pool);
     }
 
     /**
@@ -55,6 +55,7 @@ class UnixCopyFile {
         boolean atomicMove;
         boolean followLinks;
         boolean interruptible;
+        boolean reflink;
 
         // the attributes to copy
         boolean copyBasicAttributes;
@@ -91,6 +92,10 @@ class UnixCopyFile {
                     flags.interruptible = true;
                     continue;
                 }
+                if (ExtendedOptions.REFLINK.matches(option)) {
+                    flags.reflink = true;
+                    continue;
+                }
                 if (option == null)
                     throw new NullPointerException();
                 throw new UnsupportedOperationException("Unsupported copy option");
@@ -253,7 +258,7 @@ class UnixCopyFile {
             try {
                 // transfer bytes to target file
                 try {
-                    transfer(fo, fi, addressToPollForCancel);
+                    transfer(fo, fi, flags.reflink, addressToPollForCancel);
                 } catch (UnixException x) {
                     x.rethrowAsIOException(source, target);
                 }
@@ -624,7 +629,14 @@ class UnixCopyFile {
 
     // -- native methods --
 
-    static native void transfer(int dst, int src, long addressToPollForCancel)
+    /**
+     * Transfers all bytes from src to dst. The bytes are copied in the kernel
+     * where possible. If {@code reflink} is true then the data blocks of the
+     * source file may be shared with the target file on file systems that
+     * support copy-on-write.
+     */
+    static native void transfer(int dst, int src, boolean reflink,
+                                long addressToPollForCancel)
         throws UnixException;
 
     static {
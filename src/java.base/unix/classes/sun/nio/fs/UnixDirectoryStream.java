@@ -26,19 +26,35 @@
 package sun.nio.fs;
 
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.concurrent.locks.*;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import static sun.nio.fs.UnixNativeDispatcher.*;
 
 /**
  * Unix implementation of java.nio.file.DirectoryStream
+ *
+ * Entries are read from the directory in batches. When the stream is created
+ * to prefetch attributes then each entry is returned as a path with cached
+ * BasicFileAttributes. The file type is obtained from the directory entry
+ * (d_type) where the file system provides it, and the remaining attributes
+ * are read, for all the entries of the batch, when first accessed. Where the
+ * file system does not provide the file type then the attributes of the
+ * entries of the batch are read when the batch is read. The attributes are
+ * read with fstatat relative to the directory so the path of each file is
+ * not resolved from the root.
  */
 
 class UnixDirectoryStream
     implements DirectoryStream<Path>
 {
+    // maximum number of entries read from the directory at a time
+    private static final int BATCH_SIZE = 64;
+
     // path to directory when originally opened
     private final UnixPath dir;
 
@@ -48,6 +64,9 @@ class UnixDirectoryStream
     // filter (may be null)
     private final DirectoryStream.Filter<? super Path> filter;
 
+    // true if entries are returned with their attributes
+    private final boolean prefetchAttributes;
+
     // used to coordinate closing of directory stream
     private final ReentrantReadWriteLock streamLock =
         new ReentrantReadWriteLock(true);
@@ -62,11 +81,23 @@ class UnixDirectoryStream
      * Initializes a new instance
      */
     UnixDirectoryStream(UnixPath dir, long dp, DirectoryStream.Filter<? super Path> filter) {
+        this(dir, dp, filter, false);
+    }
+
+    /**
+     * Initializes a new instance that optionally returns the entries with
+     * their attributes.
+     */
+    UnixDirectoryStream(UnixPath dir,
+                        long dp,
+                        DirectoryStream.Filter<? super Path> filter,
+                        boolean prefetchAttributes)
+    {
         this.dir = dir;
         this.dp = dp;
         this.filter = filter;
+        this.prefetchAttributes = prefetchAttributes;
     }
-
     protected final UnixPath directory() {
         return dir;
     }
@@ -126,6 +157,170 @@ class UnixDirectoryStream
         return iterator(this);
     }
 
+    /**
+     * A batch of entries read from the directory.
+     */
+    private class Batch {
+        private final byte[][] names = new byte[BATCH_SIZE][];
+        private final int[] types = new int[BATCH_SIZE];
+        private int count;
+
+        // attributes of the entries, read lazily; guarded by this
+        private UnixFileAttributes[] attrs;
+
+        /**
+         * Reads the next batch of entries from the directory, returning
+         * false at EOF.
+         */
+        boolean read() throws UnixException {
+            count = readdirBatch(dp, names, types);
+            return count > 0;
+        }
+
+        boolean hasFileTypes() {
+            for (int i = 0; i < count; i++) {
+                if (types[i] == 0)
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Reads the attributes of all entries in the batch, if not already
+         * read. The directory must be open and the caller must hold the
+         * read lock.
+         */
+        synchronized void readAttributes() throws UnixException {
+            if (attrs == null)
+                attrs = UnixFileAttributes.get(dirfd(dp), names, count);
+        }
+
+        /**
+         * Returns the attributes of an entry. If the prefetched attributes
+         * are not available then they are read from the file.
+         */
+        UnixFileAttributes attributes(int index) throws UnixException {
+            readLock().lock();
+            try {
+                if (isOpen() && openatSupported())
+                    readAttributes();
+            } catch (UnixException x) {
+                // ignore, read below
+            } finally {
+                readLock().unlock();
+            }
+            synchronized (this) {
+                if (attrs != null && attrs[index] != null)
+                    return attrs[index];
+            }
+            // directory has been closed or the file could not be stat'ed
+            return UnixFileAttributes.get(path(index), false);
+        }
+
+        UnixPath path(int index) {
+            return dir.resolve(names[index]);
+        }
+
+        /**
+         * Returns the path of the entry with its attributes cached, or without
+         * attributes if they cannot be read.
+         */
+        UnixPath entry(int index) {
+            if (!prefetchAttributes)
+                return dir.resolve(names[index]);
+            BasicFileAttributes entryAttrs;
+            if (types[index] != 0) {
+                entryAttrs = new EntryAttributes(this, index, types[index]);
+            } else {
+                synchronized (this) {
+                    entryAttrs = (attrs != null) ? attrs[index] : null;
+                }
+                if (entryAttrs == null)
+                    return dir.resolve(names[index]);
+            }
+            return dir.resolve(names[index], entryAttrs);
+        }
+    }
+
+    /**
+     * The attributes of a directory entry whose file type is known. The
+     * other attributes are read on first access. If they cannot be read,
+     * because the file has been removed by then for example, the methods
+     * that return them throw UncheckedIOException with the cause.
+     */
+    private static class EntryAttributes implements BasicFileAttributes {
+        private final Batch batch;
+        private final int index;
+        private final int type;
+        private volatile UnixFileAttributes attrs;
+
+        EntryAttributes(Batch batch, int index, int type) {
+            this.batch = batch;
+            this.index = index;
+            this.type = type;
+        }
+
+        private UnixFileAttributes attrs() {
+            UnixFileAttributes attrs = this.attrs;
+            if (attrs == null) {
+                try {
+                    attrs = batch.attributes(index);
+                } catch (UnixException x) {
+                    throw new UncheckedIOException(x.asIOException(batch.path(index)));
+                }
+                this.attrs = attrs;
+            }
+            return attrs;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return attrs().lastModifiedTime();
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return attrs().lastAccessTime();
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return attrs().creationTime();
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return type == UnixConstants.S_IFREG;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return type == UnixConstants.S_IFDIR;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return type == UnixConstants.S_IFLNK;
+        }
+
+        @Override
+        public boolean isOther() {
+            return (type != UnixConstants.S_IFREG &&
+                    type != UnixConstants.S_IFDIR &&
+                    type != UnixConstants.S_IFLNK);
+        }
+
+        @Override
+        public long size() {
+            return attrs().size();
+        }
+
+        @Override
+        public Object fileKey() {
+            return attrs().fileKey();
+        }
+    }
+
     /**
      * Iterator implementation
      */
@@ -136,19 +331,40 @@ class UnixDirectoryStream
         // next entry to return
         private Path nextEntry;
 
+        // current batch of entries and index of next entry in the batch
+        private Batch batch;
+        private int index;
+
         UnixDirectoryIterator() {
             atEof = false;
         }
 
-        // Return true if file name is "." or ".."
-        private boolean isSelfOrParent(byte[] nameAsBytes) {
-            if (nameAsBytes[0] == '.') {
-                if ((nameAsBytes.length == 1) ||
-                    (nameAsBytes.length == 2 && nameAsBytes[1] == '.')) {
-                    return true;
+        // Reads the next batch of entries, returns false at EOF
+        private boolean readNextBatch() {
+            Batch next = new Batch();
+            boolean eof = true;
+
+            // prevent close while reading
+            readLock().lock();
+            try {
+                if (isOpen() && next.read()) {
+                    eof = false;
+                    // read the attributes now when the file types are not known
+                    if (prefetchAttributes && openatSupported() && !next.hasFileTypes())
+                        next.readAttributes();
                 }
+            } catch (UnixException x) {
+                IOException ioe = x.asIOException(dir);
+                throw new DirectoryIteratorException(ioe);
+            } finally {
+                readLock().unlock();
             }
-            return false;
+
+            if (eof)
+                return false;
+            batch = next;
+            index = 0;
+            return true;
         }
 
         // Returns next entry (or null)
@@ -156,38 +372,21 @@ class UnixDirectoryStream
             assert Thread.holdsLock(this);
 
             for (;;) {
-                byte[] nameAsBytes = null;
-
-                // prevent close while reading
-                readLock().lock();
-                try {
-                    if (isOpen()) {
-                        nameAsBytes = readdir(dp);
-                    }
-                } catch (UnixException x) {
-                    IOException ioe = x.asIOException(dir);
-                    throw new DirectoryIteratorException(ioe);
-                } finally {
-                    readLock().unlock();
-                }
-
                 // EOF
-                if (nameAsBytes == null) {
+                if ((batch == null || index >= batch.count) && !readNextBatch()) {
                     atEof = true;
+                    batch = null;
                     return null;
                 }
 
-                // ignore "." and ".."
-                if (!isSelfOrParent(nameAsBytes)) {
-                    Path entry = dir.resolve(nameAsBytes);
-
-                    // return entry if no filter or filter accepts it
-                    try {
-                        if (filter == null || filter.accept(entry))
-                            return entry;
-                    } catch (IOException ioe) {
-                        throw new DirectoryIteratorException(ioe);
-                    }
+                Path entry = batch.entry(index++);
+
+                // return entry if no filter or filter accepts it
+                try {
+                    if (filter == null || filter.accept(entry))
+                        return entry;
+                } catch (IOException ioe) {
+                    throw new DirectoryIteratorException(ioe);
                 }
             }
         }
@@ -91,6 +91,21 @@ class UnixFileAttributes
         return attrs;
     }
 
+    // get the UnixFileAttributes, without following links, for the files in
+    // an open directory. An element is null if the file's attributes cannot
+    // be read.
+    static UnixFileAttributes[] get(int dfd, byte[][] names, int count)
+        throws UnixException
+    {
+        UnixFileAttributes[] attrs = new UnixFileAttributes[count];
+        for (int i = 0; i < count; i++) {
+            attrs[i] = new UnixFileAttributes();
+        }
+        UnixNativeDispatcher.fstatatBatch(dfd, names, count,
+            UnixConstants.AT_SYMLINK_NOFOLLOW, attrs);
+        return attrs;
+    }
+
     // package-private
     boolean isSameFile(UnixFileAttributes attrs) {
         return ((st_ino == attrs.st_ino) && (st_dev == attrs.st_dev));
@@ -31,11 +31,13 @@ import java.nio.file.spi.FileTypeDetector;
 import java.nio.channels.*;
 import java.net.URI;
 import java.util.concurrent.ExecutorService;
+import java.io.FileDescriptor;
 import java.io.IOException;
 import java.io.FilePermission;
 import java.util.*;
 import java.security.AccessController;
 
+import sun.nio.ch.SimpleAsynchronousFileChannelImpl;
 import sun.nio.ch.ThreadPool;
 import sun.security.util.SecurityConstants;
 import static sun.nio.fs.UnixNativeDispatcher.*;
@@ -184,6 +186,18 @@ public abstract class UnixFileSystemProvider
         }
     }
 
+    /**
+     * Returns an AsynchronousFileChannel to access an open file. The default
+     * implementation performs the I/O operations on a thread pool.
+     */
+    AsynchronousFileChannel newAsynchronousFileChannel(FileDescriptor fdObj,
+                                                       boolean reading,
+                                                       boolean writing,
+                                                       ThreadPool pool)
+    {
+        return SimpleAsynchronousFileChannelImpl.open(fdObj, reading, writing, pool);
+    }
+
     @Override
     public AsynchronousFileChannel newAsynchronousFileChannel(Path obj,
                                                               Set<? extends OpenOption> options,
@@ -196,7 +210,7 @@ public abstract class UnixFileSystemProvider
         ThreadPool pool = (executor == null) ? null : ThreadPool.wrap(executor, 0);
         try {
             return UnixChannelFactory
-                .newAsynchronousFileChannel(file, options, mode, pool);
+                .newAsynchronousFileChannel(this, file, options, mode, pool);
         } catch (UnixException x) {
             x.rethrowAsIOException(file);
             return null;
@@ -434,6 +448,23 @@ public abstract class UnixFileSystemProvider
         return new UnixSecureDirectoryStream(dir, dp, dfd2, filter);
     }
 
+    @Override
+    public DirectoryStream<Path> newDirectoryStreamForWalk(Path obj)
+        throws IOException
+    {
+        UnixPath dir = UnixPath.toUnixPath(obj);
+        dir.checkRead();
+        try {
+            long ptr = opendir(dir);
+            return new UnixDirectoryStream(dir, ptr, null, true);
+        } catch (UnixException x) {
+            if (x.errno() == ENOTDIR)
+                throw new NotDirectoryException(dir.getPathForExceptionMessage());
+            x.rethrowAsIOException(dir);
+            return null;  // keep compiler happy
+        }
+    }
+
     @Override
     public void createSymbolicLink(Path obj1, Path obj2, FileAttribute<?>... attrs)
         throws IOException
@@ -358,6 +358,14 @@ class UnixNativeDispatcher {
     private static native void fstatat0(int dfd, long pathAddress, int flag,
         UnixFileAttributes attrs) throws UnixException;
 
+    /**
+     * Invokes fstatat(dfd, names[i], buf, flag) for each element of attrs,
+     * up to count, that is not null. The element is set to null if the
+     * attributes of the file cannot be read.
+     */
+    static native void fstatatBatch(int dfd, byte[][] names, int count, int flag,
+        UnixFileAttributes[] attrs) throws UnixException;
+
     /**
      * chown(const char* path, uid_t owner, gid_t group)
      */
@@ -462,6 +470,21 @@ class UnixNativeDispatcher {
      */
     static native byte[] readdir(long dir) throws UnixException;
 
+    /**
+     * Reads up to names.length entries from the directory, skipping "." and
+     * "..". The type of each file, as the S_IFMT bits of st_mode, is stored
+     * in types, or 0 if not known.
+     *
+     * @return  the number of entries read, 0 at end of the directory
+     */
+    static native int readdirBatch(long dir, byte[][] names, int[] types)
+        throws UnixException;
+
+    /**
+     * int dirfd(DIR* dirp)
+     */
+    static native int dirfd(long dir) throws UnixException;
+
     /**
      * size_t read(int fildes, void* buf, size_t nbyte)
      */
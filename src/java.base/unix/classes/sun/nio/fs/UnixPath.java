@@ -27,6 +27,7 @@ package sun.nio.fs;
 
 import java.nio.*;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.charset.*;
 import java.io.*;
 import java.net.URI;
@@ -418,6 +419,44 @@ class UnixPath implements Path {
         return resolve(new UnixPath(getFileSystem(), other));
     }
 
+    // resolve the name of a directory entry, caching the given attributes of
+    // the file with the resulting path
+    UnixPath resolve(byte[] name, BasicFileAttributes attrs) {
+        return new UnixPathWithAttributes(getFileSystem(),
+                                          resolve(path, name),
+                                          attrs);
+    }
+
+    /**
+     * Special implementation with attached/cached attributes (used to quicken
+     * file tree traversal)
+     */
+    private static class UnixPathWithAttributes
+        extends UnixPath implements BasicFileAttributesHolder
+    {
+        private volatile BasicFileAttributes attrs;
+
+        UnixPathWithAttributes(UnixFileSystem fs,
+                               byte[] path,
+                               BasicFileAttributes attrs)
+        {
+            super(fs, path);
+            this.attrs = attrs;
+        }
+
+        @Override
+        public BasicFileAttributes get() {
+            return attrs;
+        }
+
+        @Override
+        public void invalidate() {
+            attrs = null;
+        }
+
+        // no need to override equals/hashCode.
+    }
+
     @Override
     public UnixPath relativize(Path obj) {
         UnixPath child = toUnixPath(obj);
@@ -916,7 +955,31 @@ class UnixPath implements Path {
             throw new NullPointerException();
         if (!(watcher instanceof AbstractWatchService))
             throw new ProviderMismatchException();
-        checkRead();
+
+        // When a security manager is set then we need to make a defensive
+        // copy of the modifiers and check for the FILE_TREE modifier. When
+        // the modifier is present then check that permission has been
+        // granted recursively.
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            boolean watchSubtree = false;
+            final int ml = modifiers.length;
+            if (ml > 0) {
+                modifiers = Arrays.copyOf(modifiers, ml);
+                int i=0;
+                while (i < ml) {
+                    if (ExtendedOptions.FILE_TREE.matches(modifiers[i++])) {
+                        watchSubtree = true;
+                        break;
+                    }
+                }
+            }
+            String s = getPathForPermissionCheck();
+            sm.checkRead(s);
+            if (watchSubtree)
+                sm.checkRead(s + "/-");
+        }
+
         return ((AbstractWatchService)watcher).register(this, events, modifiers);
     }
 }
@@ -125,3 +125,32 @@ Java_java_nio_MappedByteBuffer_force0(JNIEnv *env, jobject obj, jobject fdo,
         JNU_ThrowIOExceptionWithLastError(env, "msync failed");
     }
 }
+
+
+JNIEXPORT void JNICALL
+Java_java_nio_MappedByteBuffer_advise0(JNIEnv *env, jobject obj, jlong address,
+                                       jlong len, jint advice)
+{
+    void *a = (void *)jlong_to_ptr(address);
+    int flag;
+    switch (advice) {
+        case java_nio_MappedByteBuffer_ADVICE_NORMAL:
+            flag = MADV_NORMAL; break;
+        case java_nio_MappedByteBuffer_ADVICE_RANDOM:
+            flag = MADV_RANDOM; break;
+        case java_nio_MappedByteBuffer_ADVICE_SEQUENTIAL:
+            flag = MADV_SEQUENTIAL; break;
+        case java_nio_MappedByteBuffer_ADVICE_WILL_NEED:
+            flag = MADV_WILLNEED; break;
+        case java_nio_MappedByteBuffer_ADVICE_DONT_NEED:
+            flag = MADV_DONTNEED; break;
+#ifdef MADV_HUGEPAGE
+        case java_nio_MappedByteBuffer_ADVICE_HUGE_PAGES:
+            flag = MADV_HUGEPAGE; break;
+#endif
+        default:
+            return;     /* not supported */
+    }
+    /* advice is a hint so failure is ignored */
+    madvise((caddr_t)a, (size_t)len, flag);
+}
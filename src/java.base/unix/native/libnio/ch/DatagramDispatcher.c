@@ -36,9 +36,42 @@
 #include <sys/socket.h>
 #include <string.h>
 
+#include "net_util.h"
+#include "net_util_md.h"
+#include "nio.h"
 #include "nio_util.h"
 #include <limits.h>
 
+/* must match DatagramDispatcher.MAX_BATCH */
+#define MAX_BATCH 64
+
+static jclass isa_class;        /* java.net.InetSocketAddress */
+static jmethodID isa_ctorID;    /*   .InetSocketAddress(InetAddress, int) */
+
+JNIEXPORT void JNICALL
+Java_sun_nio_ch_DatagramDispatcher_initIDs(JNIEnv *env, jclass clazz)
+{
+    clazz = (*env)->FindClass(env, "java/net/InetSocketAddress");
+    CHECK_NULL(clazz);
+    isa_class = (*env)->NewGlobalRef(env, clazz);
+    if (isa_class == NULL) {
+        JNU_ThrowOutOfMemoryError(env, NULL);
+        return;
+    }
+    isa_ctorID = (*env)->GetMethodID(env, clazz, "<init>",
+                                     "(Ljava/net/InetAddress;I)V");
+}
+
+JNIEXPORT jboolean JNICALL
+Java_sun_nio_ch_DatagramDispatcher_batchSupported0(JNIEnv *env, jclass clazz)
+{
+#ifdef __linux__
+    return JNI_TRUE;
+#else
+    return JNI_FALSE;
+#endif
+}
+
 JNIEXPORT jint JNICALL
 Java_sun_nio_ch_DatagramDispatcher_read0(JNIEnv *env, jclass clazz,
                          jobject fdo, jlong address, jint len)
@@ -117,3 +150,156 @@ Java_sun_nio_ch_DatagramDispatcher_writev0(JNIEnv *env, jclass clazz,
     }
     return convertLongReturnVal(env, (jlong)result, JNI_FALSE);
 }
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_DatagramDispatcher_receiveBatch0(JNIEnv *env, jclass clazz,
+                                                 jobject fdo, jlongArray addresses,
+                                                 jintArray lengths, jobjectArray sources,
+                                                 jint count, jboolean connected)
+{
+#ifdef __linux__
+    jint fd = fdval(env, fdo);
+    struct mmsghdr msgs[MAX_BATCH];
+    struct iovec iovs[MAX_BATCH];
+    SOCKETADDRESS sas[MAX_BATCH];
+    jlong addrs[MAX_BATCH];
+    jint lens[MAX_BATCH];
+    jobject isa = NULL;
+    int i, n;
+
+    if (count > MAX_BATCH) {
+        count = MAX_BATCH;
+    }
+    (*env)->GetLongArrayRegion(env, addresses, 0, count, addrs);
+    (*env)->GetIntArrayRegion(env, lengths, 0, count, lens);
+    if ((*env)->ExceptionCheck(env)) {
+        return IOS_THROWN;
+    }
+
+    memset(msgs, 0, sizeof(struct mmsghdr) * count);
+    for (i = 0; i < count; i++) {
+        iovs[i].iov_base = jlong_to_ptr(addrs[i]);
+        iovs[i].iov_len = (lens[i] > MAX_PACKET_LEN) ? MAX_PACKET_LEN : lens[i];
+        msgs[i].msg_hdr.msg_iov = &iovs[i];
+        msgs[i].msg_hdr.msg_iovlen = 1;
+        msgs[i].msg_hdr.msg_name = &sas[i];
+        msgs[i].msg_hdr.msg_namelen = sizeof(SOCKETADDRESS);
+    }
+
+    /* block for the first datagram only */
+    for (;;) {
+        n = recvmmsg(fd, msgs, count, MSG_WAITFORONE, NULL);
+        if (n >= 0) {
+            break;
+        }
+        if (errno == EAGAIN || errno == EWOULDBLOCK) {
+            return IOS_UNAVAILABLE;
+        }
+        if (errno == EINTR) {
+            return IOS_INTERRUPTED;
+        }
+        if (errno == ECONNREFUSED) {
+            if (connected == JNI_FALSE) {
+                continue;
+            }
+            JNU_ThrowByName(env, JNU_JAVANETPKG "PortUnreachableException", 0);
+            return IOS_THROWN;
+        }
+        return handleSocketError(env, errno);
+    }
+
+    for (i = 0; i < n; i++) {
+        lens[i] = (jint) msgs[i].msg_len;
+
+        /* consecutive datagrams from the same source share the address */
+        if (isa == NULL || msgs[i].msg_hdr.msg_namelen != msgs[i-1].msg_hdr.msg_namelen
+                || memcmp(&sas[i], &sas[i-1], msgs[i].msg_hdr.msg_namelen) != 0) {
+            int port = 0;
+            jobject ia = NET_SockaddrToInetAddress(env, &sas[i], &port);
+            CHECK_NULL_RETURN(ia, IOS_THROWN);
+            if (isa != NULL) {
+                (*env)->DeleteLocalRef(env, isa);
+            }
+            isa = (*env)->NewObject(env, isa_class, isa_ctorID, ia, port);
+            CHECK_NULL_RETURN(isa, IOS_THROWN);
+            (*env)->DeleteLocalRef(env, ia);
+        }
+        (*env)->SetObjectArrayElement(env, sources, i, isa);
+        if ((*env)->ExceptionCheck(env)) {
+            return IOS_THROWN;
+        }
+    }
+    (*env)->SetIntArrayRegion(env, lengths, 0, n, lens);
+    return n;
+#else
+    return IOS_UNSUPPORTED;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_DatagramDispatcher_sendBatch0(JNIEnv *env, jclass clazz,
+                                              jobject fdo, jboolean preferIPv6,
+                                              jlongArray addresses, jintArray lengths,
+                                              jobjectArray targets, jintArray ports,
+                                              jint count)
+{
+#ifdef __linux__
+    jint fd = fdval(env, fdo);
+    struct mmsghdr msgs[MAX_BATCH];
+    struct iovec iovs[MAX_BATCH];
+    SOCKETADDRESS sas[MAX_BATCH];
+    jlong addrs[MAX_BATCH];
+    jint lens[MAX_BATCH];
+    jint portv[MAX_BATCH];
+    int i, n;
+
+    if (count > MAX_BATCH) {
+        count = MAX_BATCH;
+    }
+    (*env)->GetLongArrayRegion(env, addresses, 0, count, addrs);
+    (*env)->GetIntArrayRegion(env, lengths, 0, count, lens);
+    if (targets != NULL) {
+        (*env)->GetIntArrayRegion(env, ports, 0, count, portv);
+    }
+    if ((*env)->ExceptionCheck(env)) {
+        return IOS_THROWN;
+    }
+
+    memset(msgs, 0, sizeof(struct mmsghdr) * count);
+    for (i = 0; i < count; i++) {
+        iovs[i].iov_base = jlong_to_ptr(addrs[i]);
+        iovs[i].iov_len = (lens[i] > MAX_PACKET_LEN) ? MAX_PACKET_LEN : lens[i];
+        msgs[i].msg_hdr.msg_iov = &iovs[i];
+        msgs[i].msg_hdr.msg_iovlen = 1;
+        if (targets != NULL) {
+            int sa_len = 0;
+            jobject ia = (*env)->GetObjectArrayElement(env, targets, i);
+            if (NET_InetAddressToSockaddr(env, ia, portv[i], &sas[i],
+                                          &sa_len, preferIPv6) != 0) {
+                return IOS_THROWN;
+            }
+            (*env)->DeleteLocalRef(env, ia);
+            msgs[i].msg_hdr.msg_name = &sas[i];
+            msgs[i].msg_hdr.msg_namelen = sa_len;
+        }
+    }
+
+    n = sendmmsg(fd, msgs, count, 0);
+    if (n < 0) {
+        if (errno == EAGAIN || errno == EWOULDBLOCK) {
+            return IOS_UNAVAILABLE;
+        }
+        if (errno == EINTR) {
+            return IOS_INTERRUPTED;
+        }
+        if (errno == ECONNREFUSED) {
+            JNU_ThrowByName(env, JNU_JAVANETPKG "PortUnreachableException", 0);
+            return IOS_THROWN;
+        }
+        return handleSocketError(env, errno);
+    }
+    return n;
+#else
+    return IOS_UNSUPPORTED;
+#endif
+}
@@ -31,6 +31,9 @@
 
 #if defined(__linux__) || defined(__solaris__)
 #include <sys/sendfile.h>
+#if defined(__linux__)
+#include <sys/syscall.h>
+#endif
 #elif defined(_AIX)
 #include <sys/socket.h>
 #elif defined(_ALLBSD_SOURCE)
@@ -121,6 +124,61 @@ Java_sun_nio_ch_FileChannelImpl_unmap0(JNIEnv *env, jobject this,
                   "Unmap failed");
 }
 
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_FileChannelImpl_remap0(JNIEnv *env, jclass clazz,
+                                       jlong address, jlong len)
+{
+    void *a = (void *)jlong_to_ptr(address);
+    int flags = MAP_PRIVATE | MAP_ANONYMOUS | MAP_FIXED;
+#ifdef MAP_NORESERVE
+    flags |= MAP_NORESERVE;
+#endif
+    /* atomically replace the file mapping with anonymous memory */
+    if (mmap64(a, (size_t)len, PROT_READ | PROT_WRITE, flags, -1, 0) == MAP_FAILED) {
+        JNU_ThrowIOExceptionWithLastError(env, "Remap failed");
+        return IOS_THROWN;
+    }
+    return 0;
+}
+
+JNIEXPORT jlong JNICALL
+Java_sun_nio_ch_FileChannelImpl_transferBetweenFiles0(JNIEnv *env, jclass clazz,
+                                                      jobject srcFDO,
+                                                      jlong srcPosition,
+                                                      jlong count,
+                                                      jobject dstFDO,
+                                                      jlong dstPosition)
+{
+#if defined(__linux__) && defined(__NR_copy_file_range)
+    jint srcFD = fdval(env, srcFDO);
+    jint dstFD = fdval(env, dstFDO);
+    loff_t srcOffset = (loff_t)srcPosition;
+    loff_t dstOffset = (loff_t)dstPosition;
+    jlong n;
+
+    /* a negative position means the file offset is used and updated */
+    n = syscall(__NR_copy_file_range, srcFD,
+                (srcPosition < 0) ? NULL : &srcOffset,
+                dstFD,
+                (dstPosition < 0) ? NULL : &dstOffset,
+                (size_t)count, 0);
+    if (n < 0) {
+        if (errno == ENOSYS)
+            return IOS_UNSUPPORTED;
+        if (errno == EXDEV || errno == EINVAL || errno == EBADF ||
+            errno == EOPNOTSUPP || errno == ETXTBSY || errno == EPERM)
+            return IOS_UNSUPPORTED_CASE;
+        if (errno == EINTR)
+            return IOS_INTERRUPTED;
+        JNU_ThrowIOExceptionWithLastError(env, "Transfer failed");
+        return IOS_THROWN;
+    }
+    return n;
+#else
+    return IOS_UNSUPPORTED;
+#endif
+}
+
 JNIEXPORT jlong JNICALL
 Java_sun_nio_ch_FileChannelImpl_transferTo0(JNIEnv *env, jobject this,
                                             jobject srcFDO,
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2000, 2009, Oracle and/or its affiliates. All rights reserved.
+ * Copyright (c) 2000, 2018, Oracle and/or its affiliates. All rights reserved.
  * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
  *
  * This code is free software; you can redistribute it and/or modify it
@@ -23,12 +23,164 @@
  * questions.
  */
 
+#include <errno.h>
+#include <fcntl.h>
+#include <string.h>
+#include <sys/types.h>
+#include <sys/socket.h>
+#include <netinet/in.h>
+
+#ifdef __linux__
+#include <linux/errqueue.h>
+#endif
+
 #include "jni.h"
 #include "jni_util.h"
 #include "jvm.h"
 #include "jlong.h"
 
-/* this is a fake c file to make the build happy since there is no
-   real SocketDispatcher.c file on Solaris but there is on windows. */
+#include "nio.h"
+#include "nio_util.h"
+#include "sun_nio_ch_SocketDispatcher.h"
+
+#ifdef __linux__
+
+#ifndef F_SETPIPE_SZ
+#define F_SETPIPE_SZ            1031
+#define F_GETPIPE_SZ            1032
+#endif
+
+#ifndef SO_ZEROCOPY
+#define SO_ZEROCOPY             60
+#endif
+
+#ifndef MSG_ZEROCOPY
+#define MSG_ZEROCOPY            0x4000000
+#endif
+
+#ifndef SO_EE_ORIGIN_ZEROCOPY
+#define SO_EE_ORIGIN_ZEROCOPY   5
+#endif
+
+#ifndef IPV6_RECVERR
+#define IPV6_RECVERR            25
+#endif
+
+#endif /* __linux__ */
+
+/* default capacity of a pipe */
+#define DEFAULT_PIPE_SIZE       65536
+
+JNIEXPORT jboolean JNICALL
+Java_sun_nio_ch_SocketDispatcher_spliceSupported0(JNIEnv *env, jclass clazz)
+{
+#ifdef __linux__
+    return JNI_TRUE;
+#else
+    return JNI_FALSE;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_SocketDispatcher_setPipeSize0(JNIEnv *env, jclass clazz,
+                                              jint fd, jint size)
+{
+#ifdef __linux__
+    int n;
+    if (size > DEFAULT_PIPE_SIZE) {
+        /* may fail if larger than /proc/sys/fs/pipe-max-size */
+        fcntl(fd, F_SETPIPE_SZ, size);
+    }
+    n = fcntl(fd, F_GETPIPE_SZ);
+    return (n > 0) ? n : DEFAULT_PIPE_SIZE;
+#else
+    return DEFAULT_PIPE_SIZE;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_SocketDispatcher_splice0(JNIEnv *env, jclass clazz,
+                                         jint fdIn, jint fdOut, jint len)
+{
+#ifdef __linux__
+    ssize_t n = splice(fdIn, NULL, fdOut, NULL, (size_t)len, SPLICE_F_MOVE);
+    return convertReturnVal(env, (jint)n, JNI_TRUE);
+#else
+    JNU_ThrowInternalError(env, "should not reach here");
+    return IOS_THROWN;
+#endif
+}
+
+JNIEXPORT jboolean JNICALL
+Java_sun_nio_ch_SocketDispatcher_enableZeroCopy0(JNIEnv *env, jclass clazz,
+                                                 jobject fdo)
+{
+#ifdef __linux__
+    int on = 1;
+    if (setsockopt(fdval(env, fdo), SOL_SOCKET, SO_ZEROCOPY, &on, sizeof(on)) == 0)
+        return JNI_TRUE;
+#endif
+    return JNI_FALSE;
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_SocketDispatcher_sendZeroCopy0(JNIEnv *env, jclass clazz,
+                                               jobject fdo, jlong address, jint len)
+{
+#ifdef __linux__
+    void *buf = (void *)jlong_to_ptr(address);
+    ssize_t n = send(fdval(env, fdo), buf, (size_t)len, MSG_ZEROCOPY);
+    if (n < 0 && errno == ENOBUFS) {
+        /* too many notifications outstanding */
+        return IOS_UNAVAILABLE;
+    }
+    return convertReturnVal(env, (jint)n, JNI_FALSE);
+#else
+    JNU_ThrowInternalError(env, "should not reach here");
+    return IOS_THROWN;
+#endif
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_SocketDispatcher_reapZeroCopy0(JNIEnv *env, jclass clazz,
+                                               jobject fdo, jintArray range)
+{
+#ifdef __linux__
+    char control[CMSG_SPACE(sizeof(struct sock_extended_err)) +
+                 CMSG_SPACE(sizeof(struct sockaddr_in6))];
+    struct msghdr msg;
+    struct cmsghdr *cmsg;
+    jint result = 0;
+
+    memset(&msg, 0, sizeof(msg));
+    msg.msg_control = control;
+    msg.msg_controllen = sizeof(control);
+
+    if (recvmsg(fdval(env, fdo), &msg, MSG_ERRQUEUE) < 0) {
+        if (errno == EAGAIN || errno == EWOULDBLOCK)
+            return IOS_UNAVAILABLE;
+        if (errno == EINTR)
+            return IOS_INTERRUPTED;
+        JNU_ThrowIOExceptionWithLastError(env, "recvmsg failed");
+        return IOS_THROWN;
+    }
 
-static jfieldID fd_fdID;        /* for jint 'fd' in java.io.FileDescriptor */
+    for (cmsg = CMSG_FIRSTHDR(&msg); cmsg != NULL; cmsg = CMSG_NXTHDR(&msg, cmsg)) {
+        if ((cmsg->cmsg_level == SOL_IP && cmsg->cmsg_type == IP_RECVERR) ||
+            (cmsg->cmsg_level == SOL_IPV6 && cmsg->cmsg_type == IPV6_RECVERR)) {
+            struct sock_extended_err *serr = (struct sock_extended_err *)CMSG_DATA(cmsg);
+            if (serr->ee_errno == 0 && serr->ee_origin == SO_EE_ORIGIN_ZEROCOPY) {
+                jint values[2];
+                values[0] = (jint)serr->ee_info;
+                values[1] = (jint)serr->ee_data;
+                (*env)->SetIntArrayRegion(env, range, 0, 2, values);
+                result = 1;
+            }
+        }
+    }
+    return result;
+#else
+    JNU_ThrowInternalError(env, "should not reach here");
+    return IOS_THROWN;
+#endif
+}
@@ -30,6 +30,11 @@
 #include <unistd.h>
 #include <errno.h>
 
+#if defined(__linux__)
+#include <sys/ioctl.h>
+#include <sys/syscall.h>
+#endif
+
 #include "sun_nio_fs_UnixCopyFile.h"
 
 #define RESTARTABLE(_cmd, _result) do { \
@@ -46,16 +51,97 @@ static void throwUnixException(JNIEnv* env, int errnum) {
     }
 }
 
+#if defined(__linux__)
+
+#ifndef FICLONE
+#define FICLONE _IOW(0x94, 9, int)
+#endif
+
+/* maximum number of bytes copied in the kernel between polls for cancel */
+#define MAX_COPY_CHUNK (16 * 1024 * 1024)
+
 /**
- * Transfer all bytes from src to dst via user-space buffers
+ * Returns 1 if the errno from FICLONE or copy_file_range indicates that the
+ * operation is not supported for the files, in which case the bytes are
+ * copied via user-space buffers.
+ */
+static int isUnsupported(int errnum) {
+    return errnum == ENOSYS || errnum == EXDEV || errnum == EINVAL ||
+           errnum == EOPNOTSUPP || errnum == ENOTTY || errnum == EBADF ||
+           errnum == ETXTBSY || errnum == EPERM;
+}
+
+/**
+ * Transfer all bytes from src to dst in the kernel. Returns 0 if all bytes
+ * have been transferred, 1 if the remaining bytes must be transferred via
+ * user-space buffers, or -1 if an exception has been thrown.
+ */
+static int transferInKernel(JNIEnv* env, jint dst, jint src, jboolean reflink,
+                            volatile jint* cancel)
+{
+    /* clone the file if allowed */
+    if (reflink) {
+        int res;
+        RESTARTABLE(ioctl((int)dst, FICLONE, (int)src), res);
+        if (res == 0)
+            return 0;
+        if (!isUnsupported(errno)) {
+            throwUnixException(env, errno);
+            return -1;
+        }
+    }
+
+#if defined(__NR_copy_file_range)
+    int copied = 0;
+    for (;;) {
+        ssize_t n;
+        size_t len = (cancel != NULL) ? MAX_COPY_CHUNK : 0x40000000;
+        RESTARTABLE(syscall(__NR_copy_file_range, (int)src, NULL, (int)dst,
+                            NULL, len, 0), n);
+        if (n == 0) {
+            /* some pseudo file systems report EOF without copying so
+               the file is read if nothing was copied */
+            return copied ? 0 : 1;
+        }
+        if (n < 0) {
+            if (isUnsupported(errno))
+                return 1;
+            throwUnixException(env, errno);
+            return -1;
+        }
+        copied = 1;
+        if (cancel != NULL && *cancel != 0) {
+            throwUnixException(env, ECANCELED);
+            return -1;
+        }
+    }
+#else
+    return 1;
+#endif
+}
+
+#endif
+
+/**
+ * Transfer all bytes from src to dst, in the kernel where possible and
+ * otherwise via user-space buffers
  */
 JNIEXPORT void JNICALL
 Java_sun_nio_fs_UnixCopyFile_transfer
-    (JNIEnv* env, jclass this, jint dst, jint src, jlong cancelAddress)
+    (JNIEnv* env, jclass this, jint dst, jint src, jboolean reflink,
+     jlong cancelAddress)
 {
     char buf[8192];
     volatile jint* cancel = (jint*)jlong_to_ptr(cancelAddress);
 
+#if defined(__linux__)
+    /* the file offsets are updated so the remaining bytes, if any, are
+       copied below */
+    int res = transferInKernel(env, dst, src, reflink, cancel);
+    if (res <= 0)
+        return;
+#endif
+
     for (;;) {
         ssize_t n, pos, len;
         RESTARTABLE(read((int)src, &buf, sizeof(buf)), n);
@@ -620,6 +620,51 @@ Java_sun_nio_fs_UnixNativeDispatcher_fstatat0(JNIEnv* env, jclass this, jint dfd
     }
 }
 
+/**
+ * Invokes fstatat for each of the given file names, relative to the
+ * directory. The element of attrs is set to NULL if the attributes of
+ * the file cannot be read.
+ */
+JNIEXPORT void JNICALL
+Java_sun_nio_fs_UnixNativeDispatcher_fstatatBatch(JNIEnv* env, jclass this,
+    jint dfd, jobjectArray names, jint count, jint flag, jobjectArray attrs)
+{
+    int i;
+    char path[PATH_MAX+1];
+
+    if (my_fstatat64_func == NULL) {
+        JNU_ThrowInternalError(env, "should not reach here");
+        return;
+    }
+    for (i = 0; i < count; i++) {
+        int err;
+        struct stat64 buf;
+        jbyteArray name;
+        jobject element;
+        jsize len;
+
+        element = (*env)->GetObjectArrayElement(env, attrs, i);
+        if (element == NULL)
+            continue;
+        name = (jbyteArray)(*env)->GetObjectArrayElement(env, names, i);
+        len = (*env)->GetArrayLength(env, name);
+        if (len > PATH_MAX) {
+            err = -1;
+        } else {
+            (*env)->GetByteArrayRegion(env, name, 0, len, (jbyte*)path);
+            path[len] = '\0';
+            RESTARTABLE((*my_fstatat64_func)((int)dfd, path, &buf, (int)flag), err);
+        }
+        if (err == -1) {
+            (*env)->SetObjectArrayElement(env, attrs, i, NULL);
+        } else {
+            prepAttributes(env, &buf, element);
+        }
+        (*env)->DeleteLocalRef(env, name);
+        (*env)->DeleteLocalRef(env, element);
+    }
+}
+
 JNIEXPORT void JNICALL
 Java_sun_nio_fs_UnixNativeDispatcher_chmod0(JNIEnv* env, jclass this,
     jlong pathAddress, jint mode)
@@ -792,6 +837,69 @@ Java_sun_nio_fs_UnixNativeDispatcher_readdir(JNIEnv* env, jclass this, jlong val
     }
 }
 
+/**
+ * Reads up to names.length entries from the directory, skipping "." and "..".
+ * The file type of each entry, in the form of st_mode, is stored in types
+ * or 0 if the file system does not provide the file type.
+ */
+JNIEXPORT jint JNICALL
+Java_sun_nio_fs_UnixNativeDispatcher_readdirBatch(JNIEnv* env, jclass this,
+    jlong value, jobjectArray names, jintArray types)
+{
+    DIR* dirp = jlong_to_ptr(value);
+    jsize max = (*env)->GetArrayLength(env, names);
+    jint count = 0;
+
+    while (count < max) {
+        struct dirent64* ptr;
+        jsize len;
+        jbyteArray bytes;
+        jint type;
+
+        errno = 0;
+        ptr = readdir64(dirp);
+        if (ptr == NULL) {
+            if (errno != 0) {
+                throwUnixException(env, errno);
+                return -1;
+            }
+            break;
+        }
+
+        /* skip "." and ".." */
+        if (ptr->d_name[0] == '.' && (ptr->d_name[1] == '\0' ||
+            (ptr->d_name[1] == '.' && ptr->d_name[2] == '\0')))
+            continue;
+
+        len = strlen(ptr->d_name);
+        bytes = (*env)->NewByteArray(env, len);
+        if (bytes == NULL)
+            return -1;
+        (*env)->SetByteArrayRegion(env, bytes, 0, len, (jbyte*)(ptr->d_name));
+        (*env)->SetObjectArrayElement(env, names, count, bytes);
+        (*env)->DeleteLocalRef(env, bytes);
+
+#if defined(DT_UNKNOWN) && defined(DTTOIF)
+        type = (ptr->d_type == DT_UNKNOWN) ? 0 : (jint)DTTOIF(ptr->d_type);
+#else
+        type = 0;
+#endif
+        (*env)->SetIntArrayRegion(env, types, count, 1, &type);
+        count++;
+    }
+    return count;
+}
+
+JNIEXPORT jint JNICALL
+Java_sun_nio_fs_UnixNativeDispatcher_dirfd(JNIEnv* env, jclass this, jlong dir) {
+    DIR* dirp = jlong_to_ptr(dir);
+    int fd = dirfd(dirp);
+    if (fd == -1) {
+        throwUnixException(env, errno);
+    }
+    return (jint)fd;
+}
+
 JNIEXPORT void JNICALL
 Java_sun_nio_fs_UnixNativeDispatcher_mkdir0(JNIEnv* env, jclass this,
     jlong pathAddress, jint mode)
@@ -59,6 +59,28 @@ class DatagramDispatcher extends NativeDispatcher
         SocketDispatcher.close0(fd);
     }
 
+    // batch operations are not supported on Windows
+    static final int MAX_BATCH = 1;
+    static final int MAX_PACKET_LEN = 65536;
+
+    boolean batchSupported() {
+        return false;
+    }
+
+    int receiveBatch(FileDescriptor fd, long[] addresses, int[] lengths,
+                     SocketAddress[] sources, int count, boolean connected)
+        throws IOException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    int sendBatch(FileDescriptor fd, boolean preferIPv6, long[] addresses,
+                  int[] lengths, InetAddress[] targets, int[] ports, int count)
+        throws IOException
+    {
+        throw new UnsupportedOperationException();
+    }
+
     static native int read0(FileDescriptor fd, long address, int len)
         throws IOException;
 
@@ -63,6 +63,38 @@ class SocketDispatcher extends NativeDispatcher
         close0(fd);
     }
 
+    // splice and MSG_ZEROCOPY are not supported on Windows
+
+    boolean spliceSupported() {
+        return false;
+    }
+
+    long makeSplicePipe(int size, int[] capacity) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    void closeSplicePipe(long fds) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    int splice(int fdIn, int fdOut, int len) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    boolean enableZeroCopy(FileDescriptor fd) {
+        return false;
+    }
+
+    int sendZeroCopy(FileDescriptor fd, long address, int len)
+        throws IOException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    int reapZeroCopy(FileDescriptor fd, int[] range) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
     //-- Native methods
     static native int read0(FileDescriptor fd, long address, int len)
         throws IOException;
@@ -70,6 +70,10 @@ class WindowsFileCopy {
                 interruptible = true;
                 continue;
             }
+            if (ExtendedOptions.REFLINK.matches(option)) {
+                // not supported, the file is copied
+                continue;
+            }
             if (option == null)
                 throw new NullPointerException();
             throw new UnsupportedOperationException("Unsupported copy option");
@@ -140,6 +140,25 @@ Java_sun_nio_ch_FileChannelImpl_unmap0(JNIEnv *env, jobject this,
     return 0;
 }
 
+JNIEXPORT jint JNICALL
+Java_sun_nio_ch_FileChannelImpl_remap0(JNIEnv *env, jclass clazz,
+                                       jlong address, jlong len)
+{
+    /* a view cannot be atomically replaced with anonymous memory */
+    return IOS_UNSUPPORTED;
+}
+
+JNIEXPORT jlong JNICALL
+Java_sun_nio_ch_FileChannelImpl_transferBetweenFiles0(JNIEnv *env, jclass clazz,
+                                                      jobject srcFD,
+                                                      jlong srcPosition,
+                                                      jlong count,
+                                                      jobject dstFD,
+                                                      jlong dstPosition)
+{
+    return IOS_UNSUPPORTED;
+}
+
 JNIEXPORT jlong JNICALL
 Java_sun_nio_ch_FileChannelImpl_transferTo0(JNIEnv *env, jobject this,
                                             jobject srcFD,
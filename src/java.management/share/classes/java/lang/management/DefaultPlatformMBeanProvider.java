@@ -33,6 +33,7 @@ import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.management.DynamicMBean;
 import javax.management.ObjectName;
 import sun.management.ManagementFactoryHelper;
 import sun.management.spi.PlatformMBeanProvider;
@@ -432,6 +433,70 @@ class DefaultPlatformMBeanProvider extends PlatformMBeanProvider {
             }
         });
 
+        /**
+         * Cache of idle HTTP keep-alive connections.
+         */
+        initMBeanList.add(new PlatformComponent<DynamicMBean>() {
+            private final Set<String> dynamicMBeanInterfaceNames
+                    = Collections.unmodifiableSet(Collections.singleton(
+                            "javax.management.DynamicMBean"));
+
+            @Override
+            public Set<Class<? extends DynamicMBean>> mbeanInterfaces() {
+                // DynamicMBean cannot be used to find an MBean by ManagementFactory
+                return Collections.emptySet();
+            }
+
+            @Override
+            public Set<String> mbeanInterfaceNames() {
+                return dynamicMBeanInterfaceNames;
+            }
+
+            @Override
+            public String getObjectNamePattern() {
+                return ManagementFactoryHelper.KEEP_ALIVE_CACHE_MBEAN_NAME;
+            }
+
+            @Override
+            public Map<String, DynamicMBean> nameToMBeanMap() {
+                return Collections.singletonMap(
+                        ManagementFactoryHelper.KEEP_ALIVE_CACHE_MBEAN_NAME,
+                        ManagementFactoryHelper.getKeepAliveCacheMBean());
+            }
+        });
+
+        /**
+         * InetAddress name lookup cache.
+         */
+        initMBeanList.add(new PlatformComponent<DynamicMBean>() {
+            private final Set<String> dynamicMBeanInterfaceNames
+                    = Collections.unmodifiableSet(Collections.singleton(
+                            "javax.management.DynamicMBean"));
+
+            @Override
+            public Set<Class<? extends DynamicMBean>> mbeanInterfaces() {
+                // DynamicMBean cannot be used to find an MBean by ManagementFactory
+                return Collections.emptySet();
+            }
+
+            @Override
+            public Set<String> mbeanInterfaceNames() {
+                return dynamicMBeanInterfaceNames;
+            }
+
+            @Override
+            public String getObjectNamePattern() {
+                return ManagementFactoryHelper.INET_ADDRESS_CACHE_MBEAN_NAME;
+            }
+
+            @Override
+            public Map<String, DynamicMBean> nameToMBeanMap() {
+                return Collections.singletonMap(
+                        ManagementFactoryHelper.INET_ADDRESS_CACHE_MBEAN_NAME,
+                        ManagementFactoryHelper.getInetAddressCacheMBean());
+            }
+        });
+
         /**
          * OperatingSystemMXBean
          */
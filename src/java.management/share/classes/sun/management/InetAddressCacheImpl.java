@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.management;
+
+import sun.net.InetAddressCachePolicy;
+import sun.net.InetAddressCacheStatistics;
+
+/**
+ * Management interface for the InetAddress name lookup cache.
+ */
+class InetAddressCacheImpl extends StatisticsMBean {
+
+    InetAddressCacheImpl() {
+        super("InetAddress name lookup cache",
+              new String[] { "NegativeEntryCount", "NegativeHitCount",
+                             "StaleHitCount", "RefreshCount",
+                             "RefreshFailureCount" },
+              new String[] { "CachePolicy", "NegativeCachePolicy",
+                             "StaleCachePolicy" });
+    }
+
+    @Override
+    Object getValue(String attribute) {
+        switch (attribute) {
+            case "NegativeEntryCount":
+                return InetAddressCacheStatistics.getNegativeEntryCount();
+            case "NegativeHitCount":
+                return InetAddressCacheStatistics.getNegativeHitCount();
+            case "StaleHitCount":
+                return InetAddressCacheStatistics.getStaleHitCount();
+            case "RefreshCount":
+                return InetAddressCacheStatistics.getRefreshCount();
+            case "RefreshFailureCount":
+                return InetAddressCacheStatistics.getRefreshFailureCount();
+            case "CachePolicy":
+                return InetAddressCachePolicy.get();
+            case "NegativeCachePolicy":
+                return InetAddressCachePolicy.getNegative();
+            case "StaleCachePolicy":
+                return InetAddressCachePolicy.getStale();
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.management;
+
+import sun.net.www.http.KeepAliveCache;
+
+/**
+ * Management interface for the cache of idle keep-alive connections used by
+ * the {@code http} and {@code https} URL protocol handlers.
+ */
+class KeepAliveCacheImpl extends StatisticsMBean {
+
+    KeepAliveCacheImpl() {
+        super("Cache of idle HTTP keep-alive connections",
+              new String[] { "HitCount", "MissCount", "EvictionCount" },
+              new String[] { "IdleConnectionCount", "RouteCount",
+                             "MaxConnectionsPerRoute", "MaxTotalConnections" });
+    }
+
+    @Override
+    Object getValue(String attribute) {
+        // the cache is looked up on each access so that registering the MBean
+        // does not initialize the HTTP protocol handler
+        KeepAliveCache cache = KeepAliveCache.getInstance();
+        switch (attribute) {
+            case "HitCount":
+                return cache.getHitCount();
+            case "MissCount":
+                return cache.getMissCount();
+            case "EvictionCount":
+                return cache.getEvictionCount();
+            case "IdleConnectionCount":
+                return cache.getIdleConnectionCount();
+            case "RouteCount":
+                return cache.getRouteCount();
+            case "MaxConnectionsPerRoute":
+                return cache.getMaxConnectionsPerRoute();
+            case "MaxTotalConnections":
+                return cache.getMaxTotalConnections();
+            default:
+                return null;
+        }
+    }
+}
@@ -28,6 +28,7 @@ package sun.management;
 import java.lang.management.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import javax.management.DynamicMBean;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
 import javax.management.MBeanServer;
@@ -340,11 +341,13 @@ public class ManagementFactoryHelper {
     private static List<BufferPoolMXBean> bufferPools = null;
     public static synchronized List<BufferPoolMXBean> getBufferPoolMXBeans() {
         if (bufferPools == null) {
-            bufferPools = new ArrayList<>(2);
+            bufferPools = new ArrayList<>(3);
             bufferPools.add(createBufferPoolMXBean(SharedSecrets.getJavaNioAccess()
                 .getDirectBufferPool()));
             bufferPools.add(createBufferPoolMXBean(sun.nio.ch.FileChannelImpl
                 .getMappedBufferPool()));
+            bufferPools.add(createBufferPoolMXBean(sun.nio.ch.Util
+                .getTemporaryBufferPool()));
         }
         return bufferPools;
     }
@@ -393,6 +396,28 @@ public class ManagementFactoryHelper {
         };
     }
 
+    private static DynamicMBean keepAliveCacheMBean = null;
+    public static synchronized DynamicMBean getKeepAliveCacheMBean() {
+        if (keepAliveCacheMBean == null) {
+            keepAliveCacheMBean = new KeepAliveCacheImpl();
+        }
+        return keepAliveCacheMBean;
+    }
+
+    public final static String KEEP_ALIVE_CACHE_MBEAN_NAME =
+        "sun.net.www.http:type=KeepAliveCache";
+
+    private static DynamicMBean inetAddressCacheMBean = null;
+    public static synchronized DynamicMBean getInetAddressCacheMBean() {
+        if (inetAddressCacheMBean == null) {
+            inetAddressCacheMBean = new InetAddressCacheImpl();
+        }
+        return inetAddressCacheMBean;
+    }
+
+    public final static String INET_ADDRESS_CACHE_MBEAN_NAME =
+        "sun.net:type=InetAddressCache";
+
     private static HotspotRuntime hsRuntimeMBean = null;
     private static HotspotClassLoading hsClassMBean = null;
     private static HotspotThread hsThreadMBean = null;
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.management;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanConstructorInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Base class for MBeans that expose read-only statistics of internal
+ * components of the java.base module.
+ *
+ * These are DynamicMBeans so that no management interface needs to be
+ * exported, the attributes are internal and subject to change without
+ * notice.
+ */
+abstract class StatisticsMBean implements DynamicMBean {
+
+    private final MBeanInfo info;
+
+    /**
+     * Creates an MBean with the given attributes of type long and int.
+     */
+    StatisticsMBean(String description,
+                    String[] longAttributes,
+                    String[] intAttributes) {
+        int n = longAttributes.length + intAttributes.length;
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[n];
+        int i = 0;
+        for (String name : longAttributes) {
+            attributes[i++] = new MBeanAttributeInfo(name, "long", name,
+                                                     true, false, false);
+        }
+        for (String name : intAttributes) {
+            attributes[i++] = new MBeanAttributeInfo(name, "int", name,
+                                                     true, false, false);
+        }
+        info = new MBeanInfo(getClass().getName(),
+                             description,
+                             attributes,
+                             new MBeanConstructorInfo[0],
+                             new MBeanOperationInfo[0],
+                             new MBeanNotificationInfo[0]);
+    }
+
+    /**
+     * Returns the value of the given attribute, or {@code null} if there
+     * is no such attribute.
+     */
+    abstract Object getValue(String attribute);
+
+    @Override
+    public Object getAttribute(String attribute)
+        throws AttributeNotFoundException
+    {
+        Object value = getValue(attribute);
+        if (value == null)
+            throw new AttributeNotFoundException(attribute);
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute)
+        throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException(
+            "Attribute " + attribute.getName() + " is not writable");
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String name : attributes) {
+            Object value = getValue(name);
+            if (value != null) {
+                list.add(new Attribute(name, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature)
+        throws ReflectionException
+    {
+        throw new ReflectionException(
+            new NoSuchMethodException(actionName), "No such operation");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        return info;
+    }
+}
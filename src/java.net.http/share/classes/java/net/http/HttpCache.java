@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package java.net.http;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import jdk.internal.net.http.HttpCacheImpl;
+
+/**
+ * A store of HTTP responses, that an {@link HttpClient} consults before
+ * sending a request, and in which it keeps the responses that may be reused.
+ *
+ * <p> A client {@linkplain HttpClient.Builder#cache(HttpCache) configured}
+ * with a cache applies the caching rules of <a
+ * href="https://tools.ietf.org/html/rfc7234">RFC 7234</a> as a private
+ * cache. The client decides which responses to {@code GET} requests are
+ * stored, according to their {@code Cache-Control}, {@code Expires}, and
+ * {@code Vary} headers and to those of the request. A stored response that
+ * is fresh is returned without contacting the server. A stored response that
+ * is stale, but has an {@code ETag} or a {@code Last-Modified} header, is
+ * revalidated with a conditional request, and is returned if the server
+ * replies with {@code 304} (Not Modified). The cache itself only stores the
+ * {@linkplain Entry entries} it is given, and may drop any of them at any
+ * time.
+ *
+ * <p> {@link #newMemoryCache(long)} and {@link #newCache(Path, long, long)}
+ * return the built-in implementations. Other stores can be plugged in by
+ * extending this class. The methods of an {@code HttpCache} may be invoked
+ * concurrently, by several threads.
+ *
+ * @since 11
+ */
+public abstract class HttpCache {
+
+    /**
+     * Creates an {@code HttpCache}.
+     */
+    protected HttpCache() { }
+
+    /**
+     * Returns a cache that keeps the entries in memory, up to the given size.
+     * When the size is exceeded, the entries that were least recently used
+     * are discarded first.
+     *
+     * @param maxSize the maximum size, in bytes, of the entries kept
+     * @return a new memory cache
+     * @throws IllegalArgumentException if {@code maxSize} is negative
+     */
+    public static HttpCache newMemoryCache(long maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("negative size: " + maxSize);
+        return new HttpCacheImpl(maxSize, null, 0);
+    }
+
+    /**
+     * Returns a cache that keeps the entries in files of the given directory,
+     * up to {@code maxDiskSize}, and the entries that were most recently
+     * used in memory as well, up to {@code maxMemorySize}.
+     *
+     * <p> The entries found in the directory are reused, so that they
+     * survive the application. The directory should not be shared by
+     * several caches at the same time.
+     *
+     * @param directory the directory in which to store the entries
+     * @param maxMemorySize the maximum size, in bytes, of the entries kept
+     *        in memory
+     * @param maxDiskSize the maximum size, in bytes, of the entries kept in
+     *        the directory
+     * @return a new cache
+     * @throws IllegalArgumentException if a size is negative, or if the
+     *         directory does not exist or is not writable
+     * @throws SecurityException if a security manager has been installed
+     *         and it denies {@link SecurityManager#checkRead(String) read
+     *         access} or {@link SecurityManager#checkWrite(String) write
+     *         access} to the files of the directory
+     */
+    public static HttpCache newCache(Path directory,
+                                     long maxMemorySize,
+                                     long maxDiskSize) {
+        Objects.requireNonNull(directory);
+        if (maxMemorySize < 0)
+            throw new IllegalArgumentException("negative size: " + maxMemorySize);
+        if (maxDiskSize < 0)
+            throw new IllegalArgumentException("negative size: " + maxDiskSize);
+        return new HttpCacheImpl(maxMemorySize, directory, maxDiskSize);
+    }
+
+    /**
+     * Returns the entry stored for the given URI, if any.
+     *
+     * @param uri the URI of the resource
+     * @return an {@code Optional} containing the entry, or an empty
+     *         {@code Optional} if no entry is stored for the URI
+     */
+    public abstract Optional<Entry> get(URI uri);
+
+    /**
+     * Stores an entry for the given URI, replacing the entry previously
+     * stored for it, if any.
+     *
+     * @param uri the URI of the resource
+     * @param entry the entry
+     */
+    public abstract void put(URI uri, Entry entry);
+
+    /**
+     * Removes the entry stored for the given URI, if any. This method is
+     * invoked when an entry can no longer be used, for instance after a
+     * {@code PUT}, {@code POST}, or {@code DELETE} request to the URI.
+     *
+     * @param uri the URI of the resource
+     */
+    public abstract void remove(URI uri);
+
+    /**
+     * A stored response.
+     *
+     * <p> An entry contains the status code, headers and body of the
+     * response, the values of the request headers named by its {@code
+     * Vary} header, and the times at which the request was sent and the
+     * response was received, from which the age of the response is
+     * computed.
+     *
+     * @since 11
+     */
+    public static final class Entry {
+        private final int statusCode;
+        private final HttpClient.Version version;
+        private final HttpHeaders headers;
+        private final HttpHeaders varyHeaders;
+        private final byte[] body;
+        private final Instant requestTime;
+        private final Instant responseTime;
+
+        /**
+         * Creates an entry.
+         *
+         * @param statusCode the status code of the response
+         * @param version the protocol version of the response
+         * @param headers the headers of the response
+         * @param varyHeaders the request headers named by the {@code Vary}
+         *        header of the response
+         * @param body the body of the response; the array is copied
+         * @param requestTime the time at which the request was sent
+         * @param responseTime the time at which the response was received
+         */
+        public Entry(int statusCode,
+                     HttpClient.Version version,
+                     HttpHeaders headers,
+                     HttpHeaders varyHeaders,
+                     byte[] body,
+                     Instant requestTime,
+                     Instant responseTime) {
+            this.statusCode = statusCode;
+            this.version = Objects.requireNonNull(version);
+            this.headers = Objects.requireNonNull(headers);
+            this.varyHeaders = Objects.requireNonNull(varyHeaders);
+            this.body = body.clone();
+            this.requestTime = Objects.requireNonNull(requestTime);
+            this.responseTime = Objects.requireNonNull(responseTime);
+        }
+
+        /**
+         * Returns the status code of the response.
+         *
+         * @return the status code
+         */
+        public int statusCode() { return statusCode; }
+
+        /**
+         * Returns the protocol version of the response.
+         *
+         * @return the protocol version
+         */
+        public HttpClient.Version version() { return version; }
+
+        /**
+         * Returns the headers of the response.
+         *
+         * @return the response headers
+         */
+        public HttpHeaders headers() { return headers; }
+
+        /**
+         * Returns the request headers named by the {@code Vary} header of
+         * the response. The entry can only be used for requests that have
+         * the same values for these headers.
+         *
+         * @return the request headers the response varies on
+         */
+        public HttpHeaders varyHeaders() { return varyHeaders; }
+
+        /**
+         * Returns a read-only buffer containing the body of the response.
+         *
+         * @return the response body
+         */
+        public ByteBuffer body() { return ByteBuffer.wrap(body).asReadOnlyBuffer(); }
+
+        /**
+         * Returns the time at which the request was sent.
+         *
+         * @return the request time
+         */
+        public Instant requestTime() { return requestTime; }
+
+        /**
+         * Returns the time at which the response was received.
+         *
+         * @return the response time
+         */
+        public Instant responseTime() { return responseTime; }
+
+        /**
+         * Returns the approximate size of this entry, in bytes.
+         *
+         * @return the size of this entry
+         */
+        public long size() {
+            long size = body.length;
+            for (HttpHeaders h : new HttpHeaders[] { headers, varyHeaders }) {
+                for (Map.Entry<String, List<String>> e : h.map().entrySet()) {
+                    for (String v : e.getValue()) {
+                        size += e.getKey().length() + v.length() + 4;
+                    }
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "HttpCache.Entry(" + statusCode + ", " + version
+                    + ", " + body.length + " bytes)";
+        }
+    }
+}
@@ -314,6 +314,68 @@ public abstract class HttpClient {
          */
         public Builder priority(int priority);
 
+        /**
+         * Sets the maximum number of HTTP/2 connections that newly built
+         * clients keep open to the same origin server. The value provided
+         * must be positive.
+         *
+         * <p> Requests to an origin server share its HTTP/2 connections, each
+         * new request being sent on the connection with the fewest active
+         * streams. A further connection is opened when every connection is at
+         * the concurrent stream limit advertised by the server, up to the given
+         * maximum. Beyond that, requests wait until a stream completes.
+         *
+         * @implSpec The default implementation of this method throws
+         * {@code UnsupportedOperationException}. Builders obtained through
+         * {@link HttpClient#newBuilder()} provide an implementation of this
+         * method.
+         *
+         * @implNote If this method is not invoked prior to {@linkplain
+         * #build() building}, the maximum is given by the {@code
+         * jdk.httpclient.maxHttp2Connections} networking property, which
+         * defaults to {@code 4}.
+         *
+         * @param max the maximum number of HTTP/2 connections per origin server
+         * @return this builder
+         * @throws IllegalArgumentException if {@code max} is not positive
+         * @throws UnsupportedOperationException if this builder does not
+         *         support limiting the number of HTTP/2 connections
+         * @since 11
+         */
+        public default Builder maxHttp2Connections(int max) {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Sets a cache of responses. Newly built clients return a response
+         * from the cache, instead of sending the request, when the cache
+         * holds a fresh response to the request, and store in the cache the
+         * responses that may be reused. See {@link HttpCache} for the rules
+         * that apply.
+         *
+         * <p> A response returned from the cache has an {@code Age} header,
+         * and an empty {@linkplain HttpResponse#sslSession() SSL session}.
+         *
+         * @implSpec The default implementation of this method throws
+         * {@code UnsupportedOperationException}. Builders obtained through
+         * {@link HttpClient#newBuilder()} provide an implementation of this
+         * method.
+         *
+         * @implNote Responses are read into memory before being stored, and
+         * responses whose body is larger than the value of the {@code
+         * jdk.httpclient.cache.maxEntrySize} networking property, which
+         * defaults to 8 megabytes, are not stored.
+         *
+         * @param cache the cache
+         * @return this builder
+         * @throws UnsupportedOperationException if this builder does not
+         *         support caching
+         * @since 11
+         */
+        public default Builder cache(HttpCache cache) {
+            throw new UnsupportedOperationException();
+        }
+
         /**
          * Sets a {@link java.net.ProxySelector}.
          *
@@ -457,6 +519,21 @@ public abstract class HttpClient {
      */
     public abstract Optional<Executor> executor();
 
+    /**
+     * Returns an {@code Optional} containing this client's {@link
+     * HttpCache}. If no {@code HttpCache} was set in this client's builder,
+     * then the {@code Optional} is empty.
+     *
+     * @implSpec The default implementation of this method returns an empty
+     * {@code Optional}.
+     *
+     * @return an {@code Optional} containing this client's {@code HttpCache}
+     * @since 11
+     */
+    public Optional<HttpCache> cache() {
+        return Optional.empty();
+    }
+
     /**
      * The HTTP protocol version.
      *
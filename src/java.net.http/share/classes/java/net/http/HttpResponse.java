@@ -52,9 +52,11 @@ import javax.net.ssl.SSLSession;
 import jdk.internal.net.http.BufferingSubscriber;
 import jdk.internal.net.http.LineSubscriberAdapter;
 import jdk.internal.net.http.ResponseBodyHandlers.FileDownloadBodyHandler;
+import jdk.internal.net.http.ResponseBodyHandlers.FileRegionBodyHandler;
 import jdk.internal.net.http.ResponseBodyHandlers.PathBodyHandler;
 import jdk.internal.net.http.ResponseBodyHandlers.PushPromisesHandlerWithMap;
 import jdk.internal.net.http.ResponseSubscribers;
+import jdk.internal.net.http.ResponseSubscribers.FileRegionSubscriber;
 import jdk.internal.net.http.ResponseSubscribers.PathSubscriber;
 import static java.nio.file.StandardOpenOption.*;
 import static jdk.internal.net.http.common.Utils.charsetFrom;
@@ -548,6 +550,46 @@ public interface HttpResponse<T> {
             return BodyHandlers.ofFile(file, CREATE, WRITE);
         }
 
+        /**
+         * Returns a {@code BodyHandler<Path>} that returns a
+         * {@link BodySubscriber BodySubscriber}{@code <Path>} obtained from
+         * {@link BodySubscribers#ofFileRegion(Path, long, long)
+         * BodySubscribers.ofFileRegion(Path,long,long)}, which writes the
+         * body into the region of the file given by the response.
+         *
+         * <p> If the response status code is {@code 206} (Partial Content),
+         * the body is written at the range given by its {@code Content-Range}
+         * header. Otherwise the body is written at the start of the file, and
+         * the length of the region is given by the {@code Content-Length}
+         * header, if any. The file is created if it does not exist, and is
+         * never truncated. A resource can thus be downloaded in parts, by
+         * sending several requests with distinct {@code Range} headers, at
+         * the same time, each with a handler returned by this method for the
+         * same file.
+         *
+         * <p> When the {@code HttpResponse} object is returned, the body has
+         * been completely written to the file, and {@link #body()} returns a
+         * reference to its {@link Path}. If a {@code 206} response does not
+         * contain a single byte range in its {@code Content-Range} header,
+         * the response completes exceptionally with an {@code IOException}.
+         *
+         * <p> Security manager permission checks are performed in this factory
+         * method, when the {@code BodyHandler} is created. Care must be taken
+         * that the {@code BodyHandler} is not shared with untrusted code.
+         *
+         * @param file the file to store the body in
+         * @return a response body handler
+         * @throws SecurityException If a security manager has been installed
+         *          and it denies {@link SecurityManager#checkRead(String)
+         *          read access} or {@link SecurityManager#checkWrite(String)
+         *          write access} to the file.
+         * @since 11
+         */
+        public static BodyHandler<Path> ofFileRegion(Path file) {
+            Objects.requireNonNull(file);
+            return FileRegionBodyHandler.create(file);
+        }
+
         /**
          * Returns a {@code BodyHandler<Path>} that returns a
          * {@link BodySubscriber BodySubscriber}&lt;{@link Path}&gt;
@@ -1110,6 +1152,53 @@ public interface HttpResponse<T> {
             return ofFile(file, CREATE, WRITE);
         }
 
+        /**
+         * Returns a {@code BodySubscriber} which writes the response body
+         * into a region of a file, starting at the given position. The file
+         * is created if it does not exist, and is never truncated, so that
+         * several subscribers may write distinct regions of the same file at
+         * the same time.
+         *
+         * <p> Each buffer received is written at its position in the file,
+         * without being first gathered with the buffers that follow it. The
+         * {@link HttpResponse} using this subscriber is available after the
+         * entire response has been read. If the length is known and the body
+         * is longer, nothing is written past the end of the region and the
+         * body completes exceptionally with an {@code IOException}.
+         *
+         * <p> Security manager permission checks are performed in this factory
+         * method, when the {@code BodySubscriber} is created. Care must be taken
+         * that the {@code BodyHandler} is not shared with untrusted code.
+         *
+         * @implNote When the length of the region is known and is at least
+         * the value of the {@code jdk.httpclient.fileRegionMapThreshold}
+         * networking property, which defaults to 1 megabyte, the region is
+         * mapped into memory and the body is copied into the mapping.
+         *
+         * @param file the file to store the body in
+         * @param position the position in the file at which the body starts
+         * @param length the expected length of the body, or {@code -1} if
+         *        unknown
+         * @return a body subscriber
+         * @throws IllegalArgumentException if {@code position} is negative, or
+         *          if {@code length} is less than {@code -1}
+         * @throws SecurityException if a security manager has been installed
+         *          and it denies {@link SecurityManager#checkRead(String)
+         *          read access} or {@link SecurityManager#checkWrite(String)
+         *          write access} to the file
+         * @since 11
+         */
+        public static BodySubscriber<Path> ofFileRegion(Path file,
+                                                        long position,
+                                                        long length) {
+            Objects.requireNonNull(file);
+            if (position < 0)
+                throw new IllegalArgumentException("negative position: " + position);
+            if (length < -1)
+                throw new IllegalArgumentException("invalid length: " + length);
+            return FileRegionSubscriber.create(file, position, length);
+        }
+
         /**
          * Returns a {@code BodySubscriber} which provides the incoming body
          * data to the provided Consumer of {@code Optional<byte[]>}. Each
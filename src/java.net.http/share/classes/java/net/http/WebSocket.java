@@ -177,6 +177,46 @@ public interface WebSocket {
          */
         Builder subprotocols(String mostPreferred, String... lesserPreferred);
 
+        /**
+         * Sets a request for compression of messages with the
+         * <a href="https://tools.ietf.org/html/rfc7692">permessage-deflate</a>
+         * extension.
+         *
+         * <p> If the server accepts the request, the payload of each text and
+         * binary message sent is compressed, and compressed messages received
+         * are decompressed before they are passed to the {@code Listener}.
+         * If the server declines the request, messages are exchanged
+         * uncompressed. If this method is not invoked then compression will
+         * not be requested.
+         *
+         * <p> {@code maxWindowBits} limits the size of the window, in bits,
+         * the server may use to compress messages. If {@code contextTakeover}
+         * is {@code false}, both ends are requested to compress each message
+         * independently of the preceding ones, which lowers the memory held
+         * for each {@code WebSocket} at the cost of compression ratio.
+         *
+         * @implSpec The default implementation of this method throws
+         * {@code UnsupportedOperationException}. Builders obtained through
+         * {@link HttpClient#newWebSocketBuilder()} provide an implementation
+         * of this method.
+         *
+         * @param maxWindowBits
+         *         the maximum window bits of the server, from {@code 8} to
+         *         {@code 15}
+         * @param contextTakeover
+         *         whether the compression context is kept between messages
+         *
+         * @return this builder
+         * @throws IllegalArgumentException
+         *         if {@code maxWindowBits} is out of range
+         * @throws UnsupportedOperationException
+         *         if this builder does not support compression
+         * @since 11
+         */
+        default Builder compression(int maxWindowBits, boolean contextTakeover) {
+            throw new UnsupportedOperationException();
+        }
+
         /**
          * Builds a {@link WebSocket} connected to the given {@code URI} and
          * associated with the given {@code Listener}.
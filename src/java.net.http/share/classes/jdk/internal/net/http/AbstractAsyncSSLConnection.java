@@ -35,6 +35,8 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLParameters;
 
+import jdk.internal.net.http.common.ByteBufferPool;
+import jdk.internal.net.http.common.FlowTube;
 import jdk.internal.net.http.common.SSLTube;
 import jdk.internal.net.http.common.Log;
 import jdk.internal.net.http.common.Utils;
@@ -88,6 +90,23 @@ abstract class AbstractAsyncSSLConnection extends HttpConnection
 
     final SSLEngine getEngine() { return engine; }
 
+    // Creates the SSLTube wrapping the given flow. Outgoing data is
+    // wrapped into buffers taken from the client's SSL write buffer pool;
+    // when the flow is the SocketTube, fully written buffers are given
+    // back to that pool.
+    final SSLTube createSSLTube(FlowTube flow) {
+        HttpClientImpl client = client();
+        ByteBufferPool pool = client.getSSLWriteBufferPool();
+        if (flow instanceof SocketTube) {
+            ((SocketTube) flow).recycleWrittenBuffers(pool);
+        }
+        return new SSLTube(engine,
+                           client.theExecutor(),
+                           client.getSSLBufferSupplier()::recycle,
+                           pool,
+                           flow);
+    }
+
     private static boolean contains(String[] rr, String target) {
         for (String s : rr)
             if (target.equalsIgnoreCase(s))
@@ -56,10 +56,7 @@ class AsyncSSLConnection extends AbstractAsyncSSLConnection {
                 .connectAsync(exchange)
                 .thenApply( unused -> {
                     // create the SSLTube wrapping the SocketTube, with the given engine
-                    flow = new SSLTube(engine,
-                                       client().theExecutor(),
-                                       client().getSSLBufferSupplier()::recycle,
-                                       plainConnection.getConnectionFlow());
+                    flow = createSSLTube(plainConnection.getConnectionFlow());
                     return null; } );
     }
 
@@ -111,6 +108,11 @@ class AsyncSSLConnection extends AbstractAsyncSSLConnection {
         plainConnection.close();
     }
 
+    @Override
+    void onClose(Runnable action) {
+        plainConnection.onClose(action);
+    }
+
     @Override
     SSLTube getConnectionFlow() {
        return flow;
@@ -65,10 +65,7 @@ class AsyncSSLTunnelConnection extends AbstractAsyncSSLConnection {
                 .thenApply( unused -> {
                     if (debug.on()) debug.log("creating SSLTube");
                     // create the SSLTube wrapping the SocketTube, with the given engine
-                    flow = new SSLTube(engine,
-                                       client().theExecutor(),
-                                       client().getSSLBufferSupplier()::recycle,
-                                       plainConnection.getConnectionFlow());
+                    flow = createSSLTube(plainConnection.getConnectionFlow());
                     return null;} );
     }
 
@@ -113,6 +110,11 @@ class AsyncSSLTunnelConnection extends AbstractAsyncSSLConnection {
         plainConnection.close();
     }
 
+    @Override
+    void onClose(Runnable action) {
+        plainConnection.onClose(action);
+    }
+
     @Override
     SocketChannel channel() {
         return plainConnection.channel();
@@ -0,0 +1,518 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package jdk.internal.net.http;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpCache;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import jdk.internal.net.http.common.Log;
+import jdk.internal.net.http.common.Utils;
+
+/**
+ * Applies the caching rules of RFC 7234 to the requests and responses of
+ * a MultiExchange, on behalf of a client that has an HttpCache. The client
+ * behaves as a private cache: responses to GET requests are stored, and
+ * stored responses are served while fresh, or revalidated with a
+ * conditional request once stale.
+ *
+ * Like a HeaderFilter, a CacheFilter examines the request before it is sent,
+ * and the final response before it is returned to the user. Unlike a
+ * HeaderFilter, it may also answer the request itself, and capture the body
+ * of the response, so MultiExchange invokes it directly.
+ */
+final class CacheFilter {
+
+    // Bodies larger than that are not stored.
+    static final int MAX_ENTRY_SIZE = Utils.getIntegerNetProperty(
+            "jdk.httpclient.cache.maxEntrySize", 8 * 1024 * 1024);
+
+    // The status codes that are cacheable by default, RFC 7231, 6.1.
+    // 204 and 206 are left out: the former has no body, and the
+    // latter would require combining partial responses.
+    private static final Set<Integer> CACHEABLE =
+            Set.of(200, 203, 300, 301, 404, 405, 410, 414, 501);
+
+    // Hop-by-hop headers, which are not stored.
+    private static final Set<String> HOP_BY_HOP = Set.of(
+            "connection", "keep-alive", "proxy-connection", "te", "trailer",
+            "transfer-encoding", "upgrade");
+
+    // Heuristic freshness is capped to one day, RFC 7234, 4.2.2.
+    private static final long MAX_HEURISTIC_LIFETIME = 24L * 3600 * 1000;
+
+    private final HttpCache cache;
+    private final URI uri;
+    private final boolean unsafe;
+    private final Map<String, String> requestDirectives;
+    private volatile Instant requestTime;
+    private volatile HttpCache.Entry validated; // the entry being revalidated
+
+    private CacheFilter(HttpCache cache, HttpRequestImpl request, boolean unsafe) {
+        this.cache = cache;
+        this.uri = request.uri();
+        this.unsafe = unsafe;
+        this.requestDirectives = directives(request.headers());
+    }
+
+    /**
+     * Returns a CacheFilter for the given request, or null if the cache
+     * has no part in it. Requests that carry their own conditional or
+     * range headers bypass the cache.
+     */
+    static CacheFilter of(HttpCache cache, HttpRequestImpl request) {
+        if (request.isWebSocket()) {
+            return null;
+        }
+        switch (request.method()) {
+            case "GET":
+                HttpHeaders headers = request.headers();
+                for (String name : List.of("If-None-Match", "If-Modified-Since",
+                                           "If-Match", "If-Unmodified-Since",
+                                           "If-Range", "Range")) {
+                    if (headers.firstValue(name).isPresent()) {
+                        return null;
+                    }
+                }
+                return new CacheFilter(cache, request, false);
+            case "POST":
+            case "PUT":
+            case "PATCH":
+            case "DELETE":
+                return new CacheFilter(cache, request, true);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Examines the request before it is sent. Returns the stored entry if
+     * it is fresh enough to be served instead, or null if the request must
+     * be sent. If a stale entry can be revalidated, the corresponding
+     * conditional headers are added to the request.
+     */
+    HttpCache.Entry request(HttpRequestImpl r) {
+        requestTime = Instant.now();
+        if (unsafe || requestDirectives.containsKey("no-store")) {
+            return null;
+        }
+        HttpCache.Entry entry = cache.get(uri).orElse(null);
+        if (entry == null || !varyMatches(entry, r.headers())) {
+            return null;
+        }
+        long now = requestTime.toEpochMilli();
+        if (isFresh(entry, now)) {
+            Log.logTrace("Serving {0} from the cache", uri);
+            return entry;
+        }
+        Optional<String> etag = entry.headers().firstValue("ETag");
+        Optional<String> lastModified = entry.headers().firstValue("Last-Modified");
+        if (etag.isPresent() || lastModified.isPresent()) {
+            Log.logTrace("Revalidating {0}", uri);
+            etag.ifPresent(v -> r.setSystemHeader("If-None-Match", v));
+            lastModified.ifPresent(v -> r.setSystemHeader("If-Modified-Since", v));
+            validated = entry;
+        }
+        return null;
+    }
+
+    /**
+     * Examines the final response. Returns the revalidated entry if the
+     * response is a 304 (Not Modified) to the conditional request, in which
+     * case the entry is served instead. Otherwise returns null. A successful
+     * response to an unsafe request invalidates the stored entry.
+     */
+    HttpCache.Entry response(Response r) {
+        if (unsafe) {
+            if (r.statusCode() < 400) {
+                cache.remove(uri);
+                if (!r.request().uri().equals(uri)) {
+                    cache.remove(r.request().uri());
+                }
+            }
+            return null;
+        }
+        HttpCache.Entry entry = validated;
+        if (entry == null || r.statusCode() != 304
+                || !r.request().uri().equals(uri)) {
+            return null;
+        }
+        // RFC 7234, 4.3.4: update the stored headers with those of the 304
+        Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        map.putAll(entry.headers().map());
+        r.headers().map().forEach((name, values) -> {
+            if (storedHeader(name) && !name.equalsIgnoreCase("Content-Length")) {
+                map.put(name, values);
+            }
+        });
+        HttpHeaders headers = HttpHeaders.of(map, (name, value) -> true);
+        ByteBuffer body = entry.body();
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        HttpCache.Entry updated = new HttpCache.Entry(entry.statusCode(),
+                entry.version(), headers, entry.varyHeaders(), bytes,
+                requestTime, Instant.now());
+        if (directives(r.headers()).containsKey("no-store")) {
+            cache.remove(uri);
+        } else {
+            cache.put(uri, updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Returns a handler that stores the body of the given response in the
+     * cache, while passing it to the subscriber of the given handler, if the
+     * response can be stored. Otherwise returns the given handler.
+     */
+    <T> BodyHandler<T> storing(BodyHandler<T> handler, Response r) {
+        if (!isStorable(r)) {
+            if (validated != null && r.request().uri().equals(uri)) {
+                // the stored entry was replaced by a response that
+                // cannot be stored
+                cache.remove(uri);
+            }
+            return handler;
+        }
+        URI key = r.request().uri();
+        HttpHeaders headers = HttpHeaders.of(r.headers().map(),
+                                             (name, value) -> storedHeader(name));
+        HttpHeaders varyHeaders = varyHeaders(r.headers(), r.request().headers());
+        Instant sent = requestTime;
+        Instant received = Instant.now();
+        return (info) -> new StoringSubscriber<>(handler.apply(info), (body) ->
+                cache.put(key, new HttpCache.Entry(r.statusCode(), r.version(),
+                        headers, varyHeaders, body, sent, received)));
+    }
+
+    /**
+     * Returns the headers of a response served from the given entry, with
+     * an Age header giving the current age of the entry.
+     */
+    static HttpHeaders responseHeaders(HttpCache.Entry entry) {
+        long age = Math.max(0, currentAge(entry, System.currentTimeMillis()) / 1000);
+        Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        map.putAll(entry.headers().map());
+        map.put("Age", List.of(Long.toString(age)));
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+    private boolean isStorable(Response r) {
+        if (unsafe || !r.request().method().equals("GET")
+                || requestDirectives.containsKey("no-store")
+                || !CACHEABLE.contains(r.statusCode())) {
+            return false;
+        }
+        HttpHeaders headers = r.headers();
+        Map<String, String> directives = directives(headers);
+        if (directives.containsKey("no-store")) {
+            return false;
+        }
+        for (String name : tokens(headers.allValues("Vary"))) {
+            if (name.equals("*")) return false;
+        }
+        if (headers.firstValueAsLong("Content-Length").orElse(0L) > MAX_ENTRY_SIZE) {
+            return false;
+        }
+        // store only what can be served fresh or revalidated
+        return directives.containsKey("max-age")
+                || headers.firstValue("Expires").isPresent()
+                || headers.firstValue("Last-Modified").isPresent()
+                || headers.firstValue("ETag").isPresent();
+    }
+
+    // RFC 7234, 4.2 and 5.2.1: whether the entry can be served without
+    // revalidation, given its age and the directives of the request.
+    private boolean isFresh(HttpCache.Entry entry, long now) {
+        Map<String, String> directives = directives(entry.headers());
+        if (directives.containsKey("no-cache")
+                || requestDirectives.containsKey("no-cache")) {
+            return false;
+        }
+        long age = currentAge(entry, now);
+        long lifetime = freshnessLifetime(entry, directives);
+        long maxAge = seconds(requestDirectives.get("max-age"));
+        if (maxAge >= 0 && age > maxAge * 1000) {
+            return false;
+        }
+        long minFresh = seconds(requestDirectives.get("min-fresh"));
+        if (minFresh >= 0 && lifetime - age < minFresh * 1000) {
+            return false;
+        }
+        long staleness = 0;
+        if (requestDirectives.containsKey("max-stale")
+                && !directives.containsKey("must-revalidate")) {
+            long maxStale = seconds(requestDirectives.get("max-stale"));
+            staleness = maxStale < 0 ? Long.MAX_VALUE / 2 : maxStale * 1000;
+        }
+        return lifetime + staleness > age;
+    }
+
+    // RFC 7234, 4.2.1 and 4.2.2
+    private static long freshnessLifetime(HttpCache.Entry entry,
+                                          Map<String, String> directives) {
+        long maxAge = seconds(directives.get("max-age"));
+        if (maxAge >= 0) {
+            return maxAge * 1000;
+        }
+        HttpHeaders headers = entry.headers();
+        long date = date(headers.firstValue("Date").orElse(null));
+        if (date < 0) date = entry.responseTime().toEpochMilli();
+        Optional<String> expires = headers.firstValue("Expires");
+        if (expires.isPresent()) {
+            // an invalid date means already expired
+            long time = date(expires.get());
+            return time < 0 ? 0 : Math.max(0, time - date);
+        }
+        long lastModified = date(headers.firstValue("Last-Modified").orElse(null));
+        if (lastModified >= 0 && CACHEABLE.contains(entry.statusCode())) {
+            return Math.min(MAX_HEURISTIC_LIFETIME,
+                            Math.max(0, (date - lastModified) / 10));
+        }
+        return 0;
+    }
+
+    // RFC 7234, 4.2.3
+    private static long currentAge(HttpCache.Entry entry, long now) {
+        HttpHeaders headers = entry.headers();
+        long requestTime = entry.requestTime().toEpochMilli();
+        long responseTime = entry.responseTime().toEpochMilli();
+        long date = date(headers.firstValue("Date").orElse(null));
+        long apparentAge = date < 0 ? 0 : Math.max(0, responseTime - date);
+        long ageValue = Math.max(0, seconds(headers.firstValue("Age").orElse(null)));
+        long correctedAgeValue = ageValue * 1000 + (responseTime - requestTime);
+        long correctedInitialAge = Math.max(apparentAge, correctedAgeValue);
+        return correctedInitialAge + (now - responseTime);
+    }
+
+    private static boolean varyMatches(HttpCache.Entry entry, HttpHeaders request) {
+        for (String name : tokens(entry.headers().allValues("Vary"))) {
+            if (!entry.varyHeaders().allValues(name).equals(request.allValues(name))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static HttpHeaders varyHeaders(HttpHeaders response, HttpHeaders request) {
+        Map<String, List<String>> map = new HashMap<>();
+        for (String name : tokens(response.allValues("Vary"))) {
+            map.put(name, request.allValues(name));
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+
+    private static boolean storedHeader(String name) {
+        return !name.startsWith(":")
+                && !HOP_BY_HOP.contains(name.toLowerCase(Locale.ROOT))
+                && !name.equalsIgnoreCase("Age");
+    }
+
+    // Returns the directives of the Cache-Control header, with lower-case
+    // names, mapped to their value, or to null if they have none. A
+    // "Pragma: no-cache" header counts as "Cache-Control: no-cache" when
+    // there is no Cache-Control header, RFC 7234, 5.4.
+    private static Map<String, String> directives(HttpHeaders headers) {
+        List<String> values = headers.allValues("Cache-Control");
+        Map<String, String> directives = new HashMap<>();
+        for (String token : tokens(values)) {
+            int eq = token.indexOf('=');
+            if (eq < 0) {
+                directives.put(token.toLowerCase(Locale.ROOT), null);
+            } else {
+                String value = token.substring(eq + 1).trim();
+                if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                directives.put(token.substring(0, eq).trim().toLowerCase(Locale.ROOT), value);
+            }
+        }
+        if (values.isEmpty()) {
+            for (String token : tokens(headers.allValues("Pragma"))) {
+                if (token.equalsIgnoreCase("no-cache")) {
+                    directives.put("no-cache", null);
+                }
+            }
+        }
+        return directives;
+    }
+
+    // Splits comma separated header values into trimmed, non empty, tokens.
+    private static List<String> tokens(List<String> values) {
+        List<String> tokens = new ArrayList<>();
+        for (String value : values) {
+            for (String token : value.split(",")) {
+                token = token.trim();
+                if (!token.isEmpty()) tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Returns the given number of delta-seconds, or -1 if absent or invalid.
+    private static long seconds(String value) {
+        if (value == null) return -1;
+        try {
+            return Math.min(Long.parseLong(value.trim()), Integer.MAX_VALUE);
+        } catch (NumberFormatException x) {
+            return -1;
+        }
+    }
+
+    // Returns the given HTTP-date in milliseconds, or -1 if absent or invalid.
+    private static long date(String value) {
+        if (value == null) return -1;
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+        } catch (DateTimeParseException x) {
+            return -1;
+        }
+    }
+
+    /**
+     * A body subscriber that keeps a copy of the body it passes on to
+     * another subscriber, and hands it to a consumer once complete. Bodies
+     * larger than MAX_ENTRY_SIZE are not kept.
+     */
+    static final class StoringSubscriber<T> implements BodySubscriber<T> {
+        private final BodySubscriber<T> downstream;
+        private final Consumer<byte[]> consumer;
+        private ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        StoringSubscriber(BodySubscriber<T> downstream,
+                          Consumer<byte[]> consumer) {
+            this.downstream = downstream;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            ByteArrayOutputStream out = received;
+            if (out != null) {
+                for (ByteBuffer item : items) {
+                    int n = item.remaining();
+                    if (out.size() + n > MAX_ENTRY_SIZE) {
+                        received = out = null;
+                        break;
+                    }
+                    if (item.hasArray()) {
+                        out.write(item.array(), item.arrayOffset() + item.position(), n);
+                    } else {
+                        byte[] bytes = new byte[n];
+                        item.duplicate().get(bytes);
+                        out.write(bytes, 0, n);
+                    }
+                }
+            }
+            downstream.onNext(items);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            received = null;
+            downstream.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            ByteArrayOutputStream out = received;
+            received = null;
+            if (out != null) {
+                consumer.accept(out.toByteArray());
+            }
+            downstream.onComplete();
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+    }
+
+    /**
+     * A subscription that delivers a stored body to a body subscriber, in
+     * a single buffer.
+     */
+    static final class StoredBodySubscription implements Flow.Subscription {
+        private final BodySubscriber<?> subscriber;
+        private final ByteBuffer body;
+        private final AtomicBoolean delivered = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        StoredBodySubscription(BodySubscriber<?> subscriber, ByteBuffer body) {
+            this.subscriber = subscriber;
+            this.body = body;
+        }
+
+        @Override
+        public void request(long n) {
+            if (cancelled || !delivered.compareAndSet(false, true)) {
+                return;
+            }
+            if (n <= 0) {
+                subscriber.onError(new IllegalArgumentException(
+                        "non-positive subscription request: " + n));
+                return;
+            }
+            if (body.hasRemaining()) {
+                subscriber.onNext(List.of(body));
+            }
+            if (!cancelled) {
+                subscriber.onComplete();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
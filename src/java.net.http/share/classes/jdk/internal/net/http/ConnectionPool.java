@@ -30,6 +30,7 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -39,14 +40,26 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Flow;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import jdk.internal.event.HttpConnectionLeaseEvent;
 import jdk.internal.net.http.common.FlowTube;
 import jdk.internal.net.http.common.Logger;
+import jdk.internal.net.http.common.MinimalFuture;
 import jdk.internal.net.http.common.Utils;
 
 /**
  * Http 1.1 connection pool.
+ *
+ * The connections leased from the pool, or opened for a lease, are counted
+ * against a maximum per destination. When it is reached, leases wait in
+ * order for a connection to be returned to the pool, which is then handed
+ * to the first of them, or for a connection to be closed. Each lease is
+ * recorded by a {@code jdk.HttpConnectionLease} event, with the time spent
+ * waiting, the time the connection was idle, and the time taken to connect.
  */
 final class ConnectionPool {
 
@@ -54,6 +67,8 @@ final class ConnectionPool {
             "jdk.httpclient.keepalive.timeout", 1200); // seconds
     static final long MAX_POOL_SIZE = Utils.getIntegerNetProperty(
             "jdk.httpclient.connectionPoolSize", 0); // unbounded
+    static final int MAX_CONNECTIONS_PER_HOST = Utils.getIntegerNetProperty(
+            "jdk.httpclient.maxConnectionsPerHost", 0); // unbounded
     final Logger debug = Utils.getDebugLogger(this::dbgString, Utils.DEBUG);
 
     // Pools of idle connections
@@ -61,6 +76,8 @@ final class ConnectionPool {
     private final HashMap<CacheKey,LinkedList<HttpConnection>> plainPool;
     private final HashMap<CacheKey,LinkedList<HttpConnection>> sslPool;
     private final ExpiryList expiryList;
+    // Connections counted against the maximum, by destination
+    private final HashMap<CacheKey,Route> routes;
     private final String dbgTag; // used for debug
     boolean stopped;
 
@@ -134,6 +151,7 @@ final class ConnectionPool {
         plainPool = new HashMap<>();
         sslPool = new HashMap<>();
         expiryList = new ExpiryList();
+        routes = new HashMap<>();
     }
 
     final String dbgString() {
@@ -162,6 +180,217 @@ final class ConnectionPool {
         return c;
     }
 
+    /**
+     * The connections open, or being opened, to a destination, and the
+     * leases waiting for one of them.
+     */
+    private static final class Route {
+        int open;
+        final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    }
+
+    private static final class Waiter {
+        final CompletableFuture<HttpConnection> cf = new MinimalFuture<>();
+        final Supplier<HttpConnection> factory;
+        final Executor executor;
+        final long since = System.nanoTime();
+
+        Waiter(Supplier<HttpConnection> factory, Executor executor) {
+            this.factory = factory;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Leases a connection to the given destination: an idle connection from
+     * the pool, or a new connection obtained from the factory, which must
+     * then be connected. If the maximum number of connections to the
+     * destination is reached, the returned future completes once one of
+     * them is returned to the pool or closed, on the given executor.
+     * Cancelling the future gives up the place of the lease in the queue.
+     */
+    CompletableFuture<HttpConnection> lease(CacheKey key,
+                                            Supplier<HttpConnection> factory,
+                                            Executor executor) {
+        long start = System.nanoTime();
+        List<HttpConnection> closelist = null;
+        HttpConnection c;
+        Waiter waiter = null;
+        synchronized (this) {
+            if (stopped) {
+                return MinimalFuture.supply(factory::get);
+            }
+            HashMap<CacheKey,LinkedList<HttpConnection>> pool =
+                    key.secure ? sslPool : plainPool;
+            while ((c = findConnection(key, pool)) != null && !c.isOpen()) {
+                // may have been eof/closed when in the pool
+                if (closelist == null) closelist = new ArrayList<>();
+                closelist.add(c);
+            }
+            if (c != null) {
+                startLease(c, true, 0);
+            } else {
+                Route route = routes.computeIfAbsent(key, k -> new Route());
+                if (MAX_CONNECTIONS_PER_HOST > 0
+                        && route.open >= MAX_CONNECTIONS_PER_HOST) {
+                    waiter = new Waiter(factory, executor);
+                    route.waiters.add(waiter);
+                } else {
+                    route.open++;
+                }
+            }
+        }
+        if (closelist != null) {
+            closelist.forEach(this::close);
+        }
+        if (c != null) {
+            assert c.isSecure() == key.secure;
+            return MinimalFuture.completedFuture(c);
+        }
+        if (waiter != null) {
+            if (debug.on()) {
+                debug.log("Maximum connections per host reached: waiting");
+            }
+            return waiter.cf;
+        }
+        try {
+            return MinimalFuture.completedFuture(opened(key, factory.get(), start));
+        } catch (Throwable t) {
+            Waiter next;
+            synchronized (this) {
+                next = releaseSlot(key);
+            }
+            if (next != null) openFor(key, next);
+            return MinimalFuture.failedFuture(t);
+        }
+    }
+
+    // Counts a new connection against the maximum for its destination,
+    // until it is closed.
+    private HttpConnection opened(CacheKey key, HttpConnection c, long since) {
+        synchronized (this) {
+            c.tracked = true;
+            c.route = key;
+            startLease(c, false, System.nanoTime() - since);
+        }
+        c.onClose(() -> closed(c));
+        return c;
+    }
+
+    // Opens a connection for a waiter, on the slot released for it.
+    private void openFor(CacheKey key, Waiter w) {
+        w.executor.execute(() -> {
+            HttpConnection c;
+            try {
+                c = w.factory.get();
+            } catch (Throwable t) {
+                Waiter next;
+                synchronized (this) {
+                    next = releaseSlot(key);
+                }
+                if (next != null) openFor(key, next);
+                w.cf.completeExceptionally(t);
+                return;
+            }
+            opened(key, c, w.since);
+            if (!w.cf.complete(c)) {
+                // the lease was cancelled: closing releases the slot
+                close(c);
+            }
+        });
+    }
+
+    // Hands an idle connection to a waiter.
+    private void handOver(HttpConnection c, Waiter w) {
+        w.executor.execute(() -> {
+            if (!w.cf.complete(c)) {
+                // the lease was cancelled
+                returnToPool(c);
+            }
+        });
+    }
+
+    // Releases a slot of the given destination, and returns the waiter
+    // it is passed to, if any. Called with the lock held.
+    private Waiter releaseSlot(CacheKey key) {
+        assert Thread.holdsLock(this);
+        Route route = routes.get(key);
+        if (route == null) return null;
+        Waiter w = nextWaiter(route);
+        if (w == null && --route.open == 0) {
+            routes.remove(key);
+        }
+        return w;
+    }
+
+    private static Waiter nextWaiter(Route route) {
+        Waiter w;
+        while ((w = route.waiters.poll()) != null && w.cf.isDone()) {
+            // cancelled
+        }
+        return w;
+    }
+
+    // Called when a tracked connection is closed, however it is closed.
+    private void closed(HttpConnection c) {
+        HttpConnectionLeaseEvent event;
+        CacheKey key;
+        Waiter w = null;
+        synchronized (this) {
+            event = endLease(c, false);
+            key = c.route;
+            c.route = null;
+            if (key != null) w = releaseSlot(key);
+        }
+        commit(event);
+        if (w != null) openFor(key, w);
+    }
+
+    /**
+     * Stops counting a connection that no longer carries HTTP/1.1 exchanges,
+     * because it was upgraded to HTTP/2 or to a WebSocket.
+     */
+    void detach(HttpConnection c) {
+        closed(c);
+    }
+
+    // Records the start of a lease. Called with the lock held.
+    private static void startLease(HttpConnection c, boolean reused, long waitTime) {
+        HttpConnectionLeaseEvent event = new HttpConnectionLeaseEvent();
+        if (!event.isEnabled()) {
+            c.leaseEvent = null;
+            return;
+        }
+        event.begin();
+        InetSocketAddress address = c.address();
+        event.host = address.getHostString();
+        event.port = address.getPort();
+        event.secure = c.isSecure();
+        event.reused = reused;
+        event.waitTime = waitTime;
+        event.idleTime = reused ? System.nanoTime() - c.idleSince : 0;
+        c.leaseEvent = event;
+    }
+
+    // Records the end of a lease, returning the event to commit, if any.
+    // Called with the lock held.
+    private static HttpConnectionLeaseEvent endLease(HttpConnection c, boolean returned) {
+        HttpConnectionLeaseEvent event = c.leaseEvent;
+        if (event != null) {
+            c.leaseEvent = null;
+            event.end();
+            event.returned = returned;
+            event.connectTime = event.reused ? 0 : c.connectTime;
+        }
+        return event;
+    }
+
+    private static void commit(HttpConnectionLeaseEvent event) {
+        if (event != null && event.shouldCommit()) {
+            event.commit();
+        }
+    }
+
     /**
      * Returns the connection to the pool.
      */
@@ -184,6 +413,11 @@ final class ConnectionPool {
 
         // it's possible that cleanup may have been called.
         HttpConnection toClose = null;
+        HttpConnectionLeaseEvent event;
+        boolean track = false;
+        CacheKey released = null;
+        Waiter releasedTo = null;
+        Waiter next = null;
         synchronized(this) {
             if (cleanup.isDone()) {
                 return;
@@ -191,17 +425,50 @@ final class ConnectionPool {
                 conn.close();
                 return;
             }
-            if (MAX_POOL_SIZE > 0 && expiryList.size() >= MAX_POOL_SIZE) {
-                toClose = expiryList.removeOldest();
-                if (toClose != null) removeFromPool(toClose);
+            event = endLease(conn, true);
+            CacheKey key = conn.cacheKey();
+            if (!conn.tracked) {
+                // not leased from the pool: count it from now on
+                track = conn.tracked = true;
+                conn.route = key;
+                routes.computeIfAbsent(key, k -> new Route()).open++;
+            } else if (conn.route != null && !conn.route.equals(key)) {
+                // a lease to the destination the connection was opened
+                // for will not find it in the pool: release its slot
+                released = conn.route;
+                conn.route = null;
+                releasedTo = releaseSlot(released);
+            }
+            Route route = conn.route == null ? null : routes.get(conn.route);
+            if (route != null) {
+                next = nextWaiter(route);
             }
-            if (conn instanceof PlainHttpConnection) {
-                putConnection(conn, plainPool);
+            if (next != null) {
+                startLease(conn, true, System.nanoTime() - next.since);
             } else {
-                assert conn.isSecure();
-                putConnection(conn, sslPool);
+                if (MAX_POOL_SIZE > 0 && expiryList.size() >= MAX_POOL_SIZE) {
+                    toClose = expiryList.removeOldest();
+                    if (toClose != null) removeFromPool(toClose);
+                }
+                if (conn instanceof PlainHttpConnection) {
+                    putConnection(conn, plainPool);
+                } else {
+                    assert conn.isSecure();
+                    putConnection(conn, sslPool);
+                }
+                expiryList.add(conn, now, keepAlive);
+                conn.idleSince = System.nanoTime();
             }
-            expiryList.add(conn, now, keepAlive);
+        }
+        commit(event);
+        if (track) {
+            conn.onClose(() -> closed(conn));
+        }
+        if (releasedTo != null) {
+            openFor(released, releasedTo);
+        }
+        if (next != null) {
+            handOver(conn, next);
         }
         if (toClose != null) {
             if (debug.on()) {
@@ -314,6 +581,7 @@ final class ConnectionPool {
 
     void stop() {
         List<HttpConnection> closelist = Collections.emptyList();
+        List<Waiter> waiters = new ArrayList<>();
         try {
             synchronized (this) {
                 stopped = true;
@@ -323,9 +591,13 @@ final class ConnectionPool {
                 expiryList.clear();
                 plainPool.clear();
                 sslPool.clear();
+                routes.values().forEach(r -> waiters.addAll(r.waiters));
+                routes.clear();
             }
         } finally {
             closelist.forEach(this::close);
+            IOException stopped = new IOException("connection pool stopped");
+            waiters.forEach(w -> w.cf.completeExceptionally(stopped));
         }
     }
 
@@ -479,6 +479,8 @@ final class Exchange<T> {
             return e.readBodyAsync(this::ignoreBody, false, parentExecutor)
                 .thenCompose((T v) -> {// v is null
                     debug.log("Ignored body");
+                    // the connection no longer counts as a HTTP/1.1 connection
+                    client.connectionPool().detach(e.connection());
                     // we pass e::getBuffer to allow the ByteBuffers to accumulate
                     // while we build the Http2Connection
                     return Http2Connection.createAsync(e.connection(),
@@ -157,6 +157,37 @@ abstract class ExchangeImpl<T> {
     private static <T> CompletableFuture<Http1Exchange<T>>
     createHttp1Exchange(Exchange<T> ex, HttpConnection as)
     {
+        if (as == null) {
+            // lease a connection, which may wait for one to be returned
+            // to the pool if the maximum per destination is reached
+            HttpRequestImpl request = ex.request();
+            CompletableFuture<HttpConnection> lease = HttpConnection
+                    .leaseConnection(request.getAddress(), ex.client(), request);
+            if (lease.isDone() && !lease.isCompletedExceptionally()) {
+                return createHttp1Exchange(ex, lease.join());
+            }
+            MinimalFuture<Http1Exchange<T>> cf = new MinimalFuture<>();
+            lease.whenComplete((c, t) -> {
+                if (t != null) {
+                    cf.completeExceptionally(t);
+                    return;
+                }
+                try {
+                    if (!cf.complete(new Http1Exchange<>(ex, c))) {
+                        // the exchange was cancelled while waiting
+                        c.close();
+                    }
+                } catch (Throwable e) {
+                    c.close();
+                    cf.completeExceptionally(e);
+                }
+            });
+            // cancelling the exchange gives up the lease
+            cf.whenComplete((r, t) -> {
+                if (t != null) lease.cancel(false);
+            });
+            return cf;
+        }
         try {
             return MinimalFuture.completedFuture(new Http1Exchange<>(ex, as));
         } catch (Throwable e) {
@@ -235,8 +235,10 @@ class Http1Exchange<T> extends ExchangeImpl<T> {
         CompletableFuture<Void> connectCF;
         if (!connection.connected()) {
             if (debug.on()) debug.log("initiating connect async");
+            long start = System.nanoTime();
             connectCF = connection.connectAsync(exchange)
-                    .thenCompose(unused -> connection.finishConnect());
+                    .thenCompose(unused -> connection.finishConnect())
+                    .thenRun(() -> connection.connectTime = System.nanoTime() - start);
             Throwable cancelled;
             synchronized (lock) {
                 if ((cancelled = failed) == null) {
@@ -31,9 +31,15 @@ import java.io.UncheckedIOException;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -59,25 +65,56 @@ class Http2ClientImpl {
 
     private final HttpClientImpl client;
 
-    Http2ClientImpl(HttpClientImpl client) {
+    /* the maximum number of connections to the same destination */
+    private final int maxConnections;
+
+    Http2ClientImpl(HttpClientImpl client, int maxConnections) {
         this.client = client;
+        this.maxConnections = maxConnections;
     }
 
-    /* Map key is "scheme:host:port" */
-    private final Map<String,Http2Connection> connections = new ConcurrentHashMap<>();
+    /* Map key is "scheme:host:port". The lists are guarded by this */
+    private final Map<String,List<Http2Connection>> connections = new ConcurrentHashMap<>();
+
+    /* Number of connections being opened to each destination, guarded by this */
+    private final Map<String,Integer> connecting = new HashMap<>();
+
+    /* Requests waiting for a stream on each destination. The queues are guarded by this */
+    private final Map<String,Deque<Waiter>> waiters = new ConcurrentHashMap<>();
 
     private final Set<String> failures = Collections.synchronizedSet(new HashSet<>());
 
+    /**
+     * A request waiting for a stream because all the connections to its
+     * destination are at their concurrent stream limit and no further
+     * connection may be opened.
+     */
+    private static final class Waiter {
+        final HttpRequestImpl req;
+        final Exchange<?> exchange;
+        final CompletableFuture<Http2Connection> cf = new MinimalFuture<>();
+        Waiter(HttpRequestImpl req, Exchange<?> exchange) {
+            this.req = req;
+            this.exchange = exchange;
+        }
+    }
+
     /**
      * When HTTP/2 requested only. The following describes the aggregate behavior including the
      * calling code. In all cases, the HTTP2 connection cache
      * is checked first for a suitable connection and that is returned if available.
+     * If several connections to the destination are cached, the stream is placed on the
+     * one with the fewest active streams that is below the server's concurrent stream limit.
      * If not, a new connection is opened, except in https case when a previous negotiate failed.
-     * In that case, we want to continue using http/1.1. When a connection is to be opened and
-     * if multiple requests are sent in parallel then each will open a new connection.
+     * In that case, we want to continue using http/1.1. At most maxConnections connections,
+     * including those being opened, are kept to a destination. When that limit is reached
+     * and every connection is at its stream limit then the request waits until a stream
+     * completes or a connection is closed. As cleartext connections are only opened by
+     * upgrade, a request to a h2c destination that has a cached connection always waits.
      *
      * If negotiation/upgrade succeeds then
-     * one connection will be put in the cache and the others will be closed
+     * the connection will be put in the cache, unless the cache already holds
+     * maxConnections connections to the destination. Those connections are closed
      * after the initial request completes (not strictly necessary for h2, only for h2c)
      *
      * If negotiate/upgrade fails, then any opened connections remain open (as http/1.1)
@@ -98,23 +135,26 @@ class Http2ClientImpl {
         String key = Http2Connection.keyFor(uri, proxy);
 
         synchronized (this) {
-            Http2Connection connection = connections.get(key);
-            if (connection != null) {
-                try {
-                    if (connection.closed || !connection.reserveStream(true)) {
-                        if (debug.on())
-                            debug.log("removing found closed or closing connection: %s", connection);
-                        deleteConnection(connection);
-                    } else {
-                        // fast path if connection already exists
-                        if (debug.on())
-                            debug.log("found connection in the pool: %s", connection);
-                        return MinimalFuture.completedFuture(connection);
-                    }
-                } catch (IOException e) {
-                    // thrown by connection.reserveStream()
-                    return MinimalFuture.failedFuture(e);
+            try {
+                Http2Connection connection = reserveStream(key);
+                if (connection != null) {
+                    // fast path if connection already exists
+                    if (debug.on())
+                        debug.log("found connection in the pool: %s", connection);
+                    return MinimalFuture.completedFuture(connection);
                 }
+            } catch (IOException e) {
+                // thrown by connection.reserveStream()
+                return MinimalFuture.failedFuture(e);
+            }
+
+            if (!canConnect(key, req.secure())) {
+                // all the connections are busy, wait for a stream
+                if (debug.on())
+                    debug.log("waiting for a stream to %s", key);
+                Waiter waiter = new Waiter(req, exchange);
+                waiters.computeIfAbsent(key, k -> new ArrayDeque<>()).add(waiter);
+                return waiter.cf;
             }
 
             if (!req.secure() || failures.contains(key)) {
@@ -123,11 +163,13 @@ class Http2ClientImpl {
                 if (debug.on()) debug.log("not found in connection pool");
                 return MinimalFuture.completedFuture(null);
             }
+            connecting.merge(key, 1, Integer::sum);
         }
         return Http2Connection
                 .createAsync(req, this, exchange)
                 .whenComplete((conn, t) -> {
                     synchronized (Http2ClientImpl.this) {
+                        connecting.computeIfPresent(key, (k, n) -> n > 1 ? n - 1 : null);
                         if (conn != null) {
                             try {
                                 conn.reserveStream(true);
@@ -141,15 +183,77 @@ class Http2ClientImpl {
                                 failures.add(key);
                         }
                     }
+                    // the waiting requests may now use the new connection,
+                    // or open one themselves if it failed
+                    scheduleWaiters(key);
                 });
     }
 
     /*
-     * Cache the given connection, if no connection to the same
-     * destination exists. If one exists, then we let the initial stream
+     * Reserves a stream on the cached connection to the given destination
+     * that has the fewest active streams. Returns null if there is no
+     * cached connection that is below its concurrent stream limit.
+     * Connections that are closed or closing are removed from the cache.
+     */
+    private Http2Connection reserveStream(String key) throws IOException {
+        assert Thread.holdsLock(this);
+        List<Http2Connection> pool = connections.get(key);
+        while (pool != null && !pool.isEmpty()) {
+            Http2Connection best = null;
+            int min = Integer.MAX_VALUE;
+            for (Iterator<Http2Connection> i = pool.iterator(); i.hasNext(); ) {
+                Http2Connection c = i.next();
+                if (c.closed || c.finalStream()) {
+                    if (debug.on())
+                        debug.log("removing found closed or closing connection: %s", c);
+                    i.remove();
+                    continue;
+                }
+                int n = c.clientStreamCount();
+                if (n < min && c.hasStreamCapacity()) {
+                    best = c;
+                    min = n;
+                }
+            }
+            if (pool.isEmpty()) {
+                connections.remove(key);
+            }
+            if (best == null) {
+                return null;
+            }
+            if (best.reserveStream(true)) {
+                return best;
+            }
+            // stream identifiers exhausted, the connection has been
+            // marked as closing: try the others
+        }
+        return null;
+    }
+
+    /*
+     * Returns true if a new connection may be opened to the destination.
+     * Cleartext connections can only be opened by upgrading a HTTP/1.1
+     * request, so further connections are not opened once one is cached.
+     */
+    private boolean canConnect(String key, boolean secure) {
+        assert Thread.holdsLock(this);
+        return poolSize(key) < maxConnections
+                && (secure || !connections.containsKey(key));
+    }
+
+    /* Returns the number of connections cached and being opened to the destination */
+    private int poolSize(String key) {
+        assert Thread.holdsLock(this);
+        List<Http2Connection> pool = connections.get(key);
+        return (pool == null ? 0 : pool.size()) + connecting.getOrDefault(key, 0);
+    }
+
+    /*
+     * Cache the given connection, if fewer than maxConnections connections
+     * to the same destination exist. Otherwise we let the initial stream
      * complete but allow it to close itself upon completion.
-     * This situation should not arise with https because the request
-     * has not been sent as part of the initial alpn negotiation
+     * This situation should not arise with https because the number of
+     * connections being opened is limited too
      */
     boolean offerConnection(Http2Connection c) {
         if (debug.on()) debug.log("offering to the connection pool: %s", c);
@@ -161,29 +265,137 @@ class Http2ClientImpl {
 
         String key = c.key();
         synchronized(this) {
-            Http2Connection c1 = connections.putIfAbsent(key, c);
-            if (c1 != null) {
+            List<Http2Connection> pool =
+                    connections.computeIfAbsent(key, k -> new ArrayList<>());
+            if (pool.contains(c)) {
+                return true;
+            }
+            if (pool.size() >= maxConnections) {
                 c.setFinalStream();
                 if (debug.on())
-                    debug.log("existing entry in connection pool for %s", key);
+                    debug.log("pool full for %s", key);
                 return false;
             }
+            pool.add(c);
             if (debug.on())
                 debug.log("put in the connection pool: %s", c);
-            return true;
         }
+        scheduleWaiters(key);
+        return true;
     }
 
     void deleteConnection(Http2Connection c) {
         if (debug.on())
             debug.log("removing from the connection pool: %s", c);
+        String key = c.key();
         synchronized (this) {
-            Http2Connection c1 = connections.get(c.key());
-            if (c1 != null && c1.equals(c)) {
-                connections.remove(c.key());
-                if (debug.on())
-                    debug.log("removed from the connection pool: %s", c);
+            List<Http2Connection> pool = connections.get(key);
+            if (pool == null || !pool.remove(c)) {
+                return;
+            }
+            if (pool.isEmpty()) {
+                connections.remove(key);
             }
+            if (debug.on())
+                debug.log("removed from the connection pool: %s", c);
+        }
+        // a waiting request may open a connection in its place
+        scheduleWaiters(key);
+    }
+
+    /*
+     * Called when a client initiated stream on the given connection completes,
+     * or when the server's settings change the number of streams it allows.
+     */
+    void streamsAvailable(Http2Connection c) {
+        scheduleWaiters(c.key());
+    }
+
+    /*
+     * Hands the streams that have become available, or the right to open a
+     * connection, to the requests waiting on the given destination, in the
+     * order in which they arrived. This is done asynchronously as the
+     * caller may hold the lock of a connection, and completing a waiter
+     * starts its exchange.
+     */
+    private void scheduleWaiters(String key) {
+        if (waiters.isEmpty() || !waiters.containsKey(key)) {
+            return;
+        }
+        client.theExecutor().delegate().execute(() -> dispatchWaiters(key));
+    }
+
+    private void dispatchWaiters(String key) {
+        List<Waiter> ready = new ArrayList<>();
+        List<Http2Connection> assigned = new ArrayList<>();
+        List<Waiter> retry = new ArrayList<>();
+        List<Waiter> cancelled = new ArrayList<>();
+        synchronized (this) {
+            Deque<Waiter> queue = waiters.get(key);
+            if (queue == null) {
+                return;
+            }
+            // requests that were cancelled, or timed out, while waiting are
+            // removed so that no stream is reserved for them
+            for (Iterator<Waiter> i = queue.iterator(); i.hasNext(); ) {
+                Waiter w = i.next();
+                if (w.cf.isDone()) {
+                    i.remove();
+                } else if (w.exchange.getCancelCause() != null) {
+                    i.remove();
+                    cancelled.add(w);
+                }
+            }
+            Waiter waiter;
+            while ((waiter = queue.peek()) != null) {
+                Http2Connection c;
+                try {
+                    c = reserveStream(key);
+                } catch (IOException e) {
+                    queue.poll();
+                    waiter.cf.completeExceptionally(e);
+                    continue;
+                }
+                if (c != null) {
+                    queue.poll();
+                    ready.add(waiter);
+                    assigned.add(c);
+                } else if (retry.isEmpty() && canConnect(key, waiter.req.secure())) {
+                    // may open a new connection
+                    queue.poll();
+                    retry.add(waiter);
+                } else {
+                    break;
+                }
+            }
+            if (queue.isEmpty()) {
+                waiters.remove(key);
+            }
+        }
+        for (Waiter waiter : cancelled) {
+            waiter.cf.completeExceptionally(waiter.exchange.getCancelCause());
+        }
+        for (int i = 0; i < ready.size(); i++) {
+            Waiter waiter = ready.get(i);
+            Http2Connection c = assigned.get(i);
+            IOException cause = waiter.exchange.getCancelCause();
+            if (cause != null) {
+                // cancelled since the stream was reserved
+                c.releaseReservedStream();
+                waiter.cf.completeExceptionally(cause);
+            } else if (!waiter.cf.complete(c)) {
+                c.releaseReservedStream();
+            }
+        }
+        for (Waiter waiter : retry) {
+            getConnectionFor(waiter.req, waiter.exchange)
+                    .whenComplete((c, t) -> {
+                        if (t != null) {
+                            waiter.cf.completeExceptionally(t);
+                        } else {
+                            waiter.cf.complete(c);
+                        }
+                    });
         }
     }
 
@@ -192,8 +404,16 @@ class Http2ClientImpl {
         if (debug.on()) debug.log("stopping");
         STOPPED = new EOFException("HTTP/2 client stopped");
         STOPPED.setStackTrace(new StackTraceElement[0]);
-        connections.values().forEach(this::close);
-        connections.clear();
+        List<Http2Connection> all = new ArrayList<>();
+        List<Waiter> waiting = new ArrayList<>();
+        synchronized (this) {
+            connections.values().forEach(all::addAll);
+            connections.clear();
+            waiters.values().forEach(waiting::addAll);
+            waiters.clear();
+        }
+        all.forEach(this::close);
+        waiting.forEach(w -> w.cf.completeExceptionally(STOPPED));
     }
 
     private void close(Http2Connection h2c) {
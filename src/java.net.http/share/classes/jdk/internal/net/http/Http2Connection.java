@@ -263,6 +263,8 @@ class Http2Connection  {
     private final Decoder hpackIn;
     final SettingsFrame clientSettings;
     private volatile SettingsFrame serverSettings;
+    // true once the first SETTINGS frame has been received from the server
+    private volatile boolean serverSettingsReceived;
     private final String key; // for HttpClientImpl.connections map
     private final FramesDecoder framesDecoder;
     private final FramesEncoder framesEncoder = new FramesEncoder();
@@ -502,6 +504,26 @@ class Http2Connection  {
         return finalStream;
     }
 
+    /**
+     * Returns the number of client initiated streams reserved on this
+     * connection. Used to place new streams on the least busy connection
+     * to a destination.
+     */
+    synchronized int clientStreamCount() {
+        return numReservedClientStreams;
+    }
+
+    /**
+     * Returns true if a client initiated stream can be reserved on this
+     * connection without exceeding the concurrent stream limit advertised
+     * by the server. Until the server's settings are received, only the
+     * stream that the connection was opened for is allowed.
+     */
+    synchronized boolean hasStreamCapacity() {
+        int max = serverSettingsReceived ? maxConcurrentClientInitiatedStreams() : 1;
+        return !finalStream && !closed && numReservedClientStreams < max;
+    }
+
     /**
      * Mark this connection so no more streams created on it and it will close when
      * all are complete.
@@ -894,11 +916,29 @@ class Http2Connection  {
         }
     }
 
+    // releases a client stream that was reserved for a request that has
+    // since been cancelled, and for which no stream will be created
+    void releaseReservedStream() {
+        synchronized (this) {
+            numReservedClientStreams--;
+            assert numReservedClientStreams >= 0;
+        }
+        client2.streamsAvailable(this);
+    }
+
     // reduce count of streams by 1 if stream still exists
-    synchronized void decrementStreamsCount(int streamid) {
+    void decrementStreamsCount(int streamid) {
+        if (deregisterStream(streamid) && streamid % 2 == 1) {
+            // a request waiting for a stream may now use this connection.
+            // Called without holding the lock of this connection.
+            client2.streamsAvailable(this);
+        }
+    }
+
+    private synchronized boolean deregisterStream(int streamid) {
         Stream<?> s = streams.get(streamid);
         if (s == null || !s.deRegister())
-            return;
+            return false;
         if (streamid % 2 == 1) {
             numReservedClientStreams--;
             assert numReservedClientStreams >= 0 :
@@ -908,6 +948,7 @@ class Http2Connection  {
             assert numReservedServerStreams >= 0 :
                     "negative server stream count for stream=" + streamid;
         }
+        return true;
     }
 
     void closeStream(int streamid) {
@@ -982,6 +1023,9 @@ class Http2Connection  {
 
             serverSettings.update(frame);
             sendFrame(new SettingsFrame(SettingsFrame.ACK));
+            serverSettingsReceived = true;
+            // the concurrent stream limit may have been raised
+            client2.streamsAvailable(this);
         }
     }
 
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package jdk.internal.net.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilePermission;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpCache;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import jdk.internal.net.http.common.Logger;
+import jdk.internal.net.http.common.Utils;
+
+/**
+ * The built-in HttpCache. Entries are kept in memory, in least recently
+ * used order, and optionally in a directory as well, with one file per
+ * entry. The memory tier holds the entries most recently used, and the
+ * directory all the entries, up to their respective sizes.
+ *
+ * Files are named after the SHA-256 digest of the URI of their entry. They
+ * are written to a temporary file of their own first, which is then
+ * atomically renamed, so that a file found in the directory is always
+ * complete. Errors while reading or writing a file only cause the entry to
+ * be missed, and a file that can't be read is deleted.
+ */
+public final class HttpCacheImpl extends HttpCache {
+
+    static final Logger debug =
+            Utils.getDebugLogger("HttpCacheImpl"::toString, Utils.DEBUG);
+
+    private static final String SUFFIX = ".entry";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x48434531; // "HCE1"
+
+    private final long maxMemorySize;
+    private final Path directory; // null if memory only
+    private final long maxDiskSize;
+    private final FilePermission[] filePermissions; // may be null
+
+    // guarded by this
+    private final LinkedHashMap<URI, HttpCache.Entry> memory =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long memorySize;
+    // file name -> file size, in least recently used order. Guarded by this.
+    private final LinkedHashMap<String, Long> files =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private long diskSize;
+
+    public HttpCacheImpl(long maxMemorySize, Path directory, long maxDiskSize) {
+        this.maxMemorySize = maxMemorySize;
+        this.directory = directory;
+        this.maxDiskSize = maxDiskSize;
+        if (directory == null) {
+            filePermissions = null;
+            return;
+        }
+        SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            String fn = directory.toFile().getPath();
+            FilePermission dirPermission = new FilePermission(fn, "read");
+            FilePermission filesPermission = new FilePermission(
+                    fn + File.separatorChar + "*", "read,write,delete");
+            sm.checkPermission(dirPermission);
+            sm.checkPermission(filesPermission);
+            filePermissions = new FilePermission[] { dirPermission, filesPermission };
+        } else {
+            filePermissions = null;
+        }
+
+        // existence, etc, checks must be after permission checks
+        if (!Files.isDirectory(directory))
+            throw new IllegalArgumentException("not a directory: " + directory);
+        if (!Files.isWritable(directory))
+            throw new IllegalArgumentException("non-writable directory: " + directory);
+        try {
+            privileged(this::load);
+        } catch (IOException x) {
+            if (debug.on()) debug.log("failed to load entries from " + directory, x);
+        }
+    }
+
+    @Override
+    public Optional<HttpCache.Entry> get(URI uri) {
+        synchronized (this) {
+            HttpCache.Entry entry = memory.get(uri);
+            if (entry != null || directory == null) {
+                return Optional.ofNullable(entry);
+            }
+        }
+        String name = fileName(uri);
+        synchronized (this) {
+            if (files.get(name) == null) { // also marks the file as used
+                return Optional.empty();
+            }
+        }
+        HttpCache.Entry entry;
+        try {
+            entry = privileged(() -> read(name, uri));
+        } catch (IOException x) {
+            if (debug.on()) debug.log("failed to read " + name, x);
+            synchronized (this) {
+                Long previous = files.remove(name);
+                if (previous != null) diskSize -= previous;
+            }
+            delete(List.of(name));
+            entry = null;
+        }
+        if (entry != null) {
+            putInMemory(uri, entry);
+        }
+        return Optional.ofNullable(entry);
+    }
+
+    @Override
+    public void put(URI uri, HttpCache.Entry entry) {
+        putInMemory(uri, entry);
+        if (directory == null) {
+            return;
+        }
+        String name = fileName(uri);
+        List<String> evicted;
+        try {
+            long size = privileged(() -> write(name, uri, entry));
+            synchronized (this) {
+                Long previous = files.put(name, size);
+                diskSize += size - (previous == null ? 0 : previous);
+                evicted = evictFiles();
+            }
+        } catch (IOException x) {
+            if (debug.on()) debug.log("failed to write " + name, x);
+            evicted = List.of(name);
+            synchronized (this) {
+                Long previous = files.remove(name);
+                if (previous != null) diskSize -= previous;
+            }
+        }
+        delete(evicted);
+    }
+
+    @Override
+    public void remove(URI uri) {
+        synchronized (this) {
+            HttpCache.Entry entry = memory.remove(uri);
+            if (entry != null) memorySize -= entry.size();
+        }
+        if (directory == null) {
+            return;
+        }
+        String name = fileName(uri);
+        synchronized (this) {
+            Long previous = files.remove(name);
+            if (previous == null) return;
+            diskSize -= previous;
+        }
+        delete(List.of(name));
+    }
+
+    private void putInMemory(URI uri, HttpCache.Entry entry) {
+        long size = entry.size();
+        synchronized (this) {
+            HttpCache.Entry previous = size > maxMemorySize
+                    ? memory.remove(uri)
+                    : memory.put(uri, entry);
+            if (previous != null) memorySize -= previous.size();
+            if (size > maxMemorySize) return;
+            memorySize += size;
+            Iterator<HttpCache.Entry> eldest = memory.values().iterator();
+            while (memorySize > maxMemorySize) {
+                memorySize -= eldest.next().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    // Removes the least recently used files from the accounting, until the
+    // maximum size is no longer exceeded, and returns their names.
+    private List<String> evictFiles() {
+        assert Thread.holdsLock(this);
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+        while (diskSize > maxDiskSize) {
+            Map.Entry<String, Long> e = eldest.next();
+            diskSize -= e.getValue();
+            evicted.add(e.getKey());
+            eldest.remove();
+        }
+        return evicted;
+    }
+
+    private void delete(List<String> names) {
+        for (String name : names) {
+            try {
+                privileged(() -> Files.deleteIfExists(directory.resolve(name)));
+            } catch (IOException x) {
+                if (debug.on()) debug.log("failed to delete " + name, x);
+            }
+        }
+    }
+
+    private <T> T privileged(PrivilegedExceptionAction<T> action) throws IOException {
+        if (filePermissions == null) {
+            try {
+                return action.run();
+            } catch (IOException | RuntimeException x) {
+                throw x;
+            } catch (Exception x) {
+                throw new IOException(x);
+            }
+        }
+        try {
+            return AccessController.doPrivileged(action, null, filePermissions);
+        } catch (PrivilegedActionException pae) {
+            Throwable t = pae.getCause();
+            throw t instanceof IOException ? (IOException) t : new IOException(t);
+        }
+    }
+
+    // Registers the files found in the directory, the least recently
+    // modified first. Temporary files left over are deleted.
+    private Void load() throws IOException {
+        TreeMap<Long, List<Path>> byTime = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path p : stream) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(TMP_SUFFIX)) {
+                    Files.deleteIfExists(p);
+                } else if (name.endsWith(SUFFIX)) {
+                    long time = Files.getLastModifiedTime(p).toMillis();
+                    byTime.computeIfAbsent(time, t -> new ArrayList<>()).add(p);
+                }
+            }
+        }
+        List<String> evicted;
+        synchronized (this) {
+            for (List<Path> paths : byTime.values()) {
+                for (Path p : paths) {
+                    long size = Files.size(p);
+                    files.put(p.getFileName().toString(), size);
+                    diskSize += size;
+                }
+            }
+            evicted = evictFiles();
+        }
+        delete(evicted);
+        return null;
+    }
+
+    private static String fileName(URI uri) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(uri.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2 + SUFFIX.length());
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                  .append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.append(SUFFIX).toString();
+        } catch (NoSuchAlgorithmException x) {
+            throw new InternalError(x);
+        }
+    }
+
+    // Returns the entry stored in the given file, or null if the file
+    // is not an entry for the given URI. Throws IOException if the file
+    // can't be read or doesn't hold a valid entry.
+    private HttpCache.Entry read(String name, URI uri) throws IOException {
+        Path file = directory.resolve(name);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(uri.toString())) {
+                return null;
+            }
+            int statusCode = in.readInt();
+            if (statusCode < 100 || statusCode > 999) {
+                throw new IOException("invalid entry: " + name);
+            }
+            HttpClient.Version version = HttpClient.Version.valueOf(in.readUTF());
+            Instant requestTime = Instant.ofEpochMilli(in.readLong());
+            Instant responseTime = Instant.ofEpochMilli(in.readLong());
+            HttpHeaders headers = readHeaders(in);
+            HttpHeaders varyHeaders = readHeaders(in);
+            // the body can't be longer than the rest of the file
+            int length = in.readInt();
+            if (length < 0 || length > Files.size(file)) {
+                throw new IOException("invalid entry: " + name);
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            return new HttpCache.Entry(statusCode, version, headers, varyHeaders,
+                                       body, requestTime, responseTime);
+        } catch (RuntimeException x) {
+            throw new IOException("invalid entry: " + name, x);
+        }
+    }
+
+    // Writes the entry to the given file, and returns the size of the file.
+    private long write(String name, URI uri, HttpCache.Entry entry) throws IOException {
+        Path file = directory.resolve(name);
+        // a file of its own, as the same entry may be written concurrently
+        Path tmp = Files.createTempFile(directory, name, TMP_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(uri.toString());
+            out.writeInt(entry.statusCode());
+            out.writeUTF(entry.version().name());
+            out.writeLong(entry.requestTime().toEpochMilli());
+            out.writeLong(entry.responseTime().toEpochMilli());
+            writeHeaders(out, entry.headers());
+            writeHeaders(out, entry.varyHeaders());
+            ByteBuffer body = entry.body();
+            out.writeInt(body.remaining());
+            byte[] buf = new byte[Math.min(body.remaining(), 8192)];
+            while (body.hasRemaining()) {
+                int n = Math.min(body.remaining(), buf.length);
+                body.get(buf, 0, n);
+                out.write(buf, 0, n);
+            }
+        } catch (IOException x) {
+            Files.deleteIfExists(tmp);
+            throw x;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        return Files.size(file);
+    }
+
+    private static void writeHeaders(DataOutputStream out, HttpHeaders headers)
+        throws IOException
+    {
+        Map<String, List<String>> map = headers.map();
+        out.writeInt(map.size());
+        for (Map.Entry<String, List<String>> e : map.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeInt(e.getValue().size());
+            for (String value : e.getValue()) {
+                out.writeUTF(value);
+            }
+        }
+    }
+
+    private static HttpHeaders readHeaders(DataInputStream in) throws IOException {
+        Map<String, List<String>> map = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = in.readInt(); i > 0; i--) {
+            String name = in.readUTF();
+            List<String> values = new ArrayList<>();
+            for (int j = in.readInt(); j > 0; j--) {
+                values.add(in.readUTF());
+            }
+            map.put(name, values);
+        }
+        return HttpHeaders.of(map, (name, value) -> true);
+    }
+}
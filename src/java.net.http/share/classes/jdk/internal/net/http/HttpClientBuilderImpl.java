@@ -32,6 +32,7 @@ import java.time.Duration;
 import java.util.concurrent.Executor;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
+import java.net.http.HttpCache;
 import java.net.http.HttpClient;
 import jdk.internal.net.http.common.Utils;
 import static java.util.Objects.requireNonNull;
@@ -49,6 +50,8 @@ public class HttpClientBuilderImpl implements HttpClient.Builder {
     SSLContext sslContext;
     SSLParameters sslParams;
     int priority = -1;
+    int maxHttp2Connections = -1;
+    HttpCache cache;
 
     @Override
     public HttpClientBuilderImpl cookieHandler(CookieHandler cookieHandler) {
@@ -115,6 +118,22 @@ public class HttpClientBuilderImpl implements HttpClient.Builder {
         return this;
     }
 
+    @Override
+    public HttpClientBuilderImpl maxHttp2Connections(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be positive: " + max);
+        }
+        this.maxHttp2Connections = max;
+        return this;
+    }
+
+    @Override
+    public HttpClientBuilderImpl cache(HttpCache cache) {
+        requireNonNull(cache);
+        this.cache = cache;
+        return this;
+    }
+
     @Override
     public HttpClientBuilderImpl proxy(ProxySelector proxy) {
         requireNonNull(proxy);
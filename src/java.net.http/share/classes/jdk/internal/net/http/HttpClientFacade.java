@@ -36,6 +36,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
+import java.net.http.HttpCache;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
@@ -110,6 +111,11 @@ final class HttpClientFacade extends HttpClient implements Trackable {
         return impl.executor();
     }
 
+    @Override
+    public Optional<HttpCache> cache() {
+        return impl.cache();
+    }
+
     @Override
     public <T> HttpResponse<T>
     send(HttpRequest req, HttpResponse.BodyHandler<T> responseBodyHandler)
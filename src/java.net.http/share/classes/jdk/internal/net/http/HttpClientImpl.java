@@ -70,6 +70,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BooleanSupplier;
 import java.util.stream.Stream;
+import java.net.http.HttpCache;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
@@ -77,6 +78,7 @@ import java.net.http.HttpResponse.BodyHandler;
 import java.net.http.HttpResponse.PushPromiseHandler;
 import java.net.http.WebSocket;
 import jdk.internal.net.http.common.BufferSupplier;
+import jdk.internal.net.http.common.ByteBufferPool;
 import jdk.internal.net.http.common.Log;
 import jdk.internal.net.http.common.Logger;
 import jdk.internal.net.http.common.Pair;
@@ -100,6 +102,10 @@ final class HttpClientImpl extends HttpClient implements Trackable {
     final Logger debugtimeout = Utils.getDebugLogger(this::dbgString, DEBUGTIMEOUT);
     static final AtomicLong CLIENT_IDS = new AtomicLong();
 
+    // the default maximum number of HTTP/2 connections to an origin server
+    static final int MAX_HTTP2_CONNECTIONS = Math.max(1,
+            Utils.getIntegerNetProperty("jdk.httpclient.maxHttp2Connections", 4));
+
     // Define the default factory as a static inner class
     // that embeds all the necessary logic to avoid
     // the risk of using a lambda that might keep a reference on the
@@ -156,6 +162,7 @@ final class HttpClientImpl extends HttpClient implements Trackable {
     }
 
     private final CookieHandler cookieHandler;
+    private final HttpCache cache;
     private final Duration connectTimeout;
     private final Redirect followRedirects;
     private final ProxySelector userProxySelector;
@@ -181,6 +188,11 @@ final class HttpClientImpl extends HttpClient implements Trackable {
     private final SSLDirectBufferSupplier sslBufferSupplier
             = new SSLDirectBufferSupplier(this);
 
+    // direct buffers into which the SSLFlowDelegate writers wrap
+    // outgoing data, and to which the SocketTube gives them back
+    // once written.
+    private final ByteBufferPool sslWriteBufferPool = new ByteBufferPool(true);
+
     // This reference is used to keep track of the facade HttpClient
     // that was returned to the application code.
     // It makes it possible to know when the application no longer
@@ -279,8 +291,10 @@ final class HttpClientImpl extends HttpClient implements Trackable {
         }
         delegatingExecutor = new DelegatingExecutor(this::isSelectorThread, ex);
         facadeRef = new WeakReference<>(facadeFactory.createFacade(this));
-        client2 = new Http2ClientImpl(this);
+        client2 = new Http2ClientImpl(this, builder.maxHttp2Connections > 0
+                ? builder.maxHttp2Connections : MAX_HTTP2_CONNECTIONS);
         cookieHandler = builder.cookieHandler;
+        cache = builder.cache;
         connectTimeout = builder.connectTimeout;
         followRedirects = builder.followRedirects == null ?
                 Redirect.NEVER : builder.followRedirects;
@@ -1131,6 +1145,11 @@ final class HttpClientImpl extends HttpClient implements Trackable {
         return Optional.ofNullable(cookieHandler);
     }
 
+    @Override
+    public Optional<HttpCache> cache() {
+        return Optional.ofNullable(cache);
+    }
+
     @Override
     public Optional<Duration> connectTimeout() {
         return Optional.ofNullable(connectTimeout);
@@ -1288,6 +1307,13 @@ final class HttpClientImpl extends HttpClient implements Trackable {
         return sslBufferSupplier;
     }
 
+    // Unlike the SSLDirectBufferSupplier, which is only used in the
+    // SelectorManager thread, this pool is used by the SSLFlowDelegate
+    // writers and by the SocketTube write subscribers, from any thread.
+    ByteBufferPool getSSLWriteBufferPool() {
+        return sslWriteBufferPool;
+    }
+
     // An implementation of BufferSupplier that manages a pool of
     // maximum 3 direct byte buffers (SocketTube.MAX_BUFFERS) that
     // are used for reading encrypted bytes off the channel before
@@ -41,9 +41,11 @@ import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Flow;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Version;
 import java.net.http.HttpHeaders;
+import jdk.internal.event.HttpConnectionLeaseEvent;
 import jdk.internal.net.http.common.Demand;
 import jdk.internal.net.http.common.FlowTube;
 import jdk.internal.net.http.common.Logger;
@@ -74,6 +76,18 @@ abstract class HttpConnection implements Closeable {
     private final HttpClientImpl client;
     private final TrailingOperations trailingOperations;
 
+    // The following are maintained by the ConnectionPool, and guarded by it:
+    // whether a close action has been registered, the destination that the
+    // connection is counted against, if any, the event recording the current
+    // lease, and when the connection was last returned to the pool.
+    boolean tracked;
+    ConnectionPool.CacheKey route;
+    HttpConnectionLeaseEvent leaseEvent;
+    long idleSince;
+
+    // time taken to connect, in nanoseconds
+    volatile long connectTime;
+
     HttpConnection(InetSocketAddress address, HttpClientImpl client) {
         this.address = address;
         this.client = client;
@@ -235,6 +249,27 @@ abstract class HttpConnection implements Closeable {
         }
     }
 
+    /**
+     * Leases a HTTP/1.1 connection from the connection pool. The returned
+     * future completes with a connection retrieved from the pool, or with a
+     * new connection, which must be connected, when the maximum number of
+     * connections to the destination allows it.
+     */
+    static CompletableFuture<HttpConnection> leaseConnection(InetSocketAddress addr,
+                                                             HttpClientImpl client,
+                                                             HttpRequestImpl request) {
+        // The default proxy selector may select a proxy whose  address is
+        // unresolved. We must resolve the address before connecting to it.
+        InetSocketAddress proxy = Utils.resolveAddress(request.proxy());
+        boolean secure = request.secure();
+        ConnectionPool pool = client.connectionPool();
+        ConnectionPool.CacheKey key = ConnectionPool.cacheKey(secure, addr, proxy);
+        Supplier<HttpConnection> factory = secure
+                ? () -> getSSLConnection(addr, proxy, null, request, client)
+                : () -> getPlainConnection(addr, proxy, request, client);
+        return pool.lease(key, factory, client.theExecutor().delegate());
+    }
+
     private static HttpConnection getSSLConnection(InetSocketAddress addr,
                                                    InetSocketAddress proxy,
                                                    String[] alpn,
@@ -367,6 +402,14 @@ abstract class HttpConnection implements Closeable {
     @Override
     public abstract void close();
 
+    /**
+     * Registers an action to run once, when the channel of this connection
+     * is closed, whichever way it is closed. The action is run immediately
+     * if the channel is already closed. Used by the connection pool to count
+     * the connections open to each destination.
+     */
+    abstract void onClose(Runnable action);
+
     abstract FlowTube getConnectionFlow();
 
     /**
@@ -77,8 +77,8 @@ class HttpResponseImpl<T> implements HttpResponse<T>, RawChannel.Provider {
 
     private HttpConnection connection(Exchange<?> exch) {
         if (exch == null || exch.exchImpl == null) {
-            assert responseCode == 407;
-            return null; // case of Proxy 407
+            assert responseCode == 407 || exch == null;
+            return null; // case of Proxy 407, or of a cached response
         }
         return exch.exchImpl.connection();
     }
@@ -155,6 +155,7 @@ class HttpResponseImpl<T> implements HttpResponse<T>, RawChannel.Provider {
             // Http1Exchange may have some remaining bytes in its
             // internal buffer.
             Supplier<ByteBuffer> initial = ((Http1Exchange<?>)exchImpl)::drainLeftOverBytes;
+            exchange.client().connectionPool().detach(connection);
             rawchan = new RawChannelTube(connection, initial);
         }
         return rawchan;
@@ -44,11 +44,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
+import java.net.http.HttpCache;
 import java.net.http.HttpClient;
 import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
 import java.net.http.HttpResponse.PushPromiseHandler;
 import java.net.http.HttpTimeoutException;
 import jdk.internal.net.http.common.Log;
@@ -97,6 +99,7 @@ class MultiExchange<T> {
     );
 
     private final LinkedList<HeaderFilter> filters;
+    private final CacheFilter cacheFilter; // null if not cached
     ResponseTimerEvent responseTimerEvent;
     volatile boolean cancelled;
     final PushGroup<T> pushGroup;
@@ -159,6 +162,9 @@ class MultiExchange<T> {
         this.previousreq = null;
         this.client = client;
         this.filters = client.filterChain();
+        this.cacheFilter = client.cache()
+                .map(cache -> CacheFilter.of(cache, requestImpl))
+                .orElse(null);
         this.acc = acc;
         this.executor = client.theExecutor();
         this.responseHandler = responseHandler;
@@ -288,11 +294,56 @@ class MultiExchange<T> {
         return result.whenComplete(exch::nullBody);
     }
 
+    // Returns a response served from the given cache entry, without
+    // any exchange.
+    private CompletableFuture<HttpResponse<T>> cachedResponse(HttpCache.Entry entry) {
+        Response r = new Response(currentreq, null,
+                CacheFilter.responseHeaders(entry), null,
+                entry.statusCode(), entry.version());
+        BodySubscriber<T> bs = responseHandler.apply(new ResponseInfoImpl(r.statusCode(),
+                r.headers(), r.version()));
+        CompletionStage<T> cs = bs.getBody();
+        bs.onSubscribe(new CacheFilter.StoredBodySubscription(bs, entry.body()));
+        MinimalFuture<HttpResponse<T>> result = new MinimalFuture<>();
+        cs.whenComplete((body, exception) -> {
+            if (exception != null)
+                result.completeExceptionally(exception);
+            else {
+                this.response =
+                        new HttpResponseImpl<>(r.request(), r, this.response, body, null);
+                result.complete(this.response);
+            }
+        });
+        return result;
+    }
+
     private CompletableFuture<HttpResponse<T>>
     responseAsync0(CompletableFuture<Void> start) {
-        return start.thenCompose( v -> responseAsyncImpl())
+        return start.thenCompose( v -> {
+                        // 0. answer the request from the cache if possible
+                        HttpCache.Entry entry = cacheFilter == null
+                                ? null : cacheFilter.request(currentreq);
+                        return entry != null ? cachedResponse(entry)
+                                             : networkResponseAsync();
+                    });
+    }
+
+    private CompletableFuture<HttpResponse<T>> networkResponseAsync() {
+        return responseAsyncImpl()
                     .thenCompose((Response r) -> {
                         Exchange<T> exch = getExchange();
+                        HttpResponse.BodyHandler<T> handler = responseHandler;
+                        if (cacheFilter != null) {
+                            HttpCache.Entry entry = cacheFilter.response(r);
+                            if (entry != null) {
+                                // 304 to a revalidation: serve the stored
+                                // entry once the empty body is read
+                                return exch.readBodyAsync(
+                                            (info) -> BodySubscribers.replacing((T)null))
+                                        .thenCompose((unused) -> cachedResponse(entry));
+                            }
+                            handler = cacheFilter.storing(handler, r);
+                        }
                         if (bodyNotPermitted(r)) {
                             if (bodyIsPresent(r)) {
                                 IOException ioe = new IOException(
@@ -302,7 +353,7 @@ class MultiExchange<T> {
                             } else
                                 return handleNoBody(r, exch);
                         }
-                        return exch.readBodyAsync(responseHandler)
+                        return exch.readBodyAsync(handler)
                             .thenApply((T body) -> {
                                 this.response =
                                     new HttpResponseImpl<>(r.request(), r, this.response, body, exch);
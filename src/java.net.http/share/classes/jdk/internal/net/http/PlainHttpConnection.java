@@ -55,6 +55,7 @@ class PlainHttpConnection extends HttpConnection {
     private final PlainHttpPublisher writePublisher = new PlainHttpPublisher(reading);
     private volatile boolean connected;
     private boolean closed;
+    private Runnable closeAction; // guarded by this
     private volatile ConnectTimerEvent connectTimerEvent;  // may be null
 
     // should be volatile to provide proper synchronization(visibility) action
@@ -256,16 +257,31 @@ class PlainHttpConnection extends HttpConnection {
         return "PlainHttpConnection: " + super.toString();
     }
 
+    // runs the action when close() is called, or now if already closed
+    @Override
+    void onClose(Runnable action) {
+        synchronized (this) {
+            if (!closed) {
+                closeAction = action;
+                return;
+            }
+        }
+        action.run();
+    }
+
     /**
      * Closes this connection
      */
     @Override
     public void close() {
+        Runnable action;
         synchronized (this) {
             if (closed) {
                 return;
             }
             closed = true;
+            action = closeAction;
+            closeAction = null;
         }
         try {
             Log.logTrace("Closing: " + toString());
@@ -278,6 +294,9 @@ class PlainHttpConnection extends HttpConnection {
         } catch (IOException e) {
             Log.logTrace("Closing resulted in " + e);
         }
+        if (action != null) {
+            action.run();
+        }
     }
 
 
@@ -160,6 +160,11 @@ final class PlainTunnelingConnection extends HttpConnection {
         connected = false;
     }
 
+    @Override
+    void onClose(Runnable action) {
+        delegate.onClose(action);
+    }
+
     @Override
     boolean isSecure() {
         return false;
@@ -46,6 +46,7 @@ import java.net.http.HttpResponse.ResponseInfo;
 import java.net.http.HttpResponse.BodySubscriber;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import jdk.internal.net.http.ResponseSubscribers.FileRegionSubscriber;
 import jdk.internal.net.http.ResponseSubscribers.PathSubscriber;
 import static java.util.regex.Pattern.CASE_INSENSITIVE;
 
@@ -99,6 +100,73 @@ public final class ResponseBodyHandlers {
         }
     }
 
+    /**
+     * A body handler that writes the body into the region of a file
+     * given by the response: the range described by the Content-Range
+     * header of a 206 (Partial Content) response, and otherwise the
+     * start of the file.
+     */
+    public static class FileRegionBodyHandler implements BodyHandler<Path> {
+        private final Path file;
+        private final FilePermission filePermission;
+
+        /**
+         * Factory for creating FileRegionBodyHandler.
+         *
+         * Permission checks are performed here before construction of the
+         * FileRegionBodyHandler. Permission checking and construction are
+         * deliberately and tightly co-located.
+         */
+        public static FileRegionBodyHandler create(Path file) {
+            FilePermission filePermission = null;
+            SecurityManager sm = System.getSecurityManager();
+            if (sm != null) {
+                String fn = pathForSecurityCheck(file);
+                FilePermission permission = new FilePermission(fn, "read,write");
+                sm.checkPermission(permission);
+                filePermission = permission;
+            }
+            return new FileRegionBodyHandler(file, filePermission);
+        }
+
+        private FileRegionBodyHandler(Path file, FilePermission filePermission) {
+            this.file = file;
+            this.filePermission = filePermission;
+        }
+
+        /** The "bytes first-last/complete-length" byte range. */
+        static final Pattern CONTENT_RANGE =
+                Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)", CASE_INSENSITIVE);
+
+        @Override
+        public BodySubscriber<Path> apply(ResponseInfo responseInfo) {
+            HttpHeaders headers = responseInfo.headers();
+            if (responseInfo.statusCode() != 206) {
+                long length = headers.firstValueAsLong("Content-Length").orElse(-1L);
+                return new FileRegionSubscriber(file, 0, length, filePermission);
+            }
+            String range = headers.firstValue("Content-Range")
+                    .orElseThrow(() -> FileDownloadBodyHandler.unchecked(responseInfo,
+                            "No Content-Range header"));
+            Matcher matcher = CONTENT_RANGE.matcher(range.trim());
+            long first = -1, last = -1;
+            if (matcher.matches()) {
+                try {
+                    first = Long.parseLong(matcher.group(1));
+                    last = Long.parseLong(matcher.group(2));
+                } catch (NumberFormatException x) {
+                    // too large, handled below
+                }
+            }
+            if (first < 0 || last < first) {
+                throw FileDownloadBodyHandler.unchecked(responseInfo,
+                        "Bad Content-Range header: " + range);
+            }
+            return new FileRegionSubscriber(file, first, last - first + 1,
+                                            filePermission);
+        }
+    }
+
     /** With push promise Map implementation */
     public static class PushPromisesHandlerWithMap<T>
         implements HttpResponse.PushPromiseHandler<T>
@@ -30,10 +30,12 @@ import java.io.FilePermission;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.lang.System.Logger.Level;
 import java.net.http.HttpHeaders;
 import java.net.http.HttpResponse;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.OpenOption;
@@ -64,6 +66,9 @@ import jdk.internal.net.http.common.Logger;
 import jdk.internal.net.http.common.MinimalFuture;
 import jdk.internal.net.http.common.Utils;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 public class ResponseSubscribers {
 
@@ -233,6 +238,177 @@ public class ResponseSubscribers {
         }
     }
 
+    /**
+     * A subscriber that writes the body into a region of a file, starting
+     * at a given position, without truncating the file. Several such
+     * subscribers may write to distinct regions of the same file at the
+     * same time, for instance when a resource is downloaded in parts with
+     * range requests.
+     *
+     * Each buffer received is written at its position in the file as it
+     * is, without being gathered with others. When the length of the
+     * region is known and at least MAP_THRESHOLD bytes, the region is
+     * mapped into memory, which also preallocates it, and the buffers are
+     * copied into the mapping instead.
+     */
+    public static class FileRegionSubscriber implements BodySubscriber<Path> {
+
+        // Regions of at least that many bytes are mapped into memory.
+        // A value <= 0 disables mapping.
+        static final int MAP_THRESHOLD = Utils.getIntegerNetProperty(
+                "jdk.httpclient.fileRegionMapThreshold", 1024 * 1024);
+
+        private static final FilePermission[] EMPTY_FILE_PERMISSIONS = new FilePermission[0];
+
+        private final Path file;
+        private final long start;
+        private final long length; // -1 if unknown
+        private final FilePermission[] filePermissions;
+        private final CompletableFuture<Path> result = new MinimalFuture<>();
+
+        private final AtomicBoolean subscribed = new AtomicBoolean();
+        private volatile Flow.Subscription subscription;
+        private volatile FileChannel out;
+        private volatile MappedByteBuffer region;
+        private long written; // only accessed in onNext
+
+        /**
+         * Factory for creating FileRegionSubscriber.
+         *
+         * Permission checks are performed here before construction of the
+         * FileRegionSubscriber. Permission checking and construction are
+         * deliberately and tightly co-located.
+         */
+        public static FileRegionSubscriber create(Path file,
+                                                  long position,
+                                                  long length) {
+            FilePermission filePermission = null;
+            SecurityManager sm = System.getSecurityManager();
+            if (sm != null) {
+                String fn = PathSubscriber.pathForSecurityCheck(file);
+                // read access is needed to map the region
+                FilePermission permission = new FilePermission(fn, "read,write");
+                sm.checkPermission(permission);
+                filePermission = permission;
+            }
+            return new FileRegionSubscriber(file, position, length, filePermission);
+        }
+
+        // pp so handler implementations in the same package can construct
+        /*package-private*/ FileRegionSubscriber(Path file,
+                                                 long position,
+                                                 long length,
+                                                 FilePermission... filePermissions) {
+            this.file = file;
+            this.start = position;
+            this.length = length;
+            this.filePermissions =
+                    filePermissions == null ? EMPTY_FILE_PERMISSIONS : filePermissions;
+        }
+
+        private Void open() throws IOException {
+            boolean map = MAP_THRESHOLD > 0
+                    && length >= MAP_THRESHOLD
+                    && length <= Integer.MAX_VALUE;
+            if (map) {
+                out = FileChannel.open(file, CREATE, READ, WRITE);
+                region = out.map(FileChannel.MapMode.READ_WRITE, start, length);
+            } else {
+                out = FileChannel.open(file, CREATE, WRITE);
+            }
+            return null;
+        }
+
+        // Releases the file backing of the mapping, if any, and closes the file.
+        private void release() {
+            MappedByteBuffer r = region;
+            region = null;
+            if (r != null) {
+                try {
+                    r.releaseFileBacking();
+                } catch (UnsupportedOperationException | UncheckedIOException x) {
+                    // the mapping is released when the buffer is GC'ed
+                }
+            }
+            Utils.close(out);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            Objects.requireNonNull(subscription);
+            if (!subscribed.compareAndSet(false, true)) {
+                subscription.cancel();
+                return;
+            }
+
+            this.subscription = subscription;
+            try {
+                if (System.getSecurityManager() == null) {
+                    open();
+                } else {
+                    PrivilegedExceptionAction<Void> pa = this::open;
+                    AccessController.doPrivileged(pa, null, filePermissions);
+                }
+            } catch (IOException | PrivilegedActionException x) {
+                Throwable t = x instanceof PrivilegedActionException
+                        && x.getCause() != null ? x.getCause() : x;
+                release();
+                result.completeExceptionally(t);
+                subscription.cancel();
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            try {
+                MappedByteBuffer r = region;
+                for (ByteBuffer item : items) {
+                    int n = item.remaining();
+                    if (length >= 0 && n > length - written) {
+                        // don't write past the region, another request may
+                        // be filling the range that follows it
+                        throw new IOException("body exceeds the expected length: "
+                                + length);
+                    }
+                    if (r != null) {
+                        r.put(item);
+                    } else {
+                        long position = start + written;
+                        while (item.hasRemaining()) {
+                            position += out.write(item, position);
+                        }
+                    }
+                    written += n;
+                }
+            } catch (IOException ex) {
+                release();
+                subscription.cancel();
+                result.completeExceptionally(ex);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            result.completeExceptionally(e);
+            release();
+        }
+
+        @Override
+        public void onComplete() {
+            release();
+            result.complete(file);
+        }
+
+        @Override
+        public CompletionStage<Path> getBody() {
+            return result;
+        }
+    }
+
     public static class ByteArraySubscriber<T> implements BodySubscriber<T> {
         private final Function<byte[], T> finisher;
         private final CompletableFuture<T> result = new MinimalFuture<>();
@@ -39,6 +39,7 @@ import java.util.ArrayList;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import jdk.internal.net.http.common.BufferSupplier;
+import jdk.internal.net.http.common.ByteBufferPool;
 import jdk.internal.net.http.common.Demand;
 import jdk.internal.net.http.common.FlowTube;
 import jdk.internal.net.http.common.Log;
@@ -66,6 +67,7 @@ final class SocketTube implements FlowTube {
     private final InternalReadPublisher readPublisher;
     private final InternalWriteSubscriber writeSubscriber;
     private final long id = IDS.incrementAndGet();
+    private volatile ByteBufferPool writtenBuffersPool;
 
     public SocketTube(HttpClientImpl client, SocketChannel channel,
                       Supplier<ByteBuffer> buffersFactory) {
@@ -93,6 +95,21 @@ final class SocketTube implements FlowTube {
                 || subscription == null && errorRef.get() != null;
     }
 
+    /**
+     * Gives back to the given pool the buffers it accepts, once they
+     * have been fully written to the channel.
+     * This must only be called when the write publisher hands over the
+     * ownership of these buffers, and does not reference them, or any
+     * view of them, after they were passed to {@code onNext}.
+     * This is the case of the {@code SSLFlowDelegate} writer, which
+     * wraps the outgoing data into buffers taken from that pool.
+     *
+     * @param pool the pool to which written buffers are recycled.
+     */
+    public void recycleWrittenBuffers(ByteBufferPool pool) {
+        writtenBuffersPool = Objects.requireNonNull(pool);
+    }
+
     // ===================================================================== //
     //                       Flow.Publisher                                  //
     // ======================================================================//
@@ -345,6 +362,10 @@ final class SocketTube implements FlowTube {
                 assert written <= remaining;
                 if (remaining - written == 0) {
                     current = null;
+                    ByteBufferPool pool = writtenBuffersPool;
+                    if (pool != null) {
+                        for (ByteBuffer b : bufs) pool.recycle(b);
+                    }
                     if (writeDemand.tryDecrement()) {
                         Runnable requestMore = this::requestMore;
                         if (inSelectorThread) {
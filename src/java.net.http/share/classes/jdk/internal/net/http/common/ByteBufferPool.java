@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.internal.net.http.common;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ *  A pool of heap or direct byte buffers, used to recycle the buffers
+ *  that would otherwise be allocated, filled, and dropped for each
+ *  operation on the I/O paths of the client.
+ *
+ *  Buffers are allocated in size classes that are multiples of 4K, up
+ *  to 64K, so that a buffer obtained for a given size can be reused
+ *  for any size of the same class. Larger buffers are not pooled.
+ *  The pool keeps at most 16 buffers of each class, and can be used
+ *  from any thread.
+ *
+ *  The recycling contract is explicit: a buffer must only be recycled
+ *  by its last owner, once neither the buffer nor any slice or view of
+ *  it is referenced anywhere else, since the pool will hand it out
+ *  again. A buffer that is not recycled is simply GC'ed.
+ **/
+public final class ByteBufferPool implements BufferSupplier {
+    private static final int CLASS_SIZE = 4 * 1024;
+    private static final int CLASSES = 16;
+    private static final int MAX_POOLED = 16;
+
+    private final boolean direct;
+    private final ArrayDeque<ByteBuffer>[] pools; // guarded by this
+
+    @SuppressWarnings("unchecked")
+    public ByteBufferPool(boolean direct) {
+        this.direct = direct;
+        this.pools = (ArrayDeque<ByteBuffer>[]) new ArrayDeque<?>[CLASSES];
+        for (int i = 0; i < CLASSES; i++) {
+            pools[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Returns a buffer of {@link Utils#BUFSIZE} bytes or more.
+     */
+    @Override
+    public ByteBuffer get() {
+        return get(Utils.BUFSIZE);
+    }
+
+    /**
+     * Returns a cleared buffer with a capacity of at least {@code size}
+     * bytes.
+     */
+    public ByteBuffer get(int size) {
+        int index = (size - 1) / CLASS_SIZE;
+        if (size <= 0 || index >= CLASSES) {
+            return allocate(size);
+        }
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = pools[index].pollFirst();
+        }
+        return buffer != null ? buffer : allocate((index + 1) * CLASS_SIZE);
+    }
+
+    /**
+     * Tells whether the given buffer is of the kind and of one of the
+     * size classes of this pool.
+     */
+    public boolean accepts(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        return buffer.isDirect() == direct
+                && !buffer.isReadOnly()
+                && capacity > 0
+                && capacity % CLASS_SIZE == 0
+                && capacity / CLASS_SIZE <= CLASSES;
+    }
+
+    /**
+     * Returns the given buffer to the pool, if it {@linkplain #accepts
+     * accepts} it. The caller must not touch the buffer afterwards.
+     */
+    @Override
+    public void recycle(ByteBuffer buffer) {
+        if (!accepts(buffer)) {
+            return;
+        }
+        int index = buffer.capacity() / CLASS_SIZE - 1;
+        buffer.clear();
+        synchronized (this) {
+            ArrayDeque<ByteBuffer> pool = pools[index];
+            if (pool.size() < MAX_POOLED) {
+                pool.addFirst(buffer);
+            }
+        }
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity)
+                      : ByteBuffer.allocate(capacity);
+    }
+}
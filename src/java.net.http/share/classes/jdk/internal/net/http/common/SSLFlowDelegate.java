@@ -112,6 +112,7 @@ public class SSLFlowDelegate {
     final CompletableFuture<Void> writerCF;
     final CompletableFuture<Void> stopCF;
     final Consumer<ByteBuffer> recycler;
+    final ByteBufferPool netBuffers; // may be null
     static AtomicInteger scount = new AtomicInteger(1);
     final int id;
 
@@ -138,10 +139,27 @@ public class SSLFlowDelegate {
             Consumer<ByteBuffer> recycler,
             Subscriber<? super List<ByteBuffer>> downReader,
             Subscriber<? super List<ByteBuffer>> downWriter)
+    {
+        this(engine, exec, recycler, null, downReader, downWriter);
+    }
+
+    /**
+     * Creates an SSLFlowDelegate fed from two Flow.Subscribers, which
+     * wraps outgoing data into buffers obtained from the given pool.
+     * These buffers are passed to the downWriter, which may recycle
+     * them once they are written.
+     */
+    public SSLFlowDelegate(SSLEngine engine,
+            Executor exec,
+            Consumer<ByteBuffer> recycler,
+            ByteBufferPool netBuffers,
+            Subscriber<? super List<ByteBuffer>> downReader,
+            Subscriber<? super List<ByteBuffer>> downWriter)
         {
         this.id = scount.getAndIncrement();
         this.tubeName = String.valueOf(downWriter);
         this.recycler = recycler;
+        this.netBuffers = netBuffers;
         this.reader = new Reader();
         this.writer = new Writer();
         this.engine = engine;
@@ -1213,7 +1231,8 @@ public class SSLFlowDelegate {
         if (netSize <= 0) {
             packetBufferSize = netSize = engine.getSession().getPacketBufferSize();
         }
-        return ByteBuffer.allocate(netSize);
+        return netBuffers == null ? ByteBuffer.allocate(netSize)
+                                  : netBuffers.get(netSize);
     }
 
     // The maximum application buffer size negotiated during
@@ -60,6 +60,13 @@ import static java.util.Objects.requireNonNull;
  * to decide how headers are processed. The callback does not limit the number
  * of headers decoded during single decoding operation.
  *
+ * <p> Names and values found in the header table are delivered as the
+ * {@code String}s stored in the table. Other names and values are delivered
+ * as {@code CharSequence}s whose {@code toString()} returns the same
+ * {@code String} instance as the last time the same characters were read,
+ * as long as it is cached, so that repeated headers are decoded without
+ * allocation. Values of fields that are never indexed are not cached.
+ *
  * @since 9
  */
 public final class Decoder {
@@ -107,6 +114,9 @@ public final class Decoder {
     private final StringReader stringReader;
     private final StringBuilder name;
     private final StringBuilder value;
+    private final StringInterner strings;
+    private final StringInterner.Chars nameChars;
+    private final StringInterner.Chars valueChars;
     private int intValue;
     private boolean firstValueRead;
     private boolean firstValueIndex;
@@ -151,6 +161,9 @@ public final class Decoder {
         stringReader = new StringReader();
         name = new StringBuilder(512);
         value = new StringBuilder(1024);
+        strings = new StringInterner();
+        nameChars = strings.new Chars();
+        valueChars = strings.new Chars();
     }
 
     /**
@@ -397,14 +410,16 @@ public final class Decoder {
                             intValue, value, valueHuffmanEncoded));
                 }
                 SimpleHeaderTable.HeaderField f = getHeaderFieldAt(intValue);
-                action.onLiteral(intValue, f.name, value, valueHuffmanEncoded);
+                action.onLiteral(intValue, f.name, valueChars.of(value),
+                                 valueHuffmanEncoded);
             } else {
                 if (logger.isLoggable(NORMAL)) {
                     logger.log(NORMAL, () -> format(
                             "literal without indexing ('%s', huffman=%b, '%s', huffman=%b)",
                             name, nameHuffmanEncoded, value, valueHuffmanEncoded));
                 }
-                action.onLiteral(name, nameHuffmanEncoded, value, valueHuffmanEncoded);
+                action.onLiteral(nameChars.of(name), nameHuffmanEncoded,
+                                 valueChars.of(value), valueHuffmanEncoded);
             }
         } finally {
             cleanUpAfterReading();
@@ -448,7 +463,7 @@ public final class Decoder {
             //    Let's create those string beforehand (and only once!) to benefit everyone
             //
             String n;
-            String v = value.toString();
+            String v = strings.intern(value);
             if (firstValueIndex) {
                 if (logger.isLoggable(NORMAL)) {
                     logger.log(NORMAL, () -> format(
@@ -459,7 +474,7 @@ public final class Decoder {
                 n = f.name;
                 action.onLiteralWithIndexing(intValue, n, v, valueHuffmanEncoded);
             } else {
-                n = name.toString();
+                n = strings.intern(name);
                 if (logger.isLoggable(NORMAL)) {
                     logger.log(NORMAL, () -> format(
                             "literal with incremental indexing ('%s', huffman=%b, '%s', huffman=%b)",
@@ -509,6 +524,7 @@ public final class Decoder {
                             intValue, value, valueHuffmanEncoded));
                 }
                 SimpleHeaderTable.HeaderField f = getHeaderFieldAt(intValue);
+                // a sensitive value is not kept in the cache
                 action.onLiteralNeverIndexed(intValue, f.name, value, valueHuffmanEncoded);
             } else {
                 if (logger.isLoggable(NORMAL)) {
@@ -516,7 +532,8 @@ public final class Decoder {
                             "literal never indexed ('%s', huffman=%b, '%s', huffman=%b)",
                             name, nameHuffmanEncoded, value, valueHuffmanEncoded));
                 }
-                action.onLiteralNeverIndexed(name, nameHuffmanEncoded, value, valueHuffmanEncoded);
+                action.onLiteralNeverIndexed(nameChars.of(name), nameHuffmanEncoded,
+                                             value, valueHuffmanEncoded);
             }
         } finally {
             cleanUpAfterReading();
@@ -25,6 +25,10 @@
 package jdk.internal.net.http.hpack;
 
 import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * Delivers results of the {@link Decoder#decode(ByteBuffer, boolean,
@@ -52,7 +56,8 @@ import java.nio.ByteBuffer;
  * an {@link Appendable} (e.g. {@link StringBuilder}) and then discarded.
  *
  * <p> That said, if a passed {@code CharSequence} needs to outlast the method
- * call, it needs to be copied.
+ * call, it needs to be copied. Its {@code toString()} method does so cheaply,
+ * as the decoder returns cached {@code String}s for repeated headers.
  *
  * @since 9
  */
@@ -292,4 +297,31 @@ public interface DecodingCallback {
      *         new capacity of the header table
      */
     default void onSizeUpdate(int capacity) { }
+
+    /**
+     * Returns a callback that passes the headers with the given names to the
+     * given consumer and ignores the others, without creating {@code String}s
+     * for their values. This suits users that need a few headers of a header
+     * block, rather than all of them collected in a map.
+     *
+     * @param names
+     *         the names of the headers, in lower case
+     * @param consumer
+     *         the consumer of the name and value of each of these headers
+     *
+     * @return the callback
+     * @throws NullPointerException
+     *         if either names or consumer are null
+     */
+    static DecodingCallback selecting(Set<String> names,
+                                      BiConsumer<? super String, ? super String> consumer) {
+        requireNonNull(names, "names");
+        requireNonNull(consumer, "consumer");
+        return (name, value) -> {
+            String n = name.toString();
+            if (names.contains(n)) {
+                consumer.accept(n, value.toString());
+            }
+        };
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jdk.internal.net.http.hpack;
+
+import java.util.Arrays;
+
+/*
+ * A cache of the strings built by a decoder from the header names and values
+ * it reads. Headers mostly repeat from one header block to the next, so a
+ * string that is read again is returned from the cache instead of being
+ * built anew.
+ *
+ * The cache is a direct-mapped table indexed by the hash code of the
+ * characters: a string replaces the one in its slot. It is seeded with the
+ * names and values of the static table. Long strings are not cached.
+ *
+ * Not thread-safe, as the decoder that uses it.
+ */
+final class StringInterner {
+
+    private static final int SIZE = 512; // a power of 2
+    private static final int MAX_LENGTH = 128;
+
+    private static final String[] SEED = new String[SIZE];
+
+    static {
+        for (SimpleHeaderTable.HeaderField f : SimpleHeaderTable.staticTable) {
+            seed(f.name);
+            seed(f.value);
+        }
+    }
+
+    private static void seed(String s) {
+        if (!s.isEmpty()) {
+            SEED[index(s.hashCode())] = s;
+        }
+    }
+
+    private final String[] strings = Arrays.copyOf(SEED, SIZE);
+
+    /**
+     * Returns a string with the given characters: the same instance as the
+     * last time these characters were read, if it is still in the cache.
+     */
+    String intern(CharSequence chars) {
+        int length = chars.length();
+        if (length == 0) {
+            return "";
+        } else if (length > MAX_LENGTH) {
+            return chars.toString();
+        }
+        // same as String.hashCode(), which is cached by the string
+        int h = 0;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + chars.charAt(i);
+        }
+        int index = index(h);
+        String s = strings[index];
+        if (s != null && s.hashCode() == h && s.contentEquals(chars)) {
+            return s;
+        }
+        s = chars.toString();
+        strings[index] = s;
+        return s;
+    }
+
+    private static int index(int h) {
+        return (h ^ (h >>> 16)) & (SIZE - 1);
+    }
+
+    /*
+     * A view of characters being decoded, passed to the callback instead of
+     * a string: the string is only built, or found in the cache, if the
+     * callback asks for it.
+     */
+    final class Chars implements CharSequence {
+
+        private CharSequence chars;
+        private String string;
+
+        Chars of(CharSequence chars) {
+            this.chars = chars;
+            this.string = null;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return chars.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return chars.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return chars.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            String s = string;
+            if (s == null) {
+                string = s = intern(chars);
+            }
+            return s;
+        }
+    }
+}
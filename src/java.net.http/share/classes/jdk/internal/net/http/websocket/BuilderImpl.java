@@ -52,11 +52,14 @@ public final class BuilderImpl implements Builder {
     private final Collection<Pair<String, String>> headers;
     private final Collection<String> subprotocols;
     private Duration timeout;
+    /* The server_max_window_bits to offer, or 0 if compression is off */
+    private int compressionWindowBits;
+    private boolean compressionContextTakeover;
 
     public BuilderImpl(HttpClient client, ProxySelector proxySelector)
     {
         this(client, null, null, Optional.ofNullable(proxySelector),
-             new LinkedList<>(), new LinkedList<>(), null);
+             new LinkedList<>(), new LinkedList<>(), null, 0, false);
     }
 
     private BuilderImpl(HttpClient client,
@@ -65,7 +68,9 @@ public final class BuilderImpl implements Builder {
                         Optional<ProxySelector> proxySelector,
                         Collection<Pair<String, String>> headers,
                         Collection<String> subprotocols,
-                        Duration timeout) {
+                        Duration timeout,
+                        int compressionWindowBits,
+                        boolean compressionContextTakeover) {
         this.client = client;
         this.uri = uri;
         this.listener = listener;
@@ -77,6 +82,8 @@ public final class BuilderImpl implements Builder {
         this.headers = headers;
         this.subprotocols = subprotocols;
         this.timeout = timeout;
+        this.compressionWindowBits = compressionWindowBits;
+        this.compressionContextTakeover = compressionContextTakeover;
     }
 
     @Override
@@ -110,6 +117,18 @@ public final class BuilderImpl implements Builder {
         return this;
     }
 
+    @Override
+    public Builder compression(int maxWindowBits, boolean contextTakeover) {
+        if (maxWindowBits < PerMessageDeflate.MIN_WINDOW_BITS
+                || maxWindowBits > PerMessageDeflate.MAX_WINDOW_BITS) {
+            throw new IllegalArgumentException(
+                    "maxWindowBits: " + maxWindowBits);
+        }
+        this.compressionWindowBits = maxWindowBits;
+        this.compressionContextTakeover = contextTakeover;
+        return this;
+    }
+
     @Override
     public CompletableFuture<WebSocket> buildAsync(URI uri, Listener listener) {
         this.uri = requireNonNull(uri, "uri");
@@ -134,6 +153,10 @@ public final class BuilderImpl implements Builder {
 
     Optional<ProxySelector> getProxySelector() { return proxySelector; }
 
+    int getCompressionWindowBits() { return compressionWindowBits; }
+
+    boolean getCompressionContextTakeover() { return compressionContextTakeover; }
+
     private BuilderImpl immutableCopy() {
         @SuppressWarnings({"unchecked", "rawtypes"})
         BuilderImpl copy = new BuilderImpl(
@@ -143,7 +166,9 @@ public final class BuilderImpl implements Builder {
                 proxySelector,
                 List.of(this.headers.toArray(new Pair[0])),
                 List.of(this.subprotocols.toArray(new String[0])),
-                timeout);
+                timeout,
+                compressionWindowBits,
+                compressionContextTakeover);
         return copy;
     }
 }
@@ -32,6 +32,8 @@ import jdk.internal.net.http.websocket.Frame.Opcode;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -46,6 +48,12 @@ import static jdk.internal.net.http.websocket.StatusCodes.isLegalToReceiveFromSe
  *
  * Data consumed but not yet translated is accumulated until it's sufficient to
  * form a message.
+ *
+ * If the permessage-deflate extension is in use, the payload of a compressed
+ * message is inflated chunk by chunk, as it arrives. The size of an inflated
+ * chunk, and of an inflated message, is limited. The Inflater is only used
+ * with the lock of the decoder held, as it is given back to the pool by the
+ * thread that closes the input.
  */
 /* Exposed for testing purposes */
 class MessageDecoder implements Frame.Consumer {
@@ -53,6 +61,11 @@ class MessageDecoder implements Frame.Consumer {
     private static final Logger debug =
             Utils.getWebSocketLogger("[Input]"::toString, Utils.DEBUG_WS);
 
+    private static final int MAX_INFLATED_CHUNK_SIZE = Utils.getIntegerNetProperty(
+            "jdk.httpclient.websocket.maxInflatedChunkSize", 4 * 1024 * 1024);
+    private static final long MAX_INFLATED_MESSAGE_SIZE = Utils.getIntegerNetProperty(
+            "jdk.httpclient.websocket.maxInflatedMessageSize", 64 * 1024 * 1024);
+
     private final MessageStreamConsumer output;
     private final UTF8AccumulatingDecoder decoder = new UTF8AccumulatingDecoder();
     private boolean fin;
@@ -61,8 +74,23 @@ class MessageDecoder implements Frame.Consumer {
     private long unconsumedPayloadLen;
     private ByteBuffer binaryData;
 
+    /* The permessage-deflate extension, or null if not in use */
+    private final PerMessageDeflate deflate;
+    private Inflater inflater;          // guarded by this
+    private boolean released;           // guarded by this
+    private boolean rsv1;
+    /* Whether the current data message is compressed */
+    private boolean compressed;
+    /* The number of bytes the current message has inflated to */
+    private long inflatedSize;
+
     MessageDecoder(MessageStreamConsumer output) {
+        this(output, null);
+    }
+
+    MessageDecoder(MessageStreamConsumer output, PerMessageDeflate deflate) {
         this.output = requireNonNull(output);
+        this.deflate = deflate;
     }
 
     /* Exposed for testing purposes */
@@ -83,9 +111,11 @@ class MessageDecoder implements Frame.Consumer {
         if (debug.on()) {
             debug.log("rsv1 %s", value);
         }
-        if (value) {
+        if (value && deflate == null) {
             throw new FailWebSocketException("Unexpected rsv1 bit");
         }
+        // Whether the bit is legal depends on the opcode, which comes next
+        rsv1 = value;
     }
 
     @Override
@@ -113,6 +143,11 @@ class MessageDecoder implements Frame.Consumer {
         if (debug.on()) {
             debug.log("opcode %s", v);
         }
+        if (rsv1 && v != Opcode.TEXT && v != Opcode.BINARY) {
+            // https://tools.ietf.org/html/rfc7692#section-6
+            throw new FailWebSocketException(
+                    format("Unexpected rsv1 bit in frame %s", v));
+        }
         if (v == Opcode.PING || v == Opcode.PONG || v == Opcode.CLOSE) {
             if (!fin) {
                 throw new FailWebSocketException("Fragmented control frame  " + v);
@@ -124,6 +159,7 @@ class MessageDecoder implements Frame.Consumer {
                         format("Unexpected frame %s (fin=%s)", v, fin));
             }
             opcode = v;
+            compressed = rsv1;
             if (!fin) {
                 originatingOpcode = v;
             }
@@ -203,6 +239,12 @@ class MessageDecoder implements Frame.Consumer {
         } else {
             boolean last = fin && lastPayloadChunk;
             boolean text = opcode == Opcode.TEXT || originatingOpcode == Opcode.TEXT;
+            if (compressed) {
+                data = inflate(data, last);
+                if (!last && !data.hasRemaining()) {
+                    return; // Nothing to deliver yet
+                }
+            }
             if (!text) {
                 output.onBinary(data.slice(), last);
                 data.position(data.limit()); // Consume
@@ -254,6 +296,8 @@ class MessageDecoder implements Frame.Consumer {
                                 .initCause(e);
                     }
                 }
+                // No data frames are expected after the Close frame
+                releaseInflater(true);
                 output.onClose(statusCode, reason);
                 break;
             case PING:
@@ -271,10 +315,90 @@ class MessageDecoder implements Frame.Consumer {
                     // It is always the last chunk:
                     // either TEXT(FIN=TRUE)/BINARY(FIN=TRUE) or CONT(FIN=TRUE)
                     originatingOpcode = null;
+                    if (compressed) {
+                        // The server starts over with the next message
+                        releaseInflater(deflate.serverNoContextTakeover);
+                    }
+                    compressed = false;
+                    inflatedSize = 0;
                 }
                 break;
         }
         payloadLen = 0;
         opcode = null;
     }
+
+    /*
+     * Inflates a chunk of the payload of a compressed message. The last chunk
+     * is followed by the 0x00 0x00 0xff 0xff bytes removed by the server.
+     *
+     * https://tools.ietf.org/html/rfc7692#section-7.2.2
+     */
+    private synchronized ByteBuffer inflate(ByteBuffer data, boolean last) {
+        if (inflater == null) {
+            if (released) {
+                throw new IllegalStateException("Input closed");
+            }
+            inflater = PerMessageDeflate.inflater();
+        }
+        ByteBuffer out = ByteBuffer.allocate(Math.min(MAX_INFLATED_CHUNK_SIZE,
+                Math.max(1024, Math.min(data.remaining() * 4, 1 << 16))));
+        try {
+            out = inflate(data, out);
+            if (last) {
+                out = inflate(ByteBuffer.wrap(PerMessageDeflate.TAIL), out);
+            }
+        } catch (DataFormatException e) {
+            throw new FailWebSocketException(
+                    "Invalid compressed data in frame " + opcode)
+                    .initCause(e);
+        }
+        inflatedSize += out.position();
+        if (inflatedSize > MAX_INFLATED_MESSAGE_SIZE) {
+            throw new FailWebSocketException(
+                    "Inflated message too big", StatusCodes.TOO_BIG);
+        }
+        return out.flip();
+    }
+
+    private ByteBuffer inflate(ByteBuffer data, ByteBuffer out)
+            throws DataFormatException
+    {
+        inflater.setInput(data);
+        while (true) {
+            if (!out.hasRemaining()) {
+                if (out.capacity() >= MAX_INFLATED_CHUNK_SIZE) {
+                    throw new FailWebSocketException(
+                            "Inflated frame data too big", StatusCodes.TOO_BIG);
+                }
+                int capacity = (int) Math.min(MAX_INFLATED_CHUNK_SIZE,
+                                              out.capacity() * 2L);
+                out = ByteBuffer.allocate(capacity).put(out.flip());
+            }
+            inflater.inflate(out);
+            if (out.hasRemaining()) { // Ran out of input
+                return out;
+            }
+        }
+    }
+
+    /*
+     * Gives back the Inflater, unless the server keeps its compression
+     * context and the current message has not finished the DEFLATE stream.
+     */
+    private synchronized void releaseInflater(boolean always) {
+        if (inflater != null && (always || inflater.finished())) {
+            PerMessageDeflate.release(inflater);
+            inflater = null;
+        }
+    }
+
+    /*
+     * Gives back the Inflater when the input is closed. No more payload
+     * can be inflated after this.
+     */
+    synchronized void release() {
+        released = true;
+        releaseInflater(true);
+    }
 }
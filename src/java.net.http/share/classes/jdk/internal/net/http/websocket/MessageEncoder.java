@@ -38,6 +38,7 @@ import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.util.zip.Deflater;
 
 /*
  * A stateful producer of binary representations of WebSocket messages being
@@ -46,6 +47,12 @@ import java.security.SecureRandom;
  * An encoding method is given an original message and a byte buffer to put the
  * resulting bytes to. The method is called until it returns true. Then the
  * reset method is called. The whole sequence repeats with next message.
+ *
+ * If the permessage-deflate extension is in use, the payload of each data
+ * frame is compressed as a whole before its header is written, and the
+ * resulting frame is then put to the byte buffers. The Deflater is only used
+ * with the lock of the encoder held, as it is given back to the pool by the
+ * thread that closes the output.
  */
 public class MessageEncoder {
 
@@ -72,6 +79,13 @@ public class MessageEncoder {
     private final ByteBuffer headerBuffer = ByteBuffer.allocate(
             Frame.MAX_HEADER_SIZE_BYTES);
 
+    /* The permessage-deflate extension, or null if not in use */
+    private final PerMessageDeflate deflate;
+    private Deflater deflater;          // guarded by this
+    private boolean released;           // guarded by this
+    /* The compressed payload of the current frame */
+    private ByteBuffer compressed = ByteBuffer.allocate(0);
+
     private boolean started;
     private boolean flushing;
     private boolean moreText = true;
@@ -104,6 +118,14 @@ public class MessageEncoder {
      */
     private int expectedLen;
 
+    public MessageEncoder() {
+        this(null);
+    }
+
+    public MessageEncoder(PerMessageDeflate deflate) {
+        this.deflate = deflate;
+    }
+
     /* Exposed for testing purposes */
     protected ByteBuffer createIntermediateBuffer(int minSize) {
         int capacity = Utils.getIntegerNetProperty(
@@ -144,6 +166,21 @@ public class MessageEncoder {
             headerBuffer.position(0).limit(0);
             intermediateBuffer.position(0).limit(0);
             charsetEncoder.reset();
+            if (deflate != null) {
+                Opcode opcode = previousFin ? Opcode.TEXT : Opcode.CONTINUATION;
+                compressed.clear();
+                deflateText(src);
+                finishDeflatedFrame(opcode, last);
+            }
+        }
+        if (deflate != null) {
+            if (!putAvailable(headerBuffer, dst)
+                    || maskAvailable(compressed, dst) < 0) {
+                return false;
+            }
+            previousFin = last;
+            previousText = true;
+            return true;
         }
         while (true) {
             if (debug.on()) {
@@ -230,7 +267,13 @@ public class MessageEncoder {
             }
             expectedLen = src.remaining();
             Opcode opcode = previousFin ? Opcode.BINARY : Opcode.CONTINUATION;
-            setupHeader(opcode, last, expectedLen);
+            if (deflate != null) {
+                compressed.clear();
+                deflate(src);
+                finishDeflatedFrame(opcode, last);
+            } else {
+                setupHeader(opcode, last, expectedLen);
+            }
             previousFin = last;
             previousText = false;
             started = true;
@@ -238,6 +281,9 @@ public class MessageEncoder {
         if (!putAvailable(headerBuffer, dst)) {
             return false;
         }
+        if (deflate != null) {
+            return maskAvailable(compressed, dst) >= 0;
+        }
         int count = maskAvailable(src, dst);
         actualLen += Math.abs(count);
         if (count >= 0 && actualLen != expectedLen) {
@@ -353,6 +399,8 @@ public class MessageEncoder {
             setupHeader(Opcode.CLOSE, true, intermediateBuffer.remaining());
             started = true;
             closed = true;
+            // No data frames can follow
+            releaseDeflater();
             if (debug.on()) {
                 debug.log("intermediateBuffer=%s", intermediateBuffer);
             }
@@ -363,14 +411,137 @@ public class MessageEncoder {
         return maskAvailable(intermediateBuffer, dst) >= 0;
     }
 
+    /*
+     * Encodes the text to UTF-8, and compresses the result into the payload
+     * of the current frame.
+     */
+    private void deflateText(CharBuffer src) throws IOException {
+        boolean flushing = false;
+        while (true) {
+            intermediateBuffer.clear();
+            CoderResult r = null;
+            if (!flushing) {
+                r = charsetEncoder.encode(src, intermediateBuffer, true);
+                if (r.isUnderflow()) {
+                    flushing = true;
+                }
+            }
+            if (flushing) {
+                r = charsetEncoder.flush(intermediateBuffer);
+            }
+            if (r.isError()) {
+                try {
+                    r.throwException();
+                } catch (CharacterCodingException e) {
+                    throw new IOException("Malformed text message", e);
+                }
+            }
+            intermediateBuffer.flip();
+            deflate(intermediateBuffer);
+            if (flushing && r.isUnderflow()) {
+                return;
+            }
+        }
+    }
+
+    /*
+     * Compresses the given bytes into the payload of the current frame.
+     */
+    private synchronized void deflate(ByteBuffer src) {
+        Deflater deflater = deflater();
+        deflater.setInput(src);
+        while (!deflater.needsInput()) {
+            ensureCompressedSpace();
+            deflater.deflate(compressed, Deflater.NO_FLUSH);
+        }
+    }
+
+    /*
+     * Completes the compressed payload of the current frame, and sets up the
+     * frame's header. The data of the last frame of a message is flushed, and
+     * its trailing 0x00 0x00 0xff 0xff bytes are removed.
+     *
+     * https://tools.ietf.org/html/rfc7692#section-7.2.1
+     */
+    private synchronized void finishDeflatedFrame(Opcode opcode, boolean last) {
+        Deflater deflater = deflater(); // Possibly nothing was compressed
+        if (last) {
+            while (true) {
+                ensureCompressedSpace();
+                int space = compressed.remaining();
+                if (deflater.deflate(compressed, Deflater.SYNC_FLUSH) < space) {
+                    break;
+                }
+            }
+            if (compressed.position() == 0) {
+                // Nothing has been compressed since the previous message
+                // https://tools.ietf.org/html/rfc7692#section-7.2.3.6
+                compressed.put((byte) 0x00);
+            } else {
+                assert compressed.position() >= PerMessageDeflate.TAIL.length;
+                compressed.position(compressed.position() - PerMessageDeflate.TAIL.length);
+            }
+        }
+        compressed.flip();
+        // Only the first frame of a message has the RSV1 bit set
+        setupHeader(opcode, last, compressed.remaining(), opcode != Opcode.CONTINUATION);
+        if (last && deflate.clientNoContextTakeover) {
+            releaseDeflater();
+        }
+    }
+
+    /*
+     * Returns the Deflater of the current message, taking one from the pool
+     * if there is none.
+     */
+    private Deflater deflater() {
+        assert Thread.holdsLock(this);
+        if (deflater == null) {
+            if (released) {
+                throw new IllegalStateException("Output closed");
+            }
+            deflater = PerMessageDeflate.deflater();
+        }
+        return deflater;
+    }
+
+    private synchronized void releaseDeflater() {
+        if (deflater != null) {
+            PerMessageDeflate.release(deflater);
+            deflater = null;
+        }
+    }
+
+    /*
+     * Gives back the Deflater when the output is closed. No more data can
+     * be compressed after this.
+     */
+    synchronized void release() {
+        released = true;
+        releaseDeflater();
+    }
+
+    private void ensureCompressedSpace() {
+        if (!compressed.hasRemaining()) {
+            int capacity = Math.max(1024, compressed.capacity() * 2);
+            compressed = ByteBuffer.allocate(capacity).put(compressed.flip());
+        }
+    }
+
     private void setupHeader(Opcode opcode, boolean fin, long payloadLen) {
+        setupHeader(opcode, fin, payloadLen, false);
+    }
+
+    private void setupHeader(Opcode opcode, boolean fin, long payloadLen,
+                             boolean rsv1) {
         if (debug.on()) {
-            debug.log("frame opcode=%s fin=%s len=%s",
-                      opcode, fin, payloadLen);
+            debug.log("frame opcode=%s fin=%s len=%s rsv1=%s",
+                      opcode, fin, payloadLen, rsv1);
         }
         headerBuffer.clear();
         int mask = maskingKeySource.nextInt();
         headerWriter.fin(fin)
+                    .rsv1(rsv1)
                     .opcode(opcode)
                     .payloadLen(payloadLen)
                     .mask(mask)
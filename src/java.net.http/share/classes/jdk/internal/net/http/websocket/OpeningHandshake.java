@@ -110,6 +110,9 @@ public class OpeningHandshake {
     private final HttpRequestImpl request;
     private final Collection<String> subprotocols;
     private final String nonce;
+    /* The server_max_window_bits offered, or 0 if compression is not offered */
+    private final int compressionWindowBits;
+    private final boolean compressionContextTakeover;
 
     public OpeningHandshake(BuilderImpl b) {
         checkURI(b.getUri());
@@ -133,6 +136,13 @@ public class OpeningHandshake {
             String p = String.join(", ", this.subprotocols);
             requestBuilder.header(HEADER_PROTOCOL, p);
         }
+        this.compressionWindowBits = b.getCompressionWindowBits();
+        this.compressionContextTakeover = b.getCompressionContextTakeover();
+        if (this.compressionWindowBits != 0) {
+            requestBuilder.header(HEADER_EXTENSIONS,
+                                  PerMessageDeflate.offer(compressionWindowBits,
+                                                          compressionContextTakeover));
+        }
         requestBuilder.header(HEADER_VERSION, VERSION);
         this.nonce = createNonce();
         requestBuilder.header(HEADER_KEY, this.nonce);
@@ -262,7 +272,7 @@ public class OpeningHandshake {
         if (version.isPresent() && !version.get().equals(VERSION)) {
             throw checkFailed("Bad response field: " + HEADER_VERSION);
         }
-        requireAbsent(headers, HEADER_EXTENSIONS);
+        PerMessageDeflate deflate = checkAndReturnExtension(headers);
         String x = this.nonce + "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
         this.sha1.update(x.getBytes(StandardCharsets.ISO_8859_1));
         String expected = Base64.getEncoder().encodeToString(this.sha1.digest());
@@ -272,7 +282,24 @@ public class OpeningHandshake {
         }
         String subprotocol = checkAndReturnSubprotocol(headers);
         RawChannel channel = ((RawChannel.Provider) response).rawChannel();
-        return new Result(subprotocol, new TransportFactoryImpl(channel));
+        return new Result(subprotocol, new TransportFactoryImpl(channel, deflate));
+    }
+
+    private PerMessageDeflate checkAndReturnExtension(HttpHeaders responseHeaders)
+            throws CheckFailedException
+    {
+        if (this.compressionWindowBits == 0) {
+            requireAbsent(responseHeaders, HEADER_EXTENSIONS);
+            return null;
+        }
+        Optional<String> opt = responseHeaders.firstValue(HEADER_EXTENSIONS);
+        if (!opt.isPresent()) {
+            // The server has declined the offer
+            return null;
+        }
+        String s = requireSingle(responseHeaders, HEADER_EXTENSIONS);
+        return PerMessageDeflate.accept(s, compressionWindowBits,
+                                        compressionContextTakeover);
     }
 
     private String checkAndReturnSubprotocol(HttpHeaders responseHeaders)
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package jdk.internal.net.http.websocket;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.lang.String.format;
+
+/*
+ * The parameters of the permessage-deflate extension negotiated for a
+ * WebSocket, and the pools of Deflater and Inflater instances shared by all
+ * WebSockets.
+ *
+ * https://tools.ietf.org/html/rfc7692
+ *
+ * The client never offers client_max_window_bits, since a Deflater always
+ * compresses with a window of 2^15 bytes. The window used by the server can
+ * be limited with server_max_window_bits, which an Inflater supports.
+ */
+final class PerMessageDeflate {
+
+    static final String NAME = "permessage-deflate";
+
+    /*
+     * The bytes that end a DEFLATE block flushed with SYNC_FLUSH. They are
+     * removed from the end of compressed messages, and appended back to
+     * received ones before they are decompressed.
+     */
+    static final byte[] TAIL = {0x00, 0x00, (byte) 0xff, (byte) 0xff};
+
+    static final int MIN_WINDOW_BITS = 8;
+    static final int MAX_WINDOW_BITS = 15;
+
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    private static final String SERVER_MAX_WINDOW_BITS     = "server_max_window_bits";
+    private static final String CLIENT_MAX_WINDOW_BITS     = "client_max_window_bits";
+
+    private static final int MAX_POOLED = 16;
+    private static final ArrayDeque<Deflater> deflaters = new ArrayDeque<>();
+    private static final ArrayDeque<Inflater> inflaters = new ArrayDeque<>();
+
+    /* Whether the client resets its compression context after each message */
+    final boolean clientNoContextTakeover;
+    /* Whether the server resets its compression context after each message */
+    final boolean serverNoContextTakeover;
+
+    private PerMessageDeflate(boolean clientNoContextTakeover,
+                              boolean serverNoContextTakeover) {
+        this.clientNoContextTakeover = clientNoContextTakeover;
+        this.serverNoContextTakeover = serverNoContextTakeover;
+    }
+
+    /*
+     * Returns the value of the Sec-WebSocket-Extensions request header
+     * offering the extension with the given parameters.
+     */
+    static String offer(int maxWindowBits, boolean contextTakeover) {
+        StringBuilder sb = new StringBuilder(NAME);
+        if (maxWindowBits < MAX_WINDOW_BITS) {
+            sb.append("; ").append(SERVER_MAX_WINDOW_BITS).append('=')
+              .append(maxWindowBits);
+        }
+        if (!contextTakeover) {
+            sb.append("; ").append(SERVER_NO_CONTEXT_TAKEOVER)
+              .append("; ").append(CLIENT_NO_CONTEXT_TAKEOVER);
+        }
+        return sb.toString();
+    }
+
+    /*
+     * Checks the value of the Sec-WebSocket-Extensions response header
+     * against the offer made with the given parameters, and returns the
+     * negotiated extension.
+     *
+     * https://tools.ietf.org/html/rfc7692#section-7.1
+     */
+    static PerMessageDeflate accept(String response,
+                                    int maxWindowBits,
+                                    boolean contextTakeover) {
+        if (response.indexOf(',') >= 0) {
+            throw new CheckFailedException("Unexpected extensions: " + response);
+        }
+        String[] elements = response.split(";");
+        if (!elements[0].trim().equalsIgnoreCase(NAME)) {
+            throw new CheckFailedException("Unexpected extension: " + response);
+        }
+        Set<String> seen = new HashSet<>();
+        boolean clientNoContextTakeover = !contextTakeover;
+        boolean serverNoContextTakeover = false;
+        for (int i = 1; i < elements.length; i++) {
+            String param = elements[i].trim();
+            String value = null;
+            int eq = param.indexOf('=');
+            if (eq >= 0) {
+                value = param.substring(eq + 1).trim();
+                if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                param = param.substring(0, eq).trim();
+            }
+            param = param.toLowerCase(Locale.ROOT);
+            if (!seen.add(param)) {
+                throw new CheckFailedException(
+                        format("Duplicate %s parameter: %s", NAME, param));
+            }
+            switch (param) {
+                case SERVER_NO_CONTEXT_TAKEOVER:
+                    requireNoValue(param, value);
+                    serverNoContextTakeover = true;
+                    break;
+                case CLIENT_NO_CONTEXT_TAKEOVER:
+                    requireNoValue(param, value);
+                    clientNoContextTakeover = true;
+                    break;
+                case SERVER_MAX_WINDOW_BITS:
+                    int bits = windowBits(param, value);
+                    if (bits > maxWindowBits) {
+                        throw new CheckFailedException(
+                                format("%s larger than offered: %s", param, bits));
+                    }
+                    break;
+                default:
+                    // client_max_window_bits is never offered
+                    throw new CheckFailedException(
+                            format("Unexpected %s parameter: %s", NAME, param));
+            }
+        }
+        if (!contextTakeover && !serverNoContextTakeover) {
+            throw new CheckFailedException(
+                    format("Missing %s parameter: %s", NAME, SERVER_NO_CONTEXT_TAKEOVER));
+        }
+        return new PerMessageDeflate(clientNoContextTakeover, serverNoContextTakeover);
+    }
+
+    private static void requireNoValue(String param, String value) {
+        if (value != null) {
+            throw new CheckFailedException(
+                    format("Unexpected value of %s parameter %s: %s", NAME, param, value));
+        }
+    }
+
+    private static int windowBits(String param, String value) {
+        int bits;
+        try {
+            bits = value == null ? -1 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            bits = -1;
+        }
+        if (bits < MIN_WINDOW_BITS || bits > MAX_WINDOW_BITS) {
+            throw new CheckFailedException(
+                    format("Bad value of %s parameter %s: %s", NAME, param, value));
+        }
+        return bits;
+    }
+
+    /* Returns a Deflater producing raw DEFLATE data. */
+    static Deflater deflater() {
+        synchronized (deflaters) {
+            Deflater d = deflaters.pollFirst();
+            if (d != null) {
+                return d;
+            }
+        }
+        return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    /* Returns an Inflater consuming raw DEFLATE data. */
+    static Inflater inflater() {
+        synchronized (inflaters) {
+            Inflater i = inflaters.pollFirst();
+            if (i != null) {
+                return i;
+            }
+        }
+        return new Inflater(true);
+    }
+
+    /*
+     * Gives back a Deflater obtained from deflater(). The caller must not
+     * use it any longer.
+     */
+    static void release(Deflater d) {
+        d.reset();
+        synchronized (deflaters) {
+            if (deflaters.size() < MAX_POOLED) {
+                deflaters.addFirst(d);
+                return;
+            }
+        }
+        d.end();
+    }
+
+    /*
+     * Gives back an Inflater obtained from inflater(). The caller must not
+     * use it any longer.
+     */
+    static void release(Inflater i) {
+        i.reset();
+        synchronized (inflaters) {
+            if (inflaters.size() < MAX_POOLED) {
+                inflaters.addFirst(i);
+                return;
+            }
+        }
+        i.end();
+    }
+
+    @Override
+    public String toString() {
+        return NAME + "(clientNoContextTakeover=" + clientNoContextTakeover
+                + ", serverNoContextTakeover=" + serverNoContextTakeover + ")";
+    }
+}
@@ -37,6 +37,7 @@ final class StatusCodes {
     static final int NO_STATUS_CODE    = 1005;
     static final int CLOSED_ABNORMALLY = 1006;
     static final int NOT_CONSISTENT    = 1007;
+    static final int TOO_BIG           = 1009;
 
     private StatusCodes() { }
 
@@ -53,7 +54,7 @@ final class StatusCodes {
             case PROTOCOL_ERROR:
             case NOT_CONSISTENT:
             case 1003:
-            case 1009:
+            case TOO_BIG:
             case 1010:
             case 1012:  // code sent by servers
             case 1013:  // code sent by servers
@@ -28,14 +28,20 @@ package jdk.internal.net.http.websocket;
 public class TransportFactoryImpl implements TransportFactory {
 
     private final RawChannel channel;
+    private final PerMessageDeflate deflate;
 
     public TransportFactoryImpl(RawChannel channel) {
+        this(channel, null);
+    }
+
+    TransportFactoryImpl(RawChannel channel, PerMessageDeflate deflate) {
         this.channel = channel;
+        this.deflate = deflate;
     }
 
     @Override
     public Transport createTransport(MessageQueue queue,
                                      MessageStreamConsumer consumer) {
-        return new TransportImpl(queue, consumer, channel);
+        return new TransportImpl(queue, consumer, channel, deflate);
     }
 }
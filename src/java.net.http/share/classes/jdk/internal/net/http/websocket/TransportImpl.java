@@ -61,7 +61,7 @@ public class TransportImpl implements Transport {
     private final SequentialScheduler sendScheduler = new SequentialScheduler(new SendTask());
 
     private final MessageQueue queue;
-    private final MessageEncoder encoder = new MessageEncoder();
+    private final MessageEncoder encoder;
     /* A reusable buffer for writing, initially with no remaining bytes */
     private final ByteBuffer dst = createWriteBuffer().position(0).limit(0);
     /* This array is created once for gathering writes accepted by RawChannel */
@@ -85,10 +85,16 @@ public class TransportImpl implements Transport {
 
     public TransportImpl(MessageQueue queue, MessageStreamConsumer consumer,
                          RawChannel channel) {
+        this(queue, consumer, channel, null);
+    }
+
+    TransportImpl(MessageQueue queue, MessageStreamConsumer consumer,
+                  RawChannel channel, PerMessageDeflate deflate) {
         this.queue = queue;
         this.messageConsumer = consumer;
         this.channel = channel;
-        this.decoder = new MessageDecoder(this.messageConsumer);
+        this.encoder = new MessageEncoder(deflate);
+        this.decoder = new MessageDecoder(this.messageConsumer, deflate);
         this.data = channel.initialByteBuffer();
         // To ensure the initial non-final `data` will be visible
         // (happens-before) when `readEvent.handle()` invokes `receiveScheduler`
@@ -305,6 +311,7 @@ public class TransportImpl implements Transport {
         synchronized (closeLock) {
             if (!outputClosed) {
                 outputClosed = true;
+                encoder.release();
                 try {
                     channel.shutdownOutput();
                 } finally {
@@ -330,6 +337,7 @@ public class TransportImpl implements Transport {
         synchronized (closeLock) {
             if (!inputClosed) {
                 inputClosed = true;
+                decoder.release();
                 try {
                     receiveScheduler.stop();
                     channel.shutdownInput();
@@ -31,4 +31,7 @@
  */
 module java.net.http {
     exports java.net.http;
+
+    exports jdk.internal.net.http.frame to jdk.httpserver;
+    exports jdk.internal.net.http.hpack to jdk.httpserver;
 }
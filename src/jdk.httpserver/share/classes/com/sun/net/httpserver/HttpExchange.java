@@ -28,6 +28,7 @@ package com.sun.net.httpserver;
 import java.io.*;
 import java.nio.*;
 import java.nio.channels.*;
+import java.nio.file.*;
 import java.net.*;
 import javax.net.ssl.*;
 import java.util.*;
@@ -183,6 +184,89 @@ public abstract class HttpExchange {
      */
     public abstract void sendResponseHeaders (int rCode, long responseLength) throws IOException ;
 
+    /**
+     * Sends the response headers and a region of a file as the response body,
+     * and then terminates the exchange. This method is used instead of
+     * {@link #sendResponseHeaders(int,long)} and {@link #getResponseBody()}.
+     * The response body length is {@code count} and the content-length
+     * response header is set accordingly. The channel is not closed by this
+     * method.
+     * <p>
+     * An implementation may transfer the file directly to the underlying
+     * connection, without copying it through the response body stream,
+     * unless the streams have been wrapped by {@link #setStreams}.
+     * If the response code is {@code 200} and the request is a {@code GET}
+     * request with a single byte range in its {@code Range} header, then an
+     * implementation may send a partial ({@code 206}) response with the
+     * requested part of the region, or a {@code 416} response if the range
+     * can not be satisfied. The built-in implementation does both.
+     * <p>
+     * The default implementation sends the response headers and copies the
+     * region to the stream returned by {@link #getResponseBody()}.
+     *
+     * @param rCode the response code to send
+     * @param channel the file channel to read from
+     * @param position the position in the file of the first byte to send
+     * @param count the number of bytes to send
+     * @throws IllegalArgumentException if {@code position} or {@code count}
+     *         is negative
+     * @throws IOException if the headers have already been sent, the file
+     *         has fewer than {@code position + count} bytes, or an I/O
+     *         error occurs. The exchange is aborted in that case.
+     * @since 11
+     */
+    public void sendResponseFile (int rCode, FileChannel channel,
+                                  long position, long count) throws IOException
+    {
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException ("negative position or count");
+        }
+        if ("HEAD".equals (getRequestMethod())) {
+            getResponseHeaders().set ("Content-length", Long.toString (count));
+            sendResponseHeaders (rCode, -1);
+            close();
+            return;
+        }
+        sendResponseHeaders (rCode, count == 0 ? -1 : count);
+        try (OutputStream os = getResponseBody()) {
+            ByteBuffer buf = ByteBuffer.allocate ((int)Math.min (count, 8192));
+            while (count > 0) {
+                buf.clear();
+                if (count < buf.capacity()) {
+                    buf.limit ((int)count);
+                }
+                int n = channel.read (buf, position);
+                if (n < 0) {
+                    throw new IOException ("premature end of file");
+                }
+                os.write (buf.array(), 0, n);
+                position += n;
+                count -= n;
+            }
+        }
+    }
+
+    /**
+     * Sends the response headers and the contents of a file as the response
+     * body, and then terminates the exchange. The file is sent as if by
+     * {@link #sendResponseFile(int,FileChannel,long,long)
+     * sendResponseFile(rCode, channel, 0, channel.size())} where
+     * {@code channel} is a channel opened for reading the file.
+     *
+     * @param rCode the response code to send
+     * @param path the file to send
+     * @throws IOException if the file can not be opened, the headers have
+     *         already been sent, or an I/O error occurs
+     * @throws SecurityException if a security manager is installed and it
+     *         denies read access to the file
+     * @since 11
+     */
+    public void sendResponseFile (int rCode, Path path) throws IOException {
+        try (FileChannel fc = FileChannel.open (path, StandardOpenOption.READ)) {
+            sendResponseFile (rCode, fc, 0, fc.size());
+        }
+    }
+
     /**
      * Returns the address of the remote entity invoking this request
      * @return the InetSocketAddress of the caller
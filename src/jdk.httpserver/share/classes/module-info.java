@@ -33,6 +33,8 @@
  */
 module jdk.httpserver {
 
+    requires java.net.http;
+
     exports com.sun.net.httpserver;
     exports com.sun.net.httpserver.spi;
 
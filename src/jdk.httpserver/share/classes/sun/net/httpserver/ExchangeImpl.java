@@ -27,6 +27,8 @@ package sun.net.httpserver;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import javax.net.ssl.*;
 import java.util.*;
 import java.lang.System.Logger;
@@ -56,7 +58,7 @@ class ExchangeImpl {
     /* for formatting the Date: header */
     private static final String pattern = "EEE, dd MMM yyyy HH:mm:ss zzz";
     private static final TimeZone gmtTZ = TimeZone.getTimeZone("GMT");
-    private static final ThreadLocal<DateFormat> dateFormat =
+    static final ThreadLocal<DateFormat> dateFormat =
          new ThreadLocal<DateFormat>() {
              @Override protected DateFormat initialValue() {
                  DateFormat df = new SimpleDateFormat(pattern, Locale.US);
@@ -98,6 +100,22 @@ class ExchangeImpl {
         server.startExchange();
     }
 
+    /* for exchanges that are not read from a HTTP/1.1 Request,
+     * the subclass provides the streams and the context */
+    ExchangeImpl (
+        String m, URI u, Headers reqHdrs, long len, HttpConnection connection,
+        ServerImpl server
+    ) {
+        this.reqHdrs = reqHdrs;
+        this.rspHdrs = new Headers();
+        this.method = m;
+        this.uri = u;
+        this.connection = connection;
+        this.reqContentLen = len;
+        this.server = server;
+        server.startExchange();
+    }
+
     public Headers getRequestHeaders () {
         return new UnmodifiableHeaders (reqHdrs);
     }
@@ -275,6 +293,128 @@ class ExchangeImpl {
         server.logReply (rCode, req.requestLine(), null);
     }
 
+    /**
+     * Sends the headers and a region of a file as the response body. A single
+     * byte range in the Range header of a GET request is honoured when the
+     * response code is 200. The file is transferred directly to the connection
+     * unless the response stream has been wrapped by a filter.
+     */
+    public void sendResponseFile (int rCode, FileChannel src, long position, long count)
+        throws IOException
+    {
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException ("negative position or count");
+        }
+        if (sentHeaders) {
+            throw new IOException ("headers already sent");
+        }
+        if (rCode == 200) {
+            rspHdrs.set ("Accept-Ranges", "bytes");
+            long[] range = parseRange (count);
+            if (range != null) {
+                if (range.length == 0) {
+                    rspHdrs.set ("Content-Range", "bytes */" + count);
+                    sendResponseHeaders (416, -1);
+                    return;
+                }
+                rspHdrs.set ("Content-Range",
+                             "bytes " + range[0] + "-" + range[1] + "/" + count);
+                rCode = 206;
+                position += range[0];
+                count = range[1] - range[0] + 1;
+            }
+        }
+        if (isHeadRequest()) {
+            rspHdrs.set ("Content-length", Long.toString (count));
+            sendResponseHeaders (rCode, -1);
+            return;
+        }
+        sendResponseHeaders (rCode, count == 0 ? -1 : count);
+        if (closed) {
+            /* no body allowed for this response code */
+            return;
+        }
+        OutputStream os = getResponseBody();
+        try {
+            if (os == uos_orig && uos_orig.wrapped instanceof FixedLengthOutputStream) {
+                ((FixedLengthOutputStream)uos_orig.wrapped).transferFrom (src, position, count);
+            } else {
+                /* a filter has wrapped the stream, the data must go through it */
+                ByteBuffer buf = ByteBuffer.allocate ((int)Math.min (count, 8192));
+                while (count > 0) {
+                    buf.clear();
+                    if (count < buf.capacity()) {
+                        buf.limit ((int)count);
+                    }
+                    int n = src.read (buf, position);
+                    if (n < 0) {
+                        throw new IOException ("premature end of file");
+                    }
+                    os.write (buf.array(), 0, n);
+                    position += n;
+                    count -= n;
+                }
+            }
+        } catch (IOException e) {
+            /* aborts the exchange, the response is incomplete */
+            close();
+            throw e;
+        }
+        os.close();
+    }
+
+    /**
+     * Returns the first and last byte positions of the single byte range in
+     * the Range header, given the length of the representation. Returns null
+     * if the header should be ignored and an empty array if the range can
+     * not be satisfied.
+     */
+    private long[] parseRange (long length) {
+        String range = reqHdrs.getFirst ("Range");
+        if (range == null || !"GET".equals (method)
+            || reqHdrs.getFirst ("If-Range") != null)
+        {
+            /* If-Range validators are not checked, send the whole file */
+            return null;
+        }
+        range = range.trim();
+        if (!range.regionMatches (true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        String spec = range.substring (6);
+        int dash = spec.indexOf ('-');
+        if (dash == -1 || spec.indexOf (',') != -1) {
+            /* multiple ranges are not supported */
+            return null;
+        }
+        String first = spec.substring (0, dash).trim();
+        String last = spec.substring (dash+1).trim();
+        try {
+            if (first.isEmpty()) {
+                /* suffix range, the last n bytes */
+                long n = Long.parseLong (last);
+                if (n < 0) {
+                    return null;
+                }
+                if (n == 0 || length == 0) {
+                    return new long[0];
+                }
+                return new long[] { Math.max (0, length - n), length - 1 };
+            }
+            long f = Long.parseLong (first);
+            long l = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong (last);
+            if (f < 0 || l < f) {
+                return null;
+            }
+            if (f >= length) {
+                return new long[0];
+            }
+            return new long[] { f, Math.min (l, length - 1) };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     void write (Headers map, OutputStream os) throws IOException {
         Set<Map.Entry<String,List<String>>> entries = map.entrySet();
         for (Map.Entry<String,List<String>> entry : entries) {
@@ -27,6 +27,8 @@ package sun.net.httpserver;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import com.sun.net.httpserver.*;
 import com.sun.net.httpserver.spi.*;
 
@@ -82,6 +84,42 @@ class FixedLengthOutputStream extends FilterOutputStream
         remaining -= len;
     }
 
+    /**
+     * Writes count bytes of the given file, starting at position, to the
+     * connection. On a plain connection the bytes are transferred by
+     * FileChannel.transferTo and are not copied through the Java heap.
+     * On an SSL connection they are read into a direct buffer and encrypted
+     * from there.
+     */
+    void transferFrom (FileChannel src, long position, long count)
+        throws IOException
+    {
+        if (closed) {
+            throw new IOException ("stream closed");
+        }
+        if (count > remaining) {
+            throw new IOException ("too many bytes to write to stream");
+        }
+        out.flush();
+        HttpConnection c = t.getConnection();
+        if (c.sslStreams != null) {
+            c.sslStreams.sendFile (src, position, count);
+            remaining -= count;
+            return;
+        }
+        SocketChannel chan = c.getChannel();
+        while (count > 0) {
+            long n = src.transferTo (position, count, chan);
+            if (n <= 0) {
+                // the channel is blocking so the file must be too short
+                throw new IOException ("premature end of file");
+            }
+            position += n;
+            count -= n;
+            remaining -= n;
+        }
+    }
+
     public void close () throws IOException {
         if (closed) {
             return;
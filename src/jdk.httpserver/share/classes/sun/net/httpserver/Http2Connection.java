@@ -0,0 +1,1062 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.net.httpserver;
+
+import java.io.*;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.sun.net.httpserver.*;
+import jdk.internal.net.http.frame.*;
+import jdk.internal.net.http.hpack.Decoder;
+import jdk.internal.net.http.hpack.DecodingCallback;
+import jdk.internal.net.http.hpack.Encoder;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * A HTTP/2 connection (RFC 7540), for h2 negotiated with ALPN and for h2c
+ * with prior knowledge or by upgrade from HTTP/1.1.
+ *
+ * The connection is handed over by ServerImpl.Exchange once it has read the
+ * request line of the connection preface, or the upgrade request. A thread
+ * of its own then reads and decodes the frames, using the frame codec and
+ * HPACK implementation of the java.net.http module. Each stream becomes an
+ * Http2ExchangeImpl, which is given to the context's filters and handler on
+ * the server's executor, so that handlers work the same as over HTTP/1.1.
+ *
+ * The request body of each stream is flow controlled, the stream's window
+ * is opened as the handler reads the body. The response is flow controlled
+ * by the windows of the client, the exchange's thread waits for window
+ * updates when they are exhausted.
+ */
+class Http2Connection implements Runnable {
+
+    /* the request line of the client connection preface */
+    static final String PREFACE_REQUEST_LINE = "PRI * HTTP/2.0";
+    private static final byte[] PREFACE =
+        "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(ISO_8859_1);
+
+    static final String[] ALPN_PROTOCOLS = { "h2", "http/1.1" };
+
+    static final byte[] UPGRADE_REPLY = ("HTTP/1.1 101 Switching Protocols\r\n"
+        + "Connection: Upgrade\r\nUpgrade: h2c\r\n\r\n").getBytes(ISO_8859_1);
+
+    static final int MAX_CONCURRENT_STREAMS = ServerConfig.getHttp2MaxConcurrentStreams();
+    static final int INITIAL_WINDOW_SIZE = ServerConfig.getHttp2InitialWindowSize();
+    static final int MAX_HEADER_LIST_SIZE = ServerConfig.getHttp2MaxHeaderListSize();
+    // the window for the request bodies of all streams, the streams' own
+    // windows limit how much is buffered so it is opened as data is received
+    static final int CONNECTION_WINDOW_SIZE = 16 * 1024 * 1024;
+    static final int DEFAULT_WINDOW_SIZE = 65535;
+    static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    /* headers that are specific to HTTP/1.1 connections and are not sent */
+    private static final Set<String> CONNECTION_HEADERS = Set.of(
+        "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade");
+
+    private final ServerImpl server;
+    private final HttpConnection connection;
+    private final InputStream in;
+    private final OutputStream out;
+    private final boolean https;
+    private final Logger logger;
+
+    private final FramesDecoder framesDecoder;
+    private final FramesEncoder framesEncoder = new FramesEncoder();
+    private final Decoder hpackIn = new Decoder(SettingsFrame.DEFAULT_HEADER_TABLE_SIZE);
+
+    /* guards the writes to the connection and the state of hpackOut, so
+     * that header blocks are sent in the order they were encoded */
+    private final Object sendLock = new Object();
+    private final Encoder hpackOut = new Encoder(SettingsFrame.DEFAULT_HEADER_TABLE_SIZE);
+    private byte[] sendBuf = new byte[Http2Frame.FRAME_HEADER_SIZE
+                                      + SettingsFrame.DEFAULT_MAX_FRAME_SIZE];
+
+    /* the send window of the connection and the settings of the client
+     * that determine the send windows of streams, guarded by this */
+    private long sendWindow = DEFAULT_WINDOW_SIZE;
+    private int clientInitialWindow = DEFAULT_WINDOW_SIZE;
+    private volatile int maxSendFrameSize = SettingsFrame.DEFAULT_MAX_FRAME_SIZE;
+
+    private final Map<Integer,Stream> streams = new ConcurrentHashMap<>();
+    /* streams counted against MAX_CONCURRENT_STREAMS. A stream stops being
+     * counted before the frame that ends the response is sent, as the client
+     * may open another one as soon as it receives that frame. A stream that
+     * is reset is counted until its handler has returned, so that resetting
+     * streams doesn't let a client run any number of handlers at once */
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private volatile boolean closed;
+    /* when the connection last had no open streams, and whether it has been
+     * closed by the server's idle timer */
+    private volatile long idleStartTime;
+    private volatile boolean idleTimedOut;
+
+    /* the following are only accessed by the reading thread */
+    private int lastStreamId;
+    private int unackedBytes;           // data received but not yet credited to the connection window
+    private int headerStream;           // stream of the header block being received, 0 if none
+    private boolean headerEndStream;
+    private List<ByteBuffer> headerBlock;
+    private int headerBlockSize;
+
+    /* the request that upgraded the connection, null if none */
+    private String upgradeMethod;
+    private URI upgradeURI;
+    private Headers upgradeHeaders;
+
+    Http2Connection(ServerImpl server, HttpConnection connection,
+                    InputStream in, OutputStream out, boolean https)
+    {
+        this.server = server;
+        this.connection = connection;
+        this.in = in;
+        this.out = out;
+        this.https = https;
+        this.logger = server.getLogger();
+        this.framesDecoder = new FramesDecoder(this::processFrame);
+    }
+
+    /**
+     * Returns true if the given request headers ask for an upgrade to h2c.
+     */
+    static boolean isUpgradeRequest(Headers headers) {
+        List<String> settings = headers.get("HTTP2-Settings");
+        return settings != null && settings.size() == 1
+            && hasToken(headers, "Upgrade", "h2c")
+            && hasToken(headers, "Connection", "upgrade")
+            && hasToken(headers, "Connection", "http2-settings");
+    }
+
+    private static boolean hasToken(Headers headers, String name, String token) {
+        List<String> values = headers.get(name);
+        if (values != null) {
+            for (String value : values) {
+                for (String t : value.split(",")) {
+                    if (t.trim().equalsIgnoreCase(token)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Prepares the connection to take over from an upgrade request, which
+     * becomes stream 1. Returns false if the HTTP2-Settings header is
+     * malformed, in which case the request is handled as a HTTP/1.1 request.
+     */
+    boolean upgrade(String method, URI uri, Headers headers) {
+        byte[] payload;
+        try {
+            payload = Base64.getUrlDecoder().decode(headers.getFirst("HTTP2-Settings").trim());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (payload.length % 6 != 0) {
+            return false;
+        }
+        SettingsFrame settings = new SettingsFrame();
+        ByteBuffer bb = ByteBuffer.wrap(payload);
+        while (bb.hasRemaining()) {
+            int id = bb.getShort() & 0xffff;
+            int value = bb.getInt();
+            if (id >= 1 && id <= SettingsFrame.MAX_PARAM) {
+                settings.setParameter(id, value);
+            }
+        }
+        int frameSize = settings.getParameter(SettingsFrame.MAX_FRAME_SIZE);
+        if ((frameSize != -1 && (frameSize < SettingsFrame.DEFAULT_MAX_FRAME_SIZE
+                                 || frameSize > 16 * 1024 * 1024 - 1))
+            || settings.getParameter(SettingsFrame.INITIAL_WINDOW_SIZE) < -1) {
+            return false;
+        }
+        try {
+            applySettings(settings);
+        } catch (IOException e) {
+            /* not possible, the settings have been checked */
+            return false;
+        }
+        Headers h = new Headers();
+        for (Map.Entry<String,List<String>> e : headers.entrySet()) {
+            String name = e.getKey().toLowerCase(Locale.ROOT);
+            if (!CONNECTION_HEADERS.contains(name) && !name.equals("http2-settings")) {
+                h.put(e.getKey(), e.getValue());
+            }
+        }
+        upgradeMethod = method;
+        upgradeURI = uri;
+        upgradeHeaders = h;
+        return true;
+    }
+
+    /**
+     * Starts the thread that reads from the connection.
+     */
+    void start() {
+        idleStartTime = System.currentTimeMillis();
+        Thread t = new Thread(null, this, "HTTP2-Connection", 0, false);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void run() {
+        try {
+            readPreface();
+            SettingsFrame settings = new SettingsFrame();
+            settings.setParameter(SettingsFrame.ENABLE_PUSH, 0);
+            settings.setParameter(SettingsFrame.MAX_CONCURRENT_STREAMS, MAX_CONCURRENT_STREAMS);
+            settings.setParameter(SettingsFrame.INITIAL_WINDOW_SIZE, INITIAL_WINDOW_SIZE);
+            settings.setParameter(SettingsFrame.MAX_HEADER_LIST_SIZE, MAX_HEADER_LIST_SIZE);
+            sendFrame(settings);
+            sendFrame(new WindowUpdateFrame(0, CONNECTION_WINDOW_SIZE - DEFAULT_WINDOW_SIZE));
+            if (upgradeHeaders != null) {
+                /* stream 1 is the upgrade request, which has no body */
+                lastStreamId = 1;
+                Stream s = new Stream(1);
+                s.body.receive(List.of(), 0, 0, true);
+                streams.put(1, s);
+                startExchange(s, upgradeMethod, upgradeURI, upgradeHeaders);
+            }
+            while (!closed) {
+                byte[] b = new byte[READ_BUFFER_SIZE];
+                int n = in.read(b);
+                if (n == -1) {
+                    break;
+                }
+                /* not reused, the decoder slices data frames from it */
+                framesDecoder.decode(ByteBuffer.wrap(b, 0, n));
+            }
+        } catch (IOException e) {
+            logger.log(Level.TRACE, "Http2Connection (1)", e);
+        } catch (RuntimeException e) {
+            logger.log(Level.TRACE, "Http2Connection (2)", e);
+        } finally {
+            shutdown();
+        }
+    }
+
+    /* reads the part of the client connection preface that is still to come */
+    private void readPreface() throws IOException {
+        /* the request line and its CRLF have been read unless upgrading */
+        int off = (upgradeHeaders != null) ? 0 : PREFACE_REQUEST_LINE.length() + 2;
+        byte[] b = new byte[PREFACE.length];
+        int n = off;
+        while (n < b.length) {
+            int r = in.read(b, n, b.length - n);
+            if (r == -1) {
+                throw new EOFException("connection closed during preface");
+            }
+            n += r;
+        }
+        if (!Arrays.equals(b, off, b.length, PREFACE, off, PREFACE.length)) {
+            throw new IOException("invalid connection preface");
+        }
+    }
+
+    /**
+     * Called by the server's idle timer. A connection that has had no open
+     * streams for the idle interval is closed: its input is shut down, which
+     * ends the reading thread, and that thread sends GOAWAY as it shuts the
+     * connection down. If the connection is still open the next time the
+     * timer runs, it is closed without GOAWAY.
+     */
+    void closeIfIdle(long now) {
+        if (!streams.isEmpty() || now - idleStartTime < ServerImpl.IDLE_INTERVAL) {
+            return;
+        }
+        if (!idleTimedOut) {
+            idleTimedOut = true;
+            try {
+                connection.getChannel().shutdownInput();
+                return;
+            } catch (IOException e) {
+                logger.log(Level.TRACE, "Http2Connection (5)", e);
+            }
+        }
+        server.closeConnection(connection);
+    }
+
+    private void shutdown() {
+        closed = true;
+        if (idleTimedOut) {
+            try {
+                sendFrame(new GoAwayFrame(lastStreamId, ErrorFrame.NO_ERROR,
+                                          "idle timeout".getBytes(ISO_8859_1)));
+            } catch (IOException e) {
+                logger.log(Level.TRACE, "Http2Connection (6)", e);
+            }
+        }
+        framesDecoder.close("connection closed");
+        for (Stream s : streams.values()) {
+            s.closeStream(new IOException("connection closed"));
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+        server.http2Closed(this);
+        server.closeConnection(connection);
+    }
+
+    /* sends GOAWAY and throws an exception that ends the reading thread */
+    private void connectionError(int errorCode, String msg) throws IOException {
+        try {
+            sendFrame(new GoAwayFrame(lastStreamId, errorCode, msg.getBytes(ISO_8859_1)));
+        } catch (IOException ignore) {
+        }
+        throw new IOException("HTTP/2 connection error: " + msg);
+    }
+
+    private void resetStream(int streamid, int errorCode) throws IOException {
+        Stream s = streams.get(streamid);
+        if (s != null) {
+            s.reset(errorCode);
+        } else {
+            sendFrame(new ResetFrame(streamid, errorCode));
+        }
+    }
+
+    /* -- frames received, on the reading thread -- */
+
+    private void processFrame(Http2Frame frame) throws IOException {
+        if (frame instanceof MalformedFrame) {
+            MalformedFrame mf = (MalformedFrame)frame;
+            connectionError(mf.getErrorCode(), mf.getMessage());
+        }
+        if (headerStream != 0 && !(frame instanceof ContinuationFrame
+                                   && frame.streamid() == headerStream)) {
+            connectionError(ErrorFrame.PROTOCOL_ERROR, "expected CONTINUATION");
+        }
+        switch (frame.type()) {
+            case SettingsFrame.TYPE:
+                SettingsFrame settings = (SettingsFrame)frame;
+                if (!settings.getFlag(SettingsFrame.ACK)) {
+                    applySettings(settings);
+                    sendFrame(new SettingsFrame(SettingsFrame.ACK));
+                }
+                break;
+            case PingFrame.TYPE:
+                PingFrame ping = (PingFrame)frame;
+                if (!ping.getFlag(PingFrame.ACK)) {
+                    sendFrame(new PingFrame(PingFrame.ACK, ping.getData()));
+                }
+                break;
+            case WindowUpdateFrame.TYPE:
+                windowUpdate((WindowUpdateFrame)frame);
+                break;
+            case HeadersFrame.TYPE:
+            case ContinuationFrame.TYPE:
+                headers((HeaderFrame)frame);
+                break;
+            case DataFrame.TYPE:
+                data((DataFrame)frame);
+                break;
+            case ResetFrame.TYPE:
+                Stream s = streams.get(frame.streamid());
+                if (s != null) {
+                    s.closeStream(new IOException("stream reset by client: "
+                        + ErrorFrame.stringForCode(((ResetFrame)frame).getErrorCode())));
+                }
+                break;
+            case GoAwayFrame.TYPE:
+                /* the client won't open any more streams */
+                closed = true;
+                break;
+            case PushPromiseFrame.TYPE:
+                connectionError(ErrorFrame.PROTOCOL_ERROR, "PUSH_PROMISE from client");
+                break;
+            default:
+                /* PRIORITY is ignored, as are unknown frame types */
+                break;
+        }
+    }
+
+    private void applySettings(SettingsFrame settings) throws IOException {
+        int v = settings.getParameter(SettingsFrame.HEADER_TABLE_SIZE);
+        if (v != -1) {
+            synchronized (sendLock) {
+                hpackOut.setMaxCapacity(v);
+            }
+        }
+        v = settings.getParameter(SettingsFrame.MAX_FRAME_SIZE);
+        if (v != -1) {
+            if (v < SettingsFrame.DEFAULT_MAX_FRAME_SIZE || v > 16 * 1024 * 1024 - 1) {
+                connectionError(ErrorFrame.PROTOCOL_ERROR, "invalid SETTINGS_MAX_FRAME_SIZE");
+            }
+            maxSendFrameSize = v;
+        }
+        v = settings.getParameter(SettingsFrame.INITIAL_WINDOW_SIZE);
+        if (v != -1) {
+            if (v < 0) {
+                connectionError(ErrorFrame.FLOW_CONTROL_ERROR, "invalid SETTINGS_INITIAL_WINDOW_SIZE");
+            }
+            synchronized (this) {
+                int delta = v - clientInitialWindow;
+                clientInitialWindow = v;
+                for (Stream s : streams.values()) {
+                    s.sendWindow += delta;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void windowUpdate(WindowUpdateFrame frame) throws IOException {
+        int id = frame.streamid();
+        int increment = frame.getUpdate();
+        if (increment <= 0) {
+            if (id == 0) {
+                connectionError(ErrorFrame.PROTOCOL_ERROR, "zero window increment");
+            }
+            resetStream(id, ErrorFrame.PROTOCOL_ERROR);
+            return;
+        }
+        Stream s = null;
+        boolean overflow;
+        synchronized (this) {
+            if (id == 0) {
+                sendWindow += increment;
+                overflow = sendWindow > MAX_WINDOW_SIZE;
+            } else {
+                s = streams.get(id);
+                if (s == null) {
+                    return;
+                }
+                s.sendWindow += increment;
+                overflow = s.sendWindow > MAX_WINDOW_SIZE;
+            }
+            notifyAll();
+        }
+        if (overflow) {
+            if (s == null) {
+                connectionError(ErrorFrame.FLOW_CONTROL_ERROR, "window overflow");
+            }
+            s.reset(ErrorFrame.FLOW_CONTROL_ERROR);
+        }
+    }
+
+    private void headers(HeaderFrame frame) throws IOException {
+        int id = frame.streamid();
+        if (frame instanceof HeadersFrame) {
+            headerStream = id;
+            headerEndStream = frame.getFlag(HeaderFrame.END_STREAM);
+            headerBlock = new ArrayList<>();
+            headerBlockSize = 0;
+        } else if (headerStream == 0) {
+            connectionError(ErrorFrame.PROTOCOL_ERROR, "unexpected CONTINUATION");
+        }
+        /* the block is buffered until it is complete, which a client could
+         * otherwise keep from happening with an endless run of CONTINUATION */
+        for (ByteBuffer bb : frame.getHeaderBlock()) {
+            headerBlockSize += bb.remaining();
+            headerBlock.add(bb);
+        }
+        if (headerBlockSize > MAX_HEADER_LIST_SIZE) {
+            connectionError(ErrorFrame.ENHANCE_YOUR_CALM, "header block too large");
+        }
+        if (!frame.endHeaders()) {
+            return;
+        }
+        List<ByteBuffer> block = headerBlock;
+        boolean endStream = headerEndStream;
+        headerStream = 0;
+        headerBlock = null;
+
+        /* the block must be decoded even if the stream is refused, to keep
+         * the state of the decoder in step with the client's encoder */
+        HeaderCollector collector = new HeaderCollector();
+        try {
+            for (Iterator<ByteBuffer> it = block.iterator(); it.hasNext(); ) {
+                ByteBuffer bb = it.next();
+                hpackIn.decode(bb, !it.hasNext(), collector);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            connectionError(ErrorFrame.COMPRESSION_ERROR, "header block can't be decoded");
+        }
+
+        Stream s = streams.get(id);
+        if (s != null) {
+            /* trailers, which are not passed to the handler */
+            if (!endStream) {
+                s.reset(ErrorFrame.PROTOCOL_ERROR);
+            } else {
+                s.body.receive(List.of(), 0, 0, true);
+            }
+            return;
+        }
+        if ((id & 1) == 0 || id <= lastStreamId) {
+            connectionError(ErrorFrame.PROTOCOL_ERROR, "invalid stream id " + id);
+        }
+        lastStreamId = id;
+        if (closed || openStreams.get() >= MAX_CONCURRENT_STREAMS) {
+            sendFrame(new ResetFrame(id, ErrorFrame.REFUSED_STREAM));
+            return;
+        }
+        s = new Stream(id);
+        if (endStream) {
+            s.body.receive(List.of(), 0, 0, true);
+        }
+        streams.put(id, s);
+
+        if (collector.error != null || collector.method == null || collector.path == null) {
+            logger.log(Level.DEBUG, "HTTP/2 stream " + id + ": malformed request "
+                       + (collector.error != null ? collector.error : ""));
+            s.reset(ErrorFrame.PROTOCOL_ERROR);
+            return;
+        }
+        if (collector.authority != null && !collector.headers.containsKey("Host")) {
+            collector.headers.set("Host", collector.authority);
+        }
+        URI uri;
+        try {
+            uri = new URI(collector.path);
+        } catch (URISyntaxException e) {
+            s.sendError(Code.HTTP_BAD_REQUEST);
+            return;
+        }
+        startExchange(s, collector.method, uri, collector.headers);
+    }
+
+    private void data(DataFrame frame) throws IOException {
+        int id = frame.streamid();
+        int length = frame.payloadLength();
+        unackedBytes += length;
+        if (unackedBytes >= CONNECTION_WINDOW_SIZE / 2) {
+            sendFrame(new WindowUpdateFrame(0, unackedBytes));
+            unackedBytes = 0;
+        }
+        Stream s = streams.get(id);
+        if (s == null) {
+            if (id > lastStreamId) {
+                connectionError(ErrorFrame.PROTOCOL_ERROR, "DATA on idle stream " + id);
+            }
+            /* the stream has been closed, the data is discarded */
+            return;
+        }
+        boolean endStream = frame.getFlag(DataFrame.END_STREAM);
+        if (!s.body.receive(frame.getData(), length, frame.getDataLength(), endStream)) {
+            s.reset(ErrorFrame.FLOW_CONTROL_ERROR);
+            return;
+        }
+        s.body.credit(0);
+    }
+
+    /* creates the exchange for a stream and runs it on the server's executor */
+    private void startExchange(Stream s, String method, URI uri, Headers headers)
+        throws IOException
+    {
+        if (method.equalsIgnoreCase("CONNECT")) {
+            s.sendError(Code.HTTP_NOT_IMPLEMENTED);
+            return;
+        }
+        HttpContextImpl ctx = server.findContext(uri.getPath());
+        if (ctx == null) {
+            s.sendError(Code.HTTP_NOT_FOUND);
+            return;
+        }
+        if (ctx.getHandler() == null) {
+            s.sendError(Code.HTTP_INTERNAL_ERROR);
+            return;
+        }
+        String len = headers.getFirst("Content-Length");
+        long clen = -1L;
+        if (len != null) {
+            try {
+                clen = Long.parseLong(len);
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        String requestLine = method + " " + uri + " HTTP/2.0";
+        Http2ExchangeImpl tx = new Http2ExchangeImpl(
+            method, uri, headers, clen, connection, server, ctx, s, requestLine
+        );
+        s.exchangeStarted();
+        Runnable task = () -> {
+            try {
+                /* the filters and handler are run as in ServerImpl.Exchange */
+                List<Filter> sf = ctx.getSystemFilters();
+                List<Filter> uf = ctx.getFilters();
+                Filter.Chain sc = new Filter.Chain(sf, ctx.getHandler());
+                Filter.Chain uc = new Filter.Chain(uf, sc::doFilter);
+                tx.getRequestBody();
+                tx.getResponseBody();
+                if (https) {
+                    uc.doFilter(new HttpsExchangeImpl(tx));
+                } else {
+                    uc.doFilter(new HttpExchangeImpl(tx));
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.TRACE, "Http2Connection (3)", e);
+                s.resetQuietly(ErrorFrame.INTERNAL_ERROR);
+            } finally {
+                s.handlerFinished();
+            }
+        };
+        try {
+            server.getStreamExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            s.handlerFinished();
+            s.reset(ErrorFrame.REFUSED_STREAM);
+        }
+    }
+
+    /* -- frames sent, by any thread -- */
+
+    void sendFrame(Http2Frame frame) throws IOException {
+        synchronized (sendLock) {
+            write(framesEncoder.encodeFrame(frame));
+        }
+    }
+
+    /* gathers the buffers of one or more frames into a single write */
+    private void write(List<ByteBuffer> buffers) throws IOException {
+        int len = 0;
+        for (ByteBuffer bb : buffers) {
+            len += bb.remaining();
+        }
+        if (len > sendBuf.length) {
+            sendBuf = new byte[len];
+        }
+        int pos = 0;
+        for (ByteBuffer bb : buffers) {
+            int n = bb.remaining();
+            bb.get(sendBuf, pos, n);
+            pos += n;
+        }
+        out.write(sendBuf, 0, pos);
+        out.flush();
+    }
+
+    private void sendHeaders(Stream s, int status, Headers headers, boolean endStream)
+        throws IOException
+    {
+        int size = Math.min(maxSendFrameSize, SettingsFrame.DEFAULT_MAX_FRAME_SIZE);
+        synchronized (sendLock) {
+            List<ByteBuffer> blocks = new ArrayList<>();
+            ByteBuffer buf = ByteBuffer.allocate(size);
+            hpackOut.header(":status", Integer.toString(status));
+            while (!hpackOut.encode(buf)) {
+                buf.flip();
+                blocks.add(buf);
+                buf = ByteBuffer.allocate(size);
+            }
+            for (Map.Entry<String,List<String>> e : headers.entrySet()) {
+                /* header names are sent in lower case */
+                String name = e.getKey().toLowerCase(Locale.ROOT);
+                if (CONNECTION_HEADERS.contains(name)) {
+                    continue;
+                }
+                for (String value : e.getValue()) {
+                    hpackOut.header(name, value);
+                    while (!hpackOut.encode(buf)) {
+                        buf.flip();
+                        blocks.add(buf);
+                        buf = ByteBuffer.allocate(size);
+                    }
+                }
+            }
+            buf.flip();
+            blocks.add(buf);
+
+            List<HeaderFrame> frames = new ArrayList<>(blocks.size());
+            Iterator<ByteBuffer> it = blocks.iterator();
+            HeaderFrame frame = new HeadersFrame(s.id,
+                endStream ? HeaderFrame.END_STREAM : 0, it.next());
+            frames.add(frame);
+            while (it.hasNext()) {
+                frame = new ContinuationFrame(s.id, it.next());
+                frames.add(frame);
+            }
+            frame.setFlag(HeaderFrame.END_HEADERS);
+            if (endStream) {
+                s.release();
+            }
+            write(framesEncoder.encodeFrames(frames));
+        }
+    }
+
+    /* sends DATA frames, waiting for the send windows to open as needed */
+    private void sendData(Stream s, byte[] b, int off, int len, boolean endStream)
+        throws IOException
+    {
+        do {
+            int n;
+            synchronized (this) {
+                while (len > 0 && (sendWindow <= 0 || s.sendWindow <= 0)
+                       && !s.closed && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (s.closed || closed) {
+                    throw new IOException("stream closed");
+                }
+                n = (int)Math.min(len, Math.min(maxSendFrameSize,
+                                                Math.min(sendWindow, s.sendWindow)));
+                sendWindow -= n;
+                s.sendWindow -= n;
+            }
+            boolean last = endStream && n == len;
+            if (last) {
+                s.release();
+            }
+            sendFrame(new DataFrame(s.id, last ? DataFrame.END_STREAM : 0,
+                                    ByteBuffer.wrap(b, off, n)));
+            off += n;
+            len -= n;
+        } while (len > 0);
+    }
+
+    /**
+     * A stream of the connection, which carries one exchange.
+     */
+    final class Stream {
+        final int id;
+        final RequestBody body = new RequestBody(this);
+        // send window, guarded by the Http2Connection
+        long sendWindow;
+        // response complete or stream reset, guarded by this
+        volatile boolean closed;
+        private boolean exchangeStarted;
+        // the handler has yet to return, guarded by this
+        private boolean handlerRunning;
+        // no longer counted in openStreams, guarded by this
+        private boolean released;
+
+        Stream(int id) {
+            this.id = id;
+            synchronized (Http2Connection.this) {
+                sendWindow = clientInitialWindow;
+            }
+            openStreams.incrementAndGet();
+        }
+
+        /* called before the frame that ends the response is sent */
+        void release() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            openStreams.decrementAndGet();
+        }
+
+        synchronized void exchangeStarted() {
+            exchangeStarted = true;
+            handlerRunning = true;
+        }
+
+        /* called when the handler has returned, or won't be run */
+        void handlerFinished() {
+            synchronized (this) {
+                handlerRunning = false;
+                if (!closed) {
+                    return;
+                }
+            }
+            release();
+        }
+
+        void sendHeaders(int status, Headers headers, boolean endStream) throws IOException {
+            if (closed) {
+                throw new IOException("stream closed");
+            }
+            Http2Connection.this.sendHeaders(this, status, headers, endStream);
+            if (endStream) {
+                responseComplete();
+            }
+        }
+
+        void sendData(byte[] b, int off, int len, boolean endStream) throws IOException {
+            Http2Connection.this.sendData(this, b, off, len, endStream);
+            if (endStream) {
+                responseComplete();
+            }
+        }
+
+        /* responds without a body, for requests that are not given to a handler */
+        void sendError(int code) throws IOException {
+            logger.log(Level.DEBUG, "HTTP/2 stream " + id + " [" + code + Code.msg(code) + "]");
+            Headers h = new Headers();
+            h.set("Content-Length", "0");
+            sendHeaders(code, h, true);
+        }
+
+        /* the response has been sent, the client is told to stop sending the
+         * request body if it hasn't finished */
+        private void responseComplete() throws IOException {
+            boolean eof = body.isEOF();
+            if (closeStream(null) && !eof) {
+                sendFrame(new ResetFrame(id, ErrorFrame.NO_ERROR));
+            }
+        }
+
+        void reset(int errorCode) throws IOException {
+            if (closeStream(new IOException("stream reset"))) {
+                sendFrame(new ResetFrame(id, errorCode));
+            }
+        }
+
+        void resetQuietly(int errorCode) {
+            try {
+                reset(errorCode);
+            } catch (IOException e) {
+                logger.log(Level.TRACE, "Http2Connection (4)", e);
+            }
+        }
+
+        /* closes the stream, returns false if it was already closed. If the
+         * exchange is not complete the handler gets the given exception */
+        boolean closeStream(IOException error) {
+            boolean finished;
+            boolean release;
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                closed = true;
+                finished = exchangeStarted;
+                /* a reset stream is released when its handler returns */
+                release = error == null || !handlerRunning;
+            }
+            if (release) {
+                release();
+            }
+            streams.remove(id);
+            if (streams.isEmpty()) {
+                idleStartTime = System.currentTimeMillis();
+            }
+            body.close(error);
+            synchronized (Http2Connection.this) {
+                Http2Connection.this.notifyAll();
+            }
+            if (finished) {
+                server.http2ExchangeFinished();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The request body of a stream. The data frames are queued by the
+     * reading thread and the stream's window is opened as the handler
+     * reads them.
+     */
+    final class RequestBody extends InputStream {
+        private final Stream stream;
+        private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+        private boolean eof;            // END_STREAM received
+        private boolean closed;         // closed by the handler or the stream closed
+        private IOException error;
+        private long window = INITIAL_WINDOW_SIZE;
+        private int consumed;           // bytes consumed but not yet credited to the window
+
+        RequestBody(Stream stream) {
+            this.stream = stream;
+        }
+
+        /* returns false if the data exceeds the stream's window. Padding,
+         * and data that the handler won't read, is consumed straight away */
+        synchronized boolean receive(List<ByteBuffer> data, int length,
+                                     int dataLength, boolean endStream)
+        {
+            window -= length;
+            if (window < 0) {
+                return false;
+            }
+            if (!closed) {
+                for (ByteBuffer bb : data) {
+                    if (bb.hasRemaining()) {
+                        buffers.add(bb);
+                    }
+                }
+                consumed += length - dataLength;
+            } else {
+                consumed += length;
+            }
+            if (endStream) {
+                eof = true;
+            }
+            notifyAll();
+            return true;
+        }
+
+        synchronized boolean isEOF() {
+            return eof;
+        }
+
+        /* credits the stream window with bytes that have been consumed */
+        void credit(int n) throws IOException {
+            int update = 0;
+            synchronized (this) {
+                consumed += n;
+                if (!eof && consumed >= INITIAL_WINDOW_SIZE / 2) {
+                    update = consumed;
+                    window += consumed;
+                    consumed = 0;
+                }
+            }
+            if (update > 0 && !stream.closed) {
+                sendFrame(new WindowUpdateFrame(stream.id, update));
+            }
+        }
+
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return (n == -1) ? -1 : (b[0] & 0xff);
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            int n;
+            synchronized (this) {
+                while (buffers.isEmpty() && !eof && !closed && error == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                }
+                if (error != null) {
+                    throw error;
+                }
+                if (closed) {
+                    throw new IOException("stream is closed");
+                }
+                if (buffers.isEmpty()) {
+                    return -1;
+                }
+                if (len == 0) {
+                    return 0;
+                }
+                ByteBuffer bb = buffers.peek();
+                n = Math.min(len, bb.remaining());
+                bb.get(b, off, n);
+                if (!bb.hasRemaining()) {
+                    buffers.poll();
+                }
+            }
+            credit(n);
+            return n;
+        }
+
+        public synchronized int available() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+            int n = 0;
+            for (ByteBuffer bb : buffers) {
+                n += bb.remaining();
+            }
+            return n;
+        }
+
+        public void close() throws IOException {
+            int discarded = 0;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                for (ByteBuffer bb : buffers) {
+                    discarded += bb.remaining();
+                }
+                buffers.clear();
+                notifyAll();
+            }
+            /* the client may still be sending, the discarded data is credited */
+            if (discarded > 0) {
+                credit(discarded);
+            }
+        }
+
+        /* called when the stream is closed */
+        synchronized void close(IOException e) {
+            if (!eof && error == null) {
+                error = e;
+            }
+            closed = true;
+            buffers.clear();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Collects the headers of a request and checks the pseudo-headers.
+     */
+    private static final class HeaderCollector implements DecodingCallback {
+        final Headers headers = new Headers();
+        String method, path, scheme, authority;
+        String error;
+        private int count;
+        private long size;
+
+        @Override
+        public void onDecoded(CharSequence name, CharSequence value) {
+            String n = name.toString();
+            String v = value.toString();
+            /* the size of a header field as defined by RFC 7540, 6.5.2 */
+            size += n.length() + v.length() + 32;
+            if (size > MAX_HEADER_LIST_SIZE) {
+                error = "header list too large";
+                return;
+            }
+            if (n.startsWith(":")) {
+                if (count > 0) {
+                    error = "pseudo-header after regular header";
+                    return;
+                }
+                switch (n) {
+                    case ":method":    method = v; break;
+                    case ":path":      path = v; break;
+                    case ":scheme":    scheme = v; break;
+                    case ":authority": authority = v; break;
+                    default:           error = "unknown pseudo-header " + n;
+                }
+                return;
+            }
+            if (++count > ServerConfig.getMaxReqHeaders()) {
+                error = "too many headers";
+                return;
+            }
+            if (!n.equals(n.toLowerCase(Locale.ROOT))) {
+                error = "upper case header name";
+                return;
+            }
+            headers.add(n, v);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package sun.net.httpserver;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import com.sun.net.httpserver.*;
+import jdk.internal.net.http.frame.ErrorFrame;
+
+/**
+ * An exchange on a HTTP/2 stream. The request has been decoded by the
+ * Http2Connection, and the response is sent as HEADERS and DATA frames on
+ * the stream instead of being written to the connection.
+ */
+class Http2ExchangeImpl extends ExchangeImpl {
+
+    private final HttpContextImpl context;
+    private final Http2Connection.Stream stream;
+    /* the request described as a HTTP/1.1 request line, for logging */
+    private final String requestLine;
+
+    Http2ExchangeImpl (
+        String m, URI u, Headers reqHdrs, long len, HttpConnection connection,
+        ServerImpl server, HttpContextImpl context, Http2Connection.Stream stream,
+        String requestLine
+    ) {
+        super (m, u, reqHdrs, len, connection, server);
+        this.context = context;
+        this.stream = stream;
+        this.requestLine = requestLine;
+    }
+
+    @Override
+    public HttpContextImpl getHttpContext () {
+        return context;
+    }
+
+    @Override
+    public String getProtocol () {
+        return "HTTP/2.0";
+    }
+
+    @Override
+    public InputStream getRequestBody () {
+        if (uis == null) {
+            uis = stream.body;
+        }
+        return uis;
+    }
+
+    @Override
+    public void close () {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (uos == null || !uos_orig.isWrapped()) {
+                /* no response has been sent */
+                stream.reset (ErrorFrame.INTERNAL_ERROR);
+                return;
+            }
+            stream.body.close();
+            uos.close();
+        } catch (IOException e) {
+            stream.resetQuietly (ErrorFrame.INTERNAL_ERROR);
+        }
+    }
+
+    @Override
+    public void sendResponseHeaders (int rCode, long contentLen)
+    throws IOException
+    {
+        final Logger logger = server.getLogger();
+        if (sentHeaders) {
+            throw new IOException ("headers already sent");
+        }
+        this.rcode = rCode;
+        PlaceholderOutputStream o = getPlaceholderResponseBody();
+        boolean noContentToSend = false;
+        boolean noContentLengthHeader = false;
+        rspHdrs.set ("Date", dateFormat.get().format (new Date()));
+
+        /* the same rules as for HTTP/1.1, except that there is no chunked
+         * encoding, a body of unknown length ends with the stream */
+        if ((rCode>=100 && rCode <200) || rCode == 204 || rCode == 304) {
+            if (contentLen != -1) {
+                logger.log (Level.WARNING, "sendResponseHeaders: rCode = "+ rCode
+                    + ": forcing contentLen = -1");
+            }
+            contentLen = -1;
+            noContentLengthHeader = (rCode != 304);
+        }
+        if ("HEAD".equals (getRequestMethod()) || rCode == 304) {
+            if (contentLen >= 0) {
+                logger.log (Level.WARNING,
+                    "sendResponseHeaders: being invoked with a content length for a HEAD request");
+            }
+            noContentToSend = true;
+            contentLen = 0;
+        } else if (contentLen == -1) {
+            noContentToSend = true;
+            if (!noContentLengthHeader) {
+                rspHdrs.set ("Content-length", "0");
+            }
+        } else if (contentLen > 0) {
+            rspHdrs.set ("Content-length", Long.toString (contentLen));
+        }
+        this.rspContentLen = contentLen;
+        sentHeaders = true;
+        stream.sendHeaders (rCode, rspHdrs, noContentToSend);
+        if (noContentToSend) {
+            closed = true;
+        } else {
+            o.setWrappedStream (new Http2OutputStream (contentLen == 0 ? -1 : contentLen));
+        }
+        server.logReply (rCode, requestLine, null);
+    }
+
+    /**
+     * Writes the response body as DATA frames. Small writes are buffered up
+     * to the size of a frame. Closing the stream ends the HTTP/2 stream.
+     */
+    class Http2OutputStream extends OutputStream {
+        private final byte[] buf = new byte[FRAME_SIZE];
+        private int count;
+        /* bytes still to be written for a fixed length response, or -1 */
+        private long remaining;
+        private boolean closed;
+
+        static final int FRAME_SIZE = 16 * 1024;
+
+        Http2OutputStream (long length) {
+            this.remaining = length;
+        }
+
+        public void write (int b) throws IOException {
+            write (new byte[] {(byte)b}, 0, 1);
+        }
+
+        public void write (byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize (off, len, b.length);
+            if (closed) {
+                throw new IOException ("stream closed");
+            }
+            if (remaining != -1) {
+                if (remaining == 0) {
+                    throw new StreamClosedException();
+                }
+                if (len > remaining) {
+                    // stream is still open, caller can retry
+                    throw new IOException ("too many bytes to write to stream");
+                }
+                remaining -= len;
+            }
+            if (len > buf.length - count) {
+                flushBuffer();
+            }
+            if (len >= buf.length) {
+                stream.sendData (b, off, len, false);
+            } else {
+                System.arraycopy (b, off, buf, count, len);
+                count += len;
+            }
+        }
+
+        private void flushBuffer () throws IOException {
+            if (count > 0) {
+                stream.sendData (buf, 0, count, false);
+                count = 0;
+            }
+        }
+
+        public void flush () throws IOException {
+            if (closed) {
+                return;
+            }
+            flushBuffer();
+        }
+
+        public void close () throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (remaining > 0) {
+                stream.reset (ErrorFrame.INTERNAL_ERROR);
+                throw new IOException ("insufficient bytes written to stream");
+            }
+            stream.body.close();
+            stream.sendData (buf, 0, count, true);
+            count = 0;
+        }
+    }
+}
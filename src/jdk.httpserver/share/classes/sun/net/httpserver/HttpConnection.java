@@ -52,6 +52,8 @@ class HttpConnection {
 
     SocketChannel chan;
     SelectionKey selectionKey;
+    // the dispatcher that handles this connection
+    ServerImpl.Dispatcher dispatcher;
     String protocol;
     long idleStartTime; // absolute time in milli seconds, starting when the connection was marked idle
     volatile long reqStartedTime; // time when the request was initiated
@@ -60,7 +62,9 @@ class HttpConnection {
     boolean closed = false;
     Logger logger;
 
-    public enum State {IDLE, REQUEST, RESPONSE, NEWLY_ACCEPTED};
+    /* HTTP2 connections are handled by a Http2Connection and are not
+     * subject to the idle and request/response timers */
+    public enum State {IDLE, REQUEST, RESPONSE, NEWLY_ACCEPTED, HTTP2};
     volatile State state;
 
     public String toString() {
@@ -352,7 +352,6 @@ class Request {
 
     static class WriteStream extends java.io.OutputStream {
         SocketChannel channel;
-        ByteBuffer buf;
         SelectionKey key;
         boolean closed;
         byte[] one;
@@ -364,7 +363,6 @@ class Request {
             assert channel.isBlocking();
             closed = false;
             one = new byte [1];
-            buf = ByteBuffer.allocate (4096);
         }
 
         public synchronized void write (int b) throws IOException {
@@ -381,14 +379,9 @@ class Request {
             if (closed)
                 throw new IOException ("stream is closed");
 
-            int cap = buf.capacity();
-            if (cap < len) {
-                int diff = len - cap;
-                buf = ByteBuffer.allocate (2*(cap+diff));
-            }
-            buf.clear();
-            buf.put (b, off, len);
-            buf.flip ();
+            /* the channel copies the bytes, so there's no need to copy
+             * them into a buffer of our own first */
+            ByteBuffer buf = ByteBuffer.wrap (b, off, len);
             int n;
             while ((n = channel.write (buf)) < l) {
                 l -= n;
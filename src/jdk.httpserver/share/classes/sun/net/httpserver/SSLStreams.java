@@ -29,6 +29,8 @@ import java.net.*;
 import java.nio.*;
 import java.io.*;
 import java.nio.channels.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.*;
 import javax.net.ssl.*;
 import javax.net.ssl.SSLEngineResult.*;
@@ -96,6 +98,14 @@ class SSLStreams {
                 }
             }
         }
+        if (ServerConfig.http2Enabled()) {
+            /* offer h2 with ALPN, unless the configurator chose the protocols */
+            SSLParameters sslParams = engine.getSSLParameters();
+            if (sslParams.getApplicationProtocols().length == 0) {
+                sslParams.setApplicationProtocols (Http2Connection.ALPN_PROTOCOLS);
+                engine.setSSLParameters (sslParams);
+            }
+        }
     }
 
     class Parameters extends HttpsParameters {
@@ -390,6 +400,52 @@ class SSLStreams {
         return r;
     }
 
+    /* direct buffers used by sendFile, shared by all connections */
+    private static final int FILE_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_FILE_BUFFERS = 16;
+    private static final ConcurrentLinkedQueue<ByteBuffer> fileBuffers =
+        new ConcurrentLinkedQueue<ByteBuffer>();
+    private static final AtomicInteger fileBufferCount = new AtomicInteger();
+
+    /**
+     * send count bytes of the given file, starting at position, thru the
+     * engine. The file is read into a pooled direct buffer, so that it is
+     * not copied through the Java heap before it is encrypted.
+     */
+    void sendFile (FileChannel src, long position, long count) throws IOException {
+        ByteBuffer buf = fileBuffers.poll();
+        if (buf == null) {
+            buf = ByteBuffer.allocateDirect (FILE_BUFFER_SIZE);
+        } else {
+            fileBufferCount.decrementAndGet();
+        }
+        try {
+            while (count > 0) {
+                buf.clear();
+                if (count < buf.capacity()) {
+                    buf.limit ((int)count);
+                }
+                int n = src.read (buf, position);
+                if (n < 0) {
+                    throw new IOException ("premature end of file");
+                }
+                buf.flip();
+                position += n;
+                count -= n;
+                WrapperResult r = sendData (buf);
+                if (r != null && r.result.getStatus() == Status.CLOSED) {
+                    throw new IOException ("output stream is closed");
+                }
+            }
+        } finally {
+            if (fileBufferCount.incrementAndGet() <= MAX_FILE_BUFFERS) {
+                fileBuffers.offer (buf);
+            } else {
+                fileBufferCount.decrementAndGet();
+            }
+        }
+    }
+
     /**
      * read data thru the engine into the given ByteBuffer. If the
      * given buffer was not large enough, a new one is allocated
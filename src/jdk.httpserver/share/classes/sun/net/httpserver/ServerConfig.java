@@ -49,6 +49,11 @@ class ServerConfig {
     private static final long DEFAULT_REQ_RSP_TIMER_TASK_SCHEDULE_MILLIS = 1000;
     private static final int  DEFAULT_MAX_REQ_HEADERS = 200;
     private static final long DEFAULT_DRAIN_AMOUNT = 64 * 1024;
+    private static final int  DEFAULT_REACTORS = 1;
+    private static final int  DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS = 100;
+    private static final int  DEFAULT_HTTP2_INITIAL_WINDOW_SIZE = 256 * 1024;
+    private static final int  DEFAULT_HTTP2_MAX_HEADER_LIST_SIZE = 64 * 1024;
+    private static final int  DEFAULT_HTTP2_MAX_THREADS = 200;
 
     private static long idleTimerScheduleMillis;
     private static long idleIntervalMillis;
@@ -66,6 +71,15 @@ class ServerConfig {
     private static long maxRspTime;
     private static long reqRspTimerScheduleMillis;
     private static boolean debug;
+    // the number of dispatchers, each with its own selector and thread
+    private static int reactors;
+    // whether h2 (ALPN) and h2c are accepted, and the HTTP/2 settings sent to clients
+    private static boolean http2;
+    private static int http2MaxConcurrentStreams;
+    private static int http2InitialWindowSize;
+    private static int http2MaxHeaderListSize;
+    // the maximum number of threads that run HTTP/2 exchanges with the default executor
+    private static int http2MaxThreads;
 
     // the value of the TCP_NODELAY socket-level option
     private static boolean noDelay;
@@ -117,6 +131,47 @@ class ServerConfig {
                         reqRspTimerScheduleMillis = DEFAULT_REQ_RSP_TIMER_TASK_SCHEDULE_MILLIS;
                     }
 
+                    reactors = Integer.getInteger("jdk.httpserver.reactors",
+                            DEFAULT_REACTORS);
+                    if (reactors <= 0) {
+                        // ignore zero or negative value and use the default
+                        reactors = DEFAULT_REACTORS;
+                    }
+
+                    http2 = Boolean.parseBoolean(
+                            System.getProperty("jdk.httpserver.http2", "false"));
+
+                    http2MaxConcurrentStreams = Integer.getInteger(
+                            "jdk.httpserver.http2.maxConcurrentStreams",
+                            DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS);
+                    if (http2MaxConcurrentStreams <= 0) {
+                        http2MaxConcurrentStreams = DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS;
+                    }
+
+                    http2InitialWindowSize = Integer.getInteger(
+                            "jdk.httpserver.http2.initialWindowSize",
+                            DEFAULT_HTTP2_INITIAL_WINDOW_SIZE);
+                    if (http2InitialWindowSize <= 0) {
+                        // ignore zero or negative value and use the default
+                        http2InitialWindowSize = DEFAULT_HTTP2_INITIAL_WINDOW_SIZE;
+                    }
+
+                    http2MaxHeaderListSize = Integer.getInteger(
+                            "jdk.httpserver.http2.maxHeaderListSize",
+                            DEFAULT_HTTP2_MAX_HEADER_LIST_SIZE);
+                    if (http2MaxHeaderListSize <= 0) {
+                        // ignore zero or negative value and use the default
+                        http2MaxHeaderListSize = DEFAULT_HTTP2_MAX_HEADER_LIST_SIZE;
+                    }
+
+                    http2MaxThreads = Integer.getInteger(
+                            "jdk.httpserver.http2.maxThreads",
+                            DEFAULT_HTTP2_MAX_THREADS);
+                    if (http2MaxThreads <= 0) {
+                        // ignore zero or negative value and use the default
+                        http2MaxThreads = DEFAULT_HTTP2_MAX_THREADS;
+                    }
+
                     debug = Boolean.getBoolean("sun.net.httpserver.debug");
 
                     noDelay = Boolean.getBoolean("sun.net.httpserver.nodelay");
@@ -240,4 +295,55 @@ class ServerConfig {
     static boolean noDelay() {
         return noDelay;
     }
+
+    /**
+     * @return Returns the number of dispatchers that handle the connections. When more
+     * than one, the connections are accepted by a separate thread and spread over the
+     * dispatchers.
+     */
+    static int getReactors() {
+        return reactors;
+    }
+
+    /**
+     * @return Returns true if HTTP/2 is enabled by setting jdk.httpserver.http2
+     * to true, in which case h2 is offered with ALPN on https servers, and h2c is
+     * accepted with prior knowledge or by upgrade on http servers. HTTP/2 is
+     * disabled by default.
+     */
+    static boolean http2Enabled() {
+        return http2;
+    }
+
+    /**
+     * @return Returns the maximum number of concurrent streams on a HTTP/2 connection.
+     */
+    static int getHttp2MaxConcurrentStreams() {
+        return http2MaxConcurrentStreams;
+    }
+
+    /**
+     * @return Returns the initial flow control window for the request body of a
+     * HTTP/2 stream.
+     */
+    static int getHttp2InitialWindowSize() {
+        return http2InitialWindowSize;
+    }
+
+    /**
+     * @return Returns the maximum size of the header list of a HTTP/2 request,
+     * which limits both the header block as received and the headers it
+     * decodes to.
+     */
+    static int getHttp2MaxHeaderListSize() {
+        return http2MaxHeaderListSize;
+    }
+
+    /**
+     * @return Returns the maximum number of threads that run the exchanges
+     * on HTTP/2 streams when the server uses its default executor.
+     */
+    static int getHttp2MaxThreads() {
+        return http2MaxThreads;
+    }
 }
@@ -63,6 +63,9 @@ import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides implementation for both HTTP and HTTPS
@@ -77,21 +80,18 @@ class ServerImpl {
     private ContextList contexts;
     private InetSocketAddress address;
     private ServerSocketChannel schan;
+    // the selector that the listener is registered with
     private Selector selector;
     private SelectionKey listenerKey;
-    private final Set<HttpConnection> idleConnections;
-    // connections which have been accepted() by the server but which haven't
-    // yet sent any byte on the connection yet
-    private final Set<HttpConnection> newlyAcceptedConnections;
     private final Set<HttpConnection> allConnections;
-    /* following two are used to keep track of the times
-     * when a connection/request is first received
-     * and when we start to send the response
-     */
-    private final Set<HttpConnection> reqConnections;
-    private final Set<HttpConnection> rspConnections;
-    private List<Event> events;
-    private final Object lolock = new Object();
+    // the connections that have been handed over to HTTP/2
+    private final Set<Http2Connection> http2Connections;
+    // the dispatchers, each with its own selector and the connections that
+    // have been assigned to it
+    private final Dispatcher[] dispatchers;
+    // the dispatcher that the next accepted connection is assigned to,
+    // only accessed by the thread that accepts connections
+    private int nextDispatcher;
     private volatile boolean finished = false;
     private volatile boolean terminating = false;
     private boolean bound = false;
@@ -102,6 +102,12 @@ class ServerImpl {
     static final long IDLE_TIMER_TASK_SCHEDULE = ServerConfig.getIdleTimerScheduleMillis();
     static final int MAX_CONNECTIONS = ServerConfig.getMaxConnections();
     final static int MAX_IDLE_CONNECTIONS = ServerConfig.getMaxIdleConnections();
+    // the number of dispatchers, the connections are spread over the dispatchers
+    // and the idle connection limit is divided between them
+    static final int REACTORS = ServerConfig.getReactors();
+    static final int MAX_IDLE_CONNECTIONS_PER_REACTOR = (MAX_IDLE_CONNECTIONS <= 0)
+            ? MAX_IDLE_CONNECTIONS
+            : Math.max(1, MAX_IDLE_CONNECTIONS / REACTORS);
     // schedule for the timer task that's responsible for request/response timeout management
     static final long REQ_RSP_TIMER_SCHEDULE = ServerConfig.getReqRspTimerScheduleMillis();
     static final long MAX_REQ_TIME = getTimeMillis(ServerConfig.getMaxReqTime());
@@ -123,7 +129,10 @@ class ServerImpl {
 
     private Timer timer, timer1;
     private final Logger logger;
-    private Thread dispatcherThread;
+    private Thread acceptorThread;
+    private Thread[] dispatcherThreads;
+    // runs the exchanges on HTTP/2 streams when the default executor is used
+    private ThreadPoolExecutor streamExecutor;
 
     ServerImpl (
         HttpServer wrapper, String protocol, InetSocketAddress addr, int backlog
@@ -142,15 +151,16 @@ class ServerImpl {
             socket.bind (addr, backlog);
             bound = true;
         }
-        selector = Selector.open ();
+        dispatchers = new Dispatcher[REACTORS];
+        for (int i = 0; i < REACTORS; i++) {
+            dispatchers[i] = new Dispatcher (Selector.open ());
+        }
+        // with a single dispatcher, the dispatcher also accepts connections
+        selector = (REACTORS == 1) ? dispatchers[0].selector : Selector.open ();
         schan.configureBlocking (false);
         listenerKey = schan.register (selector, SelectionKey.OP_ACCEPT);
-        dispatcher = new Dispatcher();
-        idleConnections = Collections.synchronizedSet (new HashSet<HttpConnection>());
         allConnections = Collections.synchronizedSet (new HashSet<HttpConnection>());
-        reqConnections = Collections.synchronizedSet (new HashSet<HttpConnection>());
-        rspConnections = Collections.synchronizedSet (new HashSet<HttpConnection>());
-        newlyAcceptedConnections = Collections.synchronizedSet(new HashSet<>());
+        http2Connections = Collections.synchronizedSet (new HashSet<Http2Connection>());
         timer = new Timer ("idle-timeout-task", true);
         timer.schedule (new IdleTimeoutTask(), IDLE_TIMER_TASK_SCHEDULE, IDLE_TIMER_TASK_SCHEDULE);
         if (reqRspTimeoutEnabled) {
@@ -161,8 +171,8 @@ class ServerImpl {
             logger.log (Level.DEBUG, "MAX_REQ_TIME:  "+MAX_REQ_TIME);
             logger.log (Level.DEBUG, "MAX_RSP_TIME:  "+MAX_RSP_TIME);
         }
-        events = new LinkedList<Event>();
-        logger.log (Level.DEBUG, "HttpServer created "+protocol+" "+ addr);
+        logger.log (Level.DEBUG, "HttpServer created "+protocol+" "+ addr
+                + " with " + REACTORS + " dispatcher(s)");
     }
 
     public void bind (InetSocketAddress addr, int backlog) throws IOException {
@@ -184,9 +194,21 @@ class ServerImpl {
         if (executor == null) {
             executor = new DefaultExecutor();
         }
-        dispatcherThread = new Thread(null, dispatcher, "HTTP-Dispatcher", 0, false);
+        dispatcherThreads = new Thread[REACTORS];
+        for (int i = 0; i < REACTORS; i++) {
+            String name = (REACTORS == 1) ? "HTTP-Dispatcher" : "HTTP-Dispatcher-" + i;
+            dispatcherThreads[i] = new Thread(null, dispatchers[i], name, 0, false);
+        }
+        if (REACTORS > 1) {
+            acceptorThread = new Thread(null, new Acceptor(), "HTTP-Acceptor", 0, false);
+        }
         started = true;
-        dispatcherThread.start();
+        for (Thread t : dispatcherThreads) {
+            t.start();
+        }
+        if (acceptorThread != null) {
+            acceptorThread.start();
+        }
     }
 
     public void setExecutor (Executor executor) {
@@ -231,7 +253,7 @@ class ServerImpl {
         }
         terminating = true;
         try { schan.close(); } catch (IOException e) {}
-        selector.wakeup();
+        wakeupAll();
         long latest = System.currentTimeMillis() + delay * 1000;
         while (System.currentTimeMillis() < latest) {
             delay();
@@ -240,22 +262,48 @@ class ServerImpl {
             }
         }
         finished = true;
-        selector.wakeup();
+        wakeupAll();
         synchronized (allConnections) {
             for (HttpConnection c : allConnections) {
                 c.close();
             }
         }
         allConnections.clear();
-        idleConnections.clear();
-        newlyAcceptedConnections.clear();
+        http2Connections.clear();
+        for (Dispatcher d : dispatchers) {
+            d.idleConnections.clear();
+            d.newlyAcceptedConnections.clear();
+        }
+        synchronized (this) {
+            if (streamExecutor != null) {
+                streamExecutor.shutdown();
+            }
+        }
         timer.cancel();
         if (reqRspTimeoutEnabled) {
             timer1.cancel();
         }
-        if (dispatcherThread != null && dispatcherThread != Thread.currentThread()) {
+        if (acceptorThread != null) {
+            join(acceptorThread);
+        }
+        if (dispatcherThreads != null) {
+            for (Thread t : dispatcherThreads) {
+                join(t);
+            }
+        }
+    }
+
+    private void wakeupAll() {
+        selector.wakeup();
+        for (Dispatcher d : dispatchers) {
+            d.selector.wakeup();
+        }
+    }
+
+    private void join(Thread t) {
+        if (t != Thread.currentThread()) {
             try {
-                dispatcherThread.join();
+                t.join();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 logger.log (Level.TRACE, "ServerImpl.stop: ", e);
@@ -263,8 +311,6 @@ class ServerImpl {
         }
     }
 
-    Dispatcher dispatcher;
-
     public synchronized HttpContextImpl createContext (String path, HttpHandler handler) {
         if (handler == null || path == null) {
             throw new NullPointerException ("null handler, or path parameter");
@@ -313,9 +359,68 @@ class ServerImpl {
     }
 
     void addEvent (Event r) {
-        synchronized (lolock) {
-            events.add (r);
-            selector.wakeup();
+        r.exchange.getConnection().dispatcher.addEvent (r);
+    }
+
+    /**
+     * Accepts a connection, if one is pending, and assigns it to a dispatcher.
+     * The connection is handled by that dispatcher until it is closed. This
+     * method is invoked by the thread that selects the listener key.
+     */
+    private void accept () throws IOException {
+        SocketChannel chan = schan.accept();
+        // optimist there's a channel
+        if (chan == null) {
+            return;
+        }
+        if (MAX_CONNECTIONS > 0 && allConnections.size() >= MAX_CONNECTIONS) {
+            // we've hit max limit of current open connections, so we go
+            // ahead and close this connection without processing it
+            try {
+                chan.close();
+            } catch (IOException ignore) {
+            }
+            return;
+        }
+
+        // Set TCP_NODELAY, if appropriate
+        if (ServerConfig.noDelay()) {
+            chan.socket().setTcpNoDelay(true);
+        }
+        chan.configureBlocking (false);
+        Dispatcher d = dispatchers[nextDispatcher];
+        nextDispatcher = (nextDispatcher + 1) % dispatchers.length;
+        HttpConnection c = new HttpConnection ();
+        c.dispatcher = d;
+        c.setChannel (chan);
+        allConnections.add (c);
+        d.addConnection (c);
+    }
+
+    /**
+     * Accepts connections when the server has more than one dispatcher.
+     */
+    class Acceptor implements Runnable {
+        public void run() {
+            while (!finished) {
+                try {
+                    selector.select(1000);
+                    Set<SelectionKey> selected = selector.selectedKeys();
+                    Iterator<SelectionKey> iter = selected.iterator();
+                    while (iter.hasNext()) {
+                        SelectionKey key = iter.next();
+                        iter.remove ();
+                        if (key.equals (listenerKey) && !terminating) {
+                            accept();
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.log (Level.TRACE, "Acceptor (1)", e);
+                } catch (Exception e) {
+                    logger.log (Level.TRACE, "Acceptor (2)", e);
+                }
+            }
+            try {selector.close(); } catch (Exception e) {}
         }
     }
 
@@ -326,6 +431,14 @@ class ServerImpl {
      * to processing any incoming requests. A connection is represented as an instance of
      * sun.net.httpserver.HttpConnection.
      *
+     * Dispatchers:
+     *  The server may be configured with more than one Dispatcher, each with its own Selector
+     *  and thread. In that case an Acceptor accepts the connections and assigns them to the
+     *  Dispatchers in turn. A connection is handled by the same Dispatcher until it is closed.
+     *  Each Dispatcher keeps the connection collections described below for the connections
+     *  assigned to it, and the limit on idle connections is divided between the Dispatchers.
+     *  With a single Dispatcher, the Dispatcher accepts the connections itself.
+     *
      * Connection states:
      *  An instance of HttpConnection goes through the following states:
      *
@@ -387,6 +500,58 @@ class ServerImpl {
      */
     class Dispatcher implements Runnable {
 
+        final Selector selector;
+        private final Object lolock = new Object();
+        private List<Event> events = new LinkedList<Event>();
+        // connections assigned to this dispatcher which haven't been registered
+        // with the selector yet
+        private List<HttpConnection> accepted = new LinkedList<HttpConnection>();
+
+        final Set<HttpConnection> idleConnections =
+                Collections.synchronizedSet (new HashSet<HttpConnection>());
+        // connections which have been accepted() by the server but which haven't
+        // yet sent any byte on the connection yet
+        final Set<HttpConnection> newlyAcceptedConnections =
+                Collections.synchronizedSet (new HashSet<HttpConnection>());
+        /* following two are used to keep track of the times
+         * when a connection/request is first received
+         * and when we start to send the response
+         */
+        final Set<HttpConnection> reqConnections =
+                Collections.synchronizedSet (new HashSet<HttpConnection>());
+        final Set<HttpConnection> rspConnections =
+                Collections.synchronizedSet (new HashSet<HttpConnection>());
+
+        Dispatcher (Selector selector) {
+            this.selector = selector;
+        }
+
+        void addEvent (Event r) {
+            synchronized (lolock) {
+                events.add (r);
+                selector.wakeup();
+            }
+        }
+
+        void addConnection (HttpConnection c) {
+            synchronized (lolock) {
+                accepted.add (c);
+                selector.wakeup();
+            }
+        }
+
+        private void register (HttpConnection c) {
+            try {
+                SelectionKey key = c.getChannel().register (selector, SelectionKey.OP_READ);
+                key.attach (c);
+                c.selectionKey = key;
+                markNewlyAccepted(c);
+            } catch (IOException e) {
+                logger.log (Level.TRACE, "Dispatcher (9)", e);
+                closeConnection(c);
+            }
+        }
+
         private void handleEvent (Event r) {
             ExchangeImpl t = r.exchange;
             HttpConnection c = t.getConnection();
@@ -406,7 +571,7 @@ class ServerImpl {
                         }
                     }
                     responseCompleted (c);
-                    if (t.close || idleConnections.size() >= MAX_IDLE_CONNECTIONS) {
+                    if (t.close || idleConnections.size() >= MAX_IDLE_CONNECTIONS_PER_REACTOR) {
                         c.close();
                         allConnections.remove (c);
                     } else {
@@ -450,11 +615,16 @@ class ServerImpl {
             while (!finished) {
                 try {
                     List<Event> list = null;
+                    List<HttpConnection> conns = null;
                     synchronized (lolock) {
                         if (events.size() > 0) {
                             list = events;
                             events = new LinkedList<Event>();
                         }
+                        if (accepted.size() > 0) {
+                            conns = accepted;
+                            accepted = new LinkedList<HttpConnection>();
+                        }
                     }
 
                     if (list != null) {
@@ -463,6 +633,12 @@ class ServerImpl {
                         }
                     }
 
+                    if (conns != null) {
+                        for (HttpConnection c : conns) {
+                            register (c);
+                        }
+                    }
+
                     for (HttpConnection c : connsToRegister) {
                         reRegister(c);
                     }
@@ -480,34 +656,7 @@ class ServerImpl {
                             if (terminating) {
                                 continue;
                             }
-                            SocketChannel chan = schan.accept();
-                            // optimist there's a channel
-                            if (chan != null) {
-                                if (MAX_CONNECTIONS > 0 && allConnections.size() >= MAX_CONNECTIONS) {
-                                    // we've hit max limit of current open connections, so we go
-                                    // ahead and close this connection without processing it
-                                    try {
-                                        chan.close();
-                                    } catch (IOException ignore) {
-                                    }
-                                    // move on to next selected key
-                                    continue;
-                                }
-
-                                // Set TCP_NODELAY, if appropriate
-                                if (ServerConfig.noDelay()) {
-                                    chan.socket().setTcpNoDelay(true);
-                                }
-                                chan.configureBlocking (false);
-                                SelectionKey newkey =
-                                    chan.register (selector, SelectionKey.OP_READ);
-                                HttpConnection c = new HttpConnection ();
-                                c.selectionKey = newkey;
-                                c.setChannel (chan);
-                                newkey.attach (c);
-                                markNewlyAccepted(c);
-                                allConnections.add (c);
-                            }
+                            accept();
                         } else {
                             try {
                                 if (key.isReadable()) {
@@ -590,9 +739,14 @@ class ServerImpl {
         return logger;
     }
 
-    private void closeConnection(HttpConnection conn) {
+    void closeConnection(HttpConnection conn) {
         conn.close();
         allConnections.remove(conn);
+        Dispatcher d = conn.dispatcher;
+        Set<HttpConnection> reqConnections = d.reqConnections;
+        Set<HttpConnection> rspConnections = d.rspConnections;
+        Set<HttpConnection> idleConnections = d.idleConnections;
+        Set<HttpConnection> newlyAcceptedConnections = d.newlyAcceptedConnections;
         switch (conn.getState()) {
         case REQUEST:
             reqConnections.remove(conn);
@@ -680,6 +834,17 @@ class ServerImpl {
                     return;
                 }
                 logger.log(Level.DEBUG, "Exchange request line: {0}", requestLine);
+                if (newconnection && ServerConfig.http2Enabled()
+                        && requestLine.equals (Http2Connection.PREFACE_REQUEST_LINE)) {
+                    /* HTTP/2 with prior knowledge, or negotiated with ALPN */
+                    connection.engine = engine;
+                    connection.sslContext = sslContext;
+                    connection.protocol = protocol;
+                    startHttp2 (connection, new Http2Connection (
+                        ServerImpl.this, connection, rawin, rawout, https
+                    ));
+                    return;
+                }
                 int space = requestLine.indexOf (' ');
                 if (space == -1) {
                     reject (Code.HTTP_BAD_REQUEST,
@@ -742,6 +907,22 @@ class ServerImpl {
                         requestCompleted(connection);
                     }
                 }
+                if (newconnection && !https && clen == 0
+                        && ServerConfig.http2Enabled()
+                        && Http2Connection.isUpgradeRequest (headers)) {
+                    Http2Connection h2 = new Http2Connection (
+                        ServerImpl.this, connection, rawin, rawout, false
+                    );
+                    if (h2.upgrade (method, uri, headers)) {
+                        /* h2c upgrade, the response is sent on stream 1 */
+                        logReply (101, requestLine, null);
+                        rawout.write (Http2Connection.UPGRADE_REPLY);
+                        rawout.flush();
+                        connection.protocol = protocol;
+                        startHttp2 (connection, h2);
+                        return;
+                    }
+                }
                 ctx = contexts.findContext (protocol, uri.getPath());
                 if (ctx == null) {
                     reject (Code.HTTP_NOT_FOUND,
@@ -893,6 +1074,53 @@ class ServerImpl {
 
     }
 
+    /* hands the connection over to HTTP/2. The Http2Connection reads
+     * from the connection on its own thread until it is closed */
+    private void startHttp2 (HttpConnection c, Http2Connection h2) {
+        Dispatcher d = c.dispatcher;
+        d.reqConnections.remove (c);
+        d.rspConnections.remove (c);
+        c.setState (State.HTTP2);
+        http2Connections.add (h2);
+        h2.start();
+    }
+
+    /* the HTTP/2 connection has shut down */
+    void http2Closed (Http2Connection h2) {
+        http2Connections.remove (h2);
+    }
+
+    HttpContextImpl findContext (String path) {
+        return contexts.findContext (protocol, path);
+    }
+
+    /* returns the executor for the exchanges on HTTP/2 streams. The default
+     * executor runs the exchange on the calling thread, which would stop the
+     * connection from reading any further frames, so the exchanges are run
+     * by a pool of threads in that case. The pool is bounded, a stream that
+     * finds all of its threads busy is refused */
+    synchronized Executor getStreamExecutor () {
+        if (executor instanceof DefaultExecutor) {
+            if (streamExecutor == null) {
+                streamExecutor = new ThreadPoolExecutor (
+                    0, ServerConfig.getHttp2MaxThreads(), 60L, TimeUnit.SECONDS,
+                    new SynchronousQueue<Runnable>(),
+                    task -> new Thread (null, task, "HTTP2-Exchange", 0, false)
+                );
+            }
+            return streamExecutor;
+        }
+        return executor;
+    }
+
+    /* an exchange on a HTTP/2 stream has finished */
+    void http2ExchangeFinished () {
+        int exchanges = endExchange();
+        if (terminating && exchanges == 0) {
+            finished = true;
+        }
+    }
+
     void logReply (int code, String requestStr, String text) {
         if (!logger.isLoggable(Level.DEBUG)) {
             return;
@@ -937,19 +1165,19 @@ class ServerImpl {
     void requestStarted (HttpConnection c) {
         c.reqStartedTime = System.currentTimeMillis();
         c.setState (State.REQUEST);
-        reqConnections.add (c);
+        c.dispatcher.reqConnections.add (c);
     }
 
     void markIdle(HttpConnection c) {
         c.idleStartTime = System.currentTimeMillis();
         c.setState(State.IDLE);
-        idleConnections.add(c);
+        c.dispatcher.idleConnections.add(c);
     }
 
     void markNewlyAccepted(HttpConnection c) {
         c.idleStartTime = System.currentTimeMillis();
         c.setState(State.NEWLY_ACCEPTED);
-        newlyAcceptedConnections.add(c);
+        c.dispatcher.newlyAcceptedConnections.add(c);
     }
 
     // called after a request has been completely read
@@ -962,9 +1190,9 @@ class ServerImpl {
     void requestCompleted (HttpConnection c) {
         State s = c.getState();
         assert s == State.REQUEST : "State is not REQUEST ("+s+")";
-        reqConnections.remove (c);
+        c.dispatcher.reqConnections.remove (c);
         c.rspStartedTime = System.currentTimeMillis();
-        rspConnections.add (c);
+        c.dispatcher.rspConnections.add (c);
         c.setState (State.RESPONSE);
     }
 
@@ -972,37 +1200,40 @@ class ServerImpl {
     void responseCompleted (HttpConnection c) {
         State s = c.getState();
         assert s == State.RESPONSE : "State is not RESPONSE ("+s+")";
-        rspConnections.remove (c);
+        c.dispatcher.rspConnections.remove (c);
         c.setState (State.IDLE);
     }
 
     /**
      * Responsible for closing connections that have been idle.
-     * TimerTask run every CLOCK_TICK ms
+     * TimerTask run every CLOCK_TICK ms. The connections of each
+     * dispatcher are checked in turn.
      */
     class IdleTimeoutTask extends TimerTask {
         public void run () {
             LinkedList<HttpConnection> toClose = new LinkedList<HttpConnection>();
             final long currentTime = System.currentTimeMillis();
-            synchronized (idleConnections) {
-                final Iterator<HttpConnection> it = idleConnections.iterator();
-                while (it.hasNext()) {
-                    final HttpConnection c = it.next();
-                    if (currentTime - c.idleStartTime >= IDLE_INTERVAL) {
-                        toClose.add(c);
-                        it.remove();
+            for (Dispatcher d : dispatchers) {
+                synchronized (d.idleConnections) {
+                    final Iterator<HttpConnection> it = d.idleConnections.iterator();
+                    while (it.hasNext()) {
+                        final HttpConnection c = it.next();
+                        if (currentTime - c.idleStartTime >= IDLE_INTERVAL) {
+                            toClose.add(c);
+                            it.remove();
+                        }
                     }
                 }
-            }
-            // if any newly accepted connection has been idle (i.e. no byte has been sent on that
-            // connection during the configured idle timeout period) then close it as well
-            synchronized (newlyAcceptedConnections) {
-                final Iterator<HttpConnection> it = newlyAcceptedConnections.iterator();
-                while (it.hasNext()) {
-                    final HttpConnection c = it.next();
-                    if (currentTime - c.idleStartTime >= NEWLY_ACCEPTED_CONN_IDLE_INTERVAL) {
-                        toClose.add(c);
-                        it.remove();
+                // if any newly accepted connection has been idle (i.e. no byte has been sent on that
+                // connection during the configured idle timeout period) then close it as well
+                synchronized (d.newlyAcceptedConnections) {
+                    final Iterator<HttpConnection> it = d.newlyAcceptedConnections.iterator();
+                    while (it.hasNext()) {
+                        final HttpConnection c = it.next();
+                        if (currentTime - c.idleStartTime >= NEWLY_ACCEPTED_CONN_IDLE_INTERVAL) {
+                            toClose.add(c);
+                            it.remove();
+                        }
                     }
                 }
             }
@@ -1013,46 +1244,58 @@ class ServerImpl {
                     logger.log(Level.TRACE, "Closed idle connection " + c);
                 }
             }
+            // HTTP/2 connections are read by threads of their own, and are
+            // idle once they have had no open streams for the idle interval
+            Http2Connection[] h2s;
+            synchronized (http2Connections) {
+                h2s = http2Connections.toArray(new Http2Connection[0]);
+            }
+            for (Http2Connection h2 : h2s) {
+                h2.closeIfIdle(currentTime);
+            }
         }
     }
 
     /**
-     * Responsible for closing connections which have timed out while in REQUEST or RESPONSE state
+     * Responsible for closing connections which have timed out while in REQUEST or RESPONSE state.
+     * The connections of each dispatcher are checked in turn.
      */
     class ReqRspTimeoutTask extends TimerTask {
 
         // runs every TIMER_MILLIS
         public void run () {
-            LinkedList<HttpConnection> toClose = new LinkedList<HttpConnection>();
             final long currentTime = System.currentTimeMillis();
-            synchronized (reqConnections) {
-                if (MAX_REQ_TIME != -1) {
-                    for (HttpConnection c : reqConnections) {
-                        if (currentTime - c.reqStartedTime >= MAX_REQ_TIME) {
-                            toClose.add (c);
+            for (Dispatcher d : dispatchers) {
+                LinkedList<HttpConnection> toClose = new LinkedList<HttpConnection>();
+                synchronized (d.reqConnections) {
+                    if (MAX_REQ_TIME != -1) {
+                        for (HttpConnection c : d.reqConnections) {
+                            if (currentTime - c.reqStartedTime >= MAX_REQ_TIME) {
+                                toClose.add (c);
+                            }
+                        }
+                        for (HttpConnection c : toClose) {
+                            logger.log (Level.DEBUG, "closing: no request: " + c);
+                            d.reqConnections.remove (c);
+                            allConnections.remove (c);
+                            c.close();
                         }
-                    }
-                    for (HttpConnection c : toClose) {
-                        logger.log (Level.DEBUG, "closing: no request: " + c);
-                        reqConnections.remove (c);
-                        allConnections.remove (c);
-                        c.close();
                     }
                 }
-            }
-            toClose = new LinkedList<HttpConnection>();
-            synchronized (rspConnections) {
-                if (MAX_RSP_TIME != -1) {
-                    for (HttpConnection c : rspConnections) {
-                        if (currentTime - c.rspStartedTime >= MAX_RSP_TIME) {
-                            toClose.add (c);
+                toClose = new LinkedList<HttpConnection>();
+                synchronized (d.rspConnections) {
+                    if (MAX_RSP_TIME != -1) {
+                        for (HttpConnection c : d.rspConnections) {
+                            if (currentTime - c.rspStartedTime >= MAX_RSP_TIME) {
+                                toClose.add (c);
+                            }
+                        }
+                        for (HttpConnection c : toClose) {
+                            logger.log (Level.DEBUG, "closing: no response: " + c);
+                            d.rspConnections.remove (c);
+                            allConnections.remove (c);
+                            c.close();
                         }
-                    }
-                    for (HttpConnection c : toClose) {
-                        logger.log (Level.DEBUG, "closing: no response: " + c);
-                        rspConnections.remove (c);
-                        allConnections.remove (c);
-                        c.close();
                     }
                 }
             }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package jdk.jfr.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import jdk.jfr.internal.MirrorEvent;
+
+@Category({"Java Development Kit", "HTTP Client"})
+@Label("HTTP Connection Lease")
+@Name("jdk.HttpConnectionLease")
+@Description("Use of a HTTP/1.1 connection from the connection pool of a HttpClient")
+@MirrorEvent(className = "jdk.internal.event.HttpConnectionLeaseEvent")
+public final class HttpConnectionLeaseEvent extends AbstractJDKEvent {
+    @Label("Host")
+    @Description("Destination host, or proxy host")
+    public String host;
+
+    @Label("Port")
+    public int port;
+
+    @Label("Secure")
+    public boolean secure;
+
+    @Label("Reused")
+    @Description("The connection was taken from the pool rather than opened")
+    public boolean reused;
+
+    @Label("Returned")
+    @Description("The connection was returned to the pool rather than closed")
+    public boolean returned;
+
+    @Label("Wait Time")
+    @Description("Time spent waiting for the number of connections to the destination to fall below its maximum")
+    @Timespan
+    public long waitTime;
+
+    @Label("Idle Time")
+    @Description("Time the connection was idle in the pool before it was reused")
+    @Timespan
+    public long idleTime;
+
+    @Label("Connect Time")
+    @Description("Time taken to open the connection")
+    @Timespan
+    public long connectTime;
+}
@@ -84,6 +84,36 @@ class LinuxSocketOptions extends PlatformSocketOptions {
         return getTcpKeepAliveIntvl0(fd);
     }
 
+    @Override
+    boolean udpSegmentSupported() {
+        return udpSegmentSupported0();
+    }
+
+    @Override
+    void setUdpSegment(int fd, int value) throws SocketException {
+        setUdpSegment0(fd, value);
+    }
+
+    @Override
+    int getUdpSegment(int fd) throws SocketException {
+        return getUdpSegment0(fd);
+    }
+
+    @Override
+    boolean udpGroSupported() {
+        return udpGroSupported0();
+    }
+
+    @Override
+    void setUdpGro(int fd, boolean on) throws SocketException {
+        setUdpGro0(fd, on);
+    }
+
+    @Override
+    boolean getUdpGro(int fd) throws SocketException {
+        return getUdpGro0(fd);
+    }
+
     private static native void setTcpkeepAliveProbes0(int fd, int value) throws SocketException;
     private static native void setTcpKeepAliveTime0(int fd, int value) throws SocketException;
     private static native void setTcpKeepAliveIntvl0(int fd, int value) throws SocketException;
@@ -94,6 +124,12 @@ class LinuxSocketOptions extends PlatformSocketOptions {
     private static native boolean getQuickAck0(int fd) throws SocketException;
     private static native boolean keepAliveOptionsSupported0();
     private static native boolean quickAckSupported0();
+    private static native boolean udpSegmentSupported0();
+    private static native void setUdpSegment0(int fd, int value) throws SocketException;
+    private static native int getUdpSegment0(int fd) throws SocketException;
+    private static native boolean udpGroSupported0();
+    private static native void setUdpGro0(int fd, boolean on) throws SocketException;
+    private static native boolean getUdpGro0(int fd) throws SocketException;
     static {
         AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
             System.loadLibrary("extnet");
@@ -33,6 +33,16 @@
 #include "jni_util.h"
 #include "jdk_net_LinuxSocketOptions.h"
 
+#ifndef SOL_UDP
+#define SOL_UDP 17
+#endif
+#ifndef UDP_SEGMENT
+#define UDP_SEGMENT 103
+#endif
+#ifndef UDP_GRO
+#define UDP_GRO 104
+#endif
+
 /*
  * Declare library specific JNI_Onload entry if static build
  */
@@ -218,3 +228,86 @@ JNIEXPORT jint JNICALL Java_jdk_net_LinuxSocketOptions_getTcpKeepAliveIntvl0
     handleError(env, rv, "get option TCP_KEEPINTVL failed");
     return optval;
 }
+
+static jint udpSocketOptionSupported(jint sockopt) {
+    jint optval, rv, s;
+    socklen_t sz = sizeof (optval);
+    s = socket(PF_INET, SOCK_DGRAM, IPPROTO_UDP);
+    if (s < 0) {
+        return 0;
+    }
+    rv = getsockopt(s, SOL_UDP, sockopt, &optval, &sz);
+    close(s);
+    return (rv == 0) ? 1 : 0;
+}
+
+/*
+ * Class:     jdk_net_LinuxSocketOptions
+ * Method:    udpSegmentSupported0
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_jdk_net_LinuxSocketOptions_udpSegmentSupported0
+(JNIEnv *env, jobject unused) {
+    return udpSocketOptionSupported(UDP_SEGMENT);
+}
+
+/*
+ * Class:     jdk_net_LinuxSocketOptions
+ * Method:    setUdpSegment0
+ * Signature: (II)V
+ */
+JNIEXPORT void JNICALL Java_jdk_net_LinuxSocketOptions_setUdpSegment0
+(JNIEnv *env, jobject unused, jint fd, jint optval) {
+    jint rv = setsockopt(fd, SOL_UDP, UDP_SEGMENT, &optval, sizeof (optval));
+    handleError(env, rv, "set option UDP_SEGMENT failed");
+}
+
+/*
+ * Class:     jdk_net_LinuxSocketOptions
+ * Method:    getUdpSegment0
+ * Signature: (I)I;
+ */
+JNIEXPORT jint JNICALL Java_jdk_net_LinuxSocketOptions_getUdpSegment0
+(JNIEnv *env, jobject unused, jint fd) {
+    jint optval, rv;
+    socklen_t sz = sizeof (optval);
+    rv = getsockopt(fd, SOL_UDP, UDP_SEGMENT, &optval, &sz);
+    handleError(env, rv, "get option UDP_SEGMENT failed");
+    return optval;
+}
+
+/*
+ * Class:     jdk_net_LinuxSocketOptions
+ * Method:    udpGroSupported0
+ * Signature: ()Z
+ */
+JNIEXPORT jboolean JNICALL Java_jdk_net_LinuxSocketOptions_udpGroSupported0
+(JNIEnv *env, jobject unused) {
+    return udpSocketOptionSupported(UDP_GRO);
+}
+
+/*
+ * Class:     jdk_net_LinuxSocketOptions
+ * Method:    setUdpGro0
+ * Signature: (IZ)V
+ */
+JNIEXPORT void JNICALL Java_jdk_net_LinuxSocketOptions_setUdpGro0
+(JNIEnv *env, jobject unused, jint fd, jboolean on) {
+    jint optval = (on ? 1 : 0);
+    jint rv = setsockopt(fd, SOL_UDP, UDP_GRO, &optval, sizeof (optval));
+    handleError(env, rv, "set option UDP_GRO failed");
+}
+
+/*
+ * Class:     jdk_net_LinuxSocketOptions
+ * Method:    getUdpGro0
+ * Signature: (I)Z;
+ */
+JNIEXPORT jboolean JNICALL Java_jdk_net_LinuxSocketOptions_getUdpGro0
+(JNIEnv *env, jobject unused, jint fd) {
+    jint optval, rv;
+    socklen_t sz = sizeof (optval);
+    rv = getsockopt(fd, SOL_UDP, UDP_GRO, &optval, &sz);
+    handleError(env, rv, "get option UDP_GRO failed");
+    return optval != 0;
+}
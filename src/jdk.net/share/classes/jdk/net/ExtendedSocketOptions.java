@@ -161,6 +161,43 @@ public final class ExtendedSocketOptions {
     public static final SocketOption<Integer> TCP_KEEPCOUNT
             = new ExtSocketOption<Integer>("TCP_KEEPCOUNT", Integer.class);
 
+    /**
+     * UDP generic segmentation offload (GSO) segment size.
+     *
+     * <p>
+     * The value of this socket option is an {@code Integer} that is the
+     * segment size, in bytes, used to split a datagram that is sent. When the
+     * value is greater than zero then the remaining bytes in a buffer that is
+     * sent may exceed the segment size; the buffer is then sent as a sequence
+     * of datagrams of the segment size, the last datagram possibly shorter,
+     * with the segmentation done by the kernel or the network interface. A
+     * value of zero disables segmentation. The socket option is specific to
+     * datagram-oriented sockets using the UDP/IP protocol. The exact semantics
+     * of this socket option are system dependent.
+     *
+     * @since 11
+     */
+    public static final SocketOption<Integer> UDP_SEGMENT
+            = new ExtSocketOption<Integer>("UDP_SEGMENT", Integer.class);
+
+    /**
+     * UDP generic receive offload (GRO).
+     *
+     * <p>
+     * The value of this socket option is a {@code Boolean} that represents
+     * whether the option is enabled or disabled. When enabled, consecutive
+     * datagrams of the same size from the same source may be coalesced and
+     * received into a buffer as a single unit. Applications that enable this
+     * option must know the size of the datagrams sent by the peer in order to
+     * split the received bytes. The socket option is specific to
+     * datagram-oriented sockets using the UDP/IP protocol. The exact semantics
+     * of this socket option are system dependent.
+     *
+     * @since 11
+     */
+    public static final SocketOption<Boolean> UDP_GRO
+            = new ExtSocketOption<Boolean>("UDP_GRO", Boolean.class);
+
     private static final PlatformSocketOptions platformSocketOptions =
             PlatformSocketOptions.get();
 
@@ -170,6 +207,10 @@ public final class ExtendedSocketOptions {
             platformSocketOptions.quickAckSupported();
     private static final boolean keepAliveOptSupported =
             platformSocketOptions.keepAliveOptionsSupported();
+    private static final boolean udpSegmentSupported =
+            platformSocketOptions.udpSegmentSupported();
+    private static final boolean udpGroSupported =
+            platformSocketOptions.udpGroSupported();
     private static final Set<SocketOption<?>> extendedOptions = options();
 
     static Set<SocketOption<?>> options() {
@@ -183,6 +224,12 @@ public final class ExtendedSocketOptions {
         if (keepAliveOptSupported) {
             options.addAll(Set.of(TCP_KEEPCOUNT, TCP_KEEPIDLE, TCP_KEEPINTERVAL));
         }
+        if (udpSegmentSupported) {
+            options.add(UDP_SEGMENT);
+        }
+        if (udpGroSupported) {
+            options.add(UDP_GRO);
+        }
         return Collections.unmodifiableSet(options);
     }
 
@@ -216,6 +263,10 @@ public final class ExtendedSocketOptions {
                     setTcpKeepAliveTime(fd, (Integer) value);
                 } else if (option == TCP_KEEPINTERVAL) {
                     setTcpKeepAliveIntvl(fd, (Integer) value);
+                } else if (option == UDP_SEGMENT) {
+                    setUdpSegment(fd, (Integer) value);
+                } else if (option == UDP_GRO) {
+                    setUdpGro(fd, (boolean) value);
                 } else {
                     throw new InternalError("Unexpected option " + option);
                 }
@@ -246,6 +297,10 @@ public final class ExtendedSocketOptions {
                     return getTcpKeepAliveTime(fd);
                 } else if (option == TCP_KEEPINTERVAL) {
                     return getTcpKeepAliveIntvl(fd);
+                } else if (option == UDP_SEGMENT) {
+                    return getUdpSegment(fd);
+                } else if (option == UDP_GRO) {
+                    return getUdpGro(fd);
                 } else {
                     throw new InternalError("Unexpected option " + option);
                 }
@@ -317,6 +372,26 @@ public final class ExtendedSocketOptions {
         return platformSocketOptions.getTcpKeepAliveIntvl(fdAccess.get(fd));
     }
 
+    private static void setUdpSegment(FileDescriptor fd, int value)
+            throws SocketException {
+        if (value < 0)
+            throw new IllegalArgumentException("Invalid UDP_SEGMENT value");
+        platformSocketOptions.setUdpSegment(fdAccess.get(fd), value);
+    }
+
+    private static int getUdpSegment(FileDescriptor fd) throws SocketException {
+        return platformSocketOptions.getUdpSegment(fdAccess.get(fd));
+    }
+
+    private static void setUdpGro(FileDescriptor fd, boolean enable)
+            throws SocketException {
+        platformSocketOptions.setUdpGro(fdAccess.get(fd), enable);
+    }
+
+    private static boolean getUdpGro(FileDescriptor fd) throws SocketException {
+        return platformSocketOptions.getUdpGro(fdAccess.get(fd));
+    }
+
     static class PlatformSocketOptions {
 
         protected PlatformSocketOptions() {}
@@ -409,5 +484,29 @@ public final class ExtendedSocketOptions {
         int getTcpKeepAliveIntvl(int fd) throws SocketException {
             throw new UnsupportedOperationException("unsupported TCP_KEEPINTVL option");
         }
+
+        boolean udpSegmentSupported() {
+            return false;
+        }
+
+        void setUdpSegment(int fd, int value) throws SocketException {
+            throw new UnsupportedOperationException("unsupported UDP_SEGMENT option");
+        }
+
+        int getUdpSegment(int fd) throws SocketException {
+            throw new UnsupportedOperationException("unsupported UDP_SEGMENT option");
+        }
+
+        boolean udpGroSupported() {
+            return false;
+        }
+
+        void setUdpGro(int fd, boolean on) throws SocketException {
+            throw new UnsupportedOperationException("unsupported UDP_GRO option");
+        }
+
+        boolean getUdpGro(int fd) throws SocketException {
+            throw new UnsupportedOperationException("unsupported UDP_GRO option");
+        }
     }
 }
@@ -27,8 +27,10 @@ package jdk.nio;
 
 import java.io.FileDescriptor;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelectableChannel;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.Objects;
@@ -38,6 +40,7 @@ import sun.nio.ch.Net;
 import sun.nio.ch.SelChImpl;
 import sun.nio.ch.SelectionKeyImpl;
 import sun.nio.ch.SelectorProviderImpl;
+import sun.nio.ch.SocketChannelImpl;
 
 /**
  * Defines static methods to create {@link java.nio.channels.Channel channels}.
@@ -169,6 +172,151 @@ public final class Channels {
         return new ReadWriteChannelImpl((SelectorProviderImpl)provider, fd, closer);
     }
 
+    /**
+     * Transfers bytes from one socket channel to another without copying
+     * them to user space.
+     *
+     * <p> An invocation of this method reads up to {@code count} bytes from
+     * the source channel and writes them to the target channel. The bytes
+     * are moved between the sockets by the operating system. The source and
+     * target channels may be configured blocking or non-blocking. When the
+     * source channel is in non-blocking mode then no bytes are transferred if
+     * no bytes are immediately available in the socket's input buffer. When
+     * the target channel is in non-blocking mode then fewer bytes than were
+     * read from the source may be written to the target. The remaining bytes
+     * are retained by the source channel; they are transferred by the next
+     * invocation of this method or returned by the next {@link
+     * SocketChannel#read(ByteBuffer) read} from the source channel. </p>
+     *
+     * <p> This method does not modify the blocking mode of either channel and
+     * may be invoked at the same time as a read from the target channel or a
+     * write to the source channel, as when forwarding bytes in both directions
+     * between two connections. </p>
+     *
+     * @implNote This method is implemented with {@code splice(2)} on Linux.
+     * It throws {@code UnsupportedOperationException} on other platforms.
+     *
+     * @param  source
+     *         The connected channel to read bytes from
+     * @param  target
+     *         The connected channel to write bytes to
+     * @param  count
+     *         The maximum number of bytes to transfer; must be non-negative
+     *
+     * @return The number of bytes written to the target channel, possibly
+     *         zero, or {@code -1} if the source channel has reached
+     *         end-of-stream
+     *
+     * @throws IllegalArgumentException
+     *         If {@code count} is negative or the source and target are the
+     *         same channel
+     * @throws java.nio.channels.NotYetConnectedException
+     *         If either channel is not yet connected
+     * @throws java.nio.channels.ClosedChannelException
+     *         If either channel is closed
+     * @throws UnsupportedOperationException
+     *         If the channels were not created by the JDK built-in
+     *         {@code SelectorProvider} or the operation is not supported
+     * @throws IOException
+     *         If some other I/O error occurs
+     *
+     * @since 11
+     */
+    public static long transfer(SocketChannel source,
+                                SocketChannel target,
+                                long count) throws IOException {
+        return socketChannelImpl(source).transferTo(socketChannelImpl(target), count);
+    }
+
+    /**
+     * Writes a sequence of bytes from a direct buffer to a socket channel
+     * without copying the bytes to a kernel buffer.
+     *
+     * <p> This method behaves as specified by {@link
+     * SocketChannel#write(ByteBuffer) write} except that the socket sends the
+     * bytes from the buffer's memory. The bytes between the buffer's
+     * position at the time of the invocation and its new position must not
+     * be modified until the send has completed. Each invocation of this
+     * method that writes at least one byte is a <em>send</em>. Sends are
+     * numbered in the order that they occur, starting at 0. The number of
+     * sends that have completed is returned by {@link #zeroCopyCompleted
+     * zeroCopyCompleted}. </p>
+     *
+     * <p> Sending without copying is only beneficial for large buffers, a
+     * send of a small buffer may be slower than a {@code write}. </p>
+     *
+     * @implNote This method is implemented with {@code MSG_ZEROCOPY} on Linux.
+     * On other platforms, or when not supported by the kernel, the bytes are
+     * written as if by {@code write} and the send completes immediately.
+     * Zero bytes are written, even in blocking mode, when the kernel limit on
+     * outstanding sends is reached; {@code zeroCopyCompleted} should be
+     * invoked before the write is retried.
+     *
+     * @param  channel
+     *         The connected channel
+     * @param  src
+     *         The direct buffer from which bytes are to be written
+     *
+     * @return The number of bytes written, possibly zero
+     *
+     * @throws IllegalArgumentException
+     *         If the buffer is not a direct buffer
+     * @throws java.nio.channels.NotYetConnectedException
+     *         If the channel is not yet connected
+     * @throws java.nio.channels.ClosedChannelException
+     *         If the channel is closed
+     * @throws UnsupportedOperationException
+     *         If the channel was not created by the JDK built-in
+     *         {@code SelectorProvider}
+     * @throws IOException
+     *         If some other I/O error occurs
+     *
+     * @since 11
+     */
+    public static int writeZeroCopy(SocketChannel channel, ByteBuffer src)
+        throws IOException
+    {
+        return socketChannelImpl(channel).writeZeroCopy(src);
+    }
+
+    /**
+     * Returns the number of sends by {@link #writeZeroCopy writeZeroCopy} on
+     * the given channel that have completed. If the value returned is
+     * {@code n} then the sends numbered {@code 0} to {@code n-1} have
+     * completed and their buffers may be modified or reused.
+     *
+     * <p> The kernel notifies the completion of sends asynchronously. A
+     * {@link java.nio.channels.Selector Selector} may select the channel,
+     * for any of the operations in its interest set, when notifications are
+     * pending. This method should be invoked when the channel is selected so
+     * that the notifications are consumed. </p>
+     *
+     * @param  channel
+     *         The channel
+     *
+     * @return The number of completed sends
+     *
+     * @throws java.nio.channels.ClosedChannelException
+     *         If the channel is closed
+     * @throws UnsupportedOperationException
+     *         If the channel was not created by the JDK built-in
+     *         {@code SelectorProvider}
+     * @throws IOException
+     *         If some other I/O error occurs
+     *
+     * @since 11
+     */
+    public static long zeroCopyCompleted(SocketChannel channel) throws IOException {
+        return socketChannelImpl(channel).zeroCopyCompleted();
+    }
+
+    private static SocketChannelImpl socketChannelImpl(SocketChannel channel) {
+        Objects.requireNonNull(channel);
+        if (!(channel instanceof SocketChannelImpl))
+            throw new UnsupportedOperationException("custom SocketChannel");
+        return (SocketChannelImpl)channel;
+    }
+
     private static final class ReadWriteChannelImpl
         extends AbstractSelectableChannel implements SelChImpl
     {
@@ -40,7 +40,17 @@ public enum ExtendedCopyOption implements CopyOption {
      * The copy may be interrupted by the {@link Thread#interrupt interrupt}
      * method.
      */
-    INTERRUPTIBLE(ExtendedOptions.INTERRUPTIBLE);
+    INTERRUPTIBLE(ExtendedOptions.INTERRUPTIBLE),
+
+    /**
+     * The copy may share the data blocks of the source file with the target
+     * file, on file systems that support copy-on-write, so that the data is
+     * only copied when either file is modified. The file is copied if the
+     * file system does not support it.
+     *
+     * @since 11
+     */
+    REFLINK(ExtendedOptions.REFLINK);
 
     ExtendedCopyOption(ExtendedOptions.InternalOption<Void> option) {
         option.register(this);
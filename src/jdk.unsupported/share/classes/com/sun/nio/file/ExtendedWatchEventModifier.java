@@ -38,7 +38,11 @@ import sun.nio.fs.ExtendedOptions;
 public enum ExtendedWatchEventModifier implements Modifier {
 
     /**
-     * Register a file tree instead of a single directory.
+     * Register a file tree instead of a single directory. The context of
+     * the events is the path of the file relative to the directory. An
+     * {@link java.nio.file.StandardWatchEventKinds#OVERFLOW OVERFLOW} event
+     * may have, as context, the relative path of the sub-directory in which
+     * events were lost.
      */
     FILE_TREE(ExtendedOptions.FILE_TREE);
 